@@ -4,6 +4,9 @@ import cn.xlhealth.backend.config.properties.AIServiceProperties;
 import cn.xlhealth.backend.service.ai.AIService;
 import cn.xlhealth.backend.service.ai.context.ContextManager;
 import cn.xlhealth.backend.service.ai.context.impl.ContextManagerImpl;
+import cn.xlhealth.backend.service.ai.context.remote.RemoteContextStore;
+import cn.xlhealth.backend.service.ai.context.remote.impl.LocalOnlyContextStore;
+import cn.xlhealth.backend.service.ai.context.remote.impl.RedisContextStore;
 import cn.xlhealth.backend.service.ai.impl.MockAIService;
 import cn.xlhealth.backend.service.ai.impl.DeepSeekAIService;
 import cn.xlhealth.backend.service.ai.monitor.ServiceMonitor;
@@ -69,6 +72,22 @@ public class AIServiceConfig {
         return new ContextManagerImpl();
     }
     
+    /**
+     * 共享上下文存储Bean
+     * 未启用远程缓存时使用仅本地模式
+     */
+    @Bean
+    public RemoteContextStore remoteContextStore(AIServiceProperties properties) {
+        AIServiceProperties.Context.Remote remote = properties.getContext().getRemote();
+        if (!remote.isEnabled()) {
+            logger.info("Remote context store disabled, using local-only context cache");
+            return new LocalOnlyContextStore();
+        }
+
+        logger.info("Initializing Redis context store: {}:{}", remote.getHost(), remote.getPort());
+        return new RedisContextStore(remote);
+    }
+    
     /**
      * 质量评估器Bean
      */
@@ -1,11 +1,14 @@
 package cn.xlhealth.backend.config;
 
+import cn.xlhealth.backend.config.properties.MessageCompressionProperties;
+import cn.xlhealth.backend.mapper.handler.CompressedTextTypeHandler;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.core.handlers.MetaObjectHandler;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
 import org.apache.ibatis.reflection.MetaObject;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.stereotype.Component;
@@ -43,6 +46,15 @@ public class MyBatisPlusConfig {
         return interceptor;
     }
 
+    /**
+     * 消息内容压缩配置
+     * 类型处理器由 MyBatis 实例化，开关和阈值通过静态设置生效
+     */
+    @Autowired
+    public void configureContentCompression(MessageCompressionProperties properties) {
+        CompressedTextTypeHandler.configure(properties.isEnabled(), properties.getMinBytes());
+    }
+
     /**
      * 自动填充配置
      */
@@ -2,6 +2,12 @@ package cn.xlhealth.backend.config.properties;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * AI服务配置属性
  */
@@ -33,6 +39,16 @@ public class AIServiceProperties {
      */
     private Monitor monitor = new Monitor();
     
+    /**
+     * 监控统计配置
+     */
+    private Monitoring monitoring = new Monitoring();
+    
+    /**
+     * 用量账本配置
+     */
+    private Usage usage = new Usage();
+    
     /**
      * 降级配置
      */
@@ -82,7 +98,356 @@ public class AIServiceProperties {
          */
         @com.fasterxml.jackson.annotation.JsonProperty("summary-threshold")
         private int summaryThreshold = 10;
-        
+
+        /**
+         * 共享远程缓存配置（多节点部署）
+         */
+        private Remote remote = new Remote();
+
+        public static class Remote {
+            /**
+             * 是否启用远程共享缓存，未启用时仅使用本地近缓存
+             */
+            private boolean enabled = false;
+
+            /**
+             * Redis主机
+             */
+            private String host = "localhost";
+
+            /**
+             * Redis端口
+             */
+            private int port = 6379;
+
+            /**
+             * Redis密码
+             */
+            private String password;
+
+            /**
+             * Redis数据库编号
+             */
+            private int database = 0;
+
+            /**
+             * 键前缀
+             */
+            private String keyPrefix = "xlhealth:ctx:";
+
+            /**
+             * 连接及读写超时（毫秒）
+             */
+            private int timeoutMs = 200;
+
+            /**
+             * 连接池大小
+             */
+            private int poolSize = 8;
+
+            /**
+             * 远程不可用后的重试间隔（秒）
+             */
+            private int retryIntervalSeconds = 30;
+
+            // Getters and Setters
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getHost() {
+                return host;
+            }
+
+            public void setHost(String host) {
+                this.host = host;
+            }
+
+            public int getPort() {
+                return port;
+            }
+
+            public void setPort(int port) {
+                this.port = port;
+            }
+
+            public String getPassword() {
+                return password;
+            }
+
+            public void setPassword(String password) {
+                this.password = password;
+            }
+
+            public int getDatabase() {
+                return database;
+            }
+
+            public void setDatabase(int database) {
+                this.database = database;
+            }
+
+            public String getKeyPrefix() {
+                return keyPrefix;
+            }
+
+            public void setKeyPrefix(String keyPrefix) {
+                this.keyPrefix = keyPrefix;
+            }
+
+            public int getTimeoutMs() {
+                return timeoutMs;
+            }
+
+            public void setTimeoutMs(int timeoutMs) {
+                this.timeoutMs = timeoutMs;
+            }
+
+            public int getPoolSize() {
+                return poolSize;
+            }
+
+            public void setPoolSize(int poolSize) {
+                this.poolSize = poolSize;
+            }
+
+            public int getRetryIntervalSeconds() {
+                return retryIntervalSeconds;
+            }
+
+            public void setRetryIntervalSeconds(int retryIntervalSeconds) {
+                this.retryIntervalSeconds = retryIntervalSeconds;
+            }
+        }
+
+        /**
+         * 长期记忆召回配置
+         */
+        private Memory memory = new Memory();
+
+        public static class Memory {
+            /**
+             * 是否启用跨对话的长期记忆召回
+             */
+            private boolean enabled = true;
+
+            /**
+             * 文本向量维度
+             */
+            private int dimension = 256;
+
+            /**
+             * 每次回复最多注入的历史片段数量
+             */
+            private int topK = 3;
+
+            /**
+             * 注入片段的token预算
+             */
+            private int tokenBudget = 300;
+
+            /**
+             * 最低相似度，低于该值的片段不注入
+             */
+            private double minSimilarity = 0.35;
+
+            /**
+             * 单个片段最大字符数
+             */
+            private int maxSnippetChars = 120;
+
+            /**
+             * 每个用户索引的最大消息数
+             */
+            private int maxEntriesPerUser = 2000;
+
+            /**
+             * 内存中保留索引的最大用户数，超出时淘汰最久未访问的用户
+             */
+            private int maxUsers = 1000;
+
+            /**
+             * HNSW每层最大连接数
+             */
+            private int m = 16;
+
+            /**
+             * HNSW构建时的候选集大小
+             */
+            private int efConstruction = 100;
+
+            /**
+             * HNSW查询时的候选集大小
+             */
+            private int efSearch = 64;
+
+            // Getters and Setters
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getDimension() {
+                return dimension;
+            }
+
+            public void setDimension(int dimension) {
+                this.dimension = dimension;
+            }
+
+            public int getTopK() {
+                return topK;
+            }
+
+            public void setTopK(int topK) {
+                this.topK = topK;
+            }
+
+            public int getTokenBudget() {
+                return tokenBudget;
+            }
+
+            public void setTokenBudget(int tokenBudget) {
+                this.tokenBudget = tokenBudget;
+            }
+
+            public double getMinSimilarity() {
+                return minSimilarity;
+            }
+
+            public void setMinSimilarity(double minSimilarity) {
+                this.minSimilarity = minSimilarity;
+            }
+
+            public int getMaxSnippetChars() {
+                return maxSnippetChars;
+            }
+
+            public void setMaxSnippetChars(int maxSnippetChars) {
+                this.maxSnippetChars = maxSnippetChars;
+            }
+
+            public int getMaxEntriesPerUser() {
+                return maxEntriesPerUser;
+            }
+
+            public void setMaxEntriesPerUser(int maxEntriesPerUser) {
+                this.maxEntriesPerUser = maxEntriesPerUser;
+            }
+
+            public int getMaxUsers() {
+                return maxUsers;
+            }
+
+            public void setMaxUsers(int maxUsers) {
+                this.maxUsers = maxUsers;
+            }
+
+            public int getM() {
+                return m;
+            }
+
+            public void setM(int m) {
+                this.m = m;
+            }
+
+            public int getEfConstruction() {
+                return efConstruction;
+            }
+
+            public void setEfConstruction(int efConstruction) {
+                this.efConstruction = efConstruction;
+            }
+
+            public int getEfSearch() {
+                return efSearch;
+            }
+
+            public void setEfSearch(int efSearch) {
+                this.efSearch = efSearch;
+            }
+        }
+
+        /**
+         * 上下文快照配置（重启预热）
+         */
+        private Snapshot snapshot = new Snapshot();
+
+        public static class Snapshot {
+            /**
+             * 是否启用上下文快照
+             */
+            private boolean enabled = false;
+
+            /**
+             * 快照文件路径
+             */
+            private String path = "data/context-snapshot.bin";
+
+            /**
+             * 定时快照间隔（秒）
+             */
+            private int intervalSeconds = 300;
+
+            /**
+             * 快照保存的最大对话数
+             */
+            private int maxEntries = 5000;
+
+            /**
+             * 启动恢复的最长等待时间（秒），超时后不再阻塞就绪状态
+             */
+            private int restoreTimeoutSeconds = 30;
+
+            // Getters and Setters
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getPath() {
+                return path;
+            }
+
+            public void setPath(String path) {
+                this.path = path;
+            }
+
+            public int getIntervalSeconds() {
+                return intervalSeconds;
+            }
+
+            public void setIntervalSeconds(int intervalSeconds) {
+                this.intervalSeconds = intervalSeconds;
+            }
+
+            public int getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(int maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public int getRestoreTimeoutSeconds() {
+                return restoreTimeoutSeconds;
+            }
+
+            public void setRestoreTimeoutSeconds(int restoreTimeoutSeconds) {
+                this.restoreTimeoutSeconds = restoreTimeoutSeconds;
+            }
+        }
+
         // Getters and Setters
         public int getWindowSize() {
             return windowSize;
@@ -141,6 +506,30 @@ public class AIServiceProperties {
         public void setSummaryThreshold(int summaryThreshold) {
             this.summaryThreshold = summaryThreshold;
         }
+
+        public Remote getRemote() {
+            return remote;
+        }
+
+        public void setRemote(Remote remote) {
+            this.remote = remote;
+        }
+
+        public Memory getMemory() {
+            return memory;
+        }
+
+        public void setMemory(Memory memory) {
+            this.memory = memory;
+        }
+
+        public Snapshot getSnapshot() {
+            return snapshot;
+        }
+
+        public void setSnapshot(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
     }
     
     public static class Quality {
@@ -159,11 +548,198 @@ public class AIServiceProperties {
          */
         private boolean safetyCheckEnabled = true;
         
+        /**
+         * 安全检查最低分数，低于该分数的回复同步拦截并降级
+         */
+        private int safetyMinScore = 50;
+        
         /**
          * 最大重试次数
          */
         private int maxRetries = 3;
         
+        /**
+         * 异步质量评分配置
+         */
+        private Async async = new Async();
+        
+        /**
+         * 各维度权重
+         */
+        private Weights weights = new Weights();
+        
+        /**
+         * 评分规则配置
+         */
+        private Rules rules = new Rules();
+        
+        /**
+         * 各维度权重，规则文件中指定权重时以规则文件为准
+         */
+        public static class Weights {
+            private double relevance = 0.4;
+            private double professionalism = 0.15;
+            private double emotional = 0.25;
+            private double safety = 0.15;
+            private double completeness = 0.05;
+            
+            public double getRelevance() {
+                return relevance;
+            }
+            
+            public void setRelevance(double relevance) {
+                this.relevance = relevance;
+            }
+            
+            public double getProfessionalism() {
+                return professionalism;
+            }
+            
+            public void setProfessionalism(double professionalism) {
+                this.professionalism = professionalism;
+            }
+            
+            public double getEmotional() {
+                return emotional;
+            }
+            
+            public void setEmotional(double emotional) {
+                this.emotional = emotional;
+            }
+            
+            public double getSafety() {
+                return safety;
+            }
+            
+            public void setSafety(double safety) {
+                this.safety = safety;
+            }
+            
+            public double getCompleteness() {
+                return completeness;
+            }
+            
+            public void setCompleteness(double completeness) {
+                this.completeness = completeness;
+            }
+        }
+        
+        /**
+         * 评分规则配置
+         * 规则文件（关键词集合、模式、分值增减）启动时编译，文件变更后自动重新编译并替换，无需重启
+         */
+        public static class Rules {
+            /**
+             * 规则文件位置，支持 classpath: 和 file: 前缀
+             */
+            private String location = "classpath:quality-rules.yml";
+            
+            /**
+             * 检查规则文件变更的间隔（秒），仅对 file: 位置生效
+             */
+            private int refreshSeconds = 30;
+            
+            public String getLocation() {
+                return location;
+            }
+            
+            public void setLocation(String location) {
+                this.location = location;
+            }
+            
+            public int getRefreshSeconds() {
+                return refreshSeconds;
+            }
+            
+            public void setRefreshSeconds(int refreshSeconds) {
+                this.refreshSeconds = refreshSeconds;
+            }
+        }
+        
+        /**
+         * 异步质量评分配置
+         * 完整的多维度评分不阻塞回复，按采样率提交到独立线程池，结果回写消息记录和监控统计
+         */
+        public static class Async {
+            /**
+             * 是否启用异步评分
+             */
+            private boolean enabled = true;
+            
+            /**
+             * 采样率（0-1）
+             */
+            private double sampleRate = 0.1;
+            
+            /**
+             * 全量评分的用户ID
+             */
+            private List<Long> flaggedUserIds = new ArrayList<>();
+            
+            /**
+             * 安全检查未通过的用户自动全量评分的时长（分钟）
+             */
+            private int flagTtlMinutes = 60;
+            
+            /**
+             * 评分线程数
+             */
+            private int threads = 1;
+            
+            /**
+             * 队列容量，队列满时丢弃新任务
+             */
+            private int queueCapacity = 1000;
+            
+            public boolean isEnabled() {
+                return enabled;
+            }
+            
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+            
+            public double getSampleRate() {
+                return sampleRate;
+            }
+            
+            public void setSampleRate(double sampleRate) {
+                this.sampleRate = sampleRate;
+            }
+            
+            public List<Long> getFlaggedUserIds() {
+                return flaggedUserIds;
+            }
+            
+            public void setFlaggedUserIds(List<Long> flaggedUserIds) {
+                this.flaggedUserIds = flaggedUserIds;
+            }
+            
+            public int getFlagTtlMinutes() {
+                return flagTtlMinutes;
+            }
+            
+            public void setFlagTtlMinutes(int flagTtlMinutes) {
+                this.flagTtlMinutes = flagTtlMinutes;
+            }
+            
+            public int getThreads() {
+                return threads;
+            }
+            
+            public void setThreads(int threads) {
+                this.threads = threads;
+            }
+            
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+            
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+        }
+        
         // Getters and Setters
         public boolean isEnabled() {
             return enabled;
@@ -196,6 +772,38 @@ public class AIServiceProperties {
         public void setMaxRetries(int maxRetries) {
             this.maxRetries = maxRetries;
         }
+        
+        public int getSafetyMinScore() {
+            return safetyMinScore;
+        }
+        
+        public void setSafetyMinScore(int safetyMinScore) {
+            this.safetyMinScore = safetyMinScore;
+        }
+        
+        public Async getAsync() {
+            return async;
+        }
+        
+        public void setAsync(Async async) {
+            this.async = async;
+        }
+        
+        public Weights getWeights() {
+            return weights;
+        }
+        
+        public void setWeights(Weights weights) {
+            this.weights = weights;
+        }
+        
+        public Rules getRules() {
+            return rules;
+        }
+        
+        public void setRules(Rules rules) {
+            this.rules = rules;
+        }
     }
     
     public static class Monitor {
@@ -240,6 +848,451 @@ public class AIServiceProperties {
         }
     }
     
+    public static class Monitoring {
+        /**
+         * 是否启用监控
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 统计数据保留时间（小时），时间窗口统计最长覆盖该时长
+         */
+        private int statsRetentionHours = 24;
+        
+        /**
+         * 是否在响应中返回 Server-Timing 头（各处理阶段耗时）
+         */
+        private boolean serverTimingEnabled = true;
+        
+        /**
+         * 健康检查阈值
+         */
+        private HealthThresholds healthThresholds = new HealthThresholds();
+        
+        /**
+         * 异常检测配置
+         */
+        private Anomaly anomaly = new Anomaly();
+        
+        /**
+         * 提供商主动探测配置
+         */
+        private Probe probe = new Probe();
+        
+        /**
+         * 指标历史配置
+         */
+        private History history = new History();
+        
+        public static class HealthThresholds {
+            /**
+             * 最小成功率（0-1）
+             */
+            private double minSuccessRate = 0.8;
+            
+            /**
+             * 最大平均响应时间（毫秒）
+             */
+            private long maxResponseTime = 5000;
+            
+            /**
+             * 最大错误率（0-1）
+             */
+            private double maxErrorRate = 0.2;
+            
+            public double getMinSuccessRate() {
+                return minSuccessRate;
+            }
+            
+            public void setMinSuccessRate(double minSuccessRate) {
+                this.minSuccessRate = minSuccessRate;
+            }
+            
+            public long getMaxResponseTime() {
+                return maxResponseTime;
+            }
+            
+            public void setMaxResponseTime(long maxResponseTime) {
+                this.maxResponseTime = maxResponseTime;
+            }
+            
+            public double getMaxErrorRate() {
+                return maxErrorRate;
+            }
+            
+            public void setMaxErrorRate(double maxErrorRate) {
+                this.maxErrorRate = maxErrorRate;
+            }
+        }
+        
+        public static class Anomaly {
+            /**
+             * 是否启用响应时间和错误率异常检测
+             */
+            private boolean enabled = true;
+            
+            /**
+             * 评估间隔（秒），每次评估使用该间隔内的调用
+             */
+            private int evaluationSeconds = 5;
+            
+            /**
+             * 单次评估的最少调用数，不足时累积到下一次评估
+             */
+            private int minCalls = 10;
+            
+            /**
+             * 基线EWMA平滑系数（0-1），越大越快适应新水平
+             */
+            private double alpha = 0.05;
+            
+            /**
+             * 开始告警前基线需要的评估次数
+             */
+            private int warmupEvaluations = 20;
+            
+            /**
+             * 偏离基线多少个标准差时告警，回落到一半以下时解除
+             */
+            private double deviationThreshold = 4.0;
+            
+            public boolean isEnabled() {
+                return enabled;
+            }
+            
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+            
+            public int getEvaluationSeconds() {
+                return evaluationSeconds;
+            }
+            
+            public void setEvaluationSeconds(int evaluationSeconds) {
+                this.evaluationSeconds = evaluationSeconds;
+            }
+            
+            public int getMinCalls() {
+                return minCalls;
+            }
+            
+            public void setMinCalls(int minCalls) {
+                this.minCalls = minCalls;
+            }
+            
+            public double getAlpha() {
+                return alpha;
+            }
+            
+            public void setAlpha(double alpha) {
+                this.alpha = alpha;
+            }
+            
+            public int getWarmupEvaluations() {
+                return warmupEvaluations;
+            }
+            
+            public void setWarmupEvaluations(int warmupEvaluations) {
+                this.warmupEvaluations = warmupEvaluations;
+            }
+            
+            public double getDeviationThreshold() {
+                return deviationThreshold;
+            }
+            
+            public void setDeviationThreshold(double deviationThreshold) {
+                this.deviationThreshold = deviationThreshold;
+            }
+        }
+        
+        public static class Probe {
+            /**
+             * 是否定时发送合成请求探测提供商；关闭时健康检查只检查配置
+             */
+            private boolean enabled = true;
+            
+            /**
+             * 探测间隔（秒）
+             */
+            private int intervalSeconds = 30;
+            
+            /**
+             * 单次探测超时时间（毫秒）
+             */
+            private int timeoutMs = 5000;
+            
+            /**
+             * 探测结果有效期（秒），超过后健康状态为UNKNOWN
+             */
+            private int ttlSeconds = 90;
+            
+            /**
+             * 连续失败多少次后熔断（OPEN）
+             */
+            private int failureThreshold = 3;
+            
+            /**
+             * 熔断后连续成功多少次恢复（CLOSED）
+             */
+            private int successThreshold = 2;
+            
+            public boolean isEnabled() {
+                return enabled;
+            }
+            
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+            
+            public int getIntervalSeconds() {
+                return intervalSeconds;
+            }
+            
+            public void setIntervalSeconds(int intervalSeconds) {
+                this.intervalSeconds = intervalSeconds;
+            }
+            
+            public int getTimeoutMs() {
+                return timeoutMs;
+            }
+            
+            public void setTimeoutMs(int timeoutMs) {
+                this.timeoutMs = timeoutMs;
+            }
+            
+            public int getTtlSeconds() {
+                return ttlSeconds;
+            }
+            
+            public void setTtlSeconds(int ttlSeconds) {
+                this.ttlSeconds = ttlSeconds;
+            }
+            
+            public int getFailureThreshold() {
+                return failureThreshold;
+            }
+            
+            public void setFailureThreshold(int failureThreshold) {
+                this.failureThreshold = failureThreshold;
+            }
+            
+            public int getSuccessThreshold() {
+                return successThreshold;
+            }
+            
+            public void setSuccessThreshold(int successThreshold) {
+                this.successThreshold = successThreshold;
+            }
+        }
+        
+        public static class History {
+            /**
+             * 是否每分钟将时间窗口统计写入指标历史表
+             */
+            private boolean enabled = true;
+            
+            /**
+             * 分钟粒度数据保留时间（小时）
+             */
+            private int minuteRetentionHours = 48;
+            
+            /**
+             * 小时粒度数据保留时间（天）
+             */
+            private int hourRetentionDays = 30;
+            
+            /**
+             * 天粒度数据保留时间（天）
+             */
+            private int dayRetentionDays = 365;
+            
+            /**
+             * 实例标识，为空时使用主机名；多实例部署时查询会合并各实例的数据
+             */
+            private String instanceId;
+            
+            public boolean isEnabled() {
+                return enabled;
+            }
+            
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+            
+            public int getMinuteRetentionHours() {
+                return minuteRetentionHours;
+            }
+            
+            public void setMinuteRetentionHours(int minuteRetentionHours) {
+                this.minuteRetentionHours = minuteRetentionHours;
+            }
+            
+            public int getHourRetentionDays() {
+                return hourRetentionDays;
+            }
+            
+            public void setHourRetentionDays(int hourRetentionDays) {
+                this.hourRetentionDays = hourRetentionDays;
+            }
+            
+            public int getDayRetentionDays() {
+                return dayRetentionDays;
+            }
+            
+            public void setDayRetentionDays(int dayRetentionDays) {
+                this.dayRetentionDays = dayRetentionDays;
+            }
+            
+            public String getInstanceId() {
+                return instanceId;
+            }
+            
+            public void setInstanceId(String instanceId) {
+                this.instanceId = instanceId;
+            }
+        }
+        
+        // Getters and Setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getStatsRetentionHours() {
+            return statsRetentionHours;
+        }
+        
+        public void setStatsRetentionHours(int statsRetentionHours) {
+            this.statsRetentionHours = statsRetentionHours;
+        }
+        
+        public boolean isServerTimingEnabled() {
+            return serverTimingEnabled;
+        }
+        
+        public void setServerTimingEnabled(boolean serverTimingEnabled) {
+            this.serverTimingEnabled = serverTimingEnabled;
+        }
+        
+        public HealthThresholds getHealthThresholds() {
+            return healthThresholds;
+        }
+        
+        public void setHealthThresholds(HealthThresholds healthThresholds) {
+            this.healthThresholds = healthThresholds;
+        }
+        
+        public Anomaly getAnomaly() {
+            return anomaly;
+        }
+        
+        public void setAnomaly(Anomaly anomaly) {
+            this.anomaly = anomaly;
+        }
+        
+        public Probe getProbe() {
+            return probe;
+        }
+        
+        public void setProbe(Probe probe) {
+            this.probe = probe;
+        }
+        
+        public History getHistory() {
+            return history;
+        }
+        
+        public void setHistory(History history) {
+            this.history = history;
+        }
+    }
+    
+    public static class Usage {
+        /**
+         * 是否记录用量
+         */
+        private boolean enabled = true;
+        
+        /**
+         * 内存中的用量写入每日汇总表的间隔（秒）
+         */
+        private int flushSeconds = 60;
+        
+        /**
+         * 货币单位
+         */
+        private String currency = "CNY";
+        
+        /**
+         * 各模型价格，键为模型名称；未配置的模型费用记为0
+         */
+        private Map<String, Price> prices = new HashMap<>();
+        
+        public static class Price {
+            /**
+             * 每千输入token价格
+             */
+            private BigDecimal promptPer1k = BigDecimal.ZERO;
+            
+            /**
+             * 每千输出token价格
+             */
+            private BigDecimal completionPer1k = BigDecimal.ZERO;
+            
+            public BigDecimal getPromptPer1k() {
+                return promptPer1k;
+            }
+            
+            public void setPromptPer1k(BigDecimal promptPer1k) {
+                this.promptPer1k = promptPer1k;
+            }
+            
+            public BigDecimal getCompletionPer1k() {
+                return completionPer1k;
+            }
+            
+            public void setCompletionPer1k(BigDecimal completionPer1k) {
+                this.completionPer1k = completionPer1k;
+            }
+        }
+        
+        // Getters and Setters
+        public boolean isEnabled() {
+            return enabled;
+        }
+        
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+        
+        public int getFlushSeconds() {
+            return flushSeconds;
+        }
+        
+        public void setFlushSeconds(int flushSeconds) {
+            this.flushSeconds = flushSeconds;
+        }
+        
+        public String getCurrency() {
+            return currency;
+        }
+        
+        public void setCurrency(String currency) {
+            this.currency = currency;
+        }
+        
+        public Map<String, Price> getPrices() {
+            return prices;
+        }
+        
+        public void setPrices(Map<String, Price> prices) {
+            this.prices = prices;
+        }
+    }
+    
     public static class Fallback {
         /**
          * 是否启用降级
@@ -329,6 +1382,11 @@ public class AIServiceProperties {
          */
         private int timeout = 30000;
         
+        /**
+         * 是否使用流式生成（边生成边做安全检查，可提前中止）
+         */
+        private boolean stream = true;
+        
         // Getters and Setters
         public String getApiKey() {
             return apiKey;
@@ -377,6 +1435,14 @@ public class AIServiceProperties {
         public void setTimeout(int timeout) {
             this.timeout = timeout;
         }
+        
+        public boolean isStream() {
+            return stream;
+        }
+        
+        public void setStream(boolean stream) {
+            this.stream = stream;
+        }
     }
     
     // Main class getters and setters
@@ -420,6 +1486,22 @@ public class AIServiceProperties {
         this.monitor = monitor;
     }
     
+    public Monitoring getMonitoring() {
+        return monitoring;
+    }
+    
+    public void setMonitoring(Monitoring monitoring) {
+        this.monitoring = monitoring;
+    }
+    
+    public Usage getUsage() {
+        return usage;
+    }
+    
+    public void setUsage(Usage usage) {
+        this.usage = usage;
+    }
+    
     public Fallback getFallback() {
         return fallback;
     }
@@ -0,0 +1,24 @@
+package cn.xlhealth.backend.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 消息内容压缩配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "message.compression")
+public class MessageCompressionProperties {
+
+    /**
+     * 是否压缩写入的长消息内容，关闭后已压缩的内容仍可读取
+     */
+    private boolean enabled = false;
+
+    /**
+     * 压缩阈值（UTF-8字节数），短于此长度的内容原样存储
+     */
+    private int minBytes = 1024;
+}
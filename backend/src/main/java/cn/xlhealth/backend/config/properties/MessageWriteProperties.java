@@ -0,0 +1,56 @@
+package cn.xlhealth.backend.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 消息批量写入（write-behind）配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "message.write-behind")
+public class MessageWriteProperties {
+
+    /**
+     * 是否启用批量写入，关闭时每条消息单独插入
+     */
+    private boolean enabled = false;
+
+    /**
+     * 持久性：COMMIT 等待所在批次提交后返回；QUEUED 入队即返回
+     */
+    private Durability durability = Durability.COMMIT;
+
+    /**
+     * 每批最大消息数
+     */
+    private int maxBatchSize = 100;
+
+    /**
+     * 批次最长等待时间（毫秒），从批次第一条消息入队开始计算
+     */
+    private long flushIntervalMs = 5;
+
+    /**
+     * 队列容量
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 队列满时入队的最长等待时间（毫秒），超时拒绝写入
+     */
+    private long offerTimeoutMs = 500;
+
+    /**
+     * COMMIT 模式下等待批次提交的最长时间（毫秒）
+     */
+    private long commitTimeoutMs = 5000;
+
+    public enum Durability {
+        /** 调用方等待所在批次提交（组提交），返回时消息已持久化 */
+        COMMIT,
+        /** 调用方入队即返回，返回的消息尚无ID；提交后再发布消息事件，进程崩溃时队列中的消息丢失 */
+        QUEUED
+    }
+}
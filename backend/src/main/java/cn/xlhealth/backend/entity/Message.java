@@ -1,5 +1,6 @@
 package cn.xlhealth.backend.entity;
 
+import cn.xlhealth.backend.mapper.handler.CompressedTextTypeHandler;
 import com.baomidou.mybatisplus.annotation.*;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -12,7 +13,7 @@ import java.time.LocalDateTime;
  */
 @Data
 @EqualsAndHashCode(callSuper = false)
-@TableName("messages")
+@TableName(value = "messages", autoResultMap = true)
 public class Message {
 
     /**
@@ -42,9 +43,9 @@ public class Message {
     private MessageRole role;
 
     /**
-     * 消息内容
+     * 消息内容（开启压缩时长内容压缩存储，读写透明）
      */
-    @TableField("content")
+    @TableField(value = "content", typeHandler = CompressedTextTypeHandler.class)
     private String content;
 
     /**
@@ -89,6 +90,12 @@ public class Message {
     @TableField("response_time")
     private Long responseTime;
 
+    /**
+     * 质量评分(0-100)，异步评分，未采样时为空
+     */
+    @TableField("quality_score")
+    private Integer qualityScore;
+
     /**
      * 消息状态
      */
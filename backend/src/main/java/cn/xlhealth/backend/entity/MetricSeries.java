@@ -0,0 +1,147 @@
+package cn.xlhealth.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI服务指标历史实体类
+ * 对应数据库表：ai_metric_series
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@TableName("ai_metric_series")
+public class MetricSeries {
+
+    /**
+     * 粒度：分钟
+     */
+    public static final String RESOLUTION_MINUTE = "1m";
+
+    /**
+     * 粒度：小时
+     */
+    public static final String RESOLUTION_HOUR = "1h";
+
+    /**
+     * 粒度：天
+     */
+    public static final String RESOLUTION_DAY = "1d";
+
+    /**
+     * 全部提供商
+     */
+    public static final String PROVIDER_GLOBAL = "GLOBAL";
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 粒度（1m/1h/1d）
+     */
+    @TableField("resolution")
+    private String resolution;
+
+    /**
+     * 时间桶开始时间
+     */
+    @TableField("bucket_start")
+    private LocalDateTime bucketStart;
+
+    /**
+     * 服务提供商
+     */
+    @TableField("provider")
+    private String provider;
+
+    /**
+     * 写入的应用实例
+     */
+    @TableField("instance_id")
+    private String instanceId;
+
+    /**
+     * 调用次数
+     */
+    @TableField("total_calls")
+    private Long totalCalls;
+
+    /**
+     * 失败次数
+     */
+    @TableField("failed_calls")
+    private Long failedCalls;
+
+    /**
+     * 响应时间总和（毫秒）
+     */
+    @TableField("total_response_time")
+    private Long totalResponseTime;
+
+    /**
+     * P50响应时间（毫秒）
+     */
+    @TableField("p50_response_time")
+    private Long p50ResponseTime;
+
+    /**
+     * P90响应时间（毫秒）
+     */
+    @TableField("p90_response_time")
+    private Long p90ResponseTime;
+
+    /**
+     * P99响应时间（毫秒）
+     */
+    @TableField("p99_response_time")
+    private Long p99ResponseTime;
+
+    /**
+     * 最大响应时间（毫秒）
+     */
+    @TableField("max_response_time")
+    private Long maxResponseTime;
+
+    /**
+     * 输入token数
+     */
+    @TableField("prompt_tokens")
+    private Long promptTokens;
+
+    /**
+     * 输出token数
+     */
+    @TableField("completion_tokens")
+    private Long completionTokens;
+
+    /**
+     * 质量评分总和
+     */
+    @TableField("quality_score_total")
+    private Long qualityScoreTotal;
+
+    /**
+     * 质量评分次数
+     */
+    @TableField("quality_assessments")
+    private Long qualityAssessments;
+
+    /**
+     * 响应时间直方图（HDR压缩编码）
+     */
+    @JsonIgnore
+    @TableField("latency_histogram")
+    private byte[] latencyHistogram;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "created_time", fill = FieldFill.INSERT)
+    private LocalDateTime createdTime;
+}
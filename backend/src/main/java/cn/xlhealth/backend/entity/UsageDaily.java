@@ -0,0 +1,85 @@
+package cn.xlhealth.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日用量汇总实体类
+ * 对应数据库表：usage_daily
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@TableName("usage_daily")
+public class UsageDaily {
+
+    /**
+     * 主键ID
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 日期
+     */
+    @TableField("usage_date")
+    private LocalDate usageDate;
+
+    /**
+     * 用户ID
+     */
+    @TableField("user_id")
+    private Long userId;
+
+    /**
+     * 模型名称
+     */
+    @TableField("model_name")
+    private String modelName;
+
+    /**
+     * 请求次数
+     */
+    @TableField("request_count")
+    private Integer requestCount;
+
+    /**
+     * 输入token数
+     */
+    @TableField("prompt_tokens")
+    private Long promptTokens;
+
+    /**
+     * 输出token数
+     */
+    @TableField("completion_tokens")
+    private Long completionTokens;
+
+    /**
+     * 总token数
+     */
+    @TableField("total_tokens")
+    private Long totalTokens;
+
+    /**
+     * 费用
+     */
+    @TableField("cost")
+    private BigDecimal cost;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "created_time", fill = FieldFill.INSERT)
+    private LocalDateTime createdTime;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updated_time", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedTime;
+}
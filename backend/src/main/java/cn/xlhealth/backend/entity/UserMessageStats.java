@@ -0,0 +1,65 @@
+package cn.xlhealth.backend.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户消息统计实体类
+ * 对应数据库表：user_message_stats，随消息写入/删除按增量维护
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@TableName("user_message_stats")
+public class UserMessageStats {
+
+    /**
+     * 用户ID
+     */
+    @TableId(value = "user_id", type = IdType.INPUT)
+    private Long userId;
+
+    /**
+     * 消息总数
+     */
+    @TableField("total_messages")
+    private Long totalMessages;
+
+    /**
+     * 用户消息数
+     */
+    @TableField("user_messages")
+    private Long userMessages;
+
+    /**
+     * AI助手消息数
+     */
+    @TableField("assistant_messages")
+    private Long assistantMessages;
+
+    /**
+     * 系统消息数
+     */
+    @TableField("system_messages")
+    private Long systemMessages;
+
+    /**
+     * 总token数
+     */
+    @TableField("total_tokens")
+    private Long totalTokens;
+
+    /**
+     * 创建时间
+     */
+    @TableField(value = "created_time", fill = FieldFill.INSERT)
+    private LocalDateTime createdTime;
+
+    /**
+     * 更新时间
+     */
+    @TableField(value = "updated_time", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedTime;
+}
@@ -11,6 +11,7 @@ import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 对话Mapper接口
@@ -22,9 +23,29 @@ public interface ConversationMapper extends BaseMapper<Conversation> {
     /**
      * 根据用户ID查询对话列表（分页）
      */
-    @Select("SELECT * FROM conversations WHERE user_id = #{userId} AND deleted = 0 ORDER BY created_time DESC")
+    @Select("SELECT * FROM conversations WHERE user_id = #{userId} AND deleted = 0 ORDER BY created_time DESC, id DESC")
     IPage<Conversation> findByUserId(Page<Conversation> page, @Param("userId") Long userId);
 
+    /**
+     * 游标分页：按 (created_time, id) 降序查询游标之前（更早）的对话，游标为空时从最新开始
+     */
+    @Select("<script>SELECT * FROM conversations WHERE user_id = #{userId} AND deleted = 0 "
+            + "<if test='createdTime != null'>AND (created_time &lt; #{createdTime} "
+            + "OR (created_time = #{createdTime} AND id &lt; #{id})) </if>"
+            + "ORDER BY created_time DESC, id DESC LIMIT #{limit}</script>")
+    List<Conversation> findByUserIdBeforeCursor(@Param("userId") Long userId,
+            @Param("createdTime") LocalDateTime createdTime, @Param("id") Long id, @Param("limit") int limit);
+
+    /**
+     * 游标分页：按 (created_time, id) 升序查询游标之后（更新）的对话
+     */
+    @Select("<script>SELECT * FROM conversations WHERE user_id = #{userId} AND deleted = 0 "
+            + "<if test='createdTime != null'>AND (created_time &gt; #{createdTime} "
+            + "OR (created_time = #{createdTime} AND id &gt; #{id})) </if>"
+            + "ORDER BY created_time ASC, id ASC LIMIT #{limit}</script>")
+    List<Conversation> findByUserIdAfterCursor(@Param("userId") Long userId,
+            @Param("createdTime") LocalDateTime createdTime, @Param("id") Long id, @Param("limit") int limit);
+
     /**
      * 根据对话状态查询对话列表
      */
@@ -65,9 +86,46 @@ public interface ConversationMapper extends BaseMapper<Conversation> {
     int updateStatistics(@Param("conversationId") Long conversationId, @Param("messageCount") Integer messageCount,
             @Param("totalTokens") Integer totalTokens);
 
+    /**
+     * 按增量更新对话统计信息（随消息写入/删除在同一事务中执行）
+     */
+    @Update("UPDATE conversations SET message_count = GREATEST(COALESCE(message_count, 0) + #{messageDelta}, 0), "
+            + "total_tokens = GREATEST(COALESCE(total_tokens, 0) + #{tokenDelta}, 0), updated_time = NOW() "
+            + "WHERE id = #{conversationId}")
+    int incrementStatistics(@Param("conversationId") Long conversationId, @Param("messageDelta") int messageDelta,
+            @Param("tokenDelta") int tokenDelta);
+
+    /**
+     * 按ID顺序分批核对对话统计
+     * 返回列：conversationId, messageCount, totalTokens, actualCount, actualTokens
+     */
+    @Select("SELECT c.id AS conversationId, COALESCE(c.message_count, 0) AS messageCount, "
+            + "COALESCE(c.total_tokens, 0) AS totalTokens, COUNT(m.id) AS actualCount, "
+            + "COALESCE(SUM(m.token_count), 0) AS actualTokens "
+            + "FROM conversations c LEFT JOIN messages m ON m.conversation_id = c.id AND m.deleted = 0 "
+            + "WHERE c.id > #{afterId} AND c.deleted = 0 "
+            + "GROUP BY c.id, c.message_count, c.total_tokens ORDER BY c.id LIMIT #{limit}")
+    List<Map<String, Object>> selectStatisticsBatch(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 修复对话统计，仅当计数仍为核对时读到的值时更新（期间有新的增量则留到下一轮）
+     */
+    @Update("UPDATE conversations SET message_count = #{actualCount}, total_tokens = #{actualTokens} "
+            + "WHERE id = #{conversationId} AND COALESCE(message_count, 0) = #{expectedCount} "
+            + "AND COALESCE(total_tokens, 0) = #{expectedTokens}")
+    int repairStatistics(@Param("conversationId") Long conversationId,
+            @Param("expectedCount") long expectedCount, @Param("expectedTokens") long expectedTokens,
+            @Param("actualCount") long actualCount, @Param("actualTokens") long actualTokens);
+
     /**
      * 逻辑删除对话
      */
     @Update("UPDATE conversations SET deleted = 1, updated_time = NOW() WHERE id = #{conversationId}")
     int softDelete(@Param("conversationId") Long conversationId);
+
+    /**
+     * 查询对话的所有者和状态（消息权限校验用，只读取必要的列）
+     */
+    @Select("SELECT id, user_id, status FROM conversations WHERE id = #{conversationId} AND deleted = 0")
+    Conversation selectAccessInfo(@Param("conversationId") Long conversationId);
 }
\ No newline at end of file
@@ -6,20 +6,55 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultMap;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * 消息数据访问层
+ * 返回消息实体的查询使用实体的自动结果映射（{@link #RESULT_MAP}），content 经压缩类型处理器解码
  */
 @Mapper
 public interface MessageMapper extends BaseMapper<Message> {
 
+    String RESULT_MAP = "mybatis-plus_Message";
+
     /**
      * 根据对话ID查询消息列表（分页）
      */
-    @Select("SELECT * FROM messages WHERE conversation_id = #{conversationId} AND deleted = 0 ORDER BY created_time ASC")
+    @Select("SELECT * FROM messages WHERE conversation_id = #{conversationId} AND deleted = 0 ORDER BY created_time ASC, id ASC")
+    @ResultMap(RESULT_MAP)
     IPage<Message> findByConversationId(Page<Message> page, @Param("conversationId") Long conversationId);
 
+    /**
+     * 游标分页：按 (created_time, id) 升序查询游标之后的消息（不含生成中的AI回复），游标为空时从第一条开始
+     */
+    @Select("<script>SELECT * FROM messages WHERE conversation_id = #{conversationId} AND deleted = 0 "
+            + "AND status &lt;&gt; 'PROCESSING' "
+            + "<if test='createdTime != null'>AND (created_time &gt; #{createdTime} "
+            + "OR (created_time = #{createdTime} AND id &gt; #{id})) </if>"
+            + "ORDER BY created_time ASC, id ASC LIMIT #{limit}</script>")
+    @ResultMap(RESULT_MAP)
+    List<Message> findAfterCursor(@Param("conversationId") Long conversationId,
+            @Param("createdTime") LocalDateTime createdTime, @Param("id") Long id, @Param("limit") int limit);
+
+    /**
+     * 游标分页：按 (created_time, id) 降序查询游标之前的消息（不含生成中的AI回复），游标为空时从最新一条开始
+     */
+    @Select("<script>SELECT * FROM messages WHERE conversation_id = #{conversationId} AND deleted = 0 "
+            + "AND status &lt;&gt; 'PROCESSING' "
+            + "<if test='createdTime != null'>AND (created_time &lt; #{createdTime} "
+            + "OR (created_time = #{createdTime} AND id &lt; #{id})) </if>"
+            + "ORDER BY created_time DESC, id DESC LIMIT #{limit}</script>")
+    @ResultMap(RESULT_MAP)
+    List<Message> findBeforeCursor(@Param("conversationId") Long conversationId,
+            @Param("createdTime") LocalDateTime createdTime, @Param("id") Long id, @Param("limit") int limit);
+
     /**
      * 根据对话ID统计消息数量
      */
@@ -29,6 +64,40 @@ public interface MessageMapper extends BaseMapper<Message> {
     /**
      * 查询对话中的最后一条消息
      */
-    @Select("SELECT * FROM messages WHERE conversation_id = #{conversationId} AND deleted = 0 ORDER BY created_time DESC LIMIT 1")
+    @Select("SELECT * FROM messages WHERE conversation_id = #{conversationId} AND deleted = 0 ORDER BY created_time DESC, id DESC LIMIT 1")
+    @ResultMap(RESULT_MAP)
     Message findLastByConversationId(@Param("conversationId") Long conversationId);
-}
\ No newline at end of file
+
+    /**
+     * 查询用户最近发送的消息（跨对话）
+     */
+    @Select("SELECT * FROM messages WHERE user_id = #{userId} AND role = 'USER' AND deleted = 0 ORDER BY created_time DESC LIMIT #{limit}")
+    @ResultMap(RESULT_MAP)
+    List<Message> findRecentUserMessages(@Param("userId") Long userId, @Param("limit") int limit);
+
+    /**
+     * 按角色统计用户的消息数和token数，conversationId 为空时统计全部对话
+     * 返回列：role, messageCount, totalTokens
+     */
+    @Select("<script>SELECT role, COUNT(*) AS messageCount, COALESCE(SUM(token_count), 0) AS totalTokens "
+            + "FROM messages WHERE user_id = #{userId} AND deleted = 0 "
+            + "<if test='conversationId != null'>AND conversation_id = #{conversationId} </if>"
+            + "GROUP BY role</script>")
+    List<Map<String, Object>> countByRole(@Param("userId") Long userId, @Param("conversationId") Long conversationId);
+
+    /**
+     * 批量查询对话的最后消息ID（未删除）
+     * 返回列：conversationId, lastMessageId
+     */
+    @Select("<script>SELECT conversation_id AS conversationId, MAX(id) AS lastMessageId FROM messages "
+            + "WHERE deleted = 0 AND conversation_id IN "
+            + "<foreach collection='conversationIds' item='id' open='(' separator=',' close=')'>#{id}</foreach> "
+            + "GROUP BY conversation_id</script>")
+    List<Map<String, Object>> findLastMessageIds(@Param("conversationIds") Collection<Long> conversationIds);
+
+    /**
+     * 回写质量评分
+     */
+    @Update("UPDATE messages SET quality_score = #{qualityScore} WHERE id = #{messageId}")
+    int updateQualityScore(@Param("messageId") Long messageId, @Param("qualityScore") Integer qualityScore);
+}
@@ -0,0 +1,42 @@
+package cn.xlhealth.backend.mapper;
+
+import cn.xlhealth.backend.entity.MetricSeries;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI服务指标历史数据访问层
+ */
+@Mapper
+public interface MetricSeriesMapper extends BaseMapper<MetricSeries> {
+
+    /**
+     * 写入一个时间桶，已存在时覆盖（重复写入同一时间桶结果不变）
+     */
+    @Insert("INSERT INTO ai_metric_series (resolution, bucket_start, provider, instance_id, total_calls, "
+            + "failed_calls, total_response_time, p50_response_time, p90_response_time, p99_response_time, "
+            + "max_response_time, prompt_tokens, completion_tokens, quality_score_total, quality_assessments, "
+            + "latency_histogram) VALUES (#{series.resolution}, #{series.bucketStart}, #{series.provider}, "
+            + "#{series.instanceId}, #{series.totalCalls}, #{series.failedCalls}, #{series.totalResponseTime}, "
+            + "#{series.p50ResponseTime}, #{series.p90ResponseTime}, #{series.p99ResponseTime}, "
+            + "#{series.maxResponseTime}, #{series.promptTokens}, #{series.completionTokens}, "
+            + "#{series.qualityScoreTotal}, #{series.qualityAssessments}, #{series.latencyHistogram}) "
+            + "ON DUPLICATE KEY UPDATE total_calls = VALUES(total_calls), failed_calls = VALUES(failed_calls), "
+            + "total_response_time = VALUES(total_response_time), p50_response_time = VALUES(p50_response_time), "
+            + "p90_response_time = VALUES(p90_response_time), p99_response_time = VALUES(p99_response_time), "
+            + "max_response_time = VALUES(max_response_time), prompt_tokens = VALUES(prompt_tokens), "
+            + "completion_tokens = VALUES(completion_tokens), quality_score_total = VALUES(quality_score_total), "
+            + "quality_assessments = VALUES(quality_assessments), latency_histogram = VALUES(latency_histogram)")
+    int upsert(@Param("series") MetricSeries series);
+
+    /**
+     * 删除某一粒度下早于指定时间的数据
+     */
+    @Delete("DELETE FROM ai_metric_series WHERE resolution = #{resolution} AND bucket_start < #{before}")
+    int deleteBefore(@Param("resolution") String resolution, @Param("before") LocalDateTime before);
+}
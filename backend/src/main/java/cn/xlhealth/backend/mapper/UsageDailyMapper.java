@@ -0,0 +1,28 @@
+package cn.xlhealth.backend.mapper;
+
+import cn.xlhealth.backend.entity.UsageDaily;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 每日用量汇总数据访问层
+ */
+@Mapper
+public interface UsageDailyMapper extends BaseMapper<UsageDaily> {
+
+    /**
+     * 累加用量，当天该用户该模型的记录不存在时插入
+     */
+    @Insert("INSERT INTO usage_daily (usage_date, user_id, model_name, request_count, prompt_tokens, "
+            + "completion_tokens, total_tokens, cost) VALUES (#{usage.usageDate}, #{usage.userId}, "
+            + "#{usage.modelName}, #{usage.requestCount}, #{usage.promptTokens}, #{usage.completionTokens}, "
+            + "#{usage.totalTokens}, #{usage.cost}) "
+            + "ON DUPLICATE KEY UPDATE request_count = request_count + VALUES(request_count), "
+            + "prompt_tokens = prompt_tokens + VALUES(prompt_tokens), "
+            + "completion_tokens = completion_tokens + VALUES(completion_tokens), "
+            + "total_tokens = total_tokens + VALUES(total_tokens), "
+            + "cost = cost + VALUES(cost)")
+    int accumulate(@Param("usage") UsageDaily usage);
+}
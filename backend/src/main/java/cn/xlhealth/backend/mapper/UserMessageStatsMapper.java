@@ -0,0 +1,28 @@
+package cn.xlhealth.backend.mapper;
+
+import cn.xlhealth.backend.entity.UserMessageStats;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * 用户消息统计数据访问层
+ */
+@Mapper
+public interface UserMessageStatsMapper extends BaseMapper<UserMessageStats> {
+
+    /**
+     * 按增量更新用户消息统计，计数不会小于0
+     * @return 更新行数，统计记录不存在时为0
+     */
+    @Update("UPDATE user_message_stats SET "
+            + "total_messages = GREATEST(total_messages + #{delta.totalMessages}, 0), "
+            + "user_messages = GREATEST(user_messages + #{delta.userMessages}, 0), "
+            + "assistant_messages = GREATEST(assistant_messages + #{delta.assistantMessages}, 0), "
+            + "system_messages = GREATEST(system_messages + #{delta.systemMessages}, 0), "
+            + "total_tokens = GREATEST(total_tokens + #{delta.totalTokens}, 0), "
+            + "updated_time = CURRENT_TIMESTAMP "
+            + "WHERE user_id = #{delta.userId}")
+    int incrementStatistics(@Param("delta") UserMessageStats delta);
+}
@@ -0,0 +1,131 @@
+package cn.xlhealth.backend.mapper.handler;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 长文本透明压缩类型处理器
+ * 写入时超过阈值的文本按 deflate 压缩并 Base64 编码，以格式标记开头存入原文本列；
+ * 读取时只解压带标记的值，未压缩的历史数据原样返回，关闭压缩后已压缩的数据仍可读取。
+ *
+ * 类型处理器由 MyBatis 实例化，压缩开关和阈值通过 {@link #configure(boolean, int)} 设置
+ */
+public class CompressedTextTypeHandler extends BaseTypeHandler<String> {
+
+    /**
+     * 压缩格式标记（控制字符开头，正常文本不会以此开头；带版本号以便更换格式）
+     */
+    public static final String MARKER = "\u0001z1:";
+
+    private static volatile boolean enabled = false;
+    private static volatile int minBytes = 1024;
+
+    /**
+     * 设置压缩开关和阈值（UTF-8字节数）
+     */
+    public static void configure(boolean enabled, int minBytes) {
+        CompressedTextTypeHandler.enabled = enabled;
+        CompressedTextTypeHandler.minBytes = minBytes;
+    }
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, String parameter, JdbcType jdbcType)
+            throws SQLException {
+        ps.setString(i, encode(parameter));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return decode(rs.getString(columnName));
+    }
+
+    @Override
+    public String getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return decode(rs.getString(columnIndex));
+    }
+
+    @Override
+    public String getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return decode(cs.getString(columnIndex));
+    }
+
+    /**
+     * 编码待写入的文本：未开启压缩、未达到阈值或压缩后不更小时原样写入
+     * 以格式标记开头的原文总是压缩，保证读取时不会被误判
+     */
+    public static String encode(String text) {
+        if (text == null) {
+            return null;
+        }
+        boolean marked = text.startsWith(MARKER);
+        // UTF-8 每个字符最多3字节，先按字符数跳过短文本
+        if (!marked && (!enabled || text.length() * 3 < minBytes)) {
+            return text;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (!marked && raw.length < minBytes) {
+            return text;
+        }
+        String compressed = MARKER + Base64.getEncoder().encodeToString(deflate(raw));
+        return marked || compressed.length() < raw.length ? compressed : text;
+    }
+
+    /**
+     * 解码读取的文本，不带格式标记时原样返回
+     */
+    public static String decode(String stored) {
+        if (stored == null || !stored.startsWith(MARKER)) {
+            return stored;
+        }
+        byte[] compressed = Base64.getDecoder().decode(stored.substring(MARKER.length()));
+        return new String(inflate(compressed), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("压缩内容不完整");
+                }
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("压缩内容格式错误", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
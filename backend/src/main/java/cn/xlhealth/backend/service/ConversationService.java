@@ -1,6 +1,7 @@
 package cn.xlhealth.backend.service;
 
 import cn.xlhealth.backend.entity.Conversation;
+import cn.xlhealth.backend.ui.dto.CursorPageResponse;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 
@@ -29,6 +30,19 @@ public interface ConversationService {
      */
     IPage<Conversation> getUserConversations(Long userId, Page<Conversation> page);
 
+    /**
+     * 获取用户的对话列表（游标分页，不统计总数）
+     * 默认按创建时间倒序，指定 after 时按时间正序返回更新的对话
+     *
+     * @param userId 用户ID
+     * @param before 向更早翻页的游标
+     * @param after 向更新翻页的游标
+     * @param limit 每页条数
+     * @return 对话列表及下一页游标
+     */
+    CursorPageResponse<Conversation> getUserConversationsByCursor(Long userId, String before, String after,
+            Integer limit);
+
     /**
      * 根据ID获取对话详情
      *
@@ -102,4 +116,14 @@ public interface ConversationService {
      * @return 是否更新成功
      */
     boolean updateConversationStatistics(Long conversationId, Integer messageCount, Integer totalTokens);
+
+    /**
+     * 按增量更新对话统计信息
+     *
+     * @param conversationId 对话ID
+     * @param messageDelta 消息数量变化
+     * @param tokenDelta token数变化
+     * @return 是否更新成功
+     */
+    boolean incrementConversationStatistics(Long conversationId, int messageDelta, int tokenDelta);
 }
\ No newline at end of file
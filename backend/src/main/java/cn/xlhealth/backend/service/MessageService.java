@@ -2,6 +2,7 @@ package cn.xlhealth.backend.service;
 
 import cn.xlhealth.backend.ui.dto.request.AIReplyRequest;
 import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.ui.dto.CursorPageResponse;
 import cn.xlhealth.backend.ui.dto.PageResponse;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 
@@ -24,7 +25,7 @@ public interface MessageService {
    * @param role           消息角色
    * @param contentType    内容类型
    * @param metadata       元数据信息
-   * @return 发送的消息
+   * @return 发送的消息；批量写入为 QUEUED 模式时消息入队即返回，尚未提交，ID为空
    */
   Message sendMessage(Long conversationId, Long userId, String content,
       Message.MessageRole role, Message.ContentType contentType, String metadata);
@@ -54,6 +55,21 @@ public interface MessageService {
   com.baomidou.mybatisplus.core.metadata.IPage<Message> getConversationMessages(
       Long conversationId, Long userId, Page<Message> page, String sortBy, String sortOrder);
 
+  /**
+   * 获取对话消息列表（游标分页，不统计总数）
+   * 指定 before 时按时间倒序返回游标之前的消息（before 为空串时从最新一条开始），
+   * 否则按时间正序返回 after 之后的消息（未指定时从第一条开始）
+   * 
+   * @param conversationId 对话ID
+   * @param userId         用户ID（用于权限验证）
+   * @param before         向前翻页的游标
+   * @param after          向后翻页的游标
+   * @param limit          每页条数
+   * @return 消息列表及下一页游标
+   */
+  CursorPageResponse<Message> getConversationMessagesByCursor(Long conversationId, Long userId,
+      String before, String after, Integer limit);
+
   /**
    * 获取对话消息列表（用于上下文管理）
    * 
@@ -2,6 +2,9 @@ package cn.xlhealth.backend.service.ai;
 
 import cn.xlhealth.backend.service.ai.dto.AIRequest;
 import cn.xlhealth.backend.service.ai.dto.AIResponse;
+import cn.xlhealth.backend.service.ai.exception.AIServiceException;
+
+import java.util.function.Predicate;
 
 /**
  * AI服务接口
@@ -16,12 +19,48 @@ public interface AIService {
      */
     AIResponse generateReply(AIRequest request);
     
+    /**
+     * 是否支持流式生成
+     * @return 支持时 {@link #generateReplyStreaming} 逐段回调生成的文本
+     */
+    default boolean supportsStreaming() {
+        return false;
+    }
+    
+    /**
+     * 流式生成AI回复
+     * 每收到一段文本回调一次，回调返回false时中止生成并停止上游调用，
+     * 返回的回复只包含中止前的内容。默认实现完整生成后一次性回调。
+     * @param request AI请求对象
+     * @param chunkHandler 文本片段回调，返回是否继续
+     * @return AI回复响应
+     */
+    default AIResponse generateReplyStreaming(AIRequest request, Predicate<String> chunkHandler) {
+        AIResponse response = generateReply(request);
+        if (response.isSuccess() && response.getContent() != null) {
+            chunkHandler.test(response.getContent());
+        }
+        return response;
+    }
+    
     /**
      * 检查AI服务健康状态
      * @return 服务是否可用
      */
     boolean isHealthy();
     
+    /**
+     * 主动探测：发送一次最小的合成请求，验证到提供商的调用链路（网络、鉴权、模型）可用
+     * 默认实现只检查配置
+     * @param timeoutMs 超时时间（毫秒）
+     * @throws AIServiceException 探测失败
+     */
+    default void probe(int timeoutMs) {
+        if (!isHealthy()) {
+            throw new AIServiceException("NOT_CONFIGURED", "AI service is not configured", getProviderName());
+        }
+    }
+    
     /**
      * 获取AI服务提供商名称
      * @return 提供商名称
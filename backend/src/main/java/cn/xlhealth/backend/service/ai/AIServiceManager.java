@@ -1,18 +1,30 @@
 package cn.xlhealth.backend.service.ai;
 
 import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.entity.MetricSeries;
+import cn.xlhealth.backend.entity.UsageDaily;
 import cn.xlhealth.backend.service.ai.context.ContextManager;
 import cn.xlhealth.backend.service.ai.dto.AIRequest;
 import cn.xlhealth.backend.service.ai.dto.AIResponse;
 import cn.xlhealth.backend.service.ai.dto.ContextMessage;
 import cn.xlhealth.backend.service.ai.exception.AIServiceException;
+import cn.xlhealth.backend.service.ai.monitor.AIMetrics;
+import cn.xlhealth.backend.service.ai.monitor.MetricsHistory;
+import cn.xlhealth.backend.service.ai.monitor.RequestTracer;
 import cn.xlhealth.backend.service.ai.monitor.ServiceMonitor;
 import cn.xlhealth.backend.service.ai.quality.QualityAssessor;
+import cn.xlhealth.backend.service.ai.quality.QualityScoringPipeline;
+import cn.xlhealth.backend.service.ai.quality.SafetyScanner;
+import cn.xlhealth.backend.service.ai.quality.rule.QualityRuleEngine;
+import cn.xlhealth.backend.service.ai.usage.UsageLedger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -34,9 +46,27 @@ public class AIServiceManager {
     @Autowired
     private QualityAssessor qualityAssessor;
 
+    @Autowired
+    private QualityScoringPipeline qualityScoringPipeline;
+
+    @Autowired
+    private QualityRuleEngine qualityRuleEngine;
+
     @Autowired
     private ServiceMonitor serviceMonitor;
 
+    @Autowired
+    private AIMetrics aiMetrics;
+
+    @Autowired
+    private UsageLedger usageLedger;
+
+    @Autowired
+    private MetricsHistory metricsHistory;
+
+    @Autowired
+    private RequestTracer requestTracer;
+
     @Autowired
     private AIServiceProperties aiServiceProperties;
 
@@ -52,45 +82,52 @@ public class AIServiceManager {
             validateRequest(request);
 
             // 获取上下文
-            List<ContextMessage> context = contextManager.getContext(
-                    request.getConversationId(),
-                    aiServiceProperties.getContext().getWindowSize());
-            request.setContext(context);
-
-            // 生成AI回复
-            response = aiService.generateReply(request);
+            try (RequestTracer.Span span = requestTracer.start("context")) {
+                List<ContextMessage> context = contextManager.getContext(
+                        request.getConversationId(),
+                        aiServiceProperties.getContext().getWindowSize());
+                request.setContext(context);
+            }
 
-            // 质量评估
-            if (response.isSuccess() && aiServiceProperties.getQuality().isEnabled()) {
-                int qualityScore = qualityAssessor.assessQuality(request, response);
+            // 召回其他对话中的相关历史片段
+            try (RequestTracer.Span span = requestTracer.start("memory")) {
+                request.setMemories(contextManager.recallMemories(
+                        request.getUserId(),
+                        request.getConversationId(),
+                        request.getUserMessage()));
+            }
 
-                // 检查质量是否达标
-                if (!qualityAssessor.isPassing(qualityScore, aiServiceProperties.getQuality().getMinScore())) {
-                    logger.warn("Response quality below threshold: {} < {}",
-                            qualityScore, aiServiceProperties.getQuality().getMinScore());
+            // 生成AI回复；支持流式生成时边生成边做安全检查，确定无法通过时中止
+            SafetyScanner safetyScanner = openSafetyScanner(request);
+            try (RequestTracer.Span span = requestTracer.start("llm")) {
+                if (safetyScanner != null) {
+                    response = aiService.generateReplyStreaming(request, safetyScanner::feed);
+                } else {
+                    response = aiService.generateReply(request);
+                }
+            }
 
+            // 安全检查（同步），完整质量评分异步进行
+            if (response.isSuccess() && aiServiceProperties.getQuality().isEnabled()) {
+                boolean safe;
+                try (RequestTracer.Span span = requestTracer.start("quality")) {
+                    safe = passesSafetyGate(request, response, safetyScanner);
+                }
+                if (!safe) {
                     // 如果启用了降级，尝试降级处理
                     if (aiServiceProperties.getFallback().isEnabled()) {
-                        response = handleFallback(request, "Quality below threshold");
+                        response = handleFallback(request, "safety", "Safety check failed");
                     }
+                } else {
+                    qualityScoringPipeline.submit(request, response);
                 }
             }
 
             // 添加消息到上下文
             if (response.isSuccess()) {
-                // 添加用户消息到上下文
-                ContextMessage userMessage = new ContextMessage();
-                userMessage.setContent(request.getUserMessage());
-                userMessage.setMessageType("USER");
-                userMessage.setTimestamp(System.currentTimeMillis());
-                contextManager.addMessage(request.getConversationId(), userMessage);
-
-                // 添加AI回复
-                ContextMessage aiMessage = new ContextMessage();
-                aiMessage.setContent(response.getContent());
-                aiMessage.setMessageType("AI");
-                aiMessage.setTimestamp(System.currentTimeMillis());
-                contextManager.addMessage(request.getConversationId(), aiMessage);
+                try (RequestTracer.Span span = requestTracer.start("context_update")) {
+                    appendToContext(request, response);
+                }
             }
 
             return response;
@@ -101,7 +138,7 @@ public class AIServiceManager {
 
             // 尝试降级处理
             if (aiServiceProperties.getFallback().isEnabled()) {
-                response = handleFallback(request, e.getMessage());
+                response = handleFallback(request, "provider_error", e.getMessage());
             }
 
             return response;
@@ -112,7 +149,7 @@ public class AIServiceManager {
 
             // 尝试降级处理
             if (aiServiceProperties.getFallback().isEnabled()) {
-                response = handleFallback(request, "Unexpected error: " + e.getMessage());
+                response = handleFallback(request, "unexpected", "Unexpected error: " + e.getMessage());
             }
 
             return response;
@@ -128,12 +165,153 @@ public class AIServiceManager {
         }
     }
 
+    /**
+     * 将用户消息和AI回复添加到上下文
+     */
+    private void appendToContext(AIRequest request, AIResponse response) {
+        ContextMessage userMessage = new ContextMessage();
+        userMessage.setContent(request.getUserMessage());
+        userMessage.setMessageType("USER");
+        userMessage.setTimestamp(System.currentTimeMillis());
+        contextManager.addMessage(request.getConversationId(), userMessage);
+
+        // 添加AI回复
+        ContextMessage aiMessage = new ContextMessage();
+        aiMessage.setContent(response.getContent());
+        aiMessage.setMessageType("AI");
+        aiMessage.setTimestamp(System.currentTimeMillis());
+        contextManager.addMessage(request.getConversationId(), aiMessage);
+    }
+
+    /**
+     * 服务支持流式生成且启用安全检查时创建流式安全扫描器
+     */
+    private SafetyScanner openSafetyScanner(AIRequest request) {
+        AIServiceProperties.Quality config = aiServiceProperties.getQuality();
+        if (!config.isEnabled() || !config.isSafetyCheckEnabled() || !aiService.supportsStreaming()) {
+            return null;
+        }
+        return qualityAssessor.openSafetyScanner(request, config.getSafetyMinScore());
+    }
+
+    /**
+     * 安全检查，未通过的用户在一段时间内全量异步评分
+     * 流式生成时直接使用扫描器的评分，不再重复扫描
+     */
+    private boolean passesSafetyGate(AIRequest request, AIResponse response, SafetyScanner safetyScanner) {
+        AIServiceProperties.Quality config = aiServiceProperties.getQuality();
+        if (!config.isSafetyCheckEnabled()) {
+            return true;
+        }
+
+        int safetyScore;
+        if (safetyScanner != null) {
+            safetyScore = safetyScanner.getScore();
+            if (safetyScanner.isAborted()) {
+                logger.warn("Response generation aborted by streaming safety check after {} chars",
+                        safetyScanner.getScannedLength());
+            }
+        } else {
+            safetyScore = qualityAssessor.checkSafety(response);
+        }
+        if (safetyScore >= config.getSafetyMinScore()) {
+            return true;
+        }
+
+        logger.warn("Response failed safety check: {} < {}", safetyScore, config.getSafetyMinScore());
+        qualityScoringPipeline.flagUser(request.getUserId());
+        return false;
+    }
+
+    /**
+     * 回复保存后关联消息ID，异步质量评分完成后回写到消息记录
+     */
+    public void bindReplyMessage(AIResponse response, Long messageId) {
+        try {
+            qualityScoringPipeline.bindMessage(response, messageId);
+        } catch (Exception e) {
+            logger.warn("Failed to bind quality score to message {}: {}", messageId, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取异步质量评分统计
+     */
+    public Map<String, Object> getQualityStats() {
+        try {
+            return qualityScoringPipeline.getStats();
+        } catch (Exception e) {
+            logger.error("Error getting quality stats", e);
+            return Map.of("error", "Unable to retrieve quality stats");
+        }
+    }
+
+    /**
+     * 获取质量评分规则统计（版本、各规则命中次数、求值耗时）
+     */
+    public Map<String, Object> getQualityRuleStats() {
+        try {
+            return qualityRuleEngine.getStats();
+        } catch (Exception e) {
+            logger.error("Error getting quality rule stats", e);
+            return Map.of("error", "Unable to retrieve quality rule stats");
+        }
+    }
+
+    /**
+     * 重新加载质量评分规则，规则无效时保留当前规则并抛出异常
+     * @return 新规则集版本
+     */
+    public long reloadQualityRules() {
+        return qualityRuleEngine.reload().getVersion();
+    }
+
+    /**
+     * 查询token用量和费用（按日汇总）
+     * @param userId 用户ID，为null时查询所有用户
+     * @param model 模型名称，为null时查询所有模型
+     * @param from 开始日期（含）
+     * @param to 结束日期（含）
+     */
+    public Map<String, Object> getUsage(Long userId, String model, LocalDate from, LocalDate to) {
+        List<UsageDaily> rows = usageLedger.query(userId, model, from, to);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("from", from);
+        result.put("to", to);
+        result.put("summary", usageLedger.summarize(rows));
+        result.put("daily", rows);
+        result.put("ledger", usageLedger.getStats());
+        return result;
+    }
+
+    /**
+     * 查询指标历史
+     * @param provider 服务提供商，为null时查询全部
+     * @param resolution 粒度（1m/1h/1d），为null时按时间范围自动选择
+     * @param from 开始时间（含）
+     * @param to 结束时间（不含）
+     */
+    public Map<String, Object> getMetricsHistory(String provider, String resolution, LocalDateTime from,
+            LocalDateTime to) {
+        String effectiveResolution = resolution != null ? resolution : MetricsHistory.resolutionFor(from, to);
+        List<MetricSeries> points = metricsHistory.query(provider, effectiveResolution, from, to);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("provider", provider != null ? provider : MetricSeries.PROVIDER_GLOBAL);
+        result.put("resolution", effectiveResolution);
+        result.put("from", from);
+        result.put("to", to);
+        result.put("points", points);
+        return result;
+    }
+
     /**
      * 处理降级逻辑
+     * @param cause 降级原因分类，用作指标标签
      */
-    private AIResponse handleFallback(AIRequest request, String reason) {
+    private AIResponse handleFallback(AIRequest request, String cause, String reason) {
         try {
             logger.info("Executing fallback for reason: {}", reason);
+            aiMetrics.recordFallback(cause);
 
             // 简单的降级回复
             String fallbackMessage = aiServiceProperties.getFallback().getDefaultMessage();
@@ -208,6 +386,18 @@ public class AIServiceManager {
         }
     }
 
+    /**
+     * 获取长期记忆索引统计
+     */
+    public Map<String, Object> getMemoryStats() {
+        try {
+            return contextManager.getMemoryStats();
+        } catch (Exception e) {
+            logger.error("Error getting memory stats", e);
+            return Map.of("error", "Unable to retrieve memory stats");
+        }
+    }
+
     /**
      * 清除用户上下文
      */
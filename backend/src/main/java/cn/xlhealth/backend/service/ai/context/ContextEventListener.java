@@ -0,0 +1,91 @@
+package cn.xlhealth.backend.service.ai.context;
+
+import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import cn.xlhealth.backend.service.event.ConversationArchivedEvent;
+import cn.xlhealth.backend.service.event.ConversationClearedEvent;
+import cn.xlhealth.backend.service.event.MessageCreatedEvent;
+import cn.xlhealth.backend.service.event.MessageDeletedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.ZoneOffset;
+
+/**
+ * 上下文缓存事件监听
+ * 消息及对话变更在事务提交后按条目更新上下文缓存和长期记忆，无需等待缓存过期或整体重新加载。
+ * 未在事务中发布的事件立即处理。
+ */
+@Component
+public class ContextEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextEventListener.class);
+
+    @Autowired
+    private ContextManager contextManager;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        Message message = event.getMessage();
+        // 失败的回复不进入上下文
+        if (message.getId() == null || message.getStatus() != Message.MessageStatus.SUCCESS) {
+            return;
+        }
+
+        try {
+            ContextMessage contextMessage = new ContextMessage(message.getId(), message.getContent(),
+                    message.getRole().name(), toEpochMilli(message));
+            contextManager.syncMessage(message.getConversationId(), contextMessage);
+
+            // 用户消息收录到长期记忆索引
+            if (message.getRole() == Message.MessageRole.USER
+                    && message.getContentType() == Message.ContentType.TEXT) {
+                contextManager.indexMessage(message.getUserId(), message.getConversationId(),
+                        new ContextMessage(message.getId(), message.getContent(),
+                                message.getRole().name(), toEpochMilli(message)));
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to apply message created event for message {}: {}", message.getId(), e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageDeleted(MessageDeletedEvent event) {
+        try {
+            contextManager.removeMessages(event.getUserId(), event.getConversationId(), event.getMessageIds());
+        } catch (Exception e) {
+            logger.warn("Failed to apply message deleted event for conversation {}: {}",
+                    event.getConversationId(), e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationCleared(ConversationClearedEvent event) {
+        try {
+            contextManager.resetContext(event.getUserId(), event.getConversationId());
+        } catch (Exception e) {
+            logger.warn("Failed to apply conversation cleared event for conversation {}: {}",
+                    event.getConversationId(), e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onConversationArchived(ConversationArchivedEvent event) {
+        // 归档对话不再接收消息，释放缓存
+        try {
+            contextManager.clearContext(event.getConversationId());
+        } catch (Exception e) {
+            logger.warn("Failed to apply conversation archived event for conversation {}: {}",
+                    event.getConversationId(), e.getMessage());
+        }
+    }
+
+    private static long toEpochMilli(Message message) {
+        return message.getCreatedTime() != null
+                ? message.getCreatedTime().toInstant(ZoneOffset.UTC).toEpochMilli()
+                : System.currentTimeMillis();
+    }
+}
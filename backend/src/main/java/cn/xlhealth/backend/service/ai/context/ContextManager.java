@@ -1,8 +1,11 @@
 package cn.xlhealth.backend.service.ai.context;
 
+import cn.xlhealth.backend.service.ai.context.snapshot.SnapshotEntry;
 import cn.xlhealth.backend.service.ai.dto.ContextMessage;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 消息上下文管理器接口
@@ -31,6 +34,29 @@ public interface ContextManager {
      */
     void clearContext(Long conversationId);
     
+    /**
+     * 将已持久化的消息同步到缓存
+     * 缓存中已有相同内容但尚无ID的消息时补齐ID，否则追加；对话未缓存时不处理
+     * @param conversationId 对话ID
+     * @param message 带消息ID的上下文消息
+     */
+    void syncMessage(Long conversationId, ContextMessage message);
+
+    /**
+     * 从缓存及长期记忆中移除指定消息，不触发重新加载
+     * @param userId 用户ID
+     * @param conversationId 对话ID
+     * @param messageIds 消息ID
+     */
+    void removeMessages(Long userId, Long conversationId, Collection<Long> messageIds);
+
+    /**
+     * 将对话上下文重置为空（消息已清空），并从长期记忆中移除该对话
+     * @param userId 用户ID
+     * @param conversationId 对话ID
+     */
+    void resetContext(Long userId, Long conversationId);
+    
     /**
      * 生成上下文摘要
      * @param conversationId 对话ID
@@ -51,4 +77,40 @@ public interface ContextManager {
      * @return 上下文消息数量
      */
     int getContextSize(Long conversationId);
+
+    /**
+     * 将用户消息收录到长期记忆索引
+     * @param userId 用户ID
+     * @param conversationId 对话ID
+     * @param message 上下文消息
+     */
+    void indexMessage(Long userId, Long conversationId, ContextMessage message);
+
+    /**
+     * 从用户的其他对话中召回与当前消息相关的历史片段
+     * @param userId 用户ID
+     * @param conversationId 当前对话ID（其消息已在上下文窗口中，不参与召回）
+     * @param query 当前用户消息
+     * @return 按相关度排序、受token预算限制的历史片段
+     */
+    List<ContextMessage> recallMemories(Long userId, Long conversationId, String query);
+
+    /**
+     * 获取长期记忆索引统计（构建/查询延迟、每用户内存占用）
+     * @return 统计信息
+     */
+    Map<String, Object> getMemoryStats();
+
+    /**
+     * 导出本地缓存中未过期的上下文，用于快照
+     * @param maxEntries 最大条目数，按过期时间从晚到早（最近活跃优先）截取
+     * @return 快照条目（最后消息ID为0，由调用方填充）
+     */
+    List<SnapshotEntry> exportHotContexts(int maxEntries);
+
+    /**
+     * 从快照恢复上下文到本地缓存
+     * @param entry 快照条目
+     */
+    void restoreContext(SnapshotEntry entry);
 }
\ No newline at end of file
@@ -4,7 +4,15 @@ import cn.xlhealth.backend.config.properties.AIServiceProperties;
 import cn.xlhealth.backend.entity.Message;
 import cn.xlhealth.backend.service.MessageService;
 import cn.xlhealth.backend.service.ai.context.ContextManager;
+import cn.xlhealth.backend.service.ai.context.memory.LongTermMemory;
+import cn.xlhealth.backend.service.ai.context.remote.RemoteContextStore;
+import cn.xlhealth.backend.service.ai.context.remote.VersionedContext;
+import cn.xlhealth.backend.service.ai.context.snapshot.SnapshotEntry;
 import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import cn.xlhealth.backend.service.ai.monitor.AIMetrics;
+import cn.xlhealth.backend.service.ai.text.KeywordHits;
+import cn.xlhealth.backend.service.ai.text.KeywordMatcher;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,12 +38,49 @@ public class ContextManagerImpl implements ContextManager {
     @Autowired
     private AIServiceProperties aiServiceProperties;
 
+    // 共享远程缓存（二级），未启用时为仅本地实现
+    @Autowired
+    private RemoteContextStore remoteContextStore;
+
+    // 跨对话长期记忆
+    @Autowired
+    private LongTermMemory longTermMemory;
+
+    @Autowired
+    private AIMetrics aiMetrics;
+
     // 内存缓存，存储活跃对话的上下文
     private final Map<Long, List<ContextMessage>> contextCache = new ConcurrentHashMap<>();
 
     // 缓存过期时间记录
     private final Map<Long, Long> cacheExpireTime = new ConcurrentHashMap<>();
 
+    // 重要关键词分类，用于计算消息权重
+    private static final String IMPORTANT = "IMPORTANT";
+
+    // 话题分类名称即摘要中的关键要点
+    private static final String[] TOPICS = {"工作相关问题", "家庭关系", "人际关系", "焦虑情绪", "抑郁情绪"};
+
+    // 重要关键词和话题关键词编译为同一个自动机，每条消息只扫描一次
+    private static final KeywordMatcher KEYWORDS = KeywordMatcher.builder()
+            .add(IMPORTANT, "抑郁", "焦虑", "自杀", "自害", "痛苦", "绝望",
+                    "治疗", "药物", "医生", "心理", "咨询",
+                    "家庭", "工作", "学习", "人际关系")
+            .add(TOPICS[0], "工作", "职场")
+            .add(TOPICS[1], "家庭", "父母", "孩子")
+            .add(TOPICS[2], "朋友", "同事", "人际")
+            .add(TOPICS[3], "焦虑", "紧张", "担心")
+            .add(TOPICS[4], "抑郁", "难过", "伤心")
+            .build();
+
+    // 本地缓存对应的远程版本号，用于识别其他节点更新后的过期副本
+    private final Map<Long, Long> cacheVersion = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void registerMetrics() {
+        aiMetrics.registerContextCache(contextCache);
+    }
+
     @Override
     public List<ContextMessage> getContext(Long conversationId, int limit) {
         try {
@@ -45,19 +90,36 @@ public class ContextManagerImpl implements ContextManager {
                 return new ArrayList<>();
             }
             
-            // 检查缓存
+            // 检查本地近缓存
             if (isCacheValid(conversationId)) {
                 List<ContextMessage> cachedContext = contextCache.get(conversationId);
-                if (cachedContext != null) {
+                if (cachedContext != null && !isStaleAgainstRemote(conversationId)) {
                     logger.debug("Retrieved context from cache for conversation {}", conversationId);
+                    aiMetrics.recordContextLookup("local");
                     return cachedContext.stream()
                             .limit(limit)
                             .collect(Collectors.toList());
                 }
             }
 
+            // 检查共享远程缓存
+            VersionedContext remoteContext = remoteContextStore.get(conversationId);
+            if (remoteContext != null && remoteContext.getMessages() != null) {
+                contextCache.put(conversationId, new ArrayList<>(remoteContext.getMessages()));
+                cacheVersion.put(conversationId, remoteContext.getVersion());
+                updateCacheExpireTime(conversationId);
+
+                logger.debug("Retrieved context from remote store for conversation {}, version {}",
+                        conversationId, remoteContext.getVersion());
+                aiMetrics.recordContextLookup("remote");
+                return remoteContext.getMessages().stream()
+                        .limit(limit)
+                        .collect(Collectors.toList());
+            }
+
             // 从数据库获取消息历史
             List<Message> messages = messageService.getConversationMessages(conversationId, limit);
+            aiMetrics.recordContextLookup("database");
 
             // 转换为上下文消息
             List<ContextMessage> contextMessages = messages.stream()
@@ -91,6 +153,12 @@ public class ContextManagerImpl implements ContextManager {
             // 添加到缓存
             List<ContextMessage> context = contextCache.computeIfAbsent(conversationId, k -> new ArrayList<>());
 
+            // 消息已通过持久化事件同步进缓存
+            if (message.getMessageId() == null && indexOfContent(context, message.getContent(), true) >= 0) {
+                logger.debug("Message already synced to context cache for conversation {}", conversationId);
+                return;
+            }
+
             // 计算权重
             double weight = calculateMessageWeight(message);
             message.setWeight(weight);
@@ -107,6 +175,9 @@ public class ContextManagerImpl implements ContextManager {
             // 更新过期时间
             updateCacheExpireTime(conversationId);
 
+            // 同步到远程缓存
+            publishToRemote(conversationId, context);
+
             logger.debug("Added message to context cache for conversation {}", conversationId);
 
         } catch (Exception e) {
@@ -118,9 +189,74 @@ public class ContextManagerImpl implements ContextManager {
     public void clearContext(Long conversationId) {
         contextCache.remove(conversationId);
         cacheExpireTime.remove(conversationId);
+        cacheVersion.remove(conversationId);
+        remoteContextStore.evict(conversationId);
         logger.debug("Cleared context for conversation {}", conversationId);
     }
 
+    @Override
+    public void syncMessage(Long conversationId, ContextMessage message) {
+        List<ContextMessage> context = contextCache.get(conversationId);
+        if (context == null || !isCacheValid(conversationId)) {
+            // 未缓存的对话下次从数据库加载时自然包含该消息
+            return;
+        }
+
+        for (ContextMessage cached : context) {
+            if (message.getMessageId().equals(cached.getMessageId())) {
+                return;
+            }
+        }
+
+        int index = indexOfContent(context, message.getContent(), false);
+        if (index >= 0) {
+            // 请求处理时已写入缓存，补齐消息ID以便后续按ID删除
+            context.get(index).setMessageId(message.getMessageId());
+        } else {
+            addMessage(conversationId, message);
+            return;
+        }
+        publishToRemote(conversationId, context);
+    }
+
+    @Override
+    public void removeMessages(Long userId, Long conversationId, Collection<Long> messageIds) {
+        Set<Long> ids = new HashSet<>(messageIds);
+        List<ContextMessage> context = contextCache.get(conversationId);
+        if (context != null) {
+            if (context.removeIf(message -> message.getMessageId() != null && ids.contains(message.getMessageId()))) {
+                publishToRemote(conversationId, context);
+                logger.debug("Removed {} deleted messages from context cache for conversation {}",
+                        ids.size(), conversationId);
+            }
+        } else {
+            // 本节点未缓存，通知其他节点丢弃近缓存
+            remoteContextStore.evict(conversationId);
+        }
+
+        try {
+            longTermMemory.forget(userId, ids);
+        } catch (Exception e) {
+            logger.warn("Failed to remove deleted messages from long-term memory: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void resetContext(Long userId, Long conversationId) {
+        // 对话已无消息，直接缓存空上下文，避免下次请求回源数据库
+        List<ContextMessage> empty = new ArrayList<>();
+        contextCache.put(conversationId, empty);
+        updateCacheExpireTime(conversationId);
+        publishToRemote(conversationId, empty);
+
+        try {
+            longTermMemory.forgetConversation(userId, conversationId);
+        } catch (Exception e) {
+            logger.warn("Failed to remove cleared conversation from long-term memory: {}", e.getMessage());
+        }
+        logger.debug("Reset context for cleared conversation {}", conversationId);
+    }
+
     @Override
     public String generateContextSummary(Long conversationId) {
         if (!aiServiceProperties.getContext().isSummaryEnabled()) {
@@ -202,6 +338,76 @@ public class ContextManagerImpl implements ContextManager {
         return context != null ? context.size() : 0;
     }
 
+    @Override
+    public void indexMessage(Long userId, Long conversationId, ContextMessage message) {
+        try {
+            longTermMemory.index(userId, conversationId, message);
+        } catch (Exception e) {
+            logger.warn("Failed to index message for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<ContextMessage> recallMemories(Long userId, Long conversationId, String query) {
+        try {
+            return longTermMemory.recall(userId, conversationId, query);
+        } catch (Exception e) {
+            logger.warn("Failed to recall memories for user {}: {}", userId, e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getMemoryStats() {
+        return longTermMemory.getStats();
+    }
+
+    @Override
+    public List<SnapshotEntry> exportHotContexts(int maxEntries) {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<Long, Long>> live = cacheExpireTime.entrySet().stream()
+                .filter(entry -> entry.getValue() > now)
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(maxEntries)
+                .collect(Collectors.toList());
+
+        List<SnapshotEntry> entries = new ArrayList<>(live.size());
+        for (Map.Entry<Long, Long> entry : live) {
+            List<ContextMessage> context = contextCache.get(entry.getKey());
+            if (context == null) {
+                continue;
+            }
+            try {
+                List<ContextMessage> messages = new ArrayList<>(context);
+                entries.add(new SnapshotEntry(entry.getKey(), lastMessageId(messages), entry.getValue(), messages));
+            } catch (ConcurrentModificationException e) {
+                // 正在被写入的上下文跳过，下次快照再收录
+                logger.debug("Skipped context snapshot for conversation {} due to concurrent update", entry.getKey());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 上下文中的最后消息ID（未持久化的消息没有ID，不计入）
+     */
+    private static long lastMessageId(List<ContextMessage> context) {
+        long last = 0L;
+        for (ContextMessage message : context) {
+            if (message.getMessageId() != null && message.getMessageId() > last) {
+                last = message.getMessageId();
+            }
+        }
+        return last;
+    }
+
+    @Override
+    public void restoreContext(SnapshotEntry entry) {
+        // 已有更新的缓存（如恢复期间已处理请求）时不覆盖
+        contextCache.putIfAbsent(entry.getConversationId(), new ArrayList<>(entry.getMessages()));
+        cacheExpireTime.putIfAbsent(entry.getConversationId(), entry.getExpireTime());
+    }
+
     /**
      * 转换Message为ContextMessage
      */
@@ -228,34 +434,72 @@ public class ContextManagerImpl implements ContextManager {
     private void updateCache(Long conversationId, List<ContextMessage> context) {
         contextCache.put(conversationId, new ArrayList<>(context));
         updateCacheExpireTime(conversationId);
+        publishToRemote(conversationId, context);
     }
 
     /**
      * 更新缓存过期时间
      */
     private void updateCacheExpireTime(Long conversationId) {
-        long expireTime = System.currentTimeMillis() +
-                aiServiceProperties.getContext().getCacheExpireMinutes() * 60 * 1000L;
+        long expireTime = System.currentTimeMillis() + getCacheTtlMillis();
         cacheExpireTime.put(conversationId, expireTime);
     }
 
     /**
-     * 检查是否包含重要关键词
+     * 缓存有效期（毫秒）
      */
-    private boolean containsImportantKeywords(String content) {
-        String[] importantKeywords = {
-                "抑郁", "焦虑", "自杀", "自害", "痛苦", "绝望",
-                "治疗", "药物", "医生", "心理", "咨询",
-                "家庭", "工作", "学习", "人际关系"
-        };
-
-        String lowerContent = content.toLowerCase();
-        for (String keyword : importantKeywords) {
-            if (lowerContent.contains(keyword)) {
-                return true;
+    private long getCacheTtlMillis() {
+        return aiServiceProperties.getContext().getCacheExpireMinutes() * 60 * 1000L;
+    }
+
+    /**
+     * 将上下文写入远程缓存并记录新版本号
+     */
+    private void publishToRemote(Long conversationId, List<ContextMessage> context) {
+        long version = remoteContextStore.put(conversationId, new ArrayList<>(context), getCacheTtlMillis());
+        if (version != RemoteContextStore.UNAVAILABLE) {
+            cacheVersion.put(conversationId, version);
+        }
+    }
+
+    /**
+     * 检查本地缓存是否已被其他节点的更新覆盖
+     * 远程不可用时信任本地缓存
+     */
+    private boolean isStaleAgainstRemote(Long conversationId) {
+        long remoteVersion = remoteContextStore.getVersion(conversationId);
+        if (remoteVersion == RemoteContextStore.UNAVAILABLE) {
+            return false;
+        }
+
+        Long localVersion = cacheVersion.get(conversationId);
+        boolean stale = localVersion == null ? remoteVersion > 0 : remoteVersion > localVersion;
+        if (stale) {
+            logger.debug("Local context for conversation {} is stale (local: {}, remote: {})",
+                    conversationId, localVersion, remoteVersion);
+        }
+        return stale;
+    }
+
+    /**
+     * 查找内容相同的缓存消息
+     * @param withId true查找已有ID的消息，false查找尚无ID的消息
+     */
+    private int indexOfContent(List<ContextMessage> context, String content, boolean withId) {
+        for (int i = 0; i < context.size(); i++) {
+            ContextMessage cached = context.get(i);
+            if ((cached.getMessageId() != null) == withId && Objects.equals(cached.getContent(), content)) {
+                return i;
             }
         }
-        return false;
+        return -1;
+    }
+
+    /**
+     * 检查是否包含重要关键词
+     */
+    private boolean containsImportantKeywords(String content) {
+        return KEYWORDS.containsAny(content, IMPORTANT);
     }
 
     /**
@@ -271,20 +515,11 @@ public class ContextManagerImpl implements ContextManager {
             String content = message.getContent();
             if (content != null && "USER".equals(message.getMessageType())) {
                 // 提取用户提到的主要话题
-                if (content.contains("工作") || content.contains("职场")) {
-                    mentionedTopics.add("工作相关问题");
-                }
-                if (content.contains("家庭") || content.contains("父母") || content.contains("孩子")) {
-                    mentionedTopics.add("家庭关系");
-                }
-                if (content.contains("朋友") || content.contains("同事") || content.contains("人际")) {
-                    mentionedTopics.add("人际关系");
-                }
-                if (content.contains("焦虑") || content.contains("紧张") || content.contains("担心")) {
-                    mentionedTopics.add("焦虑情绪");
-                }
-                if (content.contains("抑郁") || content.contains("难过") || content.contains("伤心")) {
-                    mentionedTopics.add("抑郁情绪");
+                KeywordHits hits = KEYWORDS.match(content);
+                for (String topic : TOPICS) {
+                    if (hits.contains(topic)) {
+                        mentionedTopics.add(topic);
+                    }
                 }
             }
         }
@@ -0,0 +1,106 @@
+package cn.xlhealth.backend.service.ai.context.memory;
+
+/**
+ * 基于特征哈希的本地文本向量化
+ * 以字符一元组和二元组为特征，哈希到固定维度并做L2归一化，无需模型文件，纯CPU计算。
+ * 中文没有天然分词边界，字符二元组能较好地覆盖常见词语。
+ */
+public final class HashingEmbedder {
+
+    // 一元组权重低于二元组，单字区分度较差
+    private static final float UNIGRAM_WEIGHT = 0.5f;
+    private static final float BIGRAM_WEIGHT = 1.0f;
+
+    private final int dimension;
+
+    public HashingEmbedder(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("Embedding dimension must be positive");
+        }
+        this.dimension = dimension;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * 计算文本向量
+     * @return 归一化向量，文本没有有效特征时返回null
+     */
+    public float[] embed(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+
+        float[] vector = new float[dimension];
+        char previous = 0;
+        boolean hasFeature = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                // 标点和空白作为分隔，不跨越组成二元组
+                previous = 0;
+                continue;
+            }
+            c = Character.toLowerCase(c);
+
+            addFeature(vector, c, UNIGRAM_WEIGHT);
+            if (previous != 0) {
+                addFeature(vector, (previous << 16) | c | 0x80000000, BIGRAM_WEIGHT);
+            }
+            previous = c;
+            hasFeature = true;
+        }
+
+        if (!hasFeature) {
+            return null;
+        }
+        return normalize(vector) ? vector : null;
+    }
+
+    /**
+     * 两个归一化向量的余弦相似度
+     */
+    public static float cosine(float[] a, float[] b) {
+        float dot = 0f;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    private void addFeature(float[] vector, int feature, float weight) {
+        int hash = mix(feature);
+        int index = Math.floorMod(hash, dimension);
+        // 用哈希的最高位决定符号，减小哈希冲突带来的偏差
+        vector[index] += (hash >>> 31) == 0 ? weight : -weight;
+    }
+
+    private static boolean normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return false;
+        }
+
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return true;
+    }
+
+    private static int mix(int h) {
+        // murmur3 finalizer
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
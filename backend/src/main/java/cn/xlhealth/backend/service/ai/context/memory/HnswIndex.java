@@ -0,0 +1,299 @@
+package cn.xlhealth.backend.service.ai.context.memory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 分层可导航小世界图（HNSW）近似最近邻索引
+ * 向量需预先归一化，距离为 1 - 余弦相似度。支持增量插入，写入和查询通过读写锁隔离。
+ */
+public final class HnswIndex {
+
+    private final int dimension;
+    private final int maxConnections;
+    private final int maxConnectionsLevel0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private final List<float[]> vectors = new ArrayList<>();
+
+    // 每个节点在各层的邻居，neighbors[level][0] 为邻居数量
+    private final List<int[][]> links = new ArrayList<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    // 邻居槽位总数，用于估算内存
+    private long linkSlots = 0;
+
+    public HnswIndex(int dimension, int maxConnections, int efConstruction, long seed) {
+        this.dimension = dimension;
+        this.maxConnections = Math.max(2, maxConnections);
+        this.maxConnectionsLevel0 = this.maxConnections * 2;
+        this.efConstruction = Math.max(this.maxConnections, efConstruction);
+        this.levelMultiplier = 1.0 / Math.log(this.maxConnections);
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 插入向量
+     * @return 节点编号，按插入顺序从0开始
+     */
+    public int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension mismatch: " + vector.length + " != " + dimension);
+        }
+
+        lock.writeLock().lock();
+        try {
+            int node = vectors.size();
+            int level = randomLevel();
+            vectors.add(vector);
+
+            int[][] nodeLinks = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                nodeLinks[l] = new int[capacity(l) + 1];
+                linkSlots += nodeLinks[l].length;
+            }
+            links.add(nodeLinks);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return node;
+            }
+
+            // 高层贪心下降
+            int current = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vector, current, l);
+            }
+
+            // 从节点所在最高层开始逐层建立连接
+            int[] candidates = new int[]{current};
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Candidate> nearest = searchLayer(vector, candidates, efConstruction, l);
+                int connections = Math.min(maxConnections, nearest.size());
+                for (int i = 0; i < connections; i++) {
+                    int neighbor = nearest.get(i).node;
+                    connect(node, neighbor, l);
+                    connect(neighbor, node, l);
+                }
+
+                candidates = new int[nearest.size()];
+                for (int i = 0; i < nearest.size(); i++) {
+                    candidates[i] = nearest.get(i).node;
+                }
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return node;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询最相似的k个节点
+     * @param ef 查询时的候选集大小，越大召回越高
+     * @return 按相似度从高到低排列的结果
+     */
+    public List<Candidate> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return new ArrayList<>();
+            }
+
+            int current = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(query, current, l);
+            }
+
+            List<Candidate> nearest = searchLayer(query, new int[]{current}, Math.max(ef, k), 0);
+            return nearest.size() > k ? new ArrayList<>(nearest.subList(0, k)) : nearest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return vectors.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 估算索引占用的堆内存（字节）
+     * 向量数组 + 邻居数组 + 对象头和列表引用的近似开销
+     */
+    public long estimateMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            long nodes = vectors.size();
+            long vectorBytes = nodes * (16L + 4L * dimension);
+            long linkBytes = linkSlots * 4L + nodes * 16L * 2;
+            long listBytes = nodes * 8L * 2;
+            return vectorBytes + linkBytes + listBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int capacity(int level) {
+        return level == 0 ? maxConnectionsLevel0 : maxConnections;
+    }
+
+    private int randomLevel() {
+        double r = 1.0 - random.nextDouble();
+        return (int) Math.floor(-Math.log(r) * levelMultiplier);
+    }
+
+    private float distance(float[] a, int node) {
+        return 1f - HashingEmbedder.cosine(a, vectors.get(node));
+    }
+
+    /**
+     * 在指定层上贪心移动到离查询向量最近的节点
+     */
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = links.get(current)[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float d = distance(query, neighbors[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbors[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层束搜索，返回按距离升序排列的候选
+     */
+    private List<Candidate> searchLayer(float[] query, int[] entryNodes, int ef, int level) {
+        BitSet visited = new BitSet(vectors.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(c -> c.distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>(
+                Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+
+        for (int node : entryNodes) {
+            if (!visited.get(node)) {
+                visited.set(node);
+                Candidate candidate = new Candidate(node, distance(query, node));
+                candidates.add(candidate);
+                results.add(candidate);
+            }
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.distance > results.peek().distance) {
+                break;
+            }
+
+            int[][] nodeLinks = links.get(closest.node);
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbors = nodeLinks[level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peek().distance) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(c -> c.distance));
+        return sorted;
+    }
+
+    /**
+     * 添加单向连接，邻居已满时保留距离最近的一组
+     */
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links.get(from)[level];
+        int count = neighbors[0];
+        int capacity = neighbors.length - 1;
+
+        if (count < capacity) {
+            neighbors[count + 1] = to;
+            neighbors[0] = count + 1;
+            return;
+        }
+
+        // 已满：若新节点比最远邻居更近则替换
+        float[] base = vectors.get(from);
+        int farthest = 1;
+        float farthestDistance = distance(base, neighbors[1]);
+        for (int i = 2; i <= count; i++) {
+            float d = distance(base, neighbors[i]);
+            if (d > farthestDistance) {
+                farthestDistance = d;
+                farthest = i;
+            }
+        }
+        if (distance(base, to) < farthestDistance) {
+            neighbors[farthest] = to;
+        }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static final class Candidate {
+
+        private final int node;
+        private final float distance;
+
+        Candidate(int node, float distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+
+        public int getNode() {
+            return node;
+        }
+
+        public float getSimilarity() {
+            return 1f - distance;
+        }
+    }
+}
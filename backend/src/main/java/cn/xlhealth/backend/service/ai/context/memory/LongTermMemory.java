@@ -0,0 +1,421 @@
+package cn.xlhealth.backend.service.ai.context.memory;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.mapper.MessageMapper;
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import cn.xlhealth.backend.service.ai.text.TokenEstimator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * 长期记忆
+ * 为每个用户维护一个进程内的HNSW索引，收录用户在各个对话中发送过的消息，
+ * 回复时按语义相似度召回其他对话中的相关片段。索引在用户首次访问时从数据库回填。
+ */
+@Component
+public class LongTermMemory {
+
+    private static final Logger logger = LoggerFactory.getLogger(LongTermMemory.class);
+
+    // 过短的消息（如"好的"、"嗯"）没有召回价值
+    private static final int MIN_CONTENT_LENGTH = 4;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    private final Map<Long, UserMemory> users = new ConcurrentHashMap<>();
+
+    private volatile HashingEmbedder embedder;
+
+    // 延迟统计
+    private final LongAdder insertCount = new LongAdder();
+    private final LongAdder insertNanos = new LongAdder();
+    private final LongAdder queryCount = new LongAdder();
+    private final LongAdder queryNanos = new LongAdder();
+    private final LongAdder backfillCount = new LongAdder();
+    private final LongAdder backfillNanos = new LongAdder();
+    private final LongAdder evictedUsers = new LongAdder();
+
+    /**
+     * 收录一条用户消息
+     */
+    public void index(Long userId, Long conversationId, ContextMessage message) {
+        if (!isEnabled() || userId == null || message == null || !isIndexable(message.getContent())) {
+            return;
+        }
+
+        UserMemory memory = getOrLoad(userId);
+        Snippet snippet = new Snippet(message.getMessageId(), conversationId,
+                message.getContent(), message.getTimestamp());
+        long start = System.nanoTime();
+        memory.add(snippet);
+        insertCount.increment();
+        insertNanos.add(System.nanoTime() - start);
+    }
+
+    /**
+     * 召回与当前消息相关的历史片段，排除当前对话（已在上下文窗口中）
+     */
+    public List<ContextMessage> recall(Long userId, Long conversationId, String query) {
+        List<ContextMessage> recalled = new ArrayList<>();
+        if (!isEnabled() || userId == null || query == null || query.isBlank()) {
+            return recalled;
+        }
+
+        AIServiceProperties.Context.Memory config = getConfig();
+        float[] vector = getEmbedder().embed(query);
+        if (vector == null) {
+            return recalled;
+        }
+
+        UserMemory memory = getOrLoad(userId);
+        long start = System.nanoTime();
+        // 多取一些候选，过滤掉当前对话后仍能凑够topK
+        List<Snippet> candidates = memory.search(vector, config.getTopK() * 4,
+                config.getEfSearch(), config.getMinSimilarity());
+        queryCount.increment();
+        queryNanos.add(System.nanoTime() - start);
+
+        int remainingTokens = config.getTokenBudget();
+        Set<String> seen = new HashSet<>();
+        for (Snippet snippet : candidates) {
+            if (recalled.size() >= config.getTopK()) {
+                break;
+            }
+            if (snippet.conversationId != null && snippet.conversationId.equals(conversationId)) {
+                continue;
+            }
+
+            String content = truncate(snippet.content, config.getMaxSnippetChars());
+            if (!seen.add(content)) {
+                continue;
+            }
+            int tokens = estimateTokens(content);
+            if (tokens > remainingTokens) {
+                continue;
+            }
+            remainingTokens -= tokens;
+
+            ContextMessage memoryMessage = new ContextMessage(snippet.messageId, content, "MEMORY", snippet.timestamp);
+            memoryMessage.setWeight((double) snippet.similarity);
+            recalled.add(memoryMessage);
+        }
+
+        if (!recalled.isEmpty()) {
+            logger.debug("Recalled {} memory snippets for user {} (budget left: {} tokens)",
+                    recalled.size(), userId, remainingTokens);
+        }
+        return recalled;
+    }
+
+    /**
+     * 移除已删除的消息，仅处理已加载的用户（未加载的用户回填时自然不含已删除消息）
+     */
+    public void forget(Long userId, Collection<Long> messageIds) {
+        UserMemory memory = userId != null ? users.get(userId) : null;
+        if (memory != null) {
+            memory.remove(snippet -> messageIds.contains(snippet.messageId));
+        }
+    }
+
+    /**
+     * 移除对话的全部消息
+     */
+    public void forgetConversation(Long userId, Long conversationId) {
+        UserMemory memory = userId != null ? users.get(userId) : null;
+        if (memory != null) {
+            memory.remove(snippet -> conversationId.equals(snippet.conversationId));
+        }
+    }
+
+    /**
+     * 移除用户的内存索引，下次访问时重新回填
+     */
+    public void invalidate(Long userId) {
+        users.remove(userId);
+    }
+
+    /**
+     * 索引构建、查询延迟及内存占用统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long totalEntries = 0;
+        long totalBytes = 0;
+        long maxBytes = 0;
+        for (UserMemory memory : users.values()) {
+            long bytes = memory.estimateMemoryBytes();
+            totalEntries += memory.index.size();
+            totalBytes += bytes;
+            maxBytes = Math.max(maxBytes, bytes);
+        }
+
+        int userCount = users.size();
+        stats.put("enabled", isEnabled());
+        stats.put("users", userCount);
+        stats.put("entries", totalEntries);
+        stats.put("memoryBytes", totalBytes);
+        stats.put("avgMemoryBytesPerUser", userCount > 0 ? totalBytes / userCount : 0);
+        stats.put("maxMemoryBytesPerUser", maxBytes);
+        stats.put("evictedUsers", evictedUsers.sum());
+        stats.put("insertCount", insertCount.sum());
+        stats.put("avgInsertMicros", averageMicros(insertNanos, insertCount));
+        stats.put("queryCount", queryCount.sum());
+        stats.put("avgQueryMicros", averageMicros(queryNanos, queryCount));
+        stats.put("backfillCount", backfillCount.sum());
+        stats.put("avgBackfillMillis", averageMicros(backfillNanos, backfillCount) / 1000.0);
+        return stats;
+    }
+
+    /**
+     * 粗略估算token数：中文约每字一个token，其他字符约每4个一个token
+     */
+    static int estimateTokens(String text) {
+        return TokenEstimator.estimate(text);
+    }
+
+    private boolean isEnabled() {
+        return getConfig().isEnabled();
+    }
+
+    private AIServiceProperties.Context.Memory getConfig() {
+        return aiServiceProperties.getContext().getMemory();
+    }
+
+    private boolean isIndexable(String content) {
+        return content != null && content.trim().length() >= MIN_CONTENT_LENGTH;
+    }
+
+    private HashingEmbedder getEmbedder() {
+        HashingEmbedder current = embedder;
+        if (current == null) {
+            current = new HashingEmbedder(getConfig().getDimension());
+            embedder = current;
+        }
+        return current;
+    }
+
+    private UserMemory getOrLoad(Long userId) {
+        UserMemory memory = users.get(userId);
+        if (memory == null) {
+            evictIfNecessary();
+            memory = users.computeIfAbsent(userId, id -> new UserMemory(id, getConfig(), getEmbedder()));
+        }
+        memory.touch();
+
+        // 回填放在computeIfAbsent之外，避免数据库查询期间阻塞其他用户
+        if (!memory.loaded) {
+            synchronized (memory) {
+                if (!memory.loaded) {
+                    backfill(memory);
+                    memory.loaded = true;
+                }
+            }
+        }
+        return memory;
+    }
+
+    private void backfill(UserMemory memory) {
+        long start = System.nanoTime();
+        try {
+            List<Message> messages = messageMapper.findRecentUserMessages(memory.userId, getConfig().getMaxEntriesPerUser());
+            // 按时间正序插入，保持与增量写入一致
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                Message message = messages.get(i);
+                if (!isIndexable(message.getContent())) {
+                    continue;
+                }
+                long timestamp = message.getCreatedTime() != null
+                        ? message.getCreatedTime().toInstant(ZoneOffset.UTC).toEpochMilli()
+                        : System.currentTimeMillis();
+                memory.add(new Snippet(message.getId(), message.getConversationId(), message.getContent(), timestamp));
+            }
+            backfillCount.increment();
+            backfillNanos.add(System.nanoTime() - start);
+            logger.debug("Backfilled {} messages into memory index for user {} in {}ms",
+                    memory.index.size(), memory.userId, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            logger.warn("Failed to backfill memory index for user {}: {}", memory.userId, e.getMessage());
+        }
+    }
+
+    /**
+     * 超出用户数上限时淘汰最久未访问的用户
+     */
+    private void evictIfNecessary() {
+        int maxUsers = getConfig().getMaxUsers();
+        while (users.size() >= maxUsers && !users.isEmpty()) {
+            Long oldestUser = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<Long, UserMemory> entry : users.entrySet()) {
+                if (entry.getValue().lastAccess < oldestAccess) {
+                    oldestAccess = entry.getValue().lastAccess;
+                    oldestUser = entry.getKey();
+                }
+            }
+            if (oldestUser == null || users.remove(oldestUser) == null) {
+                return;
+            }
+            evictedUsers.increment();
+        }
+    }
+
+    private static String truncate(String content, int maxChars) {
+        return content.length() <= maxChars ? content : content.substring(0, maxChars) + "…";
+    }
+
+    private static double averageMicros(LongAdder nanos, LongAdder count) {
+        long n = count.sum();
+        return n > 0 ? nanos.sum() / 1000.0 / n : 0.0;
+    }
+
+    /**
+     * 单个用户的记忆索引
+     */
+    private static final class UserMemory {
+
+        private final Long userId;
+        private final AIServiceProperties.Context.Memory config;
+        private final HashingEmbedder embedder;
+        private final List<Snippet> snippets = new ArrayList<>();
+
+        private volatile HnswIndex index;
+        private volatile boolean loaded = false;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        UserMemory(Long userId, AIServiceProperties.Context.Memory config, HashingEmbedder embedder) {
+            this.userId = userId;
+            this.config = config;
+            this.embedder = embedder;
+            this.index = newIndex();
+        }
+
+        void touch() {
+            lastAccess = System.currentTimeMillis();
+        }
+
+        synchronized void add(Snippet snippet) {
+            float[] vector = embedder.embed(snippet.content);
+            if (vector == null) {
+                return;
+            }
+
+            // 索引已满时丢弃已删除的片段及最早的四分之一并重建，HNSW不支持高效删除
+            if (snippets.size() >= config.getMaxEntriesPerUser()) {
+                List<Snippet> kept = new ArrayList<>(snippets.subList(snippets.size() / 4, snippets.size()));
+                kept.removeIf(existing -> existing.removed);
+                snippets.clear();
+                HnswIndex rebuilt = newIndex();
+                for (Snippet existing : kept) {
+                    rebuilt.add(existing.vector);
+                    snippets.add(existing);
+                }
+                index = rebuilt;
+            }
+
+            snippet.vector = vector;
+            index.add(vector);
+            snippets.add(snippet);
+        }
+
+        /**
+         * 标记删除，查询时跳过，重建索引时清理
+         */
+        synchronized void remove(Predicate<Snippet> condition) {
+            for (Snippet snippet : snippets) {
+                if (!snippet.removed && condition.test(snippet)) {
+                    snippet.removed = true;
+                }
+            }
+        }
+
+        List<Snippet> search(float[] query, int k, int ef, double minSimilarity) {
+            List<Snippet> results = new ArrayList<>();
+            HnswIndex current;
+            List<Snippet> currentSnippets;
+            synchronized (this) {
+                current = index;
+                currentSnippets = snippets;
+            }
+
+            for (HnswIndex.Candidate candidate : current.search(query, k, ef)) {
+                if (candidate.getSimilarity() < minSimilarity) {
+                    continue;
+                }
+                Snippet snippet;
+                synchronized (this) {
+                    if (current != index || candidate.getNode() >= currentSnippets.size()) {
+                        // 查询期间索引被重建，放弃旧结果
+                        break;
+                    }
+                    Snippet matched = currentSnippets.get(candidate.getNode());
+                    if (matched.removed) {
+                        continue;
+                    }
+                    snippet = matched.withSimilarity(candidate.getSimilarity());
+                }
+                results.add(snippet);
+            }
+            return results;
+        }
+
+        long estimateMemoryBytes() {
+            long textBytes = 0;
+            synchronized (this) {
+                for (Snippet snippet : snippets) {
+                    textBytes += 64L + 2L * snippet.content.length();
+                }
+            }
+            return index.estimateMemoryBytes() + textBytes;
+        }
+
+        private HnswIndex newIndex() {
+            return new HnswIndex(embedder.getDimension(), config.getM(), config.getEfConstruction(), userId);
+        }
+    }
+
+    /**
+     * 索引中的消息片段
+     */
+    private static final class Snippet {
+
+        final Long messageId;
+        final Long conversationId;
+        final String content;
+        final Long timestamp;
+        float[] vector;
+        float similarity;
+        volatile boolean removed;
+
+        Snippet(Long messageId, Long conversationId, String content, Long timestamp) {
+            this.messageId = messageId;
+            this.conversationId = conversationId;
+            this.content = content;
+            this.timestamp = timestamp;
+        }
+
+        Snippet withSimilarity(float similarity) {
+            Snippet copy = new Snippet(messageId, conversationId, content, timestamp);
+            copy.similarity = similarity;
+            return copy;
+        }
+    }
+}
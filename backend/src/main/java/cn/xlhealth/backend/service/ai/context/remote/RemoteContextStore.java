@@ -0,0 +1,59 @@
+package cn.xlhealth.backend.service.ai.context.remote;
+
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+
+import java.util.List;
+
+/**
+ * 共享上下文存储接口（远程二级缓存）
+ * 多节点部署时，各节点的本地近缓存通过该存储共享上下文，并借助版本号识别过期副本
+ */
+public interface RemoteContextStore {
+
+    /**
+     * 版本号不可用（远程存储不可达或未启用）
+     */
+    long UNAVAILABLE = -1L;
+
+    /**
+     * 读取对话上下文
+     * @param conversationId 对话ID
+     * @return 带版本号的上下文，不存在或远程不可用时返回null
+     */
+    VersionedContext get(Long conversationId);
+
+    /**
+     * 读取对话上下文的当前版本号
+     * @param conversationId 对话ID
+     * @return 版本号，不存在时返回0，远程不可用时返回{@link #UNAVAILABLE}
+     */
+    long getVersion(Long conversationId);
+
+    /**
+     * 写入对话上下文，版本号自增
+     * @param conversationId 对话ID
+     * @param messages 上下文消息
+     * @param ttlMillis 过期时间（毫秒）
+     * @return 写入后的版本号，远程不可用时返回{@link #UNAVAILABLE}
+     */
+    long put(Long conversationId, List<ContextMessage> messages, long ttlMillis);
+
+    /**
+     * 使对话上下文失效，版本号自增以通知其他节点丢弃近缓存
+     * @param conversationId 对话ID
+     * @return 失效后的版本号，远程不可用时返回{@link #UNAVAILABLE}
+     */
+    long evict(Long conversationId);
+
+    /**
+     * 远程存储当前是否可用
+     * @return 是否可用
+     */
+    boolean isAvailable();
+
+    /**
+     * 获取存储名称
+     * @return 存储名称
+     */
+    String getName();
+}
@@ -0,0 +1,48 @@
+package cn.xlhealth.backend.service.ai.context.remote;
+
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 带版本号的上下文条目
+ */
+public class VersionedContext {
+
+    /**
+     * 版本号（单调递增）
+     */
+    private long version;
+
+    /**
+     * 上下文消息
+     */
+    private List<ContextMessage> messages;
+
+    public VersionedContext() {
+        this.messages = new ArrayList<>();
+    }
+
+    public VersionedContext(long version, List<ContextMessage> messages) {
+        this.version = version;
+        this.messages = messages;
+    }
+
+    // Getters and Setters
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<ContextMessage> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ContextMessage> messages) {
+        this.messages = messages;
+    }
+}
@@ -0,0 +1,44 @@
+package cn.xlhealth.backend.service.ai.context.remote.impl;
+
+import cn.xlhealth.backend.service.ai.context.remote.RemoteContextStore;
+import cn.xlhealth.backend.service.ai.context.remote.VersionedContext;
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+
+import java.util.List;
+
+/**
+ * 仅本地模式的上下文存储
+ * 未启用远程缓存时使用，所有操作均为空实现，上下文只保存在本节点的近缓存中
+ */
+public class LocalOnlyContextStore implements RemoteContextStore {
+
+    @Override
+    public VersionedContext get(Long conversationId) {
+        return null;
+    }
+
+    @Override
+    public long getVersion(Long conversationId) {
+        return UNAVAILABLE;
+    }
+
+    @Override
+    public long put(Long conversationId, List<ContextMessage> messages, long ttlMillis) {
+        return UNAVAILABLE;
+    }
+
+    @Override
+    public long evict(Long conversationId) {
+        return UNAVAILABLE;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "LOCAL";
+    }
+}
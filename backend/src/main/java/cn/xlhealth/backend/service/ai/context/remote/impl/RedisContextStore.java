@@ -0,0 +1,187 @@
+package cn.xlhealth.backend.service.ai.context.remote.impl;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.service.ai.context.remote.RemoteContextStore;
+import cn.xlhealth.backend.service.ai.context.remote.VersionedContext;
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 基于Redis协议的共享上下文存储
+ * 每个对话使用两个键：版本号键（INCR自增）和数据键（包含版本号的JSON），
+ * 两个键在同一个Lua脚本中更新，并发写入时数据键中的版本号始终与版本号键一致；
+ * 远程不可用时在重试间隔内直接降级为仅本地模式
+ */
+public class RedisContextStore implements RemoteContextStore, Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisContextStore.class);
+
+    /**
+     * 写入：版本号自增并续期，再写入带新版本号的数据
+     * KEYS[1] 版本号键，KEYS[2] 数据键；ARGV[1] 消息JSON数组，ARGV[2] 版本号键TTL，ARGV[3] 数据键TTL（毫秒）。
+     * 版本号在服务端生成，数据JSON在脚本中拼接，格式与 {@link VersionedContext} 一致
+     */
+    static final String PUT_SCRIPT = "local v = redis.call('INCR', KEYS[1]) "
+            + "redis.call('PEXPIRE', KEYS[1], ARGV[2]) "
+            + "redis.call('SET', KEYS[2], '{\"version\":' .. v .. ',\"messages\":' .. ARGV[1] .. '}', 'PX', ARGV[3]) "
+            + "return v";
+
+    /**
+     * 失效：版本号自增并删除数据
+     */
+    static final String EVICT_SCRIPT = "local v = redis.call('INCR', KEYS[1]) "
+            + "redis.call('DEL', KEYS[2]) "
+            + "return v";
+
+    private final RespClient client;
+    private final String keyPrefix;
+    private final long retryIntervalMillis;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 远程不可用截止时间，在此之前跳过所有远程操作
+    private volatile long downUntil = 0L;
+
+    public RedisContextStore(AIServiceProperties.Context.Remote config) {
+        this(new RespClient(config.getHost(), config.getPort(), config.getPassword(),
+                        config.getDatabase(), config.getTimeoutMs(), config.getPoolSize()),
+                config.getKeyPrefix(), config.getRetryIntervalSeconds() * 1000L);
+    }
+
+    RedisContextStore(RespClient client, String keyPrefix, long retryIntervalMillis) {
+        this.client = client;
+        this.keyPrefix = keyPrefix;
+        this.retryIntervalMillis = retryIntervalMillis;
+    }
+
+    @Override
+    public VersionedContext get(Long conversationId) {
+        if (!isAvailable()) {
+            return null;
+        }
+
+        try {
+            String payload = client.get(dataKey(conversationId));
+            if (payload == null) {
+                return null;
+            }
+            return objectMapper.readValue(payload, VersionedContext.class);
+        } catch (JsonProcessingException e) {
+            // 数据损坏按未命中处理，由调用方从数据库重建
+            logger.warn("Invalid remote context for conversation {}: {}", conversationId, e.getMessage());
+            return null;
+        } catch (RespServerException e) {
+            logRejected(conversationId, e);
+            return null;
+        } catch (IOException e) {
+            markDown(e);
+            return null;
+        }
+    }
+
+    @Override
+    public long getVersion(Long conversationId) {
+        if (!isAvailable()) {
+            return UNAVAILABLE;
+        }
+
+        try {
+            String version = client.get(versionKey(conversationId));
+            return version != null ? Long.parseLong(version) : 0L;
+        } catch (RespServerException | NumberFormatException e) {
+            logRejected(conversationId, e);
+            return UNAVAILABLE;
+        } catch (IOException e) {
+            markDown(e);
+            return UNAVAILABLE;
+        }
+    }
+
+    @Override
+    public long put(Long conversationId, List<ContextMessage> messages, long ttlMillis) {
+        if (!isAvailable()) {
+            return UNAVAILABLE;
+        }
+
+        try {
+            String payload = objectMapper.writeValueAsString(messages);
+            long ttl = Math.max(1, ttlMillis);
+            // 版本号键比数据键多保留一个周期，避免数据过期后版本号回到0
+            return (Long) client.eval(PUT_SCRIPT, List.of(versionKey(conversationId), dataKey(conversationId)),
+                    payload, String.valueOf(ttl * 2), String.valueOf(ttl));
+        } catch (JsonProcessingException | RespServerException e) {
+            logRejected(conversationId, e);
+            return UNAVAILABLE;
+        } catch (IOException e) {
+            markDown(e);
+            return UNAVAILABLE;
+        }
+    }
+
+    @Override
+    public long evict(Long conversationId) {
+        if (!isAvailable()) {
+            return UNAVAILABLE;
+        }
+
+        try {
+            return (Long) client.eval(EVICT_SCRIPT,
+                    List.of(versionKey(conversationId), dataKey(conversationId)));
+        } catch (RespServerException e) {
+            logRejected(conversationId, e);
+            return UNAVAILABLE;
+        } catch (IOException e) {
+            markDown(e);
+            return UNAVAILABLE;
+        }
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return System.currentTimeMillis() >= downUntil;
+    }
+
+    @Override
+    public String getName() {
+        return "REDIS";
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    /**
+     * 单条命令被服务端拒绝（如键类型错误），只影响本次操作，不降级
+     */
+    private void logRejected(Long conversationId, Exception e) {
+        logger.warn("Remote context operation rejected for conversation {}: {}", conversationId, e.getMessage());
+    }
+
+    /**
+     * 标记远程存储不可用，在重试间隔内降级为仅本地模式
+     * 只用于连接失败、超时等 I/O 异常
+     */
+    private void markDown(IOException e) {
+        boolean wasAvailable = isAvailable();
+        downUntil = System.currentTimeMillis() + retryIntervalMillis;
+        if (wasAvailable) {
+            logger.warn("Remote context store unavailable, falling back to local-only for {}ms: {}",
+                    retryIntervalMillis, e.getMessage());
+        }
+    }
+
+    private String versionKey(Long conversationId) {
+        return keyPrefix + "v:" + conversationId;
+    }
+
+    private String dataKey(Long conversationId) {
+        return keyPrefix + "d:" + conversationId;
+    }
+}
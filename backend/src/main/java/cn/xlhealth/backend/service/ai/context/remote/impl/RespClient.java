@@ -0,0 +1,250 @@
+package cn.xlhealth.backend.service.ai.context.remote.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 精简的Redis协议（RESP2）客户端
+ * 只实现上下文共享所需的少量命令，连接按固定大小池化复用
+ */
+public class RespClient implements Closeable {
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final int database;
+    private final int timeoutMs;
+
+    // 空闲连接池
+    private final BlockingQueue<Connection> idle;
+
+    private volatile boolean closed = false;
+
+    public RespClient(String host, int port, String password, int database, int timeoutMs, int poolSize) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.database = database;
+        this.timeoutMs = timeoutMs;
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, poolSize));
+    }
+
+    /**
+     * 执行命令并返回解析后的结果
+     * 结果类型：String（简单字符串/批量字符串）、Long（整数）、List（数组）、null（空回复）
+     *
+     * @throws IOException 连接失败、超时或回复不完整，服务端可能不可用
+     * @throws RespServerException 服务端返回错误回复，连接仍可复用
+     */
+    public Object execute(String... args) throws IOException {
+        if (closed) {
+            throw new IOException("RESP client is closed");
+        }
+
+        Connection connection = borrow();
+        boolean healthy = false;
+        try {
+            Object reply = connection.call(args);
+            healthy = true;
+            return reply;
+        } catch (RespServerException e) {
+            // 错误回复已完整读取，连接状态正常
+            healthy = true;
+            throw e;
+        } finally {
+            release(connection, healthy);
+        }
+    }
+
+    public String get(String key) throws IOException {
+        return (String) execute("GET", key);
+    }
+
+    /**
+     * 执行Lua脚本，脚本内的多条命令在服务端原子执行
+     */
+    public Object eval(String script, List<String> keys, String... args) throws IOException {
+        String[] command = new String[3 + keys.size() + args.length];
+        command[0] = "EVAL";
+        command[1] = script;
+        command[2] = String.valueOf(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            command[3 + i] = keys.get(i);
+        }
+        System.arraycopy(args, 0, command, 3 + keys.size(), args.length);
+        return execute(command);
+    }
+
+    public boolean ping() throws IOException {
+        return "PONG".equals(execute("PING"));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+
+    private Connection borrow() throws IOException {
+        Connection connection = idle.poll();
+        if (connection != null) {
+            return connection;
+        }
+        return open();
+    }
+
+    private void release(Connection connection, boolean healthy) {
+        // 出错的连接状态不可知，直接丢弃；池满时也关闭
+        if (!healthy || closed || !idle.offer(connection)) {
+            connection.close();
+        }
+    }
+
+    private Connection open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            socket.setSoTimeout(timeoutMs);
+            socket.setTcpNoDelay(true);
+            Connection connection = new Connection(socket);
+            if (password != null && !password.isEmpty()) {
+                connection.call("AUTH", password);
+            }
+            if (database > 0) {
+                connection.call("SELECT", String.valueOf(database));
+            }
+            return connection;
+        } catch (RespServerException e) {
+            // 认证或选库被拒绝时无法建立可用连接，按连接失败处理
+            socket.close();
+            throw new IOException("Connection setup rejected: " + e.getMessage(), e);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 单个TCP连接
+     */
+    private static class Connection {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        Object call(String... args) throws IOException {
+            writeCommand(args);
+            out.flush();
+            Object reply = readReply();
+            if (reply instanceof RespServerException) {
+                throw (RespServerException) reply;
+            }
+            return reply;
+        }
+
+        private void writeCommand(String... args) throws IOException {
+            out.write('*');
+            writeLine(String.valueOf(args.length));
+            for (String arg : args) {
+                byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+                out.write('$');
+                writeLine(String.valueOf(bytes.length));
+                out.write(bytes);
+                out.write('\r');
+                out.write('\n');
+            }
+        }
+
+        private void writeLine(String line) throws IOException {
+            out.write(line.getBytes(StandardCharsets.US_ASCII));
+            out.write('\r');
+            out.write('\n');
+        }
+
+        private Object readReply() throws IOException {
+            int type = in.read();
+            if (type == -1) {
+                throw new IOException("Connection closed by server");
+            }
+
+            switch (type) {
+                case '+':
+                    return readLine();
+                case '-':
+                    // 作为值返回，数组中的错误元素不中断读取，保证连接上的回复不错位
+                    return new RespServerException(readLine());
+                case ':':
+                    return Long.parseLong(readLine());
+                case '$': {
+                    int length = Integer.parseInt(readLine());
+                    if (length < 0) {
+                        return null;
+                    }
+                    byte[] data = in.readNBytes(length);
+                    if (data.length != length) {
+                        throw new IOException("Unexpected end of bulk reply");
+                    }
+                    // 跳过结尾的CRLF
+                    in.readNBytes(2);
+                    return new String(data, StandardCharsets.UTF_8);
+                }
+                case '*': {
+                    int count = Integer.parseInt(readLine());
+                    if (count < 0) {
+                        return null;
+                    }
+                    List<Object> items = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        items.add(readReply());
+                    }
+                    return items;
+                }
+                default:
+                    throw new IOException("Unknown reply type: " + (char) type);
+            }
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\r') {
+                    in.read(); // '\n'
+                    return buffer.toString(StandardCharsets.UTF_8);
+                }
+                buffer.write(b);
+            }
+            throw new IOException("Connection closed while reading line");
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭失败无需处理
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package cn.xlhealth.backend.service.ai.context.remote.impl;
+
+/**
+ * Redis服务端错误回复（如 -ERR、-WRONGTYPE）
+ * 与连接失败等 I/O 异常区分：命令被服务端拒绝，但服务端可用、连接仍可复用
+ */
+public class RespServerException extends RuntimeException {
+
+    public RespServerException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,193 @@
+package cn.xlhealth.backend.service.ai.context.snapshot;
+
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 上下文快照文件格式
+ *
+ * <pre>
+ * gzip(
+ *   int    魔数 "XLCS"
+ *   short  格式版本
+ *   long   快照时间
+ *   int    条目数
+ *   条目 {
+ *     long 对话ID, long 最后消息ID, long 过期时间, int 消息数
+ *     消息 { byte 字段标记, [long 消息ID], str 类型, str 内容, [long 时间戳], [double 权重] }
+ *   }
+ *   int    结束标记 "XLCE"
+ * )
+ * </pre>
+ *
+ * 写入先落临时文件再原子替换，读取时魔数、版本或结束标记不符整体视为无效。
+ */
+public final class ContextSnapshotFile {
+
+    public static final int MAGIC = 0x584C4353; // "XLCS"
+    public static final short VERSION = 1;
+    private static final int END_MARKER = 0x584C4345; // "XLCE"
+
+    private static final int HAS_ID = 1;
+    private static final int HAS_TIMESTAMP = 1 << 1;
+    private static final int HAS_WEIGHT = 1 << 2;
+
+    private ContextSnapshotFile() {
+    }
+
+    /**
+     * 写入快照
+     */
+    public static void write(Path path, List<SnapshotEntry> entries) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new GZIPOutputStream(file, 8192)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(entries.size());
+            for (SnapshotEntry entry : entries) {
+                writeEntry(out, entry);
+            }
+            out.writeInt(END_MARKER);
+        }
+
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // 部分文件系统不支持原子移动
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 读取快照
+     * @return 快照条目，文件不存在时返回空列表
+     * @throws IOException 文件损坏或版本不兼容
+     */
+    public static List<SnapshotEntry> read(Path path) throws IOException {
+        List<SnapshotEntry> entries = new ArrayList<>();
+        if (!Files.exists(path)) {
+            return entries;
+        }
+
+        try (InputStream file = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new GZIPInputStream(file, 8192)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a context snapshot file: " + path);
+            }
+            short version = in.readShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported context snapshot version: " + version);
+            }
+            in.readLong(); // 快照时间
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                entries.add(readEntry(in));
+            }
+            if (in.readInt() != END_MARKER) {
+                throw new IOException("Context snapshot is truncated: " + path);
+            }
+        } catch (EOFException e) {
+            throw new IOException("Context snapshot is truncated: " + path, e);
+        }
+        return entries;
+    }
+
+    private static void writeEntry(DataOutputStream out, SnapshotEntry entry) throws IOException {
+        out.writeLong(entry.getConversationId());
+        out.writeLong(entry.getLastMessageId());
+        out.writeLong(entry.getExpireTime());
+        out.writeInt(entry.getMessages().size());
+        for (ContextMessage message : entry.getMessages()) {
+            int flags = (message.getMessageId() != null ? HAS_ID : 0)
+                    | (message.getTimestamp() != null ? HAS_TIMESTAMP : 0)
+                    | (message.getWeight() != null ? HAS_WEIGHT : 0);
+            out.writeByte(flags);
+            if (message.getMessageId() != null) {
+                out.writeLong(message.getMessageId());
+            }
+            writeString(out, message.getMessageType());
+            writeString(out, message.getContent());
+            if (message.getTimestamp() != null) {
+                out.writeLong(message.getTimestamp());
+            }
+            if (message.getWeight() != null) {
+                out.writeDouble(message.getWeight());
+            }
+        }
+    }
+
+    private static SnapshotEntry readEntry(DataInputStream in) throws IOException {
+        long conversationId = in.readLong();
+        long lastMessageId = in.readLong();
+        long expireTime = in.readLong();
+        int size = in.readInt();
+
+        List<ContextMessage> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int flags = in.readByte();
+            ContextMessage message = new ContextMessage();
+            if ((flags & HAS_ID) != 0) {
+                message.setMessageId(in.readLong());
+            }
+            message.setMessageType(readString(in));
+            message.setContent(readString(in));
+            if ((flags & HAS_TIMESTAMP) != 0) {
+                message.setTimestamp(in.readLong());
+            }
+            if ((flags & HAS_WEIGHT) != 0) {
+                message.setWeight(in.readDouble());
+            }
+            messages.add(message);
+        }
+        return new SnapshotEntry(conversationId, lastMessageId, expireTime, messages);
+    }
+
+    /**
+     * 字符串以长度前缀的UTF-8写入，-1表示null（writeUTF有64KB限制）
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,27 @@
+package cn.xlhealth.backend.service.ai.context.snapshot;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 上下文快照恢复健康检查（/actuator/health 中的 contextSnapshot 组件，属于 readiness 组）
+ * 启动恢复未完成且未超时时为 OUT_OF_SERVICE，就绪探针在恢复完成前不放入流量
+ */
+@Component("contextSnapshotHealthIndicator")
+public class ContextSnapshotHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private ContextSnapshotManager contextSnapshotManager;
+
+    @Override
+    public Health health() {
+        if (contextSnapshotManager.isRestorePending()) {
+            return Health.outOfService().withDetail("restore", "in progress").build();
+        }
+        return Health.up()
+                .withDetail("restore", contextSnapshotManager.isRestoreDone() ? "done" : "timed out")
+                .build();
+    }
+}
@@ -0,0 +1,201 @@
+package cn.xlhealth.backend.service.ai.context.snapshot;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.mapper.MessageMapper;
+import cn.xlhealth.backend.service.ai.context.ContextManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 上下文快照管理
+ * 定时及关闭时将热点上下文写入本地快照文件，启动时在后台恢复，
+ * 恢复完成（或超时）前 {@link ContextSnapshotHealthIndicator} 使就绪检查保持 OUT_OF_SERVICE。
+ * 快照记录每个缓存上下文中的最后消息ID，恢复时与数据库中的最后消息ID比较，不一致的条目丢弃。
+ */
+@Component
+public class ContextSnapshotManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextSnapshotManager.class);
+
+    // 单次IN查询的对话数量上限
+    private static final int QUERY_BATCH_SIZE = 500;
+
+    @Autowired
+    private ContextManager contextManager;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    private final CountDownLatch restoreDone = new CountDownLatch(1);
+
+    // 恢复开始时间，用于判断是否超过就绪等待时间
+    private volatile long restoreStartTime;
+
+    /**
+     * 启动后台恢复
+     */
+    @PostConstruct
+    public void startRestore() {
+        if (!getConfig().isEnabled()) {
+            restoreDone.countDown();
+            return;
+        }
+
+        restoreStartTime = System.currentTimeMillis();
+        Thread restoreThread = new Thread(this::restore, "context-snapshot-restore");
+        restoreThread.setDaemon(true);
+        restoreThread.start();
+    }
+
+    /**
+     * 定时快照
+     */
+    @Scheduled(fixedDelayString = "${ai.service.context.snapshot.interval-seconds:300}",
+            initialDelayString = "${ai.service.context.snapshot.interval-seconds:300}",
+            timeUnit = TimeUnit.SECONDS)
+    public void scheduledSnapshot() {
+        // 恢复完成前不写快照，避免用空缓存覆盖上次的快照
+        if (getConfig().isEnabled() && restoreDone.getCount() == 0) {
+            snapshot();
+        }
+    }
+
+    /**
+     * 关闭时快照
+     */
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        if (getConfig().isEnabled() && restoreDone.getCount() == 0) {
+            snapshot();
+        }
+    }
+
+    /**
+     * 写入快照
+     * @return 写入的条目数，失败返回-1
+     */
+    public int snapshot() {
+        long start = System.currentTimeMillis();
+        try {
+            // 条目中的最后消息ID取自缓存的上下文本身，而不是写快照时的数据库
+            List<SnapshotEntry> entries = contextManager.exportHotContexts(getConfig().getMaxEntries());
+            ContextSnapshotFile.write(getPath(), entries);
+            logger.info("Wrote context snapshot with {} conversations to {} in {}ms",
+                    entries.size(), getPath(), System.currentTimeMillis() - start);
+            return entries.size();
+        } catch (Exception e) {
+            logger.warn("Failed to write context snapshot: {}", e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 从快照恢复
+     */
+    void restore() {
+        long start = System.currentTimeMillis();
+        try {
+            List<SnapshotEntry> entries = ContextSnapshotFile.read(getPath());
+            if (entries.isEmpty()) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            List<SnapshotEntry> live = entries.stream()
+                    .filter(entry -> entry.getExpireTime() > now)
+                    .collect(Collectors.toList());
+            Map<Long, Long> lastMessageIds = queryLastMessageIds(live.stream()
+                    .map(SnapshotEntry::getConversationId)
+                    .collect(Collectors.toList()));
+
+            int restored = 0;
+            for (SnapshotEntry entry : live) {
+                // 缓存的上下文与数据库不一致（快照前已过期，或快照后有新消息/消息被删除）
+                long current = lastMessageIds.getOrDefault(entry.getConversationId(), 0L);
+                if (current != entry.getLastMessageId()) {
+                    continue;
+                }
+                contextManager.restoreContext(entry);
+                restored++;
+            }
+
+            logger.info("Restored {} of {} conversations from context snapshot in {}ms ({} expired, {} stale)",
+                    restored, entries.size(), System.currentTimeMillis() - start,
+                    entries.size() - live.size(), live.size() - restored);
+        } catch (Exception e) {
+            logger.warn("Failed to restore context snapshot, starting with cold cache: {}", e.getMessage());
+        } finally {
+            restoreDone.countDown();
+        }
+    }
+
+    /**
+     * 恢复是否已完成
+     */
+    public boolean isRestoreDone() {
+        return restoreDone.getCount() == 0;
+    }
+
+    /**
+     * 是否仍在等待恢复：恢复未完成且未超过最长等待时间
+     */
+    public boolean isRestorePending() {
+        if (isRestoreDone()) {
+            return false;
+        }
+        long waited = System.currentTimeMillis() - restoreStartTime;
+        return waited < TimeUnit.SECONDS.toMillis(getConfig().getRestoreTimeoutSeconds());
+    }
+
+    private Map<Long, Long> queryLastMessageIds(List<Long> conversationIds) {
+        Map<Long, Long> result = new HashMap<>();
+        for (int from = 0; from < conversationIds.size(); from += QUERY_BATCH_SIZE) {
+            List<Long> batch = conversationIds.subList(from, Math.min(from + QUERY_BATCH_SIZE, conversationIds.size()));
+            for (Map<String, Object> row : messageMapper.findLastMessageIds(batch)) {
+                Long conversationId = getLong(row, "conversationId");
+                Long lastMessageId = getLong(row, "lastMessageId");
+                if (conversationId != null && lastMessageId != null) {
+                    result.put(conversationId, lastMessageId);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按列名读取数值，忽略大小写（不同数据库对别名大小写处理不同）
+     */
+    private static Long getLong(Map<String, Object> row, String column) {
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(column) && entry.getValue() instanceof Number) {
+                return ((Number) entry.getValue()).longValue();
+            }
+        }
+        return null;
+    }
+
+    private Path getPath() {
+        return Paths.get(getConfig().getPath());
+    }
+
+    private AIServiceProperties.Context.Snapshot getConfig() {
+        return aiServiceProperties.getContext().getSnapshot();
+    }
+}
@@ -0,0 +1,54 @@
+package cn.xlhealth.backend.service.ai.context.snapshot;
+
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+
+import java.util.List;
+
+/**
+ * 快照中的单个对话上下文
+ */
+public class SnapshotEntry {
+
+    /**
+     * 对话ID
+     */
+    private final long conversationId;
+
+    /**
+     * 缓存上下文中的最后消息ID，恢复时与数据库比较
+     */
+    private final long lastMessageId;
+
+    /**
+     * 缓存过期时间
+     */
+    private final long expireTime;
+
+    /**
+     * 上下文消息
+     */
+    private final List<ContextMessage> messages;
+
+    public SnapshotEntry(long conversationId, long lastMessageId, long expireTime, List<ContextMessage> messages) {
+        this.conversationId = conversationId;
+        this.lastMessageId = lastMessageId;
+        this.expireTime = expireTime;
+        this.messages = messages;
+    }
+
+    public long getConversationId() {
+        return conversationId;
+    }
+
+    public long getLastMessageId() {
+        return lastMessageId;
+    }
+
+    public long getExpireTime() {
+        return expireTime;
+    }
+
+    public List<ContextMessage> getMessages() {
+        return messages;
+    }
+}
@@ -28,6 +28,11 @@ public class AIRequest {
      */
     private List<ContextMessage> context;
 
+    /**
+     * 从其他对话召回的相关历史片段（长期记忆）
+     */
+    private List<ContextMessage> memories;
+
     /**
      * 用户情绪状态
      */
@@ -80,6 +85,14 @@ public class AIRequest {
         this.context = context;
     }
 
+    public List<ContextMessage> getMemories() {
+        return memories;
+    }
+
+    public void setMemories(List<ContextMessage> memories) {
+        this.memories = memories;
+    }
+
     public String getEmotionalState() {
         return emotionalState;
     }
@@ -58,6 +58,11 @@ public class AIResponse {
      */
     private Long timestamp;
     
+    /**
+     * 回复保存后的消息ID，用于回写异步质量评分
+     */
+    private Long messageId;
+    
     public AIResponse() {
         this.timestamp = System.currentTimeMillis();
     }
@@ -165,4 +170,12 @@ public class AIResponse {
     public void setTokenCount(Integer tokenCount) {
         this.tokenCount = tokenCount;
     }
-}
\ No newline at end of file
+    
+    public Long getMessageId() {
+        return messageId;
+    }
+    
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+}
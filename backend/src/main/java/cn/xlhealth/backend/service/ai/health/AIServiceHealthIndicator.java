@@ -1,119 +1,118 @@
 package cn.xlhealth.backend.service.ai.health;
 
-import cn.xlhealth.backend.service.ai.AIServiceManager;
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.service.ai.AIService;
 import cn.xlhealth.backend.service.ai.monitor.ServiceMonitor;
-import cn.xlhealth.backend.service.ai.monitor.impl.ServiceMonitorImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-// import org.springframework.boot.actuator.health.Health;
-// import org.springframework.boot.actuator.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * AI服务健康检查指示器
+ * AI服务健康检查指示器（/actuator/health 中的 aiService 组件）
+ * 状态来自 {@link ProviderProbe} 缓存的探测结果：熔断时为DOWN，结果过期或尚未探测时为UNKNOWN；
+ * 检查本身不调用上游。详情中附带最近60分钟的实际调用统计。
  */
-// @Component("aiServiceHealthIndicator")
-public class AIServiceHealthIndicator /* implements HealthIndicator */ {
+@Component("aiServiceHealthIndicator")
+public class AIServiceHealthIndicator implements HealthIndicator {
 
     private static final Logger logger = LoggerFactory.getLogger(AIServiceHealthIndicator.class);
 
-    @Autowired
-    private AIServiceManager aiServiceManager;
+    /**
+     * 调用统计的时间窗口（分钟）
+     */
+    private static final int TRAFFIC_WINDOW_MINUTES = 60;
 
     @Autowired
-    private ServiceMonitor serviceMonitor;
+    private ProviderProbe providerProbe;
 
-    // @Override
-    public Object health() {
-        try {
-            // 检查AI服务管理器健康状态
-            boolean managerHealthy = aiServiceManager.isHealthy();
-
-            // 检查服务监控器健康状态
-            boolean monitorHealthy = serviceMonitor.isHealthy(null);
+    @Autowired
+    private AIService aiService;
 
-            // 获取详细统计信息
-            Map<String, Object> details = buildHealthDetails();
+    @Autowired
+    private ServiceMonitor serviceMonitor;
 
-            // 综合判断健康状态
-            boolean overallHealthy = managerHealthy && monitorHealthy;
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("status", overallHealthy ? "UP" : "DOWN");
-            result.put("details", details);
-            return result;
+    @Override
+    public Health health() {
+        try {
+            Health.Builder builder = aiServiceProperties.getMonitoring().getProbe().isEnabled()
+                    ? probeHealth()
+                    : configHealth();
+            return builder.withDetail("traffic", buildTrafficDetails()).build();
 
         } catch (Exception e) {
             logger.error("Error during AI service health check", e);
-            Map<String, Object> result = new HashMap<>();
-            result.put("status", "DOWN");
-            result.put("error", "Health check failed: " + e.getMessage());
-            result.put("timestamp", LocalDateTime.now());
-            return result;
+            return Health.down(e).build();
         }
     }
 
     /**
-     * 构建健康检查详细信息
+     * 按探测结果判断
      */
-    private Map<String, Object> buildHealthDetails() {
-        Map<String, Object> details = new HashMap<>();
-
-        try {
-            // 基本信息
-            details.put("timestamp", LocalDateTime.now());
-            details.put("service", "AI Service");
-
-            // 管理器健康状态
-            boolean managerHealthy = aiServiceManager.isHealthy();
-            details.put("manager_healthy", managerHealthy);
-
-            // 全局统计信息
-            double globalSuccessRate = serviceMonitor.getSuccessRate(null, 60); // 使用60分钟时间窗口
-            double globalAvgResponseTime = serviceMonitor.getAverageResponseTime(null, 60); // 使用60分钟时间窗口
-            double globalErrorRate = serviceMonitor.getErrorRate(null, 60); // 使用60分钟时间窗口
-
-            details.put("global_success_rate", String.format("%.2f%%", globalSuccessRate * 100));
-            details.put("global_avg_response_time", String.format("%.0fms", globalAvgResponseTime));
-            details.put("global_error_rate", String.format("%.2f%%", globalErrorRate * 100));
-
-            // 各提供商统计信息
-            if (serviceMonitor instanceof ServiceMonitorImpl) {
-                ServiceMonitorImpl monitorImpl = (ServiceMonitorImpl) serviceMonitor;
-                Map<String, Object> providerStats = new HashMap<>();
-
-                monitorImpl.getAllProviderStats().forEach((provider, stats) -> {
-                    Map<String, Object> providerDetail = new HashMap<>();
-                    providerDetail.put("success_rate", String.format("%.2f%%", stats.getSuccessRate() * 100));
-                    providerDetail.put("avg_response_time", String.format("%.0fms", stats.getAverageResponseTime()));
-                    providerDetail.put("error_rate", String.format("%.2f%%", stats.getErrorRate() * 100));
-                    providerDetail.put("total_calls", stats.getTotalCalls());
-                    providerDetail.put("healthy", serviceMonitor.isHealthy(provider));
-                    providerStats.put(provider, providerDetail);
-                });
-
-                details.put("providers", providerStats);
-            }
-
-            // 配置信息
-            Map<String, Object> configInfo = aiServiceManager.getConfigInfo();
-            details.put("config", configInfo);
-
-            // 健康状态判断标准
-            details.put("health_criteria", Map.of(
-                    "min_success_rate", "80%",
-                    "max_response_time", "5000ms",
-                    "max_error_rate", "20%"));
+    private Health.Builder probeHealth() {
+        ProviderProbe.Snapshot snapshot = providerProbe.getSnapshot();
+        long now = System.currentTimeMillis();
+
+        Health.Builder builder;
+        if (snapshot.getCircuitState() == ProviderProbe.CircuitState.OPEN) {
+            builder = Health.down();
+        } else if (providerProbe.isStale(now)) {
+            builder = Health.unknown();
+        } else {
+            builder = Health.up();
+        }
 
-        } catch (Exception e) {
-            logger.warn("Error building health details", e);
-            details.put("details_error", "Failed to collect detailed information: " + e.getMessage());
+        builder.withDetail("provider", providerProbe.getProviderName())
+                .withDetail("circuit", snapshot.getCircuitState().name())
+                .withDetail("stale", providerProbe.isStale(now))
+                .withDetail("probe_latency_ms", snapshot.getLatencyMs())
+                .withDetail("consecutive_failures", snapshot.getConsecutiveFailures());
+        withTimestamp(builder, "last_probe", snapshot.getLastProbeTime());
+        withTimestamp(builder, "last_success", snapshot.getLastSuccessTime());
+        if (withTimestamp(builder, "last_failure", snapshot.getLastFailureTime())) {
+            builder.withDetail("last_error", String.valueOf(snapshot.getLastError()));
         }
+        return builder;
+    }
 
-        return details;
+    /**
+     * 未启用探测时只检查配置
+     */
+    private Health.Builder configHealth() {
+        return (aiService.isHealthy() ? Health.up() : Health.down())
+                .withDetail("provider", aiService.getProviderName())
+                .withDetail("probe", "disabled");
+    }
+
+    /**
+     * 最近一段时间的实际调用统计
+     */
+    private Map<String, Object> buildTrafficDetails() {
+        Map<String, Object> traffic = new LinkedHashMap<>();
+        traffic.put("window_minutes", TRAFFIC_WINDOW_MINUTES);
+        traffic.put("success_rate", String.format("%.2f%%", serviceMonitor.getSuccessRate(null, TRAFFIC_WINDOW_MINUTES)));
+        traffic.put("avg_response_time", String.format("%.0fms", serviceMonitor.getAverageResponseTime(null, TRAFFIC_WINDOW_MINUTES)));
+        traffic.put("error_rate", String.format("%.2f%%", serviceMonitor.getErrorRate(null, TRAFFIC_WINDOW_MINUTES)));
+        return traffic;
+    }
+
+    /**
+     * 时间已记录时添加到详情（详情值不能为null）
+     */
+    private static boolean withTimestamp(Health.Builder builder, String key, long epochMillis) {
+        if (epochMillis <= 0) {
+            return false;
+        }
+        builder.withDetail(key, Instant.ofEpochMilli(epochMillis).toString());
+        return true;
     }
-}
\ No newline at end of file
+}
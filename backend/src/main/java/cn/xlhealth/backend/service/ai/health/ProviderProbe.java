@@ -0,0 +1,197 @@
+package cn.xlhealth.backend.service.ai.health;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.service.ai.AIService;
+import cn.xlhealth.backend.service.ai.monitor.AnomalyEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI提供商主动探测
+ * 定时发送合成请求，按连续成功/失败次数维护熔断状态，结果以不可变快照发布；
+ * 健康检查只读取快照，不会因上游缓慢而阻塞。实际调用出现异常告警时立即追加一次探测。
+ */
+@Component
+public class ProviderProbe {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderProbe.class);
+
+    /**
+     * 熔断状态
+     */
+    public enum CircuitState {
+        /** 正常 */
+        CLOSED,
+        /** 连续失败，已熔断 */
+        OPEN,
+        /** 熔断后探测恢复中 */
+        HALF_OPEN
+    }
+
+    @Autowired
+    private AIService aiService;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    private volatile Snapshot snapshot = Snapshot.INITIAL;
+
+    /**
+     * 执行一次探测并更新快照
+     */
+    @Scheduled(fixedDelayString = "${ai.service.monitoring.probe.interval-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public synchronized Snapshot probe() {
+        AIServiceProperties.Monitoring.Probe config = aiServiceProperties.getMonitoring().getProbe();
+        if (!config.isEnabled()) {
+            return snapshot;
+        }
+
+        long start = System.currentTimeMillis();
+        String error = null;
+        try {
+            aiService.probe(config.getTimeoutMs());
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        long now = System.currentTimeMillis();
+
+        Snapshot previous = snapshot;
+        Snapshot next = error == null
+                ? previous.success(now, now - start, config.getSuccessThreshold())
+                : previous.failure(now, now - start, error, config.getFailureThreshold());
+        snapshot = next;
+
+        if (next.getCircuitState() != previous.getCircuitState()) {
+            logger.warn("AI provider {} circuit {} -> {}{}", aiService.getProviderName(),
+                    previous.getCircuitState(), next.getCircuitState(), error != null ? ": " + error : "");
+        } else if (error != null) {
+            logger.debug("AI provider probe failed ({} consecutive): {}", next.getConsecutiveFailures(), error);
+        }
+        return next;
+    }
+
+    /**
+     * 本提供商的调用出现异常时立即探测，不等下一个探测周期
+     */
+    @EventListener
+    public void onAnomaly(AnomalyEvent event) {
+        if (event.isRaised() && aiService.getProviderName().equalsIgnoreCase(event.getProvider())) {
+            logger.info("Probing AI provider after anomaly: {}", event);
+            probe();
+        }
+    }
+
+    /**
+     * 最近一次探测结果
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 探测结果是否已过期（从未探测也视为过期）
+     */
+    public boolean isStale(long now) {
+        long lastProbeTime = snapshot.getLastProbeTime();
+        long ttlMillis = aiServiceProperties.getMonitoring().getProbe().getTtlSeconds() * 1000L;
+        return lastProbeTime == 0 || now - lastProbeTime > ttlMillis;
+    }
+
+    public String getProviderName() {
+        return aiService.getProviderName();
+    }
+
+    /**
+     * 探测结果快照
+     */
+    public static final class Snapshot {
+
+        static final Snapshot INITIAL = new Snapshot(CircuitState.CLOSED, 0, 0, 0, -1, null, 0, 0);
+
+        private final CircuitState circuitState;
+        private final long lastProbeTime;
+        private final long lastSuccessTime;
+        private final long lastFailureTime;
+        private final long latencyMs;
+        private final String lastError;
+        private final int consecutiveFailures;
+        private final int consecutiveSuccesses;
+
+        private Snapshot(CircuitState circuitState, long lastProbeTime, long lastSuccessTime, long lastFailureTime,
+                long latencyMs, String lastError, int consecutiveFailures, int consecutiveSuccesses) {
+            this.circuitState = circuitState;
+            this.lastProbeTime = lastProbeTime;
+            this.lastSuccessTime = lastSuccessTime;
+            this.lastFailureTime = lastFailureTime;
+            this.latencyMs = latencyMs;
+            this.lastError = lastError;
+            this.consecutiveFailures = consecutiveFailures;
+            this.consecutiveSuccesses = consecutiveSuccesses;
+        }
+
+        /**
+         * 探测成功：熔断中转为半开，连续成功达到阈值后恢复
+         */
+        Snapshot success(long now, long latency, int successThreshold) {
+            int successes = consecutiveSuccesses + 1;
+            CircuitState state = circuitState;
+            if (state != CircuitState.CLOSED) {
+                state = successes >= successThreshold ? CircuitState.CLOSED : CircuitState.HALF_OPEN;
+            }
+            return new Snapshot(state, now, now, lastFailureTime, latency, lastError, 0, successes);
+        }
+
+        /**
+         * 探测失败：半开时立即熔断，否则连续失败达到阈值后熔断
+         */
+        Snapshot failure(long now, long latency, String error, int failureThreshold) {
+            int failures = consecutiveFailures + 1;
+            CircuitState state = circuitState;
+            if (state == CircuitState.HALF_OPEN || failures >= failureThreshold) {
+                state = CircuitState.OPEN;
+            }
+            return new Snapshot(state, now, lastSuccessTime, now, latency, error, failures, 0);
+        }
+
+        public CircuitState getCircuitState() {
+            return circuitState;
+        }
+
+        public long getLastProbeTime() {
+            return lastProbeTime;
+        }
+
+        public long getLastSuccessTime() {
+            return lastSuccessTime;
+        }
+
+        public long getLastFailureTime() {
+            return lastFailureTime;
+        }
+
+        /**
+         * 最近一次探测耗时（毫秒），未探测时为-1
+         */
+        public long getLatencyMs() {
+            return latencyMs;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        public int getConsecutiveSuccesses() {
+            return consecutiveSuccesses;
+        }
+    }
+}
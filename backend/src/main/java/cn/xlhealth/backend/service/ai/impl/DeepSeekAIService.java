@@ -5,20 +5,30 @@ import cn.xlhealth.backend.service.ai.AIService;
 import cn.xlhealth.backend.service.ai.dto.AIRequest;
 import cn.xlhealth.backend.service.ai.dto.AIResponse;
 import cn.xlhealth.backend.service.ai.exception.AIServiceException;
+import cn.xlhealth.backend.service.ai.text.TokenEstimator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
 /**
  * DeepSeek AI服务实现
@@ -95,6 +105,164 @@ public class DeepSeekAIService implements AIService {
         }
     }
 
+    @Override
+    public boolean supportsStreaming() {
+        return aiServiceProperties.getDeepseek().isStream();
+    }
+
+    @Override
+    public AIResponse generateReplyStreaming(AIRequest request, Predicate<String> chunkHandler) {
+        logger.info("Generating streaming reply using DeepSeek API for user: {}", request.getUserId());
+
+        long startTime = System.currentTimeMillis();
+
+        try {
+            AIServiceProperties.DeepSeek config = aiServiceProperties.getDeepseek();
+            String apiKey = config.getApiKey();
+
+            if (!StringUtils.hasText(apiKey)) {
+                throw new AIServiceException("DeepSeek API key is not configured", "MISSING_API_KEY", "DeepSeek");
+            }
+
+            Map<String, Object> requestBody = buildRequestBody(request, config);
+            requestBody.put("stream", true);
+            // 最后一个分段携带使用统计
+            requestBody.put("stream_options", Map.of("include_usage", true));
+
+            String url = config.getApiBase() + "/v1/chat/completions";
+            logger.debug("Calling DeepSeek streaming API: {}", url);
+
+            RequestCallback requestCallback = httpRequest -> {
+                httpRequest.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                httpRequest.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+                httpRequest.getHeaders().setBearerAuth(apiKey);
+                objectMapper.writeValue(httpRequest.getBody(), requestBody);
+            };
+            // 回调要求中止时提前返回，响应随之关闭，上游不再继续生成
+            ResponseExtractor<AIResponse> responseExtractor =
+                    httpResponse -> readStream(httpResponse, chunkHandler, requestBody);
+
+            AIResponse aiResponse = restTemplate.execute(url, HttpMethod.POST, requestCallback, responseExtractor);
+            if (aiResponse == null) {
+                throw new AIServiceException("Empty streaming response from DeepSeek API", "INVALID_RESPONSE",
+                        "DeepSeek");
+            }
+
+            long responseTime = System.currentTimeMillis() - startTime;
+            aiResponse.setResponseTime(responseTime);
+            logger.info("DeepSeek streaming API response time: {}ms", responseTime);
+            return aiResponse;
+
+        } catch (Exception e) {
+            logger.error("Error calling DeepSeek streaming API", e);
+            if (e instanceof AIServiceException) {
+                throw e;
+            }
+            throw new AIServiceException("API_CALL_FAILED", "Failed to generate reply: " + e.getMessage(), "DeepSeek");
+        }
+    }
+
+    /**
+     * 读取SSE流，逐段回调增量内容
+     * 中止时不会收到最后携带使用统计的分段，token数按请求消息和已生成内容估算，并标记 tokens_estimated
+     */
+    private AIResponse readStream(ClientHttpResponse httpResponse, Predicate<String> chunkHandler,
+            Map<String, Object> requestBody) throws IOException {
+        StringBuilder content = new StringBuilder();
+        JsonNode usage = null;
+        String finishReason = null;
+        boolean aborted = false;
+
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(httpResponse.getBody(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.startsWith("data:")) {
+                continue;
+            }
+            String data = line.substring(5).trim();
+            if ("[DONE]".equals(data)) {
+                break;
+            }
+
+            JsonNode chunk = objectMapper.readTree(data);
+            if (chunk.hasNonNull("usage")) {
+                usage = chunk.get("usage");
+            }
+            JsonNode choices = chunk.get("choices");
+            if (choices == null || !choices.isArray() || choices.size() == 0) {
+                continue;
+            }
+
+            JsonNode choice = choices.get(0);
+            if (choice.hasNonNull("finish_reason")) {
+                finishReason = choice.get("finish_reason").asText();
+            }
+            JsonNode delta = choice.get("delta");
+            if (delta == null || !delta.hasNonNull("content")) {
+                continue;
+            }
+
+            String text = delta.get("content").asText();
+            if (text.isEmpty()) {
+                continue;
+            }
+            content.append(text);
+            if (!chunkHandler.test(text)) {
+                aborted = true;
+                break;
+            }
+        }
+
+        AIResponse aiResponse = new AIResponse();
+        aiResponse.setContent(content.toString());
+        aiResponse.setProvider("DEEPSEEK");
+        aiResponse.setSuccess(true);
+
+        Map<String, Object> metadata = new HashMap<>();
+        if (usage != null) {
+            metadata.put("prompt_tokens", usage.path("prompt_tokens").asInt(0));
+            metadata.put("completion_tokens", usage.path("completion_tokens").asInt(0));
+            metadata.put("total_tokens", usage.path("total_tokens").asInt(0));
+        } else {
+            // 上游已按生成的内容计费，不能按0计入消息和用量台账
+            int promptTokens = estimatePromptTokens(requestBody);
+            int completionTokens = TokenEstimator.estimate(content.toString());
+            metadata.put("prompt_tokens", promptTokens);
+            metadata.put("completion_tokens", completionTokens);
+            metadata.put("total_tokens", promptTokens + completionTokens);
+            metadata.put("tokens_estimated", true);
+        }
+        metadata.put("model", aiServiceProperties.getDeepseek().getModel());
+        metadata.put("stream", true);
+        metadata.put("aborted", aborted);
+        if (finishReason != null) {
+            metadata.put("finish_reason", finishReason);
+        }
+        aiResponse.setMetadata(metadata);
+
+        if (aborted) {
+            logger.info("DeepSeek stream aborted after {} chars, estimated tokens: {}", content.length(),
+                    metadata.get("total_tokens"));
+        } else {
+            logger.info("Successfully generated streaming reply using DeepSeek API. Tokens used: {}",
+                    metadata.get("total_tokens"));
+        }
+        return aiResponse;
+    }
+
+    /**
+     * 估算请求消息的token数，每条消息另计约4个格式token
+     */
+    @SuppressWarnings("unchecked")
+    private static int estimatePromptTokens(Map<String, Object> requestBody) {
+        int tokens = 0;
+        for (Map<String, String> message : (List<Map<String, String>>) requestBody.get("messages")) {
+            tokens += TokenEstimator.estimate(message.get("content")) + 4;
+        }
+        return tokens;
+    }
+
     /**
      * 构建DeepSeek API请求体
      */
@@ -113,6 +281,14 @@ public class DeepSeekAIService implements AIService {
                 "role", "system",
                 "content", buildSystemPrompt()));
 
+        // 添加长期记忆片段
+        if (request.getMemories() != null && !request.getMemories().isEmpty()) {
+            logger.debug("Adding {} memory snippets to request", request.getMemories().size());
+            messages.add(Map.of(
+                    "role", "system",
+                    "content", buildMemoryPrompt(request.getMemories())));
+        }
+
         // 添加历史上下文消息
         if (request.getContext() != null && !request.getContext().isEmpty()) {
             logger.debug("Adding {} context messages to request", request.getContext().size());
@@ -151,6 +327,17 @@ public class DeepSeekAIService implements AIService {
                 "请用中文回复，语言要温和友善。";
     }
 
+    /**
+     * 构建长期记忆提示词
+     */
+    private String buildMemoryPrompt(List<cn.xlhealth.backend.service.ai.dto.ContextMessage> memories) {
+        StringBuilder prompt = new StringBuilder("以下是用户在以往对话中提到的相关内容，可在回复时参考，不要逐字复述：");
+        for (cn.xlhealth.backend.service.ai.dto.ContextMessage memory : memories) {
+            prompt.append("\n- ").append(memory.getContent());
+        }
+        return prompt.toString();
+    }
+
     /**
      * 解析DeepSeek API响应
      */
@@ -225,6 +412,48 @@ public class DeepSeekAIService implements AIService {
         }
     }
 
+    /**
+     * 发送只生成1个token的请求，验证网络、鉴权和模型可用
+     */
+    @Override
+    public void probe(int timeoutMs) {
+        if (!isHealthy()) {
+            throw new AIServiceException("NOT_CONFIGURED", "DeepSeek API key or base URL is not configured", "DeepSeek");
+        }
+
+        AIServiceProperties.DeepSeek config = aiServiceProperties.getDeepseek();
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", config.getModel());
+        requestBody.put("max_tokens", 1);
+        requestBody.put("temperature", 0);
+        requestBody.put("stream", false);
+        requestBody.put("messages", List.of(Map.of("role", "user", "content", "ping")));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(config.getApiKey());
+
+        // 探测使用独立的短超时，不受正常请求的超时设置影响
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMs);
+        requestFactory.setReadTimeout(timeoutMs);
+
+        try {
+            ResponseEntity<String> response = new RestTemplate(requestFactory).postForEntity(
+                    config.getApiBase() + "/v1/chat/completions",
+                    new HttpEntity<>(requestBody, headers),
+                    String.class);
+            if (!response.getStatusCode().is2xxSuccessful()) {
+                throw new AIServiceException("API_ERROR", "DeepSeek probe returned " + response.getStatusCode(),
+                        "DeepSeek");
+            }
+        } catch (AIServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AIServiceException("PROBE_FAILED", "DeepSeek probe failed: " + e.getMessage(), "DeepSeek", e);
+        }
+    }
+
     @Override
     public String getProviderName() {
         return "DeepSeek";
@@ -240,6 +469,7 @@ public class DeepSeekAIService implements AIService {
         configInfo.put("max_tokens", config.getMaxTokens());
         configInfo.put("temperature", config.getTemperature());
         configInfo.put("timeout_ms", config.getTimeout());
+        configInfo.put("stream", config.isStream());
         configInfo.put("api_key_configured", StringUtils.hasText(config.getApiKey()));
         return configInfo;
     }
@@ -0,0 +1,188 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * AI处理链路的Micrometer指标
+ * 提供商调用耗时（带百分位直方图）、token用量、降级次数、质量评分分布、异步评分队列和上下文缓存命中，
+ * 通过 /actuator/metrics 和 /actuator/prometheus 暴露。
+ * 标签取值均来自有限集合（提供商、模型、结果），指标按标签组合缓存，记录时不再查找注册表。
+ */
+@Component
+public class AIMetrics {
+
+    public static final String CALLS = "ai.provider.calls";
+    public static final String TOKENS = "ai.tokens";
+    public static final String FALLBACKS = "ai.fallbacks";
+    public static final String QUALITY_SCORE = "ai.quality.score";
+    public static final String QUALITY_QUEUE_DEPTH = "ai.quality.queue.depth";
+    public static final String QUALITY_DROPPED = "ai.quality.dropped";
+    public static final String QUALITY_LAG = "ai.quality.lag";
+    public static final String CONTEXT_LOOKUPS = "ai.context.lookups";
+    public static final String CONTEXT_CACHE_SIZE = "ai.context.cache.conversations";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_FAILURE = "failure";
+    public static final String OUTCOME_ERROR = "error";
+
+    private static final String UNKNOWN = "unknown";
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AIMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 记录提供商调用
+     * @param provider 服务提供商
+     * @param model 模型，未知时为null
+     * @param outcome 调用结果（success/failure/error）
+     * @param responseTime 响应时间（毫秒）
+     */
+    public void recordCall(String provider, String model, String outcome, long responseTime) {
+        String providerTag = tag(provider);
+        String modelTag = tag(model);
+        timers.computeIfAbsent(providerTag + '|' + modelTag + '|' + outcome, key -> Timer.builder(CALLS)
+                        .description("AI provider call latency")
+                        .tags("provider", providerTag, "model", modelTag, "outcome", outcome)
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(10))
+                        .maximumExpectedValue(Duration.ofSeconds(120))
+                        .register(registry))
+                .record(Math.max(0, responseTime), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录token用量
+     */
+    public void recordTokens(String provider, String model, long promptTokens, long completionTokens) {
+        String providerTag = tag(provider);
+        String modelTag = tag(model);
+        if (promptTokens > 0) {
+            tokenCounter(providerTag, modelTag, "prompt").increment(promptTokens);
+        }
+        if (completionTokens > 0) {
+            tokenCounter(providerTag, modelTag, "completion").increment(completionTokens);
+        }
+    }
+
+    /**
+     * 记录降级
+     * @param reason 降级原因分类（safety/provider_error/unexpected）
+     */
+    public void recordFallback(String reason) {
+        counters.computeIfAbsent(FALLBACKS + '|' + reason, key -> Counter.builder(FALLBACKS)
+                        .description("AI fallback replies")
+                        .tag("reason", reason)
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * 记录质量评分
+     */
+    public void recordQuality(String provider, int qualityScore) {
+        String providerTag = tag(provider);
+        summaries.computeIfAbsent(providerTag, key -> DistributionSummary.builder(QUALITY_SCORE)
+                        .description("AI reply quality score (0-100)")
+                        .tag("provider", providerTag)
+                        .serviceLevelObjectives(20, 40, 60, 80, 90)
+                        .minimumExpectedValue(1.0)
+                        .maximumExpectedValue(100.0)
+                        .register(registry))
+                .record(qualityScore);
+    }
+
+    /**
+     * 注册异步质量评分队列深度
+     */
+    public void registerQualityQueue(Supplier<Number> queueDepth) {
+        Gauge.builder(QUALITY_QUEUE_DEPTH, queueDepth)
+                .description("Assessments waiting in the asynchronous quality scoring queue")
+                .register(registry);
+    }
+
+    /**
+     * 记录因队列已满而丢弃的评分任务
+     */
+    public void recordQualityDropped() {
+        counters.computeIfAbsent(QUALITY_DROPPED, key -> Counter.builder(QUALITY_DROPPED)
+                        .description("Quality assessments dropped because the scoring queue was full")
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * 记录评分延迟（从入队到开始评分）
+     */
+    public void recordQualityLag(long lagMillis) {
+        qualityLagTimer().record(Math.max(0, lagMillis), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 最近统计窗口内的最大评分延迟（毫秒），随时间衰减，不是进程启动以来的最大值
+     */
+    public double getQualityLagMaxMillis() {
+        return qualityLagTimer().max(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 记录上下文读取来源
+     * @param source local（本地缓存）/ remote（共享缓存）/ database（数据库）
+     */
+    public void recordContextLookup(String source) {
+        counters.computeIfAbsent(CONTEXT_LOOKUPS + '|' + source, key -> Counter.builder(CONTEXT_LOOKUPS)
+                        .description("AI context lookups by source")
+                        .tag("source", source)
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * 注册上下文缓存大小（缓存的对话数）
+     */
+    public void registerContextCache(Map<?, ?> contextCache) {
+        Gauge.builder(CONTEXT_CACHE_SIZE, contextCache, Map::size)
+                .description("Conversations held in the local context cache")
+                .register(registry);
+    }
+
+    private Timer qualityLagTimer() {
+        return timers.computeIfAbsent(QUALITY_LAG, key -> Timer.builder(QUALITY_LAG)
+                .description("Delay between enqueueing and starting an asynchronous quality assessment")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(60))
+                .register(registry));
+    }
+
+    private Counter tokenCounter(String provider, String model, String type) {
+        return counters.computeIfAbsent(TOKENS + '|' + provider + '|' + model + '|' + type, key -> Counter.builder(TOKENS)
+                .description("AI tokens consumed")
+                .baseUnit("tokens")
+                .tags("provider", provider, "model", model, "type", type)
+                .register(registry));
+    }
+
+    private static String tag(String value) {
+        return value == null || value.isEmpty() ? UNKNOWN : value;
+    }
+}
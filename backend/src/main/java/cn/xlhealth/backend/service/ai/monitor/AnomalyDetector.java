@@ -0,0 +1,302 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * AI调用异常检测
+ * 按 提供商/模型 维护响应时间和错误率的EWMA基线（均值和方差），每个小时时段各有一份基线，
+ * 时段基线预热前使用总体基线。每个评估周期用周期内的调用与基线比较，偏离超过阈值时发布
+ * {@link AnomalyEvent}，回落后发布解除事件。记录调用只做累加，比较在定时任务中进行。
+ */
+@Component
+public class AnomalyDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnomalyDetector.class);
+
+    private static final String UNKNOWN = "unknown";
+
+    /**
+     * 时段数（按小时）
+     */
+    private static final int SEASONS = 24;
+
+    /**
+     * 告警期间基线的适应速度（相对alpha），避免异常值很快被吸收为新基线
+     */
+    private static final double ANOMALY_ADAPTATION = 0.1;
+
+    /**
+     * 响应时间标准差下限：基线的比例和绝对值（毫秒）
+     */
+    private static final double LATENCY_MIN_RELATIVE_DEVIATION = 0.1;
+    private static final double LATENCY_MIN_DEVIATION = 20.0;
+
+    /**
+     * 错误率标准差下限，以及估算二项分布标准差时使用的最小错误率
+     */
+    private static final double ERROR_RATE_MIN_DEVIATION = 0.02;
+    private static final double ERROR_RATE_MIN_BASELINE = 0.01;
+
+    /**
+     * 调用不足时最多累积的评估周期数
+     */
+    private static final int MAX_PENDING_EVALUATIONS = 12;
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final AIServiceProperties aiServiceProperties;
+    private final LongSupplier clock;
+    private final ZoneId zone;
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AnomalyDetector(ApplicationEventPublisher eventPublisher, AIServiceProperties aiServiceProperties) {
+        this(eventPublisher, aiServiceProperties, System::currentTimeMillis, ZoneId.systemDefault());
+    }
+
+    AnomalyDetector(ApplicationEventPublisher eventPublisher, AIServiceProperties aiServiceProperties,
+            LongSupplier clock, ZoneId zone) {
+        this.eventPublisher = eventPublisher;
+        this.aiServiceProperties = aiServiceProperties;
+        this.clock = clock;
+        this.zone = zone;
+    }
+
+    /**
+     * 记录一次调用
+     * @param provider 服务提供商
+     * @param model 模型，未知时为null
+     * @param success 是否成功
+     * @param responseTime 响应时间（毫秒）
+     */
+    public void record(String provider, String model, boolean success, long responseTime) {
+        if (!isEnabled()) {
+            return;
+        }
+        String providerName = provider != null ? provider : UNKNOWN;
+        String modelName = model != null ? model : UNKNOWN;
+        series.computeIfAbsent(providerName + '|' + modelName, key -> new Series(providerName, modelName))
+                .record(success, responseTime, clock.getAsLong());
+    }
+
+    /**
+     * 评估各序列并发布告警/解除事件
+     * @return 本次发布的事件
+     */
+    @Scheduled(fixedDelayString = "${ai.service.monitoring.anomaly.evaluation-seconds:5}", timeUnit = TimeUnit.SECONDS)
+    public List<AnomalyEvent> evaluate() {
+        List<AnomalyEvent> events = new ArrayList<>();
+        if (!isEnabled()) {
+            return events;
+        }
+        AIServiceProperties.Monitoring.Anomaly config = aiServiceProperties.getMonitoring().getAnomaly();
+        long now = clock.getAsLong();
+        int season = Instant.ofEpochMilli(now).atZone(zone).getHour();
+
+        for (Series current : series.values()) {
+            events.addAll(current.evaluate(now, season, config));
+        }
+        for (AnomalyEvent event : events) {
+            if (event.isRaised()) {
+                logger.warn("AI anomaly detected: {}, detection latency {}ms", event, event.getDetectionLatencyMillis());
+            } else {
+                logger.info("AI anomaly cleared: {}", event);
+            }
+            eventPublisher.publishEvent(event);
+        }
+        return events;
+    }
+
+    /**
+     * 当前未解除的告警
+     */
+    public List<AnomalyEvent> getActiveAnomalies() {
+        List<AnomalyEvent> active = new ArrayList<>();
+        for (Series current : series.values()) {
+            active.addAll(current.getActive());
+        }
+        return active;
+    }
+
+    /**
+     * 是否有未解除的告警
+     * @param provider 服务提供商，为null时检查全部
+     */
+    public boolean hasActiveAnomaly(String provider) {
+        for (Series current : series.values()) {
+            if ((provider == null || provider.equals(current.provider)) && !current.getActive().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isEnabled() {
+        AIServiceProperties.Monitoring monitoring = aiServiceProperties.getMonitoring();
+        return monitoring.isEnabled() && monitoring.getAnomaly().isEnabled();
+    }
+
+    /**
+     * 一个 提供商/模型 的累加器、基线和告警状态
+     */
+    private static final class Series {
+
+        private final String provider;
+        private final String model;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder responseTimeTotal = new LongAdder();
+        private final AtomicLong onsetTime = new AtomicLong();
+        private int pendingEvaluations;
+
+        /**
+         * 各时段基线，最后一个为总体基线
+         */
+        private final Map<AnomalyEvent.Metric, Baseline[]> baselines = new EnumMap<>(AnomalyEvent.Metric.class);
+        private final Map<AnomalyEvent.Metric, AnomalyEvent> active = new EnumMap<>(AnomalyEvent.Metric.class);
+
+        Series(String provider, String model) {
+            this.provider = provider;
+            this.model = model;
+            for (AnomalyEvent.Metric metric : AnomalyEvent.Metric.values()) {
+                Baseline[] slots = new Baseline[SEASONS + 1];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = new Baseline();
+                }
+                baselines.put(metric, slots);
+            }
+        }
+
+        void record(boolean success, long responseTime, long now) {
+            onsetTime.compareAndSet(0, now);
+            calls.increment();
+            responseTimeTotal.add(responseTime);
+            if (!success) {
+                failures.increment();
+            }
+        }
+
+        synchronized List<AnomalyEvent> evaluate(long now, int season, AIServiceProperties.Monitoring.Anomaly config) {
+            List<AnomalyEvent> events = new ArrayList<>(2);
+            long count = calls.sum();
+            if (count == 0) {
+                return events;
+            }
+            if (count < config.getMinCalls() && ++pendingEvaluations < MAX_PENDING_EVALUATIONS) {
+                return events;
+            }
+
+            count = calls.sumThenReset();
+            long failed = failures.sumThenReset();
+            long responseTime = responseTimeTotal.sumThenReset();
+            long onset = onsetTime.getAndSet(0);
+            pendingEvaluations = 0;
+            if (count < config.getMinCalls()) {
+                // 长时间调用过少，丢弃而不评估
+                return events;
+            }
+
+            double errorRate = (double) failed / count;
+            check(AnomalyEvent.Metric.LATENCY, (double) responseTime / count, count, season, onset, now, config, events);
+            check(AnomalyEvent.Metric.ERROR_RATE, errorRate, count, season, onset, now, config, events);
+            return events;
+        }
+
+        private void check(AnomalyEvent.Metric metric, double value, long count, int season, long onset, long now,
+                AIServiceProperties.Monitoring.Anomaly config, List<AnomalyEvent> events) {
+            Baseline[] slots = baselines.get(metric);
+            Baseline overall = slots[SEASONS];
+            Baseline seasonal = slots[season];
+            if (!seasonal.initialized && overall.initialized) {
+                // 新时段从总体基线开始学习，避免把首个（可能异常的）值当作基线
+                seasonal.seed(overall);
+            }
+            Baseline reference = seasonal.samples >= config.getWarmupEvaluations() ? seasonal : overall;
+
+            if (overall.samples >= config.getWarmupEvaluations()) {
+                double deviation = (value - reference.mean) / minDeviation(metric, reference, count);
+                AnomalyEvent current = active.get(metric);
+                if (current == null && deviation >= config.getDeviationThreshold()) {
+                    AnomalyEvent event = new AnomalyEvent(provider, model, metric, true, value, reference.mean,
+                            deviation, onset, now);
+                    active.put(metric, event);
+                    events.add(event);
+                } else if (current != null && deviation < config.getDeviationThreshold() / 2) {
+                    active.remove(metric);
+                    events.add(new AnomalyEvent(provider, model, metric, false, value, reference.mean,
+                            deviation, onset, now));
+                }
+            }
+
+            double alpha = active.containsKey(metric) ? config.getAlpha() * ANOMALY_ADAPTATION : config.getAlpha();
+            seasonal.update(value, alpha);
+            overall.update(value, alpha);
+        }
+
+        /**
+         * 基线标准差，带下限以免平稳期的微小波动也被判为异常
+         */
+        private static double minDeviation(AnomalyEvent.Metric metric, Baseline baseline, long count) {
+            double deviation = Math.sqrt(baseline.variance);
+            if (metric == AnomalyEvent.Metric.LATENCY) {
+                return Math.max(deviation, Math.max(baseline.mean * LATENCY_MIN_RELATIVE_DEVIATION, LATENCY_MIN_DEVIATION));
+            }
+            double rate = Math.max(baseline.mean, ERROR_RATE_MIN_BASELINE);
+            double binomial = Math.sqrt(rate * (1 - rate) / count);
+            return Math.max(deviation, Math.max(binomial, ERROR_RATE_MIN_DEVIATION));
+        }
+
+        synchronized List<AnomalyEvent> getActive() {
+            return new ArrayList<>(active.values());
+        }
+    }
+
+    /**
+     * 指数加权的均值和方差
+     */
+    private static final class Baseline {
+
+        private double mean;
+        private double variance;
+        private long samples;
+        private boolean initialized;
+
+        void seed(Baseline other) {
+            mean = other.mean;
+            variance = other.variance;
+            initialized = true;
+        }
+
+        void update(double value, double alpha) {
+            if (!initialized) {
+                mean = value;
+                initialized = true;
+            } else {
+                double diff = value - mean;
+                double increment = alpha * diff;
+                mean += increment;
+                variance = (1 - alpha) * (variance + diff * increment);
+            }
+            samples++;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+/**
+ * AI调用异常告警事件（告警和解除各发布一次）
+ */
+public class AnomalyEvent {
+
+    /**
+     * 检测指标
+     */
+    public enum Metric {
+        /** 平均响应时间（毫秒） */
+        LATENCY,
+        /** 错误率（0-1） */
+        ERROR_RATE
+    }
+
+    private final String provider;
+    private final String model;
+    private final Metric metric;
+    private final boolean raised;
+    private final double observed;
+    private final double baseline;
+    private final double deviation;
+    private final long onsetTime;
+    private final long detectedTime;
+
+    public AnomalyEvent(String provider, String model, Metric metric, boolean raised, double observed,
+            double baseline, double deviation, long onsetTime, long detectedTime) {
+        this.provider = provider;
+        this.model = model;
+        this.metric = metric;
+        this.raised = raised;
+        this.observed = observed;
+        this.baseline = baseline;
+        this.deviation = deviation;
+        this.onsetTime = onsetTime;
+        this.detectedTime = detectedTime;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    /**
+     * 模型，未知时为null
+     */
+    public String getModel() {
+        return model;
+    }
+
+    public Metric getMetric() {
+        return metric;
+    }
+
+    /**
+     * true为告警，false为解除
+     */
+    public boolean isRaised() {
+        return raised;
+    }
+
+    public double getObserved() {
+        return observed;
+    }
+
+    /**
+     * 当前时段的基线均值
+     */
+    public double getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * 偏离基线的标准差倍数
+     */
+    public double getDeviation() {
+        return deviation;
+    }
+
+    /**
+     * 触发本次评估的第一个调用的时间（毫秒）
+     */
+    public long getOnsetTime() {
+        return onsetTime;
+    }
+
+    public long getDetectedTime() {
+        return detectedTime;
+    }
+
+    /**
+     * 检测延迟（毫秒）
+     */
+    public long getDetectionLatencyMillis() {
+        return detectedTime - onsetTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s/%s observed=%.3f baseline=%.3f deviation=%.1f",
+                raised ? "RAISED" : "CLEARED", metric, provider, model, observed, baseline, deviation);
+    }
+}
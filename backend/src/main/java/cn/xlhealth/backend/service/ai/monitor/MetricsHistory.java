@@ -0,0 +1,357 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.entity.MetricSeries;
+import cn.xlhealth.backend.mapper.MetricSeriesMapper;
+import cn.xlhealth.backend.service.ai.monitor.impl.ServiceMonitorImpl;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * AI服务指标历史
+ * 每分钟将上一分钟的时间窗口统计写入 ai_metric_series（每个提供商一行，另有 GLOBAL 汇总行），
+ * 每小时降采样为小时/天粒度并清理过期数据。每行带压缩的响应时间直方图，
+ * 降采样和跨实例汇总时合并直方图，分位数是精确合并而不是取平均。
+ */
+@Component
+public class MetricsHistory {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHistory.class);
+
+    private static final long MINUTE_MILLIS = 60_000L;
+
+    /**
+     * 降采样时重新计算的已结束区间数，覆盖应用重启期间错过的降采样
+     */
+    private static final int ROLLUP_LOOKBACK = 2;
+
+    /**
+     * 直方图编码的最大长度（与表字段长度一致），超出时不保存直方图
+     */
+    private static final int MAX_HISTOGRAM_BYTES = 8192;
+
+    /**
+     * 自动选择粒度时，查询范围不超过该时长使用分钟粒度
+     */
+    private static final Duration MINUTE_QUERY_SPAN = Duration.ofHours(6);
+
+    /**
+     * 自动选择粒度时，查询范围不超过该时长使用小时粒度，否则使用天粒度
+     */
+    private static final Duration HOUR_QUERY_SPAN = Duration.ofDays(14);
+
+    @Autowired
+    private ServiceMonitor serviceMonitor;
+
+    @Autowired
+    private MetricSeriesMapper metricSeriesMapper;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    private volatile String instanceId;
+
+    /**
+     * 写入上一分钟的统计
+     */
+    @Scheduled(cron = "5 * * * * *")
+    public void snapshot() {
+        if (!isEnabled()) {
+            return;
+        }
+        long currentMinute = Math.floorDiv(System.currentTimeMillis(), MINUTE_MILLIS) * MINUTE_MILLIS;
+        snapshotMinute(currentMinute - MINUTE_MILLIS);
+    }
+
+    /**
+     * 写入某一已结束分钟的统计，该分钟没有调用的提供商不写入
+     * @param minuteStart 分钟开始时间（毫秒）
+     * @return 写入行数
+     */
+    public int snapshotMinute(long minuteStart) {
+        Map<String, ServiceStats> sources = new LinkedHashMap<>();
+        if (serviceMonitor instanceof ServiceMonitorImpl) {
+            sources.putAll(((ServiceMonitorImpl) serviceMonitor).getAllProviderStats());
+        }
+        sources.put(MetricSeries.PROVIDER_GLOBAL, serviceMonitor.getStats(null));
+
+        LocalDateTime bucketStart = toDateTime(minuteStart);
+        int written = 0;
+        for (Map.Entry<String, ServiceStats> entry : sources.entrySet()) {
+            WindowedStats minute = entry.getValue().getMinute(minuteStart);
+            if (minute == null || minute.getTotalCalls() == 0) {
+                continue;
+            }
+            try {
+                metricSeriesMapper.upsert(fromWindow(entry.getKey(), bucketStart, minute));
+                written++;
+            } catch (Exception e) {
+                logger.warn("Failed to write metrics history for provider {} at {}: {}",
+                        entry.getKey(), bucketStart, e.getMessage());
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 降采样（分钟 -> 小时 -> 天）并清理过期数据
+     * 小时粒度只包含已结束的小时；当天的天粒度数据随每小时降采样更新。
+     */
+    @Scheduled(cron = "0 2 * * * *")
+    public void rollup() {
+        if (!isEnabled()) {
+            return;
+        }
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime today = currentHour.truncatedTo(ChronoUnit.DAYS);
+        try {
+            rollup(MetricSeries.RESOLUTION_MINUTE, MetricSeries.RESOLUTION_HOUR,
+                    currentHour.minusHours(ROLLUP_LOOKBACK), currentHour, ChronoUnit.HOURS);
+            rollup(MetricSeries.RESOLUTION_HOUR, MetricSeries.RESOLUTION_DAY,
+                    today.minusDays(ROLLUP_LOOKBACK), currentHour, ChronoUnit.DAYS);
+            purge(currentHour);
+        } catch (Exception e) {
+            logger.error("Error rolling up metrics history", e);
+        }
+    }
+
+    /**
+     * 将本实例的细粒度数据合并为粗粒度数据（覆盖写入，可重复执行）
+     * @return 写入行数
+     */
+    int rollup(String sourceResolution, String targetResolution, LocalDateTime from, LocalDateTime to,
+            ChronoUnit unit) {
+        QueryWrapper<MetricSeries> query = new QueryWrapper<>();
+        query.eq("resolution", sourceResolution)
+                .eq("instance_id", getInstanceId())
+                .ge("bucket_start", from)
+                .lt("bucket_start", to);
+
+        Map<String, Map<LocalDateTime, List<MetricSeries>>> groups = new LinkedHashMap<>();
+        for (MetricSeries row : metricSeriesMapper.selectList(query)) {
+            groups.computeIfAbsent(row.getProvider(), k -> new TreeMap<>())
+                    .computeIfAbsent(row.getBucketStart().truncatedTo(unit), k -> new ArrayList<>())
+                    .add(row);
+        }
+
+        int written = 0;
+        for (Map.Entry<String, Map<LocalDateTime, List<MetricSeries>>> provider : groups.entrySet()) {
+            for (Map.Entry<LocalDateTime, List<MetricSeries>> bucket : provider.getValue().entrySet()) {
+                MetricSeries merged = merge(bucket.getValue());
+                merged.setResolution(targetResolution);
+                merged.setBucketStart(bucket.getKey());
+                merged.setProvider(provider.getKey());
+                merged.setInstanceId(getInstanceId());
+                metricSeriesMapper.upsert(merged);
+                written++;
+            }
+        }
+        logger.debug("Rolled up {} {} buckets into {} since {}", written, sourceResolution, targetResolution, from);
+        return written;
+    }
+
+    /**
+     * 按各粒度的保留时间清理过期数据
+     */
+    void purge(LocalDateTime now) {
+        AIServiceProperties.Monitoring.History config = aiServiceProperties.getMonitoring().getHistory();
+        int deleted = metricSeriesMapper.deleteBefore(MetricSeries.RESOLUTION_MINUTE,
+                now.minusHours(config.getMinuteRetentionHours()));
+        deleted += metricSeriesMapper.deleteBefore(MetricSeries.RESOLUTION_HOUR,
+                now.minusDays(config.getHourRetentionDays()));
+        deleted += metricSeriesMapper.deleteBefore(MetricSeries.RESOLUTION_DAY,
+                now.minusDays(config.getDayRetentionDays()));
+        if (deleted > 0) {
+            logger.debug("Purged {} expired metrics history rows", deleted);
+        }
+    }
+
+    /**
+     * 查询指标历史，同一时间桶内各实例的数据合并为一行
+     * @param provider 服务提供商，为null时查询全部（GLOBAL）
+     * @param resolution 粒度（1m/1h/1d）
+     * @param from 开始时间（含）
+     * @param to 结束时间（不含）
+     */
+    public List<MetricSeries> query(String provider, String resolution, LocalDateTime from, LocalDateTime to) {
+        QueryWrapper<MetricSeries> query = new QueryWrapper<>();
+        query.eq("resolution", resolution)
+                .eq("provider", provider != null ? provider : MetricSeries.PROVIDER_GLOBAL)
+                .ge("bucket_start", from)
+                .lt("bucket_start", to)
+                .orderByAsc("bucket_start");
+
+        Map<LocalDateTime, List<MetricSeries>> buckets = new TreeMap<>();
+        for (MetricSeries row : metricSeriesMapper.selectList(query)) {
+            buckets.computeIfAbsent(row.getBucketStart(), k -> new ArrayList<>()).add(row);
+        }
+
+        List<MetricSeries> points = new ArrayList<>(buckets.size());
+        for (Map.Entry<LocalDateTime, List<MetricSeries>> bucket : buckets.entrySet()) {
+            MetricSeries point = bucket.getValue().size() == 1 ? bucket.getValue().get(0) : merge(bucket.getValue());
+            point.setId(null);
+            point.setResolution(resolution);
+            point.setBucketStart(bucket.getKey());
+            point.setProvider(bucket.getValue().get(0).getProvider());
+            point.setInstanceId(null);
+            points.add(point);
+        }
+        return points;
+    }
+
+    /**
+     * 按查询范围选择粒度
+     */
+    public static String resolutionFor(LocalDateTime from, LocalDateTime to) {
+        Duration span = Duration.between(from, to);
+        if (span.compareTo(MINUTE_QUERY_SPAN) <= 0) {
+            return MetricSeries.RESOLUTION_MINUTE;
+        }
+        return span.compareTo(HOUR_QUERY_SPAN) <= 0 ? MetricSeries.RESOLUTION_HOUR : MetricSeries.RESOLUTION_DAY;
+    }
+
+    /**
+     * 是否为支持的粒度
+     */
+    public static boolean isValidResolution(String resolution) {
+        return MetricSeries.RESOLUTION_MINUTE.equals(resolution)
+                || MetricSeries.RESOLUTION_HOUR.equals(resolution)
+                || MetricSeries.RESOLUTION_DAY.equals(resolution);
+    }
+
+    /**
+     * 合并多行数据：计数累加，分位数由合并后的直方图重新计算
+     */
+    static MetricSeries merge(List<MetricSeries> rows) {
+        MetricSeries merged = new MetricSeries();
+        long totalCalls = 0;
+        long failedCalls = 0;
+        long totalResponseTime = 0;
+        long promptTokens = 0;
+        long completionTokens = 0;
+        long qualityScoreTotal = 0;
+        long qualityAssessments = 0;
+        long maxResponseTime = 0;
+        Histogram latency = new Histogram(ServiceStats.SIGNIFICANT_DIGITS);
+
+        for (MetricSeries row : rows) {
+            totalCalls += valueOf(row.getTotalCalls());
+            failedCalls += valueOf(row.getFailedCalls());
+            totalResponseTime += valueOf(row.getTotalResponseTime());
+            promptTokens += valueOf(row.getPromptTokens());
+            completionTokens += valueOf(row.getCompletionTokens());
+            qualityScoreTotal += valueOf(row.getQualityScoreTotal());
+            qualityAssessments += valueOf(row.getQualityAssessments());
+            maxResponseTime = Math.max(maxResponseTime, valueOf(row.getMaxResponseTime()));
+            if (row.getLatencyHistogram() != null) {
+                try {
+                    latency.add(Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(row.getLatencyHistogram()), 0));
+                } catch (Exception e) {
+                    logger.warn("Skipping undecodable latency histogram of {} at {}", row.getProvider(), row.getBucketStart());
+                }
+            }
+        }
+
+        merged.setTotalCalls(totalCalls);
+        merged.setFailedCalls(failedCalls);
+        merged.setTotalResponseTime(totalResponseTime);
+        merged.setPromptTokens(promptTokens);
+        merged.setCompletionTokens(completionTokens);
+        merged.setQualityScoreTotal(qualityScoreTotal);
+        merged.setQualityAssessments(qualityAssessments);
+        applyLatency(merged, latency);
+        merged.setMaxResponseTime(Math.max(maxResponseTime, valueOf(merged.getMaxResponseTime())));
+        return merged;
+    }
+
+    private MetricSeries fromWindow(String provider, LocalDateTime bucketStart, WindowedStats window) {
+        MetricSeries row = new MetricSeries();
+        row.setResolution(MetricSeries.RESOLUTION_MINUTE);
+        row.setBucketStart(bucketStart);
+        row.setProvider(provider);
+        row.setInstanceId(getInstanceId());
+        row.setTotalCalls(window.getTotalCalls());
+        row.setFailedCalls(window.getFailedCalls());
+        row.setTotalResponseTime(window.getTotalResponseTime());
+        row.setPromptTokens(window.getPromptTokens());
+        row.setCompletionTokens(window.getCompletionTokens());
+        row.setQualityScoreTotal(window.getQualityScoreTotal());
+        row.setQualityAssessments(window.getQualityAssessments());
+        applyLatency(row, window.getLatencyHistogram());
+        return row;
+    }
+
+    /**
+     * 由直方图填充分位数并保存其压缩编码
+     */
+    private static void applyLatency(MetricSeries row, Histogram latency) {
+        if (latency.getTotalCount() == 0) {
+            row.setP50ResponseTime(0L);
+            row.setP90ResponseTime(0L);
+            row.setP99ResponseTime(0L);
+            row.setMaxResponseTime(0L);
+            return;
+        }
+        row.setP50ResponseTime(latency.getValueAtPercentile(50.0));
+        row.setP90ResponseTime(latency.getValueAtPercentile(90.0));
+        row.setP99ResponseTime(latency.getValueAtPercentile(99.0));
+        row.setMaxResponseTime(latency.getMaxValue());
+
+        ByteBuffer buffer = ByteBuffer.allocate(latency.getNeededByteBufferCapacity());
+        int length = latency.encodeIntoCompressedByteBuffer(buffer);
+        if (length <= MAX_HISTOGRAM_BYTES) {
+            row.setLatencyHistogram(Arrays.copyOf(buffer.array(), length));
+        } else {
+            logger.debug("Latency histogram of {} bytes exceeds column size, storing percentiles only", length);
+        }
+    }
+
+    private String getInstanceId() {
+        String id = instanceId;
+        if (id == null) {
+            id = aiServiceProperties.getMonitoring().getHistory().getInstanceId();
+            if (id == null || id.isBlank()) {
+                try {
+                    id = InetAddress.getLocalHost().getHostName();
+                } catch (Exception e) {
+                    id = "default";
+                }
+            }
+            id = id.length() > 64 ? id.substring(0, 64) : id;
+            instanceId = id;
+        }
+        return id;
+    }
+
+    private boolean isEnabled() {
+        AIServiceProperties.Monitoring monitoring = aiServiceProperties.getMonitoring();
+        return monitoring.isEnabled() && monitoring.getHistory().isEnabled();
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static long valueOf(Long value) {
+        return value != null ? value : 0L;
+    }
+}
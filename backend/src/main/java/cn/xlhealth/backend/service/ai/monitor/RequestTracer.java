@@ -0,0 +1,98 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 请求处理阶段追踪
+ * 每个阶段作为一个Observation：配置了链路追踪时生成span，同时记录 ai.stage 计时器（按 stage 标签区分）。
+ * 当前线程开启了请求范围（{@link #begin()}）时，阶段耗时还会汇总到 {@link StageTimings}，用于生成 Server-Timing 响应头。
+ */
+@Component
+public class RequestTracer {
+
+    public static final String STAGE = "ai.stage";
+
+    private static final ThreadLocal<StageTimings> CURRENT = new ThreadLocal<>();
+
+    private final ObservationRegistry observationRegistry;
+
+    @Autowired
+    public RequestTracer(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    /**
+     * 开启当前线程的请求范围
+     */
+    public static StageTimings begin() {
+        StageTimings timings = new StageTimings(System.nanoTime());
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * 当前线程的请求范围，未开启时为null
+     */
+    public static StageTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 结束当前线程的请求范围
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 开始一个阶段，需在 try-with-resources 中使用
+     * @param stage 阶段名称，同时作为指标标签和 Server-Timing 名称
+     */
+    public Span start(String stage) {
+        Observation observation = Observation.createNotStarted(STAGE, observationRegistry)
+                .contextualName(STAGE + "." + stage)
+                .lowCardinalityKeyValue("stage", stage)
+                .start();
+        return new Span(stage, observation, CURRENT.get());
+    }
+
+    /**
+     * 一个进行中的阶段
+     */
+    public static final class Span implements AutoCloseable {
+
+        private final String stage;
+        private final Observation observation;
+        private final Observation.Scope scope;
+        private final StageTimings timings;
+        private final long startNanos;
+
+        private Span(String stage, Observation observation, StageTimings timings) {
+            this.stage = stage;
+            this.observation = observation;
+            this.scope = observation.openScope();
+            this.timings = timings;
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * 标记阶段失败
+         */
+        public void error(Throwable error) {
+            observation.error(error);
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - startNanos;
+            scope.close();
+            observation.stop();
+            if (timings != null) {
+                timings.add(stage, nanos);
+            }
+        }
+    }
+}
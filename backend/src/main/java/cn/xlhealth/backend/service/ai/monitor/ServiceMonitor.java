@@ -25,6 +25,13 @@ public interface ServiceMonitor {
      */
     void recordError(AIRequest request, Throwable error, long responseTime);
     
+    /**
+     * 记录质量评分（异步评分完成后调用）
+     * @param provider AI服务提供商
+     * @param qualityScore 质量评分
+     */
+    void recordQuality(String provider, int qualityScore);
+    
     /**
      * 获取成功率
      * @param provider AI服务提供商
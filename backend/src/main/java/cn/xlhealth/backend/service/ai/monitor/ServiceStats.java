@@ -1,205 +1,391 @@
 package cn.xlhealth.backend.service.ai.monitor;
 
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
 /**
  * AI服务统计信息
+ * 计数使用分段累加器，响应时间记录到HDR直方图，请求线程之间无锁竞争；
+ * 读取时汇总，各项数值之间不保证是同一时刻的快照。
+ * 除累计值外，另按分钟（最近1小时）和小时（保留时长内）分桶，用于时间窗口统计。
  */
 public class ServiceStats {
-    
+
+    /**
+     * 报告的响应时间分位数
+     */
+    static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    /**
+     * 直方图精度（有效数字位数），约1%的相对误差
+     */
+    static final int SIGNIFICANT_DIGITS = 2;
+
+    /**
+     * 默认统计数据保留时间（小时）
+     */
+    public static final int DEFAULT_RETENTION_HOURS = 24;
+
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
     /**
      * 总调用次数
      */
-    private long totalCalls;
-    
+    private final LongAdder totalCalls = new LongAdder();
+
     /**
      * 成功调用次数
      */
-    private long successfulCalls;
-    
+    private final LongAdder successfulCalls = new LongAdder();
+
     /**
      * 失败调用次数
      */
-    private long failedCalls;
-    
+    private final LongAdder failedCalls = new LongAdder();
+
     /**
      * 总响应时间（毫秒）
      */
-    private long totalResponseTime;
-    
+    private final LongAdder totalResponseTime = new LongAdder();
+
     /**
      * 最大响应时间（毫秒）
      */
-    private long maxResponseTime;
-    
+    private final LongAccumulator maxResponseTime = new LongAccumulator(Math::max, 0);
+
     /**
      * 最小响应时间（毫秒）
      */
-    private long minResponseTime = Long.MAX_VALUE;
-    
+    private final LongAccumulator minResponseTime = new LongAccumulator(Math::min, Long.MAX_VALUE);
+
+    /**
+     * 输入token总数
+     */
+    private final LongAdder promptTokens = new LongAdder();
+
+    /**
+     * 输出token总数
+     */
+    private final LongAdder completionTokens = new LongAdder();
+
+    /**
+     * 质量评分总和
+     */
+    private final LongAdder qualityScoreTotal = new LongAdder();
+
     /**
-     * 平均质量评分
+     * 质量评分次数（异步采样评分，少于成功调用次数）
      */
-    private double averageQualityScore;
-    
+    private final LongAdder qualityAssessments = new LongAdder();
+
+    /**
+     * 响应时间记录器，写入无锁；读取时切换到新的区间直方图
+     */
+    private final Recorder latencyRecorder = new Recorder(SIGNIFICANT_DIGITS);
+
+    /**
+     * 累计响应时间直方图，仅在读取时合并（由读锁保护）
+     */
+    private final Histogram latencyHistogram = new Histogram(SIGNIFICANT_DIGITS);
+
+    /**
+     * 区间直方图，读取时复用
+     */
+    private Histogram intervalHistogram;
+
+    /**
+     * 最近1小时的分钟级窗口
+     */
+    private final SlidingWindow minuteWindow;
+
+    /**
+     * 保留时长内的小时级窗口
+     */
+    private final SlidingWindow hourWindow;
+
     /**
      * 最后更新时间
      */
-    private long lastUpdated;
-    
+    private volatile long lastUpdated;
+
     /**
      * 服务提供商
      */
     private String provider;
-    
+
     public ServiceStats(String provider) {
+        this(provider, DEFAULT_RETENTION_HOURS);
+    }
+
+    /**
+     * @param provider 服务提供商
+     * @param retentionHours 时间窗口统计的保留时间（小时）
+     */
+    public ServiceStats(String provider, int retentionHours) {
+        this(provider, retentionHours, System::currentTimeMillis);
+    }
+
+    ServiceStats(String provider, int retentionHours, LongSupplier clock) {
         this.provider = provider;
+        this.minuteWindow = new SlidingWindow(MINUTE_MILLIS, 60, clock);
+        this.hourWindow = new SlidingWindow(HOUR_MILLIS, Math.max(1, retentionHours), clock);
         this.lastUpdated = System.currentTimeMillis();
     }
-    
+
     /**
      * 记录成功调用
      * @param responseTime 响应时间（毫秒）
      * @param qualityScore 质量评分
      */
     public void recordSuccess(long responseTime, int qualityScore) {
-        this.totalCalls++;
-        this.successfulCalls++;
-        this.totalResponseTime += responseTime;
-        this.maxResponseTime = Math.max(this.maxResponseTime, responseTime);
-        this.minResponseTime = Math.min(this.minResponseTime, responseTime);
-        this.averageQualityScore = ((this.averageQualityScore * (this.successfulCalls - 1)) + qualityScore) / this.successfulCalls;
+        recordSuccess(responseTime);
+        recordQuality(qualityScore);
+    }
+
+    /**
+     * 记录成功调用
+     * @param responseTime 响应时间（毫秒）
+     */
+    public void recordSuccess(long responseTime) {
+        successfulCalls.increment();
+        recordCall(responseTime, true);
+    }
+
+    /**
+     * 记录质量评分
+     * @param qualityScore 质量评分
+     */
+    public void recordQuality(int qualityScore) {
+        qualityScoreTotal.add(qualityScore);
+        qualityAssessments.increment();
+        minuteWindow.recordQuality(qualityScore);
+        hourWindow.recordQuality(qualityScore);
         this.lastUpdated = System.currentTimeMillis();
     }
-    
+
+    /**
+     * 记录token用量
+     */
+    public void recordTokens(long promptTokens, long completionTokens) {
+        if (promptTokens <= 0 && completionTokens <= 0) {
+            return;
+        }
+        this.promptTokens.add(Math.max(0, promptTokens));
+        this.completionTokens.add(Math.max(0, completionTokens));
+        minuteWindow.recordTokens(Math.max(0, promptTokens), Math.max(0, completionTokens));
+        hourWindow.recordTokens(Math.max(0, promptTokens), Math.max(0, completionTokens));
+    }
+
     /**
      * 记录失败调用
      * @param responseTime 响应时间（毫秒）
      */
     public void recordFailure(long responseTime) {
-        this.totalCalls++;
-        this.failedCalls++;
-        this.totalResponseTime += responseTime;
-        this.maxResponseTime = Math.max(this.maxResponseTime, responseTime);
-        this.minResponseTime = Math.min(this.minResponseTime, responseTime);
+        failedCalls.increment();
+        recordCall(responseTime, false);
+    }
+
+    private void recordCall(long responseTime, boolean success) {
+        long value = Math.max(0, responseTime);
+        totalCalls.increment();
+        totalResponseTime.add(value);
+        maxResponseTime.accumulate(value);
+        minResponseTime.accumulate(value);
+        latencyRecorder.recordValue(value);
+        minuteWindow.recordCall(value, success);
+        hourWindow.recordCall(value, success);
         this.lastUpdated = System.currentTimeMillis();
     }
-    
+
     /**
      * 获取成功率
      * @return 成功率（0-100）
      */
     public double getSuccessRate() {
-        if (totalCalls == 0) {
+        long total = totalCalls.sum();
+        if (total == 0) {
             return 100.0;
         }
-        return (double) successfulCalls / totalCalls * 100.0;
+        return (double) successfulCalls.sum() / total * 100.0;
     }
-    
+
     /**
      * 获取错误率
      * @return 错误率（0-100）
      */
     public double getErrorRate() {
-        if (totalCalls == 0) {
+        long total = totalCalls.sum();
+        if (total == 0) {
             return 0.0;
         }
-        return (double) failedCalls / totalCalls * 100.0;
+        return (double) failedCalls.sum() / total * 100.0;
     }
-    
+
     /**
      * 获取平均响应时间
      * @return 平均响应时间（毫秒）
      */
     public double getAverageResponseTime() {
-        if (totalCalls == 0) {
+        long total = totalCalls.sum();
+        if (total == 0) {
             return 0.0;
         }
-        return (double) totalResponseTime / totalCalls;
+        return (double) totalResponseTime.sum() / total;
+    }
+
+    /**
+     * 获取响应时间分位数
+     * @param percentile 百分位（0-100）
+     * @return 响应时间（毫秒），无调用时为0
+     */
+    public long getResponseTimePercentile(double percentile) {
+        synchronized (latencyHistogram) {
+            drainRecorder();
+            return latencyHistogram.getTotalCount() == 0 ? 0 : latencyHistogram.getValueAtPercentile(percentile);
+        }
+    }
+
+    /**
+     * 获取常用响应时间分位数（p50/p90/p99/p999，毫秒）
+     */
+    public Map<String, Long> getResponseTimePercentiles() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        synchronized (latencyHistogram) {
+            drainRecorder();
+            boolean empty = latencyHistogram.getTotalCount() == 0;
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                result.put(PERCENTILE_NAMES[i], empty ? 0 : latencyHistogram.getValueAtPercentile(PERCENTILES[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取时间窗口内的统计
+     * 1小时以内按分钟汇总（含当前分钟）；超过1小时按整小时汇总（含当前小时），最长为保留时间
+     * @param windowMinutes 时间窗口（分钟）
+     */
+    public WindowedStats getWindow(int windowMinutes) {
+        int minutes = Math.max(1, windowMinutes);
+        if (minutes <= 60) {
+            return minuteWindow.snapshot(minutes);
+        }
+        return hourWindow.snapshot((int) ((minutes * MINUTE_MILLIS + HOUR_MILLIS - 1) / HOUR_MILLIS));
+    }
+
+    /**
+     * 获取某一已结束分钟的统计
+     * @param minuteStart 分钟开始时间（毫秒）
+     * @return 该分钟尚未结束或已超出最近1小时时为null
+     */
+    public WindowedStats getMinute(long minuteStart) {
+        return minuteWindow.interval(Math.floorDiv(minuteStart, MINUTE_MILLIS));
     }
-    
+
+    /**
+     * 时间窗口统计的保留时间（小时）
+     */
+    public int getRetentionHours() {
+        return (int) (hourWindow.getSpanMillis() / HOUR_MILLIS);
+    }
+
+    /**
+     * 将记录器中的新数据合并到累计直方图，调用方需持有直方图锁
+     */
+    private void drainRecorder() {
+        intervalHistogram = latencyRecorder.getIntervalHistogram(intervalHistogram);
+        latencyHistogram.add(intervalHistogram);
+    }
+
     /**
      * 重置统计信息
      */
     public void reset() {
-        this.totalCalls = 0;
-        this.successfulCalls = 0;
-        this.failedCalls = 0;
-        this.totalResponseTime = 0;
-        this.maxResponseTime = 0;
-        this.minResponseTime = Long.MAX_VALUE;
-        this.averageQualityScore = 0.0;
+        totalCalls.reset();
+        successfulCalls.reset();
+        failedCalls.reset();
+        totalResponseTime.reset();
+        promptTokens.reset();
+        completionTokens.reset();
+        maxResponseTime.reset();
+        minResponseTime.reset();
+        qualityScoreTotal.reset();
+        qualityAssessments.reset();
+        synchronized (latencyHistogram) {
+            latencyRecorder.reset();
+            latencyHistogram.reset();
+        }
+        minuteWindow.reset();
+        hourWindow.reset();
         this.lastUpdated = System.currentTimeMillis();
     }
-    
-    // Getters and Setters
+
+    // Getters
     public long getTotalCalls() {
-        return totalCalls;
+        return totalCalls.sum();
     }
-    
-    public void setTotalCalls(long totalCalls) {
-        this.totalCalls = totalCalls;
-    }
-    
+
     public long getSuccessfulCalls() {
-        return successfulCalls;
+        return successfulCalls.sum();
     }
-    
-    public void setSuccessfulCalls(long successfulCalls) {
-        this.successfulCalls = successfulCalls;
-    }
-    
+
     public long getFailedCalls() {
-        return failedCalls;
+        return failedCalls.sum();
     }
-    
-    public void setFailedCalls(long failedCalls) {
-        this.failedCalls = failedCalls;
-    }
-    
+
     public long getTotalResponseTime() {
-        return totalResponseTime;
+        return totalResponseTime.sum();
     }
-    
-    public void setTotalResponseTime(long totalResponseTime) {
-        this.totalResponseTime = totalResponseTime;
+
+    public long getPromptTokens() {
+        return promptTokens.sum();
     }
-    
-    public long getMaxResponseTime() {
-        return maxResponseTime;
+
+    public long getCompletionTokens() {
+        return completionTokens.sum();
     }
-    
-    public void setMaxResponseTime(long maxResponseTime) {
-        this.maxResponseTime = maxResponseTime;
+
+    public long getMaxResponseTime() {
+        return maxResponseTime.get();
     }
-    
+
     public long getMinResponseTime() {
-        return minResponseTime;
+        return minResponseTime.get();
     }
-    
-    public void setMinResponseTime(long minResponseTime) {
-        this.minResponseTime = minResponseTime;
-    }
-    
+
     public double getAverageQualityScore() {
-        return averageQualityScore;
+        long count = qualityAssessments.sum();
+        if (count == 0) {
+            return 0.0;
+        }
+        return (double) qualityScoreTotal.sum() / count;
     }
-    
-    public void setAverageQualityScore(double averageQualityScore) {
-        this.averageQualityScore = averageQualityScore;
+
+    public long getQualityAssessments() {
+        return qualityAssessments.sum();
     }
-    
+
     public long getLastUpdated() {
         return lastUpdated;
     }
-    
+
     public void setLastUpdated(long lastUpdated) {
         this.lastUpdated = lastUpdated;
     }
-    
+
     public String getProvider() {
         return provider;
     }
-    
+
     public void setProvider(String provider) {
         this.provider = provider;
     }
-}
\ No newline at end of file
+}
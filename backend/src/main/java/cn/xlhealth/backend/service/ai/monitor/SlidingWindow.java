@@ -0,0 +1,163 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 按固定时间区间分桶的环形统计窗口
+ * 每个桶记录一个区间内的调用数、失败数、响应时间直方图、token用量和质量评分；
+ * 桶在进入新区间时复用，内存占用只与桶数有关，与流量无关。
+ */
+final class SlidingWindow {
+
+    private final long bucketMillis;
+    private final Bucket[] buckets;
+    private final LongSupplier clock;
+
+    SlidingWindow(long bucketMillis, int bucketCount, LongSupplier clock) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = new Bucket[Math.max(1, bucketCount)];
+        this.clock = clock;
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    void recordCall(long responseTime, boolean success) {
+        Bucket bucket = current();
+        bucket.calls.increment();
+        if (!success) {
+            bucket.failures.increment();
+        }
+        bucket.responseTimeTotal.add(responseTime);
+        bucket.latency.recordValue(responseTime);
+    }
+
+    void recordQuality(int qualityScore) {
+        Bucket bucket = current();
+        bucket.qualityTotal.add(qualityScore);
+        bucket.qualityCount.increment();
+    }
+
+    void recordTokens(long promptTokens, long completionTokens) {
+        Bucket bucket = current();
+        bucket.promptTokens.add(promptTokens);
+        bucket.completionTokens.add(completionTokens);
+    }
+
+    /**
+     * 汇总最近若干个区间（含当前区间）
+     * @param intervals 区间数，超过桶数时按桶数计算
+     */
+    WindowedStats snapshot(int intervals) {
+        int count = Math.max(1, Math.min(intervals, buckets.length));
+        long now = clock.getAsLong();
+        long currentInterval = now / bucketMillis;
+        long firstInterval = currentInterval - count + 1;
+        return collect(firstInterval, currentInterval, firstInterval * bucketMillis, now);
+    }
+
+    /**
+     * 单个已结束区间的统计
+     * @param interval 区间序号（时间戳 / 区间长度）
+     * @return 区间尚未结束或其桶已被复用时为null
+     */
+    WindowedStats interval(long interval) {
+        long currentInterval = clock.getAsLong() / bucketMillis;
+        if (interval >= currentInterval || interval <= currentInterval - buckets.length) {
+            return null;
+        }
+        return collect(interval, interval, interval * bucketMillis, (interval + 1) * bucketMillis);
+    }
+
+    private WindowedStats collect(long firstInterval, long lastInterval, long windowStart, long windowEnd) {
+        long calls = 0;
+        long failures = 0;
+        long responseTimeTotal = 0;
+        long promptTokens = 0;
+        long completionTokens = 0;
+        long qualityTotal = 0;
+        long qualityCount = 0;
+        Histogram latency = new Histogram(ServiceStats.SIGNIFICANT_DIGITS);
+
+        for (Bucket bucket : buckets) {
+            long interval = bucket.interval;
+            if (interval < firstInterval || interval > lastInterval) {
+                continue;
+            }
+            calls += bucket.calls.sum();
+            failures += bucket.failures.sum();
+            responseTimeTotal += bucket.responseTimeTotal.sum();
+            promptTokens += bucket.promptTokens.sum();
+            completionTokens += bucket.completionTokens.sum();
+            qualityTotal += bucket.qualityTotal.sum();
+            qualityCount += bucket.qualityCount.sum();
+            latency.add(bucket.latency);
+        }
+
+        return new WindowedStats(windowStart, windowEnd, calls, failures, responseTimeTotal,
+                promptTokens, completionTokens, qualityTotal, qualityCount, latency);
+    }
+
+    /**
+     * 窗口覆盖的最长时间（毫秒）
+     */
+    long getSpanMillis() {
+        return bucketMillis * buckets.length;
+    }
+
+    long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    void reset() {
+        for (Bucket bucket : buckets) {
+            synchronized (bucket) {
+                bucket.clear(Long.MIN_VALUE);
+            }
+        }
+    }
+
+    /**
+     * 当前区间的桶，桶仍属于旧区间时先清空
+     */
+    private Bucket current() {
+        long interval = clock.getAsLong() / bucketMillis;
+        Bucket bucket = buckets[(int) Math.floorMod(interval, (long) buckets.length)];
+        if (bucket.interval != interval) {
+            synchronized (bucket) {
+                if (bucket.interval != interval) {
+                    bucket.clear(interval);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    private static final class Bucket {
+        private volatile long interval = Long.MIN_VALUE;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder responseTimeTotal = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder qualityTotal = new LongAdder();
+        private final LongAdder qualityCount = new LongAdder();
+        private final ConcurrentHistogram latency = new ConcurrentHistogram(ServiceStats.SIGNIFICANT_DIGITS);
+
+        private void clear(long newInterval) {
+            calls.reset();
+            failures.reset();
+            responseTimeTotal.reset();
+            promptTokens.reset();
+            completionTokens.reset();
+            qualityTotal.reset();
+            qualityCount.reset();
+            latency.reset();
+            interval = newInterval;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 单个请求内各处理阶段的耗时
+ * 只在处理请求的线程内读写；同名阶段多次执行时累加。
+ */
+public final class StageTimings {
+
+    private final long startNanos;
+    private final Map<String, Long> stages = new LinkedHashMap<>();
+
+    StageTimings(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    void add(String stage, long nanos) {
+        stages.merge(stage, nanos, Long::sum);
+    }
+
+    /**
+     * 各阶段耗时（毫秒），按首次执行顺序
+     */
+    public Map<String, Double> getStages() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        stages.forEach((stage, nanos) -> result.put(stage, toMillis(nanos)));
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return stages.isEmpty();
+    }
+
+    /**
+     * 从请求开始到现在的耗时（毫秒）
+     */
+    public double getElapsedMillis() {
+        return toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 生成 Server-Timing 响应头，例如 {@code context;dur=3.2, llm;dur=812.5, total;dur=830.1}
+     */
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        stages.forEach((stage, nanos) -> appendMetric(header, stage, toMillis(nanos)));
+        appendMetric(header, "total", getElapsedMillis());
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, double millis) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.1f", millis));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
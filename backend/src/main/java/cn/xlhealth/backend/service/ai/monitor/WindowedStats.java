@@ -0,0 +1,145 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 时间窗口内的统计快照
+ */
+public class WindowedStats {
+
+    private final long windowStart;
+    private final long windowEnd;
+    private final long totalCalls;
+    private final long failedCalls;
+    private final long totalResponseTime;
+    private final long promptTokens;
+    private final long completionTokens;
+    private final long qualityScoreTotal;
+    private final long qualityAssessments;
+    private final Histogram latency;
+
+    WindowedStats(long windowStart, long windowEnd, long totalCalls, long failedCalls, long totalResponseTime,
+            long promptTokens, long completionTokens, long qualityScoreTotal, long qualityAssessments,
+            Histogram latency) {
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.totalCalls = totalCalls;
+        this.failedCalls = failedCalls;
+        this.totalResponseTime = totalResponseTime;
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.qualityScoreTotal = qualityScoreTotal;
+        this.qualityAssessments = qualityAssessments;
+        this.latency = latency;
+    }
+
+    /**
+     * 获取成功率
+     * @return 成功率（0-100），窗口内无调用时为100
+     */
+    public double getSuccessRate() {
+        if (totalCalls == 0) {
+            return 100.0;
+        }
+        return (double) getSuccessfulCalls() / totalCalls * 100.0;
+    }
+
+    /**
+     * 获取错误率
+     * @return 错误率（0-100）
+     */
+    public double getErrorRate() {
+        if (totalCalls == 0) {
+            return 0.0;
+        }
+        return (double) failedCalls / totalCalls * 100.0;
+    }
+
+    /**
+     * 获取平均响应时间
+     * @return 平均响应时间（毫秒）
+     */
+    public double getAverageResponseTime() {
+        if (totalCalls == 0) {
+            return 0.0;
+        }
+        return (double) totalResponseTime / totalCalls;
+    }
+
+    public double getAverageQualityScore() {
+        if (qualityAssessments == 0) {
+            return 0.0;
+        }
+        return (double) qualityScoreTotal / qualityAssessments;
+    }
+
+    /**
+     * 获取响应时间分位数
+     * @param percentile 百分位（0-100）
+     * @return 响应时间（毫秒），无调用时为0
+     */
+    public long getResponseTimePercentile(double percentile) {
+        return latency.getTotalCount() == 0 ? 0 : latency.getValueAtPercentile(percentile);
+    }
+
+    /**
+     * 获取常用响应时间分位数（p50/p90/p99/p999，毫秒）
+     */
+    public Map<String, Long> getResponseTimePercentiles() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < ServiceStats.PERCENTILES.length; i++) {
+            result.put(ServiceStats.PERCENTILE_NAMES[i], getResponseTimePercentile(ServiceStats.PERCENTILES[i]));
+        }
+        return result;
+    }
+
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    public long getWindowEnd() {
+        return windowEnd;
+    }
+
+    public long getTotalCalls() {
+        return totalCalls;
+    }
+
+    public long getSuccessfulCalls() {
+        return totalCalls - failedCalls;
+    }
+
+    public long getFailedCalls() {
+        return failedCalls;
+    }
+
+    public long getTotalResponseTime() {
+        return totalResponseTime;
+    }
+
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getCompletionTokens() {
+        return completionTokens;
+    }
+
+    public long getQualityScoreTotal() {
+        return qualityScoreTotal;
+    }
+
+    public long getQualityAssessments() {
+        return qualityAssessments;
+    }
+
+    /**
+     * 窗口内的响应时间直方图（调用方不得修改）
+     */
+    Histogram getLatencyHistogram() {
+        return latency;
+    }
+}
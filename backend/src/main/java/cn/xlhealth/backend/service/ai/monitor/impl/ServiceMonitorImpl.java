@@ -1,33 +1,56 @@
 package cn.xlhealth.backend.service.ai.monitor.impl;
 
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
 import cn.xlhealth.backend.service.ai.dto.AIRequest;
 import cn.xlhealth.backend.service.ai.dto.AIResponse;
+import cn.xlhealth.backend.service.ai.monitor.AIMetrics;
+import cn.xlhealth.backend.service.ai.monitor.AnomalyDetector;
 import cn.xlhealth.backend.service.ai.monitor.ServiceMonitor;
 import cn.xlhealth.backend.service.ai.monitor.ServiceStats;
+import cn.xlhealth.backend.service.ai.monitor.WindowedStats;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 服务监控器实现类
+ * 成功率、响应时间和错误率按时间窗口统计，窗口最长为统计数据保留时间；
+ * 时间窗口不大于0时返回累计值。调用、token用量和质量评分同时发布为Micrometer指标，
+ * 调用同时送入异常检测；健康判断使用配置的阈值，存在未解除的异常告警时也视为不健康。
  */
 @Service
 public class ServiceMonitorImpl implements ServiceMonitor {
     
     private static final Logger logger = LoggerFactory.getLogger(ServiceMonitorImpl.class);
     
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+    
+    @Autowired
+    private AIMetrics aiMetrics;
+    
+    @Autowired
+    private AnomalyDetector anomalyDetector;
+    
     // 存储各个服务提供商的统计信息
     private final ConcurrentHashMap<String, ServiceStats> providerStats = new ConcurrentHashMap<>();
     
     // 全局统计信息
-    private final ServiceStats globalStats = new ServiceStats("GLOBAL");
+    private ServiceStats globalStats;
+    
+    // 健康检查使用的时间窗口（分钟）
+    private static final int HEALTH_WINDOW_MINUTES = 60;
     
-    // 健康检查阈值
-    private static final double MIN_SUCCESS_RATE = 0.8; // 最小成功率80%
-    private static final long MAX_RESPONSE_TIME = 5000; // 最大响应时间5秒
-    private static final double MAX_ERROR_RATE = 0.2; // 最大错误率20%
+    @PostConstruct
+    public void init() {
+        globalStats = newStats("GLOBAL");
+        logger.info("Service monitor initialized, stats retention: {}h", getRetentionHours());
+    }
     
     @Override
     public void recordCall(AIRequest request, AIResponse response, long responseTime) {
@@ -43,15 +66,26 @@ public class ServiceMonitorImpl implements ServiceMonitor {
         
         try {
             // 获取或创建提供商统计信息
-            ServiceStats stats = providerStats.computeIfAbsent(provider, ServiceStats::new);
+            ServiceStats stats = providerStats.computeIfAbsent(provider, this::newStats);
+            
+            String model = metadataString(response, "model");
+            long promptTokens = metadataLong(response, "prompt_tokens");
+            long completionTokens = metadataLong(response, "completion_tokens");
+            aiMetrics.recordCall(provider, model,
+                    response.isSuccess() ? AIMetrics.OUTCOME_SUCCESS : AIMetrics.OUTCOME_FAILURE, responseTime);
+            aiMetrics.recordTokens(provider, model, promptTokens, completionTokens);
+            stats.recordTokens(promptTokens, completionTokens);
+            globalStats.recordTokens(promptTokens, completionTokens);
+            anomalyDetector.record(provider, model, response.isSuccess(), responseTime);
             
             // 记录调用
             if (response.isSuccess()) {
-                stats.recordSuccess(responseTime, response.getQualityScore());
-                globalStats.recordSuccess(responseTime, response.getQualityScore());
+                // 质量评分异步完成后单独记录
+                stats.recordSuccess(responseTime);
+                globalStats.recordSuccess(responseTime);
                 
-                logger.debug("Recorded successful call for provider: {}, response time: {}ms, quality: {}", 
-                        provider, responseTime, response.getQualityScore());
+                logger.debug("Recorded successful call for provider: {}, response time: {}ms", 
+                        provider, responseTime);
             } else {
                 stats.recordFailure(responseTime);
                 globalStats.recordFailure(responseTime);
@@ -72,11 +106,13 @@ public class ServiceMonitorImpl implements ServiceMonitor {
         
         try {
             // 获取或创建提供商统计信息
-            ServiceStats stats = providerStats.computeIfAbsent(provider, ServiceStats::new);
+            ServiceStats stats = providerStats.computeIfAbsent(provider, this::newStats);
             
             // 记录错误
             stats.recordFailure(responseTime);
             globalStats.recordFailure(responseTime);
+            aiMetrics.recordCall(provider, null, AIMetrics.OUTCOME_ERROR, responseTime);
+            anomalyDetector.record(provider, null, false, responseTime);
             
             logger.warn("Recorded error for provider: {}, error: {}, response time: {}ms", 
                     provider, errorMessage, responseTime);
@@ -86,6 +122,25 @@ public class ServiceMonitorImpl implements ServiceMonitor {
         }
     }
     
+    @Override
+    public void recordQuality(String provider, int qualityScore) {
+        if (provider == null) {
+            provider = "UNKNOWN";
+        }
+        
+        try {
+            ServiceStats stats = providerStats.computeIfAbsent(provider, this::newStats);
+            stats.recordQuality(qualityScore);
+            globalStats.recordQuality(qualityScore);
+            aiMetrics.recordQuality(provider, qualityScore);
+            
+            logger.debug("Recorded quality score for provider: {}, quality: {}", provider, qualityScore);
+            
+        } catch (Exception e) {
+            logger.error("Error recording quality for provider: " + provider, e);
+        }
+    }
+    
     public void recordError(String provider, String errorMessage, long responseTime) {
         if (provider == null) {
             provider = "UNKNOWN";
@@ -93,11 +148,13 @@ public class ServiceMonitorImpl implements ServiceMonitor {
         
         try {
             // 获取或创建提供商统计信息
-            ServiceStats stats = providerStats.computeIfAbsent(provider, ServiceStats::new);
+            ServiceStats stats = providerStats.computeIfAbsent(provider, this::newStats);
             
             // 记录错误
             stats.recordFailure(responseTime);
             globalStats.recordFailure(responseTime);
+            aiMetrics.recordCall(provider, null, AIMetrics.OUTCOME_ERROR, responseTime);
+            anomalyDetector.record(provider, null, false, responseTime);
             
             logger.warn("Recorded error for provider: {}, error: {}, response time: {}ms", 
                     provider, errorMessage, responseTime);
@@ -110,7 +167,7 @@ public class ServiceMonitorImpl implements ServiceMonitor {
     @Override
     public double getSuccessRate(String provider, int timeWindowMinutes) {
         if (provider == null) {
-            return globalStats.getSuccessRate();
+            return timeWindowMinutes > 0 ? globalStats.getWindow(timeWindowMinutes).getSuccessRate() : globalStats.getSuccessRate();
         }
         
         ServiceStats stats = providerStats.get(provider);
@@ -119,13 +176,13 @@ public class ServiceMonitorImpl implements ServiceMonitor {
             return 0.0;
         }
         
-        return stats.getSuccessRate();
+        return timeWindowMinutes > 0 ? stats.getWindow(timeWindowMinutes).getSuccessRate() : stats.getSuccessRate();
     }
     
     @Override
     public double getAverageResponseTime(String provider, int timeWindowMinutes) {
         if (provider == null) {
-            return globalStats.getAverageResponseTime();
+            return timeWindowMinutes > 0 ? globalStats.getWindow(timeWindowMinutes).getAverageResponseTime() : globalStats.getAverageResponseTime();
         }
         
         ServiceStats stats = providerStats.get(provider);
@@ -134,13 +191,13 @@ public class ServiceMonitorImpl implements ServiceMonitor {
             return 0.0;
         }
         
-        return stats.getAverageResponseTime();
+        return timeWindowMinutes > 0 ? stats.getWindow(timeWindowMinutes).getAverageResponseTime() : stats.getAverageResponseTime();
     }
     
     @Override
     public double getErrorRate(String provider, int timeWindowMinutes) {
         if (provider == null) {
-            return globalStats.getErrorRate();
+            return timeWindowMinutes > 0 ? globalStats.getWindow(timeWindowMinutes).getErrorRate() : globalStats.getErrorRate();
         }
         
         ServiceStats stats = providerStats.get(provider);
@@ -149,23 +206,28 @@ public class ServiceMonitorImpl implements ServiceMonitor {
             return 0.0;
         }
         
-        return stats.getErrorRate();
+        return timeWindowMinutes > 0 ? stats.getWindow(timeWindowMinutes).getErrorRate() : stats.getErrorRate();
     }
     
     @Override
     public boolean isHealthy(String provider) {
         try {
-            double successRate = getSuccessRate(provider, 60); // 默认使用60分钟时间窗口
-            double averageResponseTime = getAverageResponseTime(provider, 60);
-            double errorRate = getErrorRate(provider, 60);
+            AIServiceProperties.Monitoring.HealthThresholds thresholds =
+                    aiServiceProperties.getMonitoring().getHealthThresholds();
+            // 统计返回百分比，阈值为0-1的比例
+            double successRate = getSuccessRate(provider, HEALTH_WINDOW_MINUTES) / 100.0;
+            double averageResponseTime = getAverageResponseTime(provider, HEALTH_WINDOW_MINUTES);
+            double errorRate = getErrorRate(provider, HEALTH_WINDOW_MINUTES) / 100.0;
+            boolean anomalous = anomalyDetector.hasActiveAnomaly(provider);
             
-            boolean healthy = successRate >= MIN_SUCCESS_RATE && 
-                    averageResponseTime <= MAX_RESPONSE_TIME && 
-                    errorRate <= MAX_ERROR_RATE;
+            boolean healthy = successRate >= thresholds.getMinSuccessRate() && 
+                    averageResponseTime <= thresholds.getMaxResponseTime() && 
+                    errorRate <= thresholds.getMaxErrorRate() &&
+                    !anomalous;
             
             if (!healthy) {
-                logger.warn("Provider {} is unhealthy: success rate: {}, avg response time: {}ms, error rate: {}", 
-                        provider, successRate, averageResponseTime, errorRate);
+                logger.warn("Provider {} is unhealthy: success rate: {}, avg response time: {}ms, error rate: {}, anomaly: {}", 
+                        provider, successRate, averageResponseTime, errorRate, anomalous);
             }
             
             return healthy;
@@ -185,7 +247,7 @@ public class ServiceMonitorImpl implements ServiceMonitor {
         ServiceStats stats = providerStats.get(provider);
         if (stats == null) {
             logger.debug("No stats found for provider: {}, returning empty stats", provider);
-            return new ServiceStats(provider);
+            return newStats(provider);
         }
         
         return stats;
@@ -232,7 +294,7 @@ public class ServiceMonitorImpl implements ServiceMonitor {
      */
     public void cleanupExpiredStats() {
         try {
-            long cutoffTime = System.currentTimeMillis() - (24 * 60 * 60 * 1000); // 保留24小时内的数据
+            long cutoffTime = System.currentTimeMillis() - getRetentionHours() * 3600_000L;
             
             providerStats.entrySet().removeIf(entry -> {
                 ServiceStats stats = entry.getValue();
@@ -251,6 +313,33 @@ public class ServiceMonitorImpl implements ServiceMonitor {
         }
     }
     
+    /**
+     * 获取时间窗口内的统计
+     * @param provider AI服务提供商，为null时返回全局统计
+     * @param timeWindowMinutes 时间窗口（分钟）
+     */
+    public WindowedStats getWindowedStats(String provider, int timeWindowMinutes) {
+        return getStats(provider).getWindow(timeWindowMinutes);
+    }
+    
+    private static String metadataString(AIResponse response, String key) {
+        Object value = response.getMetadata() != null ? response.getMetadata().get(key) : null;
+        return value != null ? value.toString() : null;
+    }
+    
+    private static long metadataLong(AIResponse response, String key) {
+        Object value = response.getMetadata() != null ? response.getMetadata().get(key) : null;
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+    
+    private ServiceStats newStats(String provider) {
+        return new ServiceStats(provider, getRetentionHours());
+    }
+    
+    private int getRetentionHours() {
+        return aiServiceProperties.getMonitoring().getStatsRetentionHours();
+    }
+    
     /**
      * 获取健康检查摘要
      */
@@ -260,20 +349,25 @@ public class ServiceMonitorImpl implements ServiceMonitor {
         
         // 全局健康状态
         boolean globalHealthy = isHealthy(null);
-        summary.append(String.format("Global: %s (Success Rate: %.2f%%, Avg Response: %.0fms, Error Rate: %.2f%%)\n",
+        summary.append(String.format("Global: %s (Success Rate: %.2f%%, Avg Response: %.0fms, P50/P99: %d/%dms, Error Rate: %.2f%%)\n",
                 globalHealthy ? "HEALTHY" : "UNHEALTHY",
                 getSuccessRate(null, 60),
                 getAverageResponseTime(null, 60),
+                globalStats.getWindow(60).getResponseTimePercentile(50.0),
+                globalStats.getWindow(60).getResponseTimePercentile(99.0),
                 getErrorRate(null, 60)));
         
         // 各提供商健康状态
-        for (String provider : providerStats.keySet()) {
+        for (Map.Entry<String, ServiceStats> entry : providerStats.entrySet()) {
+            String provider = entry.getKey();
             boolean providerHealthy = isHealthy(provider);
-            summary.append(String.format("%s: %s (Success Rate: %.2f%%, Avg Response: %.0fms, Error Rate: %.2f%%)\n",
+            summary.append(String.format("%s: %s (Success Rate: %.2f%%, Avg Response: %.0fms, P50/P99: %d/%dms, Error Rate: %.2f%%)\n",
                     provider,
                     providerHealthy ? "HEALTHY" : "UNHEALTHY",
                     getSuccessRate(provider, 60),
                     getAverageResponseTime(provider, 60),
+                    entry.getValue().getWindow(60).getResponseTimePercentile(50.0),
+                    entry.getValue().getWindow(60).getResponseTimePercentile(99.0),
                     getErrorRate(provider, 60)));
         }
         
@@ -47,6 +47,14 @@ public interface QualityAssessor {
      */
     int checkSafety(AIResponse response);
     
+    /**
+     * 创建流式安全扫描器
+     * @param request 原始AI请求
+     * @param minScore 安全评分阈值，确定低于该值时中止
+     * @return 流式安全扫描器
+     */
+    SafetyScanner openSafetyScanner(AIRequest request, int minScore);
+    
     /**
      * 检查完整性
      * @param response AI回复
@@ -0,0 +1,252 @@
+package cn.xlhealth.backend.service.ai.quality;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.mapper.MessageMapper;
+import cn.xlhealth.backend.service.ai.dto.AIRequest;
+import cn.xlhealth.backend.service.ai.dto.AIResponse;
+import cn.xlhealth.backend.service.ai.monitor.AIMetrics;
+import cn.xlhealth.backend.service.ai.monitor.ServiceMonitor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 异步质量评分流水线
+ * 回复返回前只做安全检查，完整的多维度评分按采样率在独立线程池中执行，
+ * 结果回写到消息记录和服务监控。被标记的用户（配置或安全检查未通过）全量评分。
+ */
+@Component
+public class QualityScoringPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(QualityScoringPipeline.class);
+
+    @Autowired
+    private QualityAssessor qualityAssessor;
+
+    @Autowired
+    private ServiceMonitor serviceMonitor;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    @Autowired
+    private AIMetrics aiMetrics;
+
+    // 临时标记的用户及标记到期时间
+    private final Map<Long, Long> flaggedUsers = new ConcurrentHashMap<>();
+
+    private volatile ThreadPoolExecutor executor;
+
+    // 统计
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder belowThreshold = new LongAdder();
+    private final LongAdder lagMillis = new LongAdder();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+
+    @PostConstruct
+    public void registerMetrics() {
+        aiMetrics.registerQualityQueue(this::getQueueDepth);
+    }
+
+    /**
+     * 按采样率提交评分任务
+     * @return 是否已提交
+     */
+    public boolean submit(AIRequest request, AIResponse response) {
+        AIServiceProperties.Quality.Async config = aiServiceProperties.getQuality().getAsync();
+        if (!config.isEnabled() || response == null || !response.isSuccess()) {
+            return false;
+        }
+
+        submitted.increment();
+        if (!shouldSample(request.getUserId(), config)) {
+            return false;
+        }
+        sampled.increment();
+
+        long enqueuedAt = System.currentTimeMillis();
+        try {
+            getExecutor(config).execute(() -> score(request, response, enqueuedAt));
+            return true;
+        } catch (RejectedExecutionException e) {
+            dropped.increment();
+            aiMetrics.recordQualityDropped();
+            logger.debug("Quality scoring queue full, dropped assessment for conversation {}",
+                    request.getConversationId());
+            return false;
+        }
+    }
+
+    /**
+     * 回复保存后关联消息ID；评分已先完成时立即回写
+     */
+    public void bindMessage(AIResponse response, Long messageId) {
+        if (response == null || messageId == null) {
+            return;
+        }
+
+        Integer score;
+        synchronized (response) {
+            response.setMessageId(messageId);
+            score = response.getQualityScore();
+        }
+        if (score != null) {
+            messageMapper.updateQualityScore(messageId, score);
+        }
+    }
+
+    /**
+     * 标记用户，标记期间全量评分
+     */
+    public void flagUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        long ttl = TimeUnit.MINUTES.toMillis(aiServiceProperties.getQuality().getAsync().getFlagTtlMinutes());
+        flaggedUsers.put(userId, System.currentTimeMillis() + ttl);
+    }
+
+    /**
+     * 等待评分的任务数
+     */
+    public int getQueueDepth() {
+        ThreadPoolExecutor current = executor;
+        return current != null ? current.getQueue().size() : 0;
+    }
+
+    /**
+     * 队列深度、延迟等统计
+     * maxLagMillis 为最近统计窗口内的最大延迟（与 ai.quality.lag 指标一致）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        ThreadPoolExecutor current = executor;
+        long done = completed.sum() + failed.sum();
+        stats.put("enabled", aiServiceProperties.getQuality().getAsync().isEnabled());
+        stats.put("sampleRate", aiServiceProperties.getQuality().getAsync().getSampleRate());
+        stats.put("queueDepth", getQueueDepth());
+        stats.put("activeWorkers", current != null ? current.getActiveCount() : 0);
+        stats.put("submitted", submitted.sum());
+        stats.put("sampled", sampled.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("belowThreshold", belowThreshold.sum());
+        stats.put("flaggedUsers", flaggedUsers.size());
+        stats.put("avgLagMillis", done > 0 ? lagMillis.sum() / (double) done : 0.0);
+        stats.put("maxLagMillis", aiMetrics.getQualityLagMaxMillis());
+        stats.put("lastLagMillis", lastLagMillis.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            return;
+        }
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Quality scoring pipeline did not drain in time, {} assessments discarded",
+                        current.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            current.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void score(AIRequest request, AIResponse response, long enqueuedAt) {
+        long lag = System.currentTimeMillis() - enqueuedAt;
+        lagMillis.add(lag);
+        lastLagMillis.set(lag);
+        aiMetrics.recordQualityLag(lag);
+
+        try {
+            int score = qualityAssessor.assessQuality(request, response);
+            serviceMonitor.recordQuality(response.getProvider(), score);
+
+            int minScore = aiServiceProperties.getQuality().getMinScore();
+            if (!qualityAssessor.isPassing(score, minScore)) {
+                belowThreshold.increment();
+                logger.warn("Response quality below threshold: {} < {} (conversation {})",
+                        score, minScore, request.getConversationId());
+            }
+
+            Long messageId;
+            synchronized (response) {
+                response.setQualityScore(score);
+                messageId = response.getMessageId();
+            }
+            if (messageId != null) {
+                messageMapper.updateQualityScore(messageId, score);
+            }
+            completed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            logger.warn("Asynchronous quality assessment failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean shouldSample(Long userId, AIServiceProperties.Quality.Async config) {
+        if (userId != null) {
+            if (config.getFlaggedUserIds().contains(userId)) {
+                return true;
+            }
+            Long flaggedUntil = flaggedUsers.get(userId);
+            if (flaggedUntil != null) {
+                if (flaggedUntil > System.currentTimeMillis()) {
+                    return true;
+                }
+                flaggedUsers.remove(userId, flaggedUntil);
+            }
+        }
+        return ThreadLocalRandom.current().nextDouble() < config.getSampleRate();
+    }
+
+    private ThreadPoolExecutor getExecutor(AIServiceProperties.Quality.Async config) {
+        ThreadPoolExecutor current = executor;
+        if (current == null) {
+            synchronized (this) {
+                current = executor;
+                if (current == null) {
+                    int threads = Math.max(1, config.getThreads());
+                    AtomicInteger counter = new AtomicInteger();
+                    current = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                            new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())),
+                            runnable -> {
+                                Thread thread = new Thread(runnable, "quality-scoring-" + counter.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            },
+                            new ThreadPoolExecutor.AbortPolicy());
+                    executor = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,31 @@
+package cn.xlhealth.backend.service.ai.quality;
+
+/**
+ * 流式安全扫描器
+ * 逐段接收流式生成的回复，增量计算与 {@link QualityAssessor#checkSafety} 一致的安全评分，
+ * 一旦可以确定最终评分低于阈值即要求中止生成。每次生成使用一个实例，非线程安全。
+ */
+public interface SafetyScanner {
+
+    /**
+     * 输入一段生成的文本
+     * @param chunk 文本片段
+     * @return 是否继续生成；返回false表示已确定无法通过安全检查
+     */
+    boolean feed(CharSequence chunk);
+
+    /**
+     * 目前为止的安全评分（0-100）
+     */
+    int getScore();
+
+    /**
+     * 是否已中止
+     */
+    boolean isAborted();
+
+    /**
+     * 已输入的字符数
+     */
+    long getScannedLength();
+}
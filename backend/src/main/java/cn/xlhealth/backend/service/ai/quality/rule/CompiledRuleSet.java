@@ -0,0 +1,467 @@
+package cn.xlhealth.backend.service.ai.quality.rule;
+
+import cn.xlhealth.backend.service.ai.quality.SafetyScanner;
+import cn.xlhealth.backend.service.ai.text.KeywordHits;
+import cn.xlhealth.backend.service.ai.text.KeywordMatcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 编译后的质量评分规则集
+ * 所有规则的关键词编译为一个自动机，每段文本只扫描一次；正则预先编译；
+ * 条件引用解析为下标。构建完成后不可变，可在多线程间共享。
+ */
+public final class CompiledRuleSet {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompiledRuleSet.class);
+
+    private static final QualityDimension[] DIMENSIONS = QualityDimension.values();
+    private static final TextSource[] SOURCES = TextSource.values();
+
+    // 正向累计规则（per-term 且无上限）可能的最大增量，足以使得分达到上限
+    private static final int UNBOUNDED = 100;
+
+    private final long version;
+    private final String source;
+    private final long loadedAt;
+
+    private final int[] baseScores;
+    private final double[] weights;
+    private final Rule[] rules;
+    private final KeywordMatcher matcher;
+
+    // 各文本来源是否有关键词规则，没有时不扫描
+    private final boolean[] sourceScanned;
+
+    private CompiledRuleSet(long version, String source, int[] baseScores, double[] weights,
+            Rule[] rules, KeywordMatcher matcher) {
+        this.version = version;
+        this.source = source;
+        this.loadedAt = System.currentTimeMillis();
+        this.baseScores = baseScores;
+        this.weights = weights;
+        this.rules = rules;
+        this.matcher = matcher;
+        this.sourceScanned = new boolean[SOURCES.length];
+        for (Rule rule : rules) {
+            if (rule.hasKeywords) {
+                sourceScanned[rule.source.ordinal()] = true;
+            }
+        }
+    }
+
+    /**
+     * 编译规则集
+     * @param definition 规则集定义
+     * @param defaultWeights 规则集未指定权重时使用的权重
+     * @param hitCounters 按规则名称取得命中计数器，重新编译后计数延续
+     * @throws IllegalArgumentException 规则定义无效
+     */
+    public static CompiledRuleSet compile(QualityRuleSet definition, Map<QualityDimension, Double> defaultWeights,
+            Function<String, LongAdder> hitCounters, long version, String source) {
+        int[] baseScores = new int[DIMENSIONS.length];
+        definition.getBaseScores().forEach((dimension, score) -> baseScores[dimension.ordinal()] = score);
+
+        Map<QualityDimension, Double> weightMap = definition.getWeights().isEmpty()
+                ? defaultWeights : definition.getWeights();
+        double[] weights = new double[DIMENSIONS.length];
+        weightMap.forEach((dimension, weight) -> weights[dimension.ordinal()] = weight);
+
+        KeywordMatcher.Builder builder = KeywordMatcher.builder();
+        Map<String, Integer> ruleIndex = new HashMap<>();
+        Rule[] rules = new Rule[definition.getRules().size()];
+
+        for (int i = 0; i < rules.length; i++) {
+            QualityRule rule = definition.getRules().get(i);
+            String name = rule.getName();
+            if (name == null || name.isEmpty()) {
+                throw new IllegalArgumentException("Rule #" + (i + 1) + " has no name");
+            }
+            if (ruleIndex.containsKey(name)) {
+                throw new IllegalArgumentException("Duplicate rule name: " + name);
+            }
+            if (rule.getDimension() == null) {
+                throw new IllegalArgumentException("Rule " + name + " has no dimension");
+            }
+
+            List<String> keywords = new ArrayList<>(rule.getKeywords());
+            if (rule.getKeywordSet() != null) {
+                List<String> keywordSet = definition.getKeywordSets().get(rule.getKeywordSet());
+                if (keywordSet == null) {
+                    throw new IllegalArgumentException("Rule " + name + " references unknown keyword set: "
+                            + rule.getKeywordSet());
+                }
+                keywords.addAll(keywordSet);
+            }
+            for (String keyword : keywords) {
+                if (rule.getTemplates().isEmpty()) {
+                    builder.addTerm(name, keyword, keyword);
+                } else {
+                    for (String template : rule.getTemplates()) {
+                        builder.addTerm(name, template.replace("{}", keyword), keyword);
+                    }
+                }
+            }
+
+            Pattern pattern = null;
+            if (rule.getPattern() != null) {
+                try {
+                    pattern = Pattern.compile(rule.getPattern(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Rule " + name + " has invalid pattern: " + e.getMessage(), e);
+                }
+            }
+
+            // 条件只能引用前面定义的规则，保证按顺序一次求值
+            int[] requires = new int[rule.getRequires().size()];
+            for (int k = 0; k < requires.length; k++) {
+                Integer required = ruleIndex.get(rule.getRequires().get(k));
+                if (required == null) {
+                    throw new IllegalArgumentException("Rule " + name + " requires undefined or later rule: "
+                            + rule.getRequires().get(k));
+                }
+                requires[k] = required;
+            }
+
+            rules[i] = new Rule(name, rule, !keywords.isEmpty(), pattern, requires, rules,
+                    hitCounters.apply(name));
+            ruleIndex.put(name, i);
+        }
+
+        return new CompiledRuleSet(version, source, baseScores, weights, rules, builder.build());
+    }
+
+    /**
+     * 对一次问答求值
+     * @param userMessage 用户消息，可为空
+     * @param emotionalState 情绪状态，可为空
+     * @param response AI回复
+     * @param recordHits 是否计入规则命中统计
+     */
+    public RuleEvaluation evaluate(String userMessage, String emotionalState, String response, boolean recordHits) {
+        String[] texts = texts(userMessage, emotionalState, response);
+        KeywordHits[] hits = new KeywordHits[SOURCES.length];
+        for (TextSource textSource : SOURCES) {
+            if (sourceScanned[textSource.ordinal()] && texts[textSource.ordinal()] != null) {
+                hits[textSource.ordinal()] = matcher.match(texts[textSource.ordinal()]);
+            }
+        }
+
+        int[] deltas = new int[DIMENSIONS.length];
+        boolean[] matched = new boolean[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            Rule rule = rules[i];
+            String text = texts[rule.source.ordinal()];
+            int terms = rule.countTerms(hits[rule.source.ordinal()], text);
+            matched[i] = rule.matches(terms, text != null ? text.length() : 0, matched);
+            if (matched[i]) {
+                deltas[rule.dimension.ordinal()] += rule.contribution(terms);
+                if (recordHits) {
+                    rule.hits.increment();
+                }
+            }
+        }
+        return new RuleEvaluation(baseScores, deltas, weights);
+    }
+
+    /**
+     * 创建安全维度的流式扫描器
+     */
+    public SafetyScanner openSafetyScanner(String userMessage, String emotionalState, int minScore) {
+        return new StreamingScanner(userMessage, emotionalState, minScore);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    public int getRuleCount() {
+        return rules.length;
+    }
+
+    /**
+     * 规则名称（按定义顺序）
+     */
+    public List<String> getRuleNames() {
+        List<String> names = new ArrayList<>(rules.length);
+        for (Rule rule : rules) {
+            names.add(rule.name);
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    private static String[] texts(String userMessage, String emotionalState, String response) {
+        String[] texts = new String[SOURCES.length];
+        texts[TextSource.USER.ordinal()] = userMessage;
+        texts[TextSource.EMOTIONAL_STATE.ordinal()] = emotionalState;
+        texts[TextSource.RESPONSE.ordinal()] = response;
+        return texts;
+    }
+
+    /**
+     * 编译后的规则
+     */
+    private static final class Rule {
+        final String name;
+        final QualityDimension dimension;
+        final TextSource source;
+        final boolean hasKeywords;
+        final Pattern pattern;
+        final int delta;
+        final boolean perTerm;
+        final int maxDelta;
+        final int minLength;
+        final int maxLength;
+        final int[] requires;
+        final boolean negate;
+        final LongAdder hits;
+
+        // 随回复增长命中状态只会从否变为是（流式扫描时用于估计最终得分的上限）
+        final boolean monotonic;
+
+        Rule(String name, QualityRule definition, boolean hasKeywords, Pattern pattern, int[] requires,
+                Rule[] previous, LongAdder hits) {
+            this.name = name;
+            this.dimension = definition.getDimension();
+            this.source = definition.getSource() != null ? definition.getSource() : TextSource.RESPONSE;
+            this.hasKeywords = hasKeywords;
+            this.pattern = pattern;
+            this.delta = definition.getDelta();
+            this.perTerm = definition.isPerTerm();
+            this.maxDelta = definition.getMaxDelta() != null ? definition.getMaxDelta() : Integer.MAX_VALUE;
+            this.minLength = definition.getMinLength() != null ? definition.getMinLength() : 0;
+            this.maxLength = definition.getMaxLength() != null ? definition.getMaxLength() : Integer.MAX_VALUE;
+            this.requires = requires;
+            this.negate = definition.isNegate();
+            this.hits = hits;
+
+            boolean stable = source != TextSource.RESPONSE || (!negate && definition.getMaxLength() == null);
+            for (int required : requires) {
+                stable &= previous[required].monotonic;
+            }
+            this.monotonic = stable;
+        }
+
+        /**
+         * 命中的不同词条数；没有关键词和模式的规则只判断条件，视为命中一次
+         */
+        int countTerms(KeywordHits keywordHits, String text) {
+            if (!hasKeywords && pattern == null) {
+                return 1;
+            }
+            if (text == null) {
+                return 0;
+            }
+
+            int count = 0;
+            Set<String> terms = null;
+            if (hasKeywords && keywordHits != null) {
+                terms = keywordHits.terms(name);
+                count = terms.size();
+            }
+            if (pattern != null) {
+                Set<String> found = terms != null ? new HashSet<>(terms) : new HashSet<>();
+                Matcher m = pattern.matcher(text);
+                while (m.find()) {
+                    found.add(m.group().toLowerCase());
+                }
+                count = found.size();
+            }
+            return count;
+        }
+
+        boolean matches(int terms, int length, boolean[] matched) {
+            if (length < minLength || length > maxLength) {
+                return false;
+            }
+            if (requires.length > 0) {
+                boolean any = false;
+                for (int required : requires) {
+                    any |= matched[required];
+                }
+                if (!any) {
+                    return false;
+                }
+            }
+            return negate ? terms == 0 : terms > 0;
+        }
+
+        int contribution(int terms) {
+            if (!perTerm || negate) {
+                return delta;
+            }
+            long total = (long) delta * terms;
+            return (int) Math.max(-maxDelta, Math.min(maxDelta, total));
+        }
+
+        /**
+         * 回复继续增长时该规则可能的最大贡献
+         */
+        int maxFutureContribution(int current) {
+            int positive;
+            if (delta <= 0) {
+                positive = 0;
+            } else if (perTerm && !negate) {
+                positive = Math.min(maxDelta, UNBOUNDED);
+            } else {
+                positive = delta;
+            }
+            // 单调规则的负向贡献不会撤销，非单调规则可能回到最大值
+            return monotonic && delta <= 0 ? current : Math.max(current, positive);
+        }
+    }
+
+    /**
+     * 安全维度的流式扫描器
+     * 用户消息等固定来源在创建时求值；回复通过自动机游标逐段扫描，不缓存文本，
+     * 只有存在正则规则时才保留已输入的回复。每段输入后估计最终得分的上限，
+     * 上限低于阈值即中止，因此不会拒绝完整检查能够通过的回复。
+     */
+    private final class StreamingScanner implements SafetyScanner {
+
+        private final int minScore;
+        private final String[] texts;
+        private final KeywordHits[] fixedHits = new KeywordHits[SOURCES.length];
+        private final KeywordMatcher.Cursor cursor = matcher.cursor();
+        private final StringBuilder buffer;
+        private final boolean lengthSensitive;
+
+        private int score;
+        private boolean aborted = false;
+        private long scannedLength = 0;
+
+        StreamingScanner(String userMessage, String emotionalState, int minScore) {
+            this.minScore = minScore;
+            this.texts = texts(userMessage, emotionalState, null);
+            for (TextSource textSource : SOURCES) {
+                if (textSource != TextSource.RESPONSE && sourceScanned[textSource.ordinal()]
+                        && texts[textSource.ordinal()] != null) {
+                    fixedHits[textSource.ordinal()] = matcher.match(texts[textSource.ordinal()]);
+                }
+            }
+
+            boolean needsText = false;
+            boolean needsLength = false;
+            for (Rule rule : rules) {
+                if (rule.dimension == QualityDimension.SAFETY && rule.source == TextSource.RESPONSE) {
+                    needsText |= rule.pattern != null;
+                    needsLength |= rule.minLength > 0 || rule.maxLength < Integer.MAX_VALUE;
+                }
+            }
+            this.buffer = needsText ? new StringBuilder() : null;
+            this.lengthSensitive = needsText || needsLength;
+            this.score = evaluate(true);
+        }
+
+        @Override
+        public boolean feed(CharSequence chunk) {
+            if (aborted) {
+                return false;
+            }
+            if (chunk == null) {
+                return true;
+            }
+
+            scannedLength += chunk.length();
+            if (buffer != null) {
+                buffer.append(chunk);
+            }
+            if (!cursor.feed(chunk) && !lengthSensitive) {
+                return true;
+            }
+
+            if (evaluate(false) < minScore) {
+                aborted = true;
+                logger.warn("Streaming safety check failed after {} chars: {} < {}",
+                        scannedLength, score, minScore);
+            }
+            return !aborted;
+        }
+
+        /**
+         * 更新当前得分
+         * @return 最终得分的上限
+         */
+        private int evaluate(boolean initial) {
+            String response = buffer != null ? buffer.toString() : null;
+            int length = (int) Math.min(Integer.MAX_VALUE, scannedLength);
+            int current = baseScores[QualityDimension.SAFETY.ordinal()];
+            int upperBound = current;
+            boolean[] matched = new boolean[rules.length];
+
+            for (int i = 0; i < rules.length; i++) {
+                Rule rule = rules[i];
+                int terms;
+                int textLength;
+                if (rule.source == TextSource.RESPONSE) {
+                    terms = countResponseTerms(rule, response);
+                    textLength = length;
+                } else {
+                    String text = texts[rule.source.ordinal()];
+                    terms = rule.countTerms(fixedHits[rule.source.ordinal()], text);
+                    textLength = text != null ? text.length() : 0;
+                }
+                matched[i] = rule.matches(terms, textLength, matched);
+
+                if (rule.dimension == QualityDimension.SAFETY) {
+                    int contribution = matched[i] ? rule.contribution(terms) : 0;
+                    current += contribution;
+                    upperBound += rule.maxFutureContribution(contribution);
+                }
+            }
+
+            score = clamp(current);
+            return initial ? Integer.MAX_VALUE : clamp(upperBound);
+        }
+
+        private int countResponseTerms(Rule rule, String response) {
+            if (!rule.hasKeywords && rule.pattern == null) {
+                return 1;
+            }
+            if (rule.pattern != null) {
+                return rule.countTerms(cursor.hits(), response);
+            }
+            return cursor.hits().count(rule.name);
+        }
+
+        @Override
+        public int getScore() {
+            return score;
+        }
+
+        @Override
+        public boolean isAborted() {
+            return aborted;
+        }
+
+        @Override
+        public long getScannedLength() {
+            return scannedLength;
+        }
+    }
+
+    static int clamp(int score) {
+        return Math.min(100, Math.max(0, score));
+    }
+}
@@ -0,0 +1,22 @@
+package cn.xlhealth.backend.service.ai.quality.rule;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * 质量评估维度
+ */
+public enum QualityDimension {
+    RELEVANCE,
+    PROFESSIONALISM,
+    EMOTIONAL,
+    SAFETY,
+    COMPLETENESS;
+
+    /**
+     * 规则文件中使用小写形式（如 safety）
+     */
+    @JsonCreator
+    public static QualityDimension fromValue(String value) {
+        return valueOf(value.trim().replace('-', '_').toUpperCase());
+    }
+}
@@ -0,0 +1,151 @@
+package cn.xlhealth.backend.service.ai.quality.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 质量评分规则定义
+ * 对应规则文件中的一条规则，字段含义见 quality-rules.yml
+ */
+public class QualityRule {
+
+    private String name;
+
+    private QualityDimension dimension;
+
+    private TextSource source = TextSource.RESPONSE;
+
+    private List<String> keywords = new ArrayList<>();
+
+    private String keywordSet;
+
+    private List<String> templates = new ArrayList<>();
+
+    private String pattern;
+
+    private int delta;
+
+    private boolean perTerm = false;
+
+    private Integer maxDelta;
+
+    private Integer minLength;
+
+    private Integer maxLength;
+
+    private List<String> requires = new ArrayList<>();
+
+    private boolean negate = false;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public QualityDimension getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(QualityDimension dimension) {
+        this.dimension = dimension;
+    }
+
+    public TextSource getSource() {
+        return source;
+    }
+
+    public void setSource(TextSource source) {
+        this.source = source;
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    public void setKeywords(List<String> keywords) {
+        this.keywords = keywords;
+    }
+
+    public String getKeywordSet() {
+        return keywordSet;
+    }
+
+    public void setKeywordSet(String keywordSet) {
+        this.keywordSet = keywordSet;
+    }
+
+    public List<String> getTemplates() {
+        return templates;
+    }
+
+    public void setTemplates(List<String> templates) {
+        this.templates = templates;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public void setPattern(String pattern) {
+        this.pattern = pattern;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    public void setDelta(int delta) {
+        this.delta = delta;
+    }
+
+    public boolean isPerTerm() {
+        return perTerm;
+    }
+
+    public void setPerTerm(boolean perTerm) {
+        this.perTerm = perTerm;
+    }
+
+    public Integer getMaxDelta() {
+        return maxDelta;
+    }
+
+    public void setMaxDelta(Integer maxDelta) {
+        this.maxDelta = maxDelta;
+    }
+
+    public Integer getMinLength() {
+        return minLength;
+    }
+
+    public void setMinLength(Integer minLength) {
+        this.minLength = minLength;
+    }
+
+    public Integer getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(Integer maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public List<String> getRequires() {
+        return requires;
+    }
+
+    public void setRequires(List<String> requires) {
+        this.requires = requires;
+    }
+
+    public boolean isNegate() {
+        return negate;
+    }
+
+    public void setNegate(boolean negate) {
+        this.negate = negate;
+    }
+}
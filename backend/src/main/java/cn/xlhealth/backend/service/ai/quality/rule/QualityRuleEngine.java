@@ -0,0 +1,223 @@
+package cn.xlhealth.backend.service.ai.quality.rule;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 质量评分规则引擎
+ * 启动时从规则文件编译规则集；规则文件（file: 位置）变更或手动触发时重新编译，
+ * 编译成功后原子替换，失败时保留当前规则集。统计各规则命中次数和求值耗时。
+ */
+@Component
+public class QualityRuleEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(QualityRuleEngine.class);
+
+    private static final ObjectMapper RULE_MAPPER = JsonMapper.builder()
+            .propertyNamingStrategy(PropertyNamingStrategies.KEBAB_CASE)
+            .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+            .enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    private final AtomicReference<CompiledRuleSet> current = new AtomicReference<>();
+
+    // 按规则名称计数，重新编译后延续
+    private final Map<String, LongAdder> ruleHits = new ConcurrentHashMap<>();
+
+    private final AtomicLong versions = new AtomicLong();
+    private volatile long sourceLastModified = -1;
+
+    // 统计
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder evaluationNanos = new LongAdder();
+    private final AtomicLong maxEvaluationNanos = new AtomicLong();
+    private final LongAdder reloadFailures = new LongAdder();
+    private volatile String lastError;
+
+    /**
+     * 启动时编译规则，规则无效时启动失败
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load quality rules from "
+                    + getConfig().getLocation() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 重新读取并编译规则文件，成功后替换当前规则集
+     * @return 新的规则集
+     * @throws IllegalArgumentException 规则无效或无法读取
+     */
+    public synchronized CompiledRuleSet reload() {
+        String location = getConfig().getLocation();
+        try {
+            Resource resource = new DefaultResourceLoader().getResource(location);
+            long lastModified = lastModified(resource);
+            QualityRuleSet definition = read(resource);
+
+            CompiledRuleSet compiled = CompiledRuleSet.compile(definition, defaultWeights(),
+                    name -> ruleHits.computeIfAbsent(name, key -> new LongAdder()),
+                    versions.incrementAndGet(), location);
+            current.set(compiled);
+            sourceLastModified = lastModified;
+            lastError = null;
+
+            logger.info("Loaded {} quality rules from {} (version {})",
+                    compiled.getRuleCount(), location, compiled.getVersion());
+            return compiled;
+
+        } catch (Exception e) {
+            reloadFailures.increment();
+            lastError = e.getMessage();
+            logger.error("Failed to compile quality rules from {}, keeping current rules: {}", location, e.getMessage());
+            if (e instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e;
+            }
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 定时检查规则文件是否变更
+     */
+    @Scheduled(fixedDelayString = "${ai.service.quality.rules.refresh-seconds:30}",
+            initialDelayString = "${ai.service.quality.rules.refresh-seconds:30}",
+            timeUnit = TimeUnit.SECONDS)
+    public void refreshIfChanged() {
+        try {
+            Resource resource = new DefaultResourceLoader().getResource(getConfig().getLocation());
+            long lastModified = lastModified(resource);
+            if (lastModified > 0 && lastModified != sourceLastModified) {
+                reload();
+            }
+        } catch (Exception e) {
+            // 已记录，保留当前规则集；同一文件版本不再重复尝试
+            sourceLastModified = lastModifiedOrZero();
+        }
+    }
+
+    /**
+     * 当前规则集
+     */
+    public CompiledRuleSet current() {
+        return current.get();
+    }
+
+    /**
+     * 求值并计入命中和耗时统计
+     */
+    public RuleEvaluation evaluate(String userMessage, String emotionalState, String response) {
+        long start = System.nanoTime();
+        try {
+            return current.get().evaluate(userMessage, emotionalState, response, true);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            evaluations.increment();
+            evaluationNanos.add(elapsed);
+            maxEvaluationNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    /**
+     * 规则版本、命中次数及求值耗时统计
+     */
+    public Map<String, Object> getStats() {
+        CompiledRuleSet rules = current.get();
+        long count = evaluations.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", rules != null ? rules.getVersion() : 0);
+        stats.put("source", rules != null ? rules.getSource() : getConfig().getLocation());
+        stats.put("loadedAt", rules != null ? rules.getLoadedAt() : 0);
+        stats.put("ruleCount", rules != null ? rules.getRuleCount() : 0);
+        stats.put("reloadFailures", reloadFailures.sum());
+        stats.put("lastError", lastError);
+        stats.put("evaluations", count);
+        stats.put("avgEvaluationMicros", count > 0 ? evaluationNanos.sum() / 1000.0 / count : 0.0);
+        stats.put("maxEvaluationMicros", maxEvaluationNanos.get() / 1000.0);
+
+        Map<String, Long> hits = new LinkedHashMap<>();
+        if (rules != null) {
+            for (String name : rules.getRuleNames()) {
+                LongAdder counter = ruleHits.get(name);
+                hits.put(name, counter != null ? counter.sum() : 0L);
+            }
+        }
+        stats.put("ruleHits", hits);
+        return stats;
+    }
+
+    private static QualityRuleSet read(Resource resource) throws IOException {
+        if (!resource.exists()) {
+            throw new IOException("Rule file not found: " + resource.getDescription());
+        }
+        try (InputStream in = resource.getInputStream()) {
+            Object document = new Yaml().load(in);
+            if (document == null) {
+                return new QualityRuleSet();
+            }
+            return RULE_MAPPER.convertValue(document, QualityRuleSet.class);
+        }
+    }
+
+    /**
+     * 文件的修改时间；classpath 等非文件位置不支持变更检测，返回0
+     */
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.isFile() ? resource.getFile().lastModified() : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private long lastModifiedOrZero() {
+        return lastModified(new DefaultResourceLoader().getResource(getConfig().getLocation()));
+    }
+
+    private Map<QualityDimension, Double> defaultWeights() {
+        AIServiceProperties.Quality.Weights weights = aiServiceProperties.getQuality().getWeights();
+        Map<QualityDimension, Double> result = new EnumMap<>(QualityDimension.class);
+        result.put(QualityDimension.RELEVANCE, weights.getRelevance());
+        result.put(QualityDimension.PROFESSIONALISM, weights.getProfessionalism());
+        result.put(QualityDimension.EMOTIONAL, weights.getEmotional());
+        result.put(QualityDimension.SAFETY, weights.getSafety());
+        result.put(QualityDimension.COMPLETENESS, weights.getCompleteness());
+        return result;
+    }
+
+    private AIServiceProperties.Quality.Rules getConfig() {
+        return aiServiceProperties.getQuality().getRules();
+    }
+}
@@ -0,0 +1,66 @@
+package cn.xlhealth.backend.service.ai.quality.rule;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 质量评分规则集定义
+ * 由规则文件反序列化得到，编译后才能用于评分
+ */
+public class QualityRuleSet {
+
+    /**
+     * 各维度基础分，未指定的维度为0
+     */
+    private Map<QualityDimension, Integer> baseScores = new EnumMap<>(QualityDimension.class);
+
+    /**
+     * 各维度权重，为空时使用配置文件中的权重
+     */
+    private Map<QualityDimension, Double> weights = new EnumMap<>(QualityDimension.class);
+
+    /**
+     * 命名的关键词集合
+     */
+    private Map<String, List<String>> keywordSets = new LinkedHashMap<>();
+
+    /**
+     * 规则，按定义顺序求值
+     */
+    private List<QualityRule> rules = new ArrayList<>();
+
+    public Map<QualityDimension, Integer> getBaseScores() {
+        return baseScores;
+    }
+
+    public void setBaseScores(Map<QualityDimension, Integer> baseScores) {
+        this.baseScores = baseScores;
+    }
+
+    public Map<QualityDimension, Double> getWeights() {
+        return weights;
+    }
+
+    public void setWeights(Map<QualityDimension, Double> weights) {
+        this.weights = weights;
+    }
+
+    public Map<String, List<String>> getKeywordSets() {
+        return keywordSets;
+    }
+
+    public void setKeywordSets(Map<String, List<String>> keywordSets) {
+        this.keywordSets = keywordSets;
+    }
+
+    public List<QualityRule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<QualityRule> rules) {
+        this.rules = rules;
+    }
+}
@@ -0,0 +1,44 @@
+package cn.xlhealth.backend.service.ai.quality.rule;
+
+/**
+ * 规则求值结果
+ * 保存各维度命中规则的分值增减，按基础分计算各维度得分
+ */
+public final class RuleEvaluation {
+
+    private final int[] baseScores;
+    private final int[] deltas;
+    private final double[] weights;
+
+    RuleEvaluation(int[] baseScores, int[] deltas, double[] weights) {
+        this.baseScores = baseScores;
+        this.deltas = deltas;
+        this.weights = weights;
+    }
+
+    /**
+     * 以规则集中的基础分计算维度得分（0-100）
+     */
+    public int score(QualityDimension dimension) {
+        return score(dimension, baseScores[dimension.ordinal()]);
+    }
+
+    /**
+     * 以指定的基础分计算维度得分（0-100），用于基础分由其他方式计算的维度
+     */
+    public int score(QualityDimension dimension, int baseScore) {
+        return CompiledRuleSet.clamp(baseScore + deltas[dimension.ordinal()]);
+    }
+
+    /**
+     * 按规则集权重计算总分
+     * @param scores 各维度得分，按 {@link QualityDimension} 顺序
+     */
+    public int weightedTotal(int... scores) {
+        double total = 0;
+        for (QualityDimension dimension : QualityDimension.values()) {
+            total += scores[dimension.ordinal()] * weights[dimension.ordinal()];
+        }
+        return (int) total;
+    }
+}
@@ -0,0 +1,23 @@
+package cn.xlhealth.backend.service.ai.quality.rule;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * 规则匹配的文本来源
+ */
+public enum TextSource {
+    /** AI回复 */
+    RESPONSE,
+    /** 用户消息 */
+    USER,
+    /** 请求中的情绪状态 */
+    EMOTIONAL_STATE;
+
+    /**
+     * 规则文件中使用小写形式（如 emotional-state）
+     */
+    @JsonCreator
+    public static TextSource fromValue(String value) {
+        return valueOf(value.trim().replace('-', '_').toUpperCase());
+    }
+}
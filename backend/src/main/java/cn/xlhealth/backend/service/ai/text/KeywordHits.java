@@ -0,0 +1,76 @@
+package cn.xlhealth.backend.service.ai.text;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 关键词匹配结果
+ * 记录一次扫描中命中的条目，按分类查询
+ */
+public final class KeywordHits {
+
+    private final KeywordMatcher matcher;
+
+    // 命中的条目
+    private final BitSet entries;
+
+    // 命中的分类
+    private final BitSet categories;
+
+    KeywordHits(KeywordMatcher matcher) {
+        this.matcher = matcher;
+        this.entries = new BitSet(matcher.entryCount());
+        this.categories = new BitSet(matcher.categoryCount());
+    }
+
+    boolean record(int entry) {
+        if (entries.get(entry)) {
+            return false;
+        }
+        entries.set(entry);
+        categories.set(matcher.categoryOf(entry));
+        return true;
+    }
+
+    /**
+     * 是否命中指定分类
+     */
+    public boolean contains(String category) {
+        int index = matcher.indexOf(category);
+        return index >= 0 && categories.get(index);
+    }
+
+    /**
+     * 指定分类下命中的不同词条数
+     */
+    public int count(String category) {
+        return terms(category).size();
+    }
+
+    /**
+     * 指定分类下命中的词条
+     */
+    public Set<String> terms(String category) {
+        int index = matcher.indexOf(category);
+        if (index < 0 || !categories.get(index)) {
+            return Collections.emptySet();
+        }
+
+        Set<String> terms = new LinkedHashSet<>();
+        for (int entry = entries.nextSetBit(0); entry >= 0; entry = entries.nextSetBit(entry + 1)) {
+            if (matcher.categoryOf(entry) == index) {
+                terms.add(matcher.termOf(entry));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * 是否没有任何命中
+     */
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+}
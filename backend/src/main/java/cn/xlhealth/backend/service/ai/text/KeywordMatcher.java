@@ -0,0 +1,325 @@
+package cn.xlhealth.backend.service.ai.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 多关键词匹配器（Aho-Corasick自动机）
+ * 关键词按分类编译为一个自动机，一次扫描即可得到文本命中的所有分类和关键词。
+ * 构建完成后不可变，可在多线程间共享。匹配时忽略大小写。
+ */
+public final class KeywordMatcher {
+
+    // 节点转移：每个节点的子节点字符有序排列，匹配时二分查找
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+
+    // 失败指针
+    private final int[] fail;
+
+    // 每个节点命中的条目（已合并后缀节点的输出）
+    private final int[][] outputs;
+
+    // 条目信息：所属分类下标及归一化的关键词
+    private final int[] entryCategory;
+    private final String[] entryTerm;
+
+    // 分类名称到下标的映射
+    private final Map<String, Integer> categoryIndex;
+    private final String[] categories;
+
+    private KeywordMatcher(Builder builder) {
+        this.categoryIndex = new HashMap<>(builder.categories);
+        this.categories = new String[builder.categories.size()];
+        builder.categories.forEach((name, index) -> categories[index] = name);
+
+        int entryCount = builder.entries.size();
+        this.entryCategory = new int[entryCount];
+        this.entryTerm = new String[entryCount];
+
+        // 构建字典树
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        nodeOutputs.add(new ArrayList<>());
+
+        for (int i = 0; i < entryCount; i++) {
+            Entry entry = builder.entries.get(i);
+            entryCategory[i] = entry.category;
+            entryTerm[i] = entry.term;
+
+            int node = 0;
+            for (int j = 0; j < entry.pattern.length(); j++) {
+                char c = fold(entry.pattern.charAt(j));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(node).put(c, next);
+                    trie.add(new TreeMap<>());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            nodeOutputs.get(node).add(i);
+        }
+
+        int nodeCount = trie.size();
+        this.edgeChars = new char[nodeCount][];
+        this.edgeTargets = new int[nodeCount][];
+        this.fail = new int[nodeCount];
+        this.outputs = new int[nodeCount][];
+
+        for (int node = 0; node < nodeCount; node++) {
+            TreeMap<Character, Integer> children = trie.get(node);
+            edgeChars[node] = new char[children.size()];
+            edgeTargets[node] = new int[children.size()];
+            int k = 0;
+            for (Map.Entry<Character, Integer> child : children.entrySet()) {
+                edgeChars[node][k] = child.getKey();
+                edgeTargets[node][k] = child.getValue();
+                k++;
+            }
+        }
+
+        // 广度优先计算失败指针，并把失败节点的输出合并到当前节点
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        outputs[0] = toArray(nodeOutputs.get(0));
+        for (int child : edgeTargets[0]) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            List<Integer> merged = nodeOutputs.get(node);
+            for (int entry : outputs[fail[node]]) {
+                merged.add(entry);
+            }
+            outputs[node] = toArray(merged);
+
+            for (int k = 0; k < edgeChars[node].length; k++) {
+                char c = edgeChars[node][k];
+                int child = edgeTargets[node][k];
+                int f = fail[node];
+                int target = transition(f, c);
+                while (target < 0 && f != 0) {
+                    f = fail[f];
+                    target = transition(f, c);
+                }
+                fail[child] = target >= 0 ? target : 0;
+                queue.add(child);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 扫描文本，返回所有命中的分类和关键词
+     */
+    public KeywordHits match(CharSequence text) {
+        KeywordHits hits = new KeywordHits(this);
+        if (text == null) {
+            return hits;
+        }
+
+        int node = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = fold(text.charAt(i));
+            int next = transition(node, c);
+            while (next < 0 && node != 0) {
+                node = fail[node];
+                next = transition(node, c);
+            }
+            node = next >= 0 ? next : 0;
+
+            for (int entry : outputs[node]) {
+                hits.record(entry);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * 创建流式扫描游标，文本可分段输入
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * 文本是否命中指定分类（命中即停止扫描）
+     */
+    public boolean containsAny(CharSequence text, String category) {
+        Integer target = categoryIndex.get(category);
+        if (text == null || target == null) {
+            return false;
+        }
+
+        int node = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            char c = fold(text.charAt(i));
+            int next = transition(node, c);
+            while (next < 0 && node != 0) {
+                node = fail[node];
+                next = transition(node, c);
+            }
+            node = next >= 0 ? next : 0;
+
+            for (int entry : outputs[node]) {
+                if (entryCategory[entry] == target) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int step(int node, char c) {
+        int next = transition(node, fold(c));
+        while (next < 0 && node != 0) {
+            node = fail[node];
+            next = transition(node, fold(c));
+        }
+        return next >= 0 ? next : 0;
+    }
+
+    int entryCount() {
+        return entryTerm.length;
+    }
+
+    int categoryCount() {
+        return categories.length;
+    }
+
+    int categoryOf(int entry) {
+        return entryCategory[entry];
+    }
+
+    String termOf(int entry) {
+        return entryTerm[entry];
+    }
+
+    int indexOf(String category) {
+        Integer index = categoryIndex.get(category);
+        return index != null ? index : -1;
+    }
+
+    private int transition(int node, char c) {
+        int k = Arrays.binarySearch(edgeChars[node], c);
+        return k >= 0 ? edgeTargets[node][k] : -1;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * 流式扫描游标
+     * 自动机状态跨分段保留，关键词被拆分在相邻分段中也能命中；
+     * 保留的状态即最长关键词长度内的回看窗口，无需缓存已输入的文本。非线程安全。
+     */
+    public final class Cursor {
+
+        private final KeywordHits hits = new KeywordHits(KeywordMatcher.this);
+        private int node = 0;
+
+        private Cursor() {
+        }
+
+        /**
+         * 输入一段文本
+         * @return 本段是否产生了新的命中条目
+         */
+        public boolean feed(CharSequence chunk) {
+            if (chunk == null) {
+                return false;
+            }
+
+            boolean changed = false;
+            for (int i = 0, length = chunk.length(); i < length; i++) {
+                node = step(node, chunk.charAt(i));
+                for (int entry : outputs[node]) {
+                    changed |= hits.record(entry);
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * 目前为止的命中结果
+         */
+        public KeywordHits hits() {
+            return hits;
+        }
+    }
+
+    /**
+     * 关键词条目
+     */
+    private static class Entry {
+        final String pattern;
+        final int category;
+        final String term;
+
+        Entry(String pattern, int category, String term) {
+            this.pattern = pattern;
+            this.category = category;
+            this.term = term;
+        }
+    }
+
+    /**
+     * 匹配器构建器
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> categories = new LinkedHashMap<>();
+        private final List<Entry> entries = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * 向分类中添加关键词，命中时记录关键词本身
+         */
+        public Builder add(String category, String... keywords) {
+            for (String keyword : keywords) {
+                addTerm(category, keyword, keyword);
+            }
+            return this;
+        }
+
+        /**
+         * 向分类中添加关键词，命中时记录指定的归一化词条
+         * 用于多个模式对应同一词条的场景（如"可以X"、"应该X"都记为X）
+         */
+        public Builder addTerm(String category, String pattern, String term) {
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("Keyword pattern must not be empty");
+            }
+            int index = categories.computeIfAbsent(category, key -> categories.size());
+            entries.add(new Entry(pattern, index, term));
+            return this;
+        }
+
+        public KeywordMatcher build() {
+            return new KeywordMatcher(this);
+        }
+    }
+}
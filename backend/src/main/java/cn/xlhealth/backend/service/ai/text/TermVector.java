@@ -0,0 +1,91 @@
+package cn.xlhealth.backend.service.ai.text;
+
+import java.util.Arrays;
+
+/**
+ * 稀疏词向量
+ * 词ID升序排列，权重为 (1 + ln tf) × idf；余弦相似度按词ID归并计算。不可变。
+ */
+public final class TermVector {
+
+    static final TermVector EMPTY = new TermVector(new int[0], new float[0], 0f);
+
+    private final int[] termIds;
+    private final float[] weights;
+    private final float norm;
+
+    private TermVector(int[] termIds, float[] weights, float norm) {
+        this.termIds = termIds;
+        this.weights = weights;
+        this.norm = norm;
+    }
+
+    /**
+     * 由词ID序列构建向量，会对缓冲区的前count个元素排序
+     */
+    static TermVector of(int[] buffer, int count, TextSegmenter segmenter) {
+        Arrays.sort(buffer, 0, count);
+
+        int distinct = 1;
+        for (int i = 1; i < count; i++) {
+            if (buffer[i] != buffer[i - 1]) {
+                distinct++;
+            }
+        }
+
+        int[] termIds = new int[distinct];
+        float[] weights = new float[distinct];
+        double squares = 0;
+        int k = 0;
+        for (int i = 0; i < count; ) {
+            int termId = buffer[i];
+            int tf = 1;
+            while (i + tf < count && buffer[i + tf] == termId) {
+                tf++;
+            }
+            float weight = (float) ((1 + Math.log(tf)) * segmenter.idfOf(termId));
+            termIds[k] = termId;
+            weights[k] = weight;
+            squares += weight * weight;
+            k++;
+            i += tf;
+        }
+        return new TermVector(termIds, weights, (float) Math.sqrt(squares));
+    }
+
+    /**
+     * 余弦相似度（0-1），任一向量为空时为0
+     */
+    public float cosine(TermVector other) {
+        if (norm == 0f || other.norm == 0f) {
+            return 0f;
+        }
+
+        float dot = 0f;
+        int i = 0;
+        int j = 0;
+        while (i < termIds.length && j < other.termIds.length) {
+            int a = termIds[i];
+            int b = other.termIds[j];
+            if (a == b) {
+                dot += weights[i++] * other.weights[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return dot / (norm * other.norm);
+    }
+
+    /**
+     * 不同词的数量
+     */
+    public int size() {
+        return termIds.length;
+    }
+
+    public boolean isEmpty() {
+        return termIds.length == 0;
+    }
+}
@@ -0,0 +1,323 @@
+package cn.xlhealth.backend.service.ai.text;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于词典的中文分词器
+ * 词典编译为字典树，按正向最大匹配切分；词语带预先计算的IDF，停用词参与匹配但不计入结果。
+ * 连续的字母数字按一个词处理，未登录时以哈希作为词ID。词典外的单个汉字忽略。
+ * 构建完成后不可变，可在多线程间共享；向量化只分配结果数组。
+ */
+public final class TextSegmenter {
+
+    private static final String DICTIONARY_RESOURCE = "text/dictionary.txt";
+    private static final String STOP_WORDS_RESOURCE = "text/stopwords.txt";
+
+    // 未登录词的IDF（视为较少见的词）
+    private static final float DEFAULT_IDF = 6.0f;
+
+    // 节点词条标记
+    private static final int NO_TERM = -1;
+    private static final int STOP_WORD = -2;
+
+    // 字典树转移表：以(父节点, 字符)为键的开放寻址哈希表
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int edgeMask;
+
+    // 每个节点对应的词ID，或NO_TERM/STOP_WORD
+    private final int[] nodeTerms;
+
+    private final String[] terms;
+    private final float[] idf;
+
+    // 每个线程复用的词ID缓冲区
+    private final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[256]);
+
+    private TextSegmenter(Map<String, Float> dictionary, Collection<String> stopWordList) {
+        Set<String> stopWords = new HashSet<>();
+        for (String stopWord : stopWordList) {
+            if (!fold(stopWord).isEmpty()) {
+                stopWords.add(fold(stopWord));
+            }
+        }
+
+        // 停用词优先于词典
+        Map<String, Integer> entries = new LinkedHashMap<>();
+        String[] termList = new String[dictionary.size()];
+        float[] idfList = new float[dictionary.size()];
+        int termCount = 0;
+        for (Map.Entry<String, Float> entry : dictionary.entrySet()) {
+            String word = fold(entry.getKey());
+            if (word.isEmpty() || stopWords.contains(word) || entries.containsKey(word)) {
+                continue;
+            }
+            termList[termCount] = word;
+            idfList[termCount] = entry.getValue();
+            entries.put(word, termCount++);
+        }
+        terms = Arrays.copyOf(termList, termCount);
+        idf = Arrays.copyOf(idfList, termCount);
+        for (String stopWord : stopWords) {
+            entries.put(stopWord, STOP_WORD);
+        }
+
+        int edgeCount = 0;
+        for (String word : entries.keySet()) {
+            edgeCount += word.length();
+        }
+        int capacity = Integer.highestOneBit(Math.max(16, edgeCount * 2 - 1)) << 1;
+        edgeKeys = new long[capacity];
+        edgeTargets = new int[capacity];
+        edgeMask = capacity - 1;
+        Arrays.fill(edgeKeys, -1L);
+
+        List<Integer> nodeTermList = new ArrayList<>();
+        nodeTermList.add(NO_TERM);
+        for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+            String word = entry.getKey();
+            int node = 0;
+            for (int i = 0; i < word.length(); i++) {
+                int next = child(node, word.charAt(i));
+                if (next < 0) {
+                    next = nodeTermList.size();
+                    nodeTermList.add(NO_TERM);
+                    putEdge(node, word.charAt(i), next);
+                }
+                node = next;
+            }
+            nodeTermList.set(node, entry.getValue());
+        }
+
+        nodeTerms = new int[nodeTermList.size()];
+        for (int i = 0; i < nodeTerms.length; i++) {
+            nodeTerms[i] = nodeTermList.get(i);
+        }
+    }
+
+    /**
+     * 使用内置词典的分词器
+     */
+    public static TextSegmenter getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * 由词典构建分词器
+     * @param dictionary 词语及IDF
+     * @param stopWords 停用词
+     */
+    public static TextSegmenter of(Map<String, Float> dictionary, Collection<String> stopWords) {
+        return new TextSegmenter(dictionary, stopWords);
+    }
+
+    /**
+     * 计算TF-IDF加权的稀疏词向量
+     */
+    public TermVector vectorize(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return TermVector.EMPTY;
+        }
+
+        int[] buffer = scratch.get();
+        int count = 0;
+        for (int i = 0, length = text.length(); i < length; ) {
+            long token = next(text, i);
+            int termId = (int) token;
+            if (termId >= 0) {
+                if (count == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    scratch.set(buffer);
+                }
+                buffer[count++] = termId;
+            }
+            i = (int) (token >>> 32);
+        }
+
+        return count == 0 ? TermVector.EMPTY : TermVector.of(buffer, count, this);
+    }
+
+    /**
+     * 切分文本，返回非停用词（用于调试和测试）
+     */
+    public List<String> segment(CharSequence text) {
+        List<String> result = new ArrayList<>();
+        if (text == null) {
+            return result;
+        }
+
+        for (int i = 0, length = text.length(); i < length; ) {
+            long token = next(text, i);
+            int termId = (int) token;
+            int end = (int) (token >>> 32);
+            if (termId >= terms.length) {
+                result.add(text.subSequence(i, end).toString().toLowerCase());
+            } else if (termId >= 0) {
+                result.add(terms[termId]);
+            }
+            i = end;
+        }
+        return result;
+    }
+
+    /**
+     * 词典词语数（不含停用词）
+     */
+    public int size() {
+        return terms.length;
+    }
+
+    float idfOf(int termId) {
+        return termId < terms.length ? idf[termId] : DEFAULT_IDF;
+    }
+
+    /**
+     * 从指定位置切分下一个词
+     * 连续字母数字整体作为一个词；其余按正向最大匹配，词典外的单字跳过
+     * @return 高32位为下一个位置，低32位为词ID（停用词和跳过的字为负数）
+     */
+    private long next(CharSequence text, int start) {
+        int length = text.length();
+        int end;
+        int termId;
+
+        if (isAlphanumeric(fold(text.charAt(start)))) {
+            end = start + 1;
+            while (end < length && isAlphanumeric(fold(text.charAt(end)))) {
+                end++;
+            }
+            termId = lookup(text, start, end);
+            if (termId == NO_TERM && end - start > 1) {
+                termId = terms.length + (hash(text, start, end) & 0x3fffffff);
+            }
+        } else {
+            int node = 0;
+            end = start + 1;
+            termId = NO_TERM;
+            for (int j = start; j < length; j++) {
+                node = child(node, fold(text.charAt(j)));
+                if (node < 0) {
+                    break;
+                }
+                if (nodeTerms[node] != NO_TERM) {
+                    end = j + 1;
+                    termId = nodeTerms[node];
+                }
+            }
+        }
+        return ((long) end << 32) | (termId & 0xffffffffL);
+    }
+
+    /**
+     * 整段文本在词典中的词ID
+     */
+    private int lookup(CharSequence text, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            node = child(node, fold(text.charAt(i)));
+            if (node < 0) {
+                return NO_TERM;
+            }
+        }
+        return nodeTerms[node];
+    }
+
+    private int child(int node, char c) {
+        long key = ((long) node << 16) | c;
+        int slot = mix(key) & edgeMask;
+        while (true) {
+            long existing = edgeKeys[slot];
+            if (existing == key) {
+                return edgeTargets[slot];
+            }
+            if (existing == -1L) {
+                return -1;
+            }
+            slot = (slot + 1) & edgeMask;
+        }
+    }
+
+    private void putEdge(int node, char c, int target) {
+        long key = ((long) node << 16) | c;
+        int slot = mix(key) & edgeMask;
+        while (edgeKeys[slot] != -1L) {
+            slot = (slot + 1) & edgeMask;
+        }
+        edgeKeys[slot] = key;
+        edgeTargets[slot] = target;
+    }
+
+    private static int hash(CharSequence text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + fold(text.charAt(i));
+        }
+        return mix(h);
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    private static char fold(char c) {
+        return c < 128 ? Character.toLowerCase(c) : c;
+    }
+
+    private static String fold(String word) {
+        return word.trim().toLowerCase();
+    }
+
+    private static TextSegmenter loadDefault() {
+        Map<String, Float> dictionary = new LinkedHashMap<>();
+        for (String line : readLines(DICTIONARY_RESOURCE)) {
+            String[] parts = line.split("\\s+");
+            dictionary.put(parts[0], parts.length > 1 ? Float.parseFloat(parts[1]) : DEFAULT_IDF);
+        }
+        return new TextSegmenter(dictionary, readLines(STOP_WORDS_RESOURCE));
+    }
+
+    private static List<String> readLines(String resource) {
+        InputStream in = TextSegmenter.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("Missing segmenter resource: " + resource);
+        }
+
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    lines.add(line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read segmenter resource: " + resource, e);
+        }
+        return lines;
+    }
+
+    private static final class DefaultHolder {
+        static final TextSegmenter INSTANCE = loadDefault();
+    }
+}
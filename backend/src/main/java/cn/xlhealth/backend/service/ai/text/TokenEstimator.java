@@ -0,0 +1,27 @@
+package cn.xlhealth.backend.service.ai.text;
+
+/**
+ * 按字符粗略估算token数，用于没有服务端使用统计时的计量
+ * 中文约每字一个token，其他字符约每4个一个token
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x2E80) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+}
@@ -0,0 +1,264 @@
+package cn.xlhealth.backend.service.ai.usage;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.entity.UsageDaily;
+import cn.xlhealth.backend.mapper.UsageDailyMapper;
+import cn.xlhealth.backend.service.event.MessageCreatedEvent;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用量账本
+ * AI回复保存后按 日期/用户/模型 在内存中累加token用量，定期累加写入每日汇总表（usage_daily），
+ * 写入时按价格表计算费用。查询只读汇总表，不扫描消息表；未刷新的用量最多延迟一个刷新周期。
+ */
+@Component
+public class UsageLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsageLedger.class);
+
+    private static final String UNKNOWN_MODEL = "unknown";
+    private static final BigDecimal THOUSAND = BigDecimal.valueOf(1000);
+
+    @Autowired
+    private UsageDailyMapper usageDailyMapper;
+
+    @Autowired
+    private AIServiceProperties aiServiceProperties;
+
+    // 待写入的用量；同一键的累加和取出都在 compute/remove 中完成，取出后不会再被修改
+    private final Map<UsageKey, Delta> pending = new ConcurrentHashMap<>();
+
+    // 统计
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+    private volatile long lastFlushTime;
+
+    /**
+     * 记录AI回复的token用量（事务提交后）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageCreated(MessageCreatedEvent event) {
+        Message message = event.getMessage();
+        if (message.getRole() != Message.MessageRole.ASSISTANT || message.getUserId() == null) {
+            return;
+        }
+
+        long promptTokens = message.getPromptTokens() != null ? message.getPromptTokens() : 0;
+        long completionTokens = message.getCompletionTokens() != null ? message.getCompletionTokens() : 0;
+        if (promptTokens == 0 && completionTokens == 0) {
+            return;
+        }
+
+        LocalDate date = message.getCreatedTime() != null ? message.getCreatedTime().toLocalDate() : LocalDate.now();
+        record(date, message.getUserId(), message.getModelName(), promptTokens, completionTokens);
+    }
+
+    /**
+     * 累加一次请求的用量
+     */
+    public void record(LocalDate date, Long userId, String model, long promptTokens, long completionTokens) {
+        if (!aiServiceProperties.getUsage().isEnabled()) {
+            return;
+        }
+
+        UsageKey key = new UsageKey(date, userId, model == null || model.isEmpty() ? UNKNOWN_MODEL : model);
+        pending.compute(key, (k, delta) -> {
+            Delta result = delta != null ? delta : new Delta();
+            result.add(1, promptTokens, completionTokens);
+            return result;
+        });
+        recorded.increment();
+    }
+
+    /**
+     * 将内存中的用量累加写入每日汇总表，写入失败的部分留待下次刷新
+     * @return 写入的行数
+     */
+    @Scheduled(fixedDelayString = "${ai.service.usage.flush-seconds:60}",
+            initialDelayString = "${ai.service.usage.flush-seconds:60}",
+            timeUnit = TimeUnit.SECONDS)
+    public synchronized int flush() {
+        int rows = 0;
+        for (UsageKey key : new ArrayList<>(pending.keySet())) {
+            Delta delta = pending.remove(key);
+            if (delta == null) {
+                continue;
+            }
+
+            try {
+                usageDailyMapper.accumulate(toRow(key, delta));
+                rows++;
+            } catch (Exception e) {
+                // 放回，与期间新增的用量合并
+                pending.merge(key, delta, Delta::merge);
+                flushFailures.increment();
+                logger.warn("Failed to flush usage for user {} model {} on {}, will retry: {}",
+                        key.userId, key.model, key.date, e.getMessage());
+                break;
+            }
+        }
+
+        flushedRows.add(rows);
+        lastFlushTime = System.currentTimeMillis();
+        if (rows > 0) {
+            logger.debug("Flushed {} usage rollup rows", rows);
+        }
+        return rows;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 按用户、模型、日期查询每日用量
+     * @param userId 用户ID，为null时查询所有用户
+     * @param model 模型名称，为null时查询所有模型
+     * @param from 开始日期（含）
+     * @param to 结束日期（含）
+     */
+    public List<UsageDaily> query(Long userId, String model, LocalDate from, LocalDate to) {
+        QueryWrapper<UsageDaily> queryWrapper = new QueryWrapper<>();
+        queryWrapper.ge("usage_date", from)
+                .le("usage_date", to)
+                .eq(userId != null, "user_id", userId)
+                .eq(model != null && !model.isEmpty(), "model_name", model)
+                .orderByAsc("usage_date", "user_id", "model_name");
+        return usageDailyMapper.selectList(queryWrapper);
+    }
+
+    /**
+     * 汇总查询结果
+     */
+    public Map<String, Object> summarize(List<UsageDaily> rows) {
+        long requests = 0;
+        long promptTokens = 0;
+        long completionTokens = 0;
+        BigDecimal cost = BigDecimal.ZERO;
+        for (UsageDaily row : rows) {
+            requests += row.getRequestCount() != null ? row.getRequestCount() : 0;
+            promptTokens += row.getPromptTokens() != null ? row.getPromptTokens() : 0;
+            completionTokens += row.getCompletionTokens() != null ? row.getCompletionTokens() : 0;
+            cost = cost.add(row.getCost() != null ? row.getCost() : BigDecimal.ZERO);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", requests);
+        summary.put("promptTokens", promptTokens);
+        summary.put("completionTokens", completionTokens);
+        summary.put("totalTokens", promptTokens + completionTokens);
+        summary.put("cost", cost);
+        summary.put("currency", aiServiceProperties.getUsage().getCurrency());
+        return summary;
+    }
+
+    /**
+     * 账本统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recorded", recorded.sum());
+        stats.put("pendingRows", pending.size());
+        stats.put("flushedRows", flushedRows.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("lastFlushTime", lastFlushTime);
+        return stats;
+    }
+
+    private UsageDaily toRow(UsageKey key, Delta delta) {
+        UsageDaily row = new UsageDaily();
+        row.setUsageDate(key.date);
+        row.setUserId(key.userId);
+        row.setModelName(key.model);
+        row.setRequestCount((int) delta.requests);
+        row.setPromptTokens(delta.promptTokens);
+        row.setCompletionTokens(delta.completionTokens);
+        row.setTotalTokens(delta.promptTokens + delta.completionTokens);
+        row.setCost(cost(key.model, delta.promptTokens, delta.completionTokens));
+        return row;
+    }
+
+    /**
+     * 按价格表计算费用，未配置价格的模型为0
+     */
+    BigDecimal cost(String model, long promptTokens, long completionTokens) {
+        AIServiceProperties.Usage.Price price = aiServiceProperties.getUsage().getPrices().get(model);
+        if (price == null) {
+            return BigDecimal.ZERO;
+        }
+        return price.getPromptPer1k().multiply(BigDecimal.valueOf(promptTokens))
+                .add(price.getCompletionPer1k().multiply(BigDecimal.valueOf(completionTokens)))
+                .divide(THOUSAND, 6, RoundingMode.HALF_UP);
+    }
+
+    private static final class UsageKey {
+        private final LocalDate date;
+        private final Long userId;
+        private final String model;
+
+        private UsageKey(LocalDate date, Long userId, String model) {
+            this.date = date;
+            this.userId = userId;
+            this.model = model;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UsageKey)) {
+                return false;
+            }
+            UsageKey other = (UsageKey) o;
+            return date.equals(other.date) && userId.equals(other.userId) && model.equals(other.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(date, userId, model);
+        }
+    }
+
+    /**
+     * 一个键的待写入增量，仅在 ConcurrentHashMap 的 compute/merge 中修改
+     */
+    private static final class Delta {
+        private long requests;
+        private long promptTokens;
+        private long completionTokens;
+
+        private void add(long requests, long promptTokens, long completionTokens) {
+            this.requests += requests;
+            this.promptTokens += promptTokens;
+            this.completionTokens += completionTokens;
+        }
+
+        private static Delta merge(Delta a, Delta b) {
+            a.add(b.requests, b.promptTokens, b.completionTokens);
+            return a;
+        }
+    }
+}
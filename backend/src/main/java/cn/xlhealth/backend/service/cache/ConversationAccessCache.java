@@ -0,0 +1,164 @@
+package cn.xlhealth.backend.service.cache;
+
+import cn.xlhealth.backend.entity.Conversation;
+import cn.xlhealth.backend.mapper.ConversationMapper;
+import cn.xlhealth.backend.service.event.ConversationAccessChangedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对话访问信息缓存（对话ID → 所有者、状态、版本）
+ * 消息操作的权限校验只需要对话的所有者和状态，命中缓存时不再查询对话表。
+ * 对话更新/删除/归档/激活时立即失效，事务提交后再失效一次；加载期间发生过失效的结果不写入缓存，
+ * 避免把提交前读到的旧状态缓存下来。多节点部署时其他节点上的副本在TTL内过期。
+ */
+@Component
+public class ConversationAccessCache {
+
+    public static final String REQUESTS = "conversation.access.cache.requests";
+    public static final String SIZE = "conversation.access.cache.size";
+    public static final String HIT_RATIO = "conversation.access.cache.hit.ratio";
+
+    private final ConversationMapper conversationMapper;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Map<Long, Access> entries = new ConcurrentHashMap<>();
+
+    /**
+     * 失效次数，每次失效自增，作为缓存条目的版本
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public ConversationAccessCache(ConversationMapper conversationMapper, MeterRegistry registry,
+            @Value("${conversation.access-cache.ttl-seconds:30}") long ttlSeconds,
+            @Value("${conversation.access-cache.max-size:10000}") int maxSize) {
+        this.conversationMapper = conversationMapper;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxSize = maxSize;
+        this.hits = requests(registry, "hit");
+        this.misses = requests(registry, "miss");
+        Gauge.builder(SIZE, entries, Map::size)
+                .description("Conversations held in the access cache")
+                .register(registry);
+        Gauge.builder(HIT_RATIO, this, ConversationAccessCache::hitRatio)
+                .description("Share of access checks served from the cache")
+                .register(registry);
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder(REQUESTS)
+                .description("Conversation access cache lookups")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * 获取对话访问信息，未命中或已过期时从数据库加载
+     * @return 对话不存在或已删除时返回null（不缓存）
+     */
+    public Access get(Long conversationId) {
+        long now = System.nanoTime();
+        Access cached = entries.get(conversationId);
+        if (cached != null && !cached.isExpired(now)) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        long version = invalidations.get();
+        Conversation conversation = conversationMapper.selectAccessInfo(conversationId);
+        if (conversation == null) {
+            entries.remove(conversationId, cached);
+            return null;
+        }
+        Access access = new Access(conversation.getUserId(), conversation.getStatus(), version, now + ttlNanos);
+        if (invalidations.get() == version && hasRoom(now)) {
+            entries.put(conversationId, access);
+            // 写入与失效并发时撤回，下次重新加载
+            if (invalidations.get() != version) {
+                entries.remove(conversationId, access);
+            }
+        }
+        return access;
+    }
+
+    /**
+     * 使对话的缓存失效
+     */
+    public void invalidate(Long conversationId) {
+        invalidations.incrementAndGet();
+        entries.remove(conversationId);
+    }
+
+    /**
+     * 事务提交后再次失效，丢弃提交前加载的旧状态
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAccessChanged(ConversationAccessChangedEvent event) {
+        invalidate(event.getConversationId());
+    }
+
+    /**
+     * 缓存命中率
+     */
+    public double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total > 0 ? hits.count() / total : 0;
+    }
+
+    private boolean hasRoom(long now) {
+        if (entries.size() < maxSize) {
+            return true;
+        }
+        entries.values().removeIf(access -> access.isExpired(now));
+        return entries.size() < maxSize;
+    }
+
+    /**
+     * 对话访问信息
+     */
+    public static final class Access {
+
+        private final Long ownerId;
+        private final Conversation.ConversationStatus status;
+        private final long version;
+        private final long expiresAt;
+
+        public Access(Long ownerId, Conversation.ConversationStatus status, long version, long expiresAt) {
+            this.ownerId = ownerId;
+            this.status = status;
+            this.version = version;
+            this.expiresAt = expiresAt;
+        }
+
+        public Long getOwnerId() {
+            return ownerId;
+        }
+
+        public Conversation.ConversationStatus getStatus() {
+            return status;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package cn.xlhealth.backend.service.event;
+
+/**
+ * 对话归属或状态已变更事件（更新/删除/归档/激活，事务提交后处理）
+ */
+public class ConversationAccessChangedEvent {
+
+    /**
+     * 对话ID
+     */
+    private final Long conversationId;
+
+    public ConversationAccessChangedEvent(Long conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public Long getConversationId() {
+        return conversationId;
+    }
+}
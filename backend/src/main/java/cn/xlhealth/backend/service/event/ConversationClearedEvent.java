@@ -0,0 +1,30 @@
+package cn.xlhealth.backend.service.event;
+
+/**
+ * 对话消息已清空事件（事务提交后处理）
+ */
+public class ConversationClearedEvent {
+
+    /**
+     * 用户ID
+     */
+    private final Long userId;
+
+    /**
+     * 对话ID
+     */
+    private final Long conversationId;
+
+    public ConversationClearedEvent(Long userId, Long conversationId) {
+        this.userId = userId;
+        this.conversationId = conversationId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getConversationId() {
+        return conversationId;
+    }
+}
@@ -0,0 +1,22 @@
+package cn.xlhealth.backend.service.event;
+
+import cn.xlhealth.backend.entity.Message;
+
+/**
+ * 消息已创建事件（事务提交后处理）
+ */
+public class MessageCreatedEvent {
+
+    /**
+     * 已保存的消息
+     */
+    private final Message message;
+
+    public MessageCreatedEvent(Message message) {
+        this.message = message;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,42 @@
+package cn.xlhealth.backend.service.event;
+
+import java.util.List;
+
+/**
+ * 消息已删除事件（事务提交后处理），批量删除时按对话分别发布
+ */
+public class MessageDeletedEvent {
+
+    /**
+     * 用户ID
+     */
+    private final Long userId;
+
+    /**
+     * 对话ID
+     */
+    private final Long conversationId;
+
+    /**
+     * 被删除的消息ID
+     */
+    private final List<Long> messageIds;
+
+    public MessageDeletedEvent(Long userId, Long conversationId, List<Long> messageIds) {
+        this.userId = userId;
+        this.conversationId = conversationId;
+        this.messageIds = messageIds;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getConversationId() {
+        return conversationId;
+    }
+
+    public List<Long> getMessageIds() {
+        return messageIds;
+    }
+}
@@ -3,11 +3,18 @@ package cn.xlhealth.backend.service.impl;
 import cn.xlhealth.backend.entity.Conversation;
 import cn.xlhealth.backend.mapper.ConversationMapper;
 import cn.xlhealth.backend.service.ConversationService;
+import cn.xlhealth.backend.service.cache.ConversationAccessCache;
+import cn.xlhealth.backend.service.event.ConversationAccessChangedEvent;
+import cn.xlhealth.backend.service.event.ConversationArchivedEvent;
 import cn.xlhealth.backend.ui.advice.BusinessException;
+import cn.xlhealth.backend.ui.dto.CursorPageResponse;
+import cn.xlhealth.backend.util.PageCursor;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +29,12 @@ import java.util.List;
 public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Conversation>
         implements ConversationService {
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ConversationAccessCache conversationAccessCache;
+
     @Override
     public Conversation createConversation(Long userId, String title) {
         Conversation conversation = new Conversation();
@@ -44,6 +57,26 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
         return baseMapper.findByUserId(page, userId);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<Conversation> getUserConversationsByCursor(Long userId, String before, String after,
+            Integer limit) {
+        if (before != null && after != null) {
+            throw BusinessException.badRequest("before 和 after 不能同时指定");
+        }
+        int pageSize = PageCursor.normalizeLimit(limit);
+        PageCursor cursor = PageCursor.decode(after != null ? after : before);
+        LocalDateTime createdTime = cursor != null ? cursor.getCreatedTime() : null;
+        Long id = cursor != null ? cursor.getId() : null;
+
+        // 多查询一条判断是否还有下一页
+        List<Conversation> rows = after != null
+                ? baseMapper.findByUserIdAfterCursor(userId, createdTime, id, pageSize + 1)
+                : baseMapper.findByUserIdBeforeCursor(userId, createdTime, id, pageSize + 1);
+        return CursorPageResponse.of(rows, pageSize,
+                conversation -> PageCursor.of(conversation.getCreatedTime(), conversation.getId()));
+    }
+
     @Override
     public Conversation getConversationById(Long conversationId, Long userId) {
         QueryWrapper<Conversation> queryWrapper = new QueryWrapper<>();
@@ -70,6 +103,10 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
         conversation.setUpdatedTime(LocalDateTime.now());
 
         updateById(conversation);
+        accessChanged(conversationId);
+        if (status == Conversation.ConversationStatus.ARCHIVED) {
+            eventPublisher.publishEvent(new ConversationArchivedEvent(userId, conversationId));
+        }
         return conversation;
     }
 
@@ -80,7 +117,11 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
             return false;
         }
 
-        return baseMapper.softDelete(conversationId) > 0;
+        boolean deleted = baseMapper.softDelete(conversationId) > 0;
+        if (deleted) {
+            accessChanged(conversationId);
+        }
+        return deleted;
     }
 
     @Override
@@ -90,7 +131,12 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
             return false;
         }
 
-        return baseMapper.updateStatus(conversationId, Conversation.ConversationStatus.ARCHIVED) > 0;
+        boolean archived = baseMapper.updateStatus(conversationId, Conversation.ConversationStatus.ARCHIVED) > 0;
+        if (archived) {
+            accessChanged(conversationId);
+            eventPublisher.publishEvent(new ConversationArchivedEvent(userId, conversationId));
+        }
+        return archived;
     }
 
     @Override
@@ -100,7 +146,11 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
             return false;
         }
 
-        return baseMapper.updateStatus(conversationId, Conversation.ConversationStatus.ACTIVE) > 0;
+        boolean activated = baseMapper.updateStatus(conversationId, Conversation.ConversationStatus.ACTIVE) > 0;
+        if (activated) {
+            accessChanged(conversationId);
+        }
+        return activated;
     }
 
     @Override
@@ -117,4 +167,17 @@ public class ConversationServiceImpl extends ServiceImpl<ConversationMapper, Con
     public boolean updateConversationStatistics(Long conversationId, Integer messageCount, Integer totalTokens) {
         return baseMapper.updateStatistics(conversationId, messageCount, totalTokens) > 0;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean incrementConversationStatistics(Long conversationId, int messageDelta, int tokenDelta) {
+        return baseMapper.incrementStatistics(conversationId, messageDelta, tokenDelta) > 0;
+    }
+
+    /**
+     * 对话所有权或状态变更：立即失效访问缓存，并在事务提交后再次失效
+     */
+    private void accessChanged(Long conversationId) {
+        conversationAccessCache.invalidate(conversationId);
+        eventPublisher.publishEvent(new ConversationAccessChangedEvent(conversationId));
+    }
+}
@@ -3,28 +3,41 @@ package cn.xlhealth.backend.service.impl;
 import cn.xlhealth.backend.ui.dto.request.AIReplyRequest;
 import cn.xlhealth.backend.entity.Conversation;
 import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.entity.UserMessageStats;
 import cn.xlhealth.backend.mapper.MessageMapper;
 import cn.xlhealth.backend.service.ConversationService;
 import cn.xlhealth.backend.service.MessageService;
 import cn.xlhealth.backend.service.ai.AIServiceManager;
 import cn.xlhealth.backend.service.ai.dto.AIRequest;
 import cn.xlhealth.backend.service.ai.dto.AIResponse;
-import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import cn.xlhealth.backend.service.ai.monitor.RequestTracer;
+import cn.xlhealth.backend.service.cache.ConversationAccessCache;
+import cn.xlhealth.backend.service.event.ConversationClearedEvent;
+import cn.xlhealth.backend.service.event.MessageCreatedEvent;
+import cn.xlhealth.backend.service.event.MessageDeletedEvent;
+import cn.xlhealth.backend.service.persist.MessageBatchWriter;
+import cn.xlhealth.backend.service.stats.UserMessageStatsUpdater;
 import cn.xlhealth.backend.ui.advice.BusinessException;
+import cn.xlhealth.backend.ui.dto.CursorPageResponse;
 import cn.xlhealth.backend.ui.dto.PageResponse;
+import cn.xlhealth.backend.util.PageCursor;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 /**
  * 消息服务实现类
@@ -39,9 +52,27 @@ public class MessageServiceImpl implements MessageService {
     @Autowired
     private ConversationService conversationService;
 
+    @Autowired
+    private ConversationAccessCache conversationAccessCache;
+
     @Autowired
     private AIServiceManager aiServiceManager;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private RequestTracer requestTracer;
+
+    @Autowired
+    private MessageBatchWriter messageBatchWriter;
+
+    @Autowired
+    private UserMessageStatsUpdater userMessageStatsUpdater;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Override
     public Message generateAIReply(Long conversationId, Message userMessage) {
         log.info("生成AI回复: conversationId={}, userMessageId={}", conversationId, userMessage.getId());
@@ -51,117 +82,51 @@ public class MessageServiceImpl implements MessageService {
     }
 
     @Override
-    @Transactional
     public Message generateAIReply(Long conversationId, Long userId, String userMessage) {
         log.info("生成AI回复（简化版）: conversationId={}, userId={}, userMessage={}", conversationId, userId, userMessage);
+        return generateReply(conversationId, userId, userMessage);
+    }
 
+    @Override
+    public Message generateAIReply(Long conversationId, Long userId, AIReplyRequest request) {
+        log.info("生成AI回复: conversationId={}, userId={}, message={}", conversationId, userId, request.getMessage());
+        return generateReply(conversationId, userId, request.getMessage());
+    }
+
+    /**
+     * 生成AI回复：短事务插入处理中的占位消息，事务外调用AI服务，再以短事务回写结果
+     * 回写失败时将占位消息标记为失败，避免一直停留在处理中
+     */
+    private Message generateReply(Long conversationId, Long userId, String userMessage) {
         // 验证用户是否有权限访问对话
-        validateUserAccessToConversationMessages(conversationId, userId);
+        try (RequestTracer.Span span = requestTracer.start("access")) {
+            validateUserAccessToConversationMessages(conversationId, userId);
+        }
 
         log.info("开始生成AI回复，用户消息内容: {}", userMessage);
 
-        // 1. 创建AI回复消息（直接设置为成功状态，简化处理）
-        Message aiMessage = new Message();
-        aiMessage.setConversationId(conversationId);
-        aiMessage.setUserId(userId);
-        aiMessage.setRole(Message.MessageRole.ASSISTANT);
-        aiMessage.setContentType(Message.ContentType.TEXT);
-        aiMessage.setStatus(Message.MessageStatus.SUCCESS);
-        aiMessage.setCreatedTime(LocalDateTime.now());
-        aiMessage.setUpdatedTime(LocalDateTime.now());
-        aiMessage.setDeleted(false);
+        // 1. 短事务插入处理中的AI回复消息，AI调用期间不持有事务和数据库连接
+        Message aiMessage;
+        try (RequestTracer.Span span = requestTracer.start("insert")) {
+            aiMessage = insertPendingReply(conversationId, userId);
+        }
 
+        AIResponse aiResponse = null;
         try {
-            // 2. 构建简化的AI请求
+            // 2. 构建AI请求
             AIRequest aiRequest = new AIRequest();
             aiRequest.setUserId(userId);
             aiRequest.setConversationId(conversationId);
             aiRequest.setUserMessage(userMessage);
 
             // 3. 调用AI服务生成回复
-            AIResponse aiResponse = aiServiceManager.processRequest(aiRequest);
+            try (RequestTracer.Span span = requestTracer.start("ai")) {
+                aiResponse = aiServiceManager.processRequest(aiRequest);
+            }
 
             if (aiResponse.isSuccess()) {
                 // 4. 设置回复内容和相关统计信息
-                aiMessage.setContent(aiResponse.getContent());
-                
-                // 设置AI服务提供商
-                if (aiResponse.getProvider() != null) {
-                    aiMessage.setModelName(aiResponse.getProvider());
-                }
-                
-                // 设置响应时间（确保不超出INT范围）
-                if (aiResponse.getResponseTime() != null) {
-                    Long responseTime = aiResponse.getResponseTime();
-                    // 检查是否超出INT范围，如果超出则设置为最大值
-                    if (responseTime > Integer.MAX_VALUE) {
-                        log.warn("响应时间超出INT范围: {}ms，设置为最大值: {}ms", responseTime, Integer.MAX_VALUE);
-                        aiMessage.setResponseTime((long) Integer.MAX_VALUE);
-                    } else {
-                        aiMessage.setResponseTime(responseTime);
-                    }
-                }
-                
-                // 从metadata中提取token统计信息
-                if (aiResponse.getMetadata() != null) {
-                    Map<String, Object> metadata = aiResponse.getMetadata();
-                    log.info("AIResponse metadata内容: {}", metadata);
-                    
-                    // 设置prompt tokens
-                    if (metadata.containsKey("prompt_tokens")) {
-                        Object promptTokens = metadata.get("prompt_tokens");
-                        log.info("提取prompt_tokens: {} (类型: {})", promptTokens, promptTokens != null ? promptTokens.getClass().getSimpleName() : "null");
-                        if (promptTokens instanceof Integer) {
-                            aiMessage.setPromptTokens((Integer) promptTokens);
-                        } else if (promptTokens instanceof Number) {
-                            aiMessage.setPromptTokens(((Number) promptTokens).intValue());
-                        }
-                    }
-                    
-                    // 设置completion tokens
-                    if (metadata.containsKey("completion_tokens")) {
-                        Object completionTokens = metadata.get("completion_tokens");
-                        log.info("提取completion_tokens: {} (类型: {})", completionTokens, completionTokens != null ? completionTokens.getClass().getSimpleName() : "null");
-                        if (completionTokens instanceof Integer) {
-                            aiMessage.setCompletionTokens((Integer) completionTokens);
-                        } else if (completionTokens instanceof Number) {
-                            aiMessage.setCompletionTokens(((Number) completionTokens).intValue());
-                        }
-                    }
-                    
-                    // 设置total tokens
-                    if (metadata.containsKey("total_tokens")) {
-                        Object totalTokens = metadata.get("total_tokens");
-                        log.info("提取total_tokens: {} (类型: {})", totalTokens, totalTokens != null ? totalTokens.getClass().getSimpleName() : "null");
-                        if (totalTokens instanceof Integer) {
-                            aiMessage.setTotalTokens((Integer) totalTokens);
-                            // 同时设置token_count字段（向后兼容）
-                            aiMessage.setTokenCount((Integer) totalTokens);
-                        } else if (totalTokens instanceof Number) {
-                            aiMessage.setTotalTokens(((Number) totalTokens).intValue());
-                            aiMessage.setTokenCount(((Number) totalTokens).intValue());
-                        }
-                    }
-                    
-                    // 设置模型名称（如果metadata中有更详细的模型信息）
-                    if (metadata.containsKey("model")) {
-                        Object model = metadata.get("model");
-                        log.info("提取model: {} (类型: {})", model, model != null ? model.getClass().getSimpleName() : "null");
-                        if (model instanceof String) {
-                            aiMessage.setModelName((String) model);
-                        }
-                    }
-                } else {
-                    log.warn("AIResponse中没有metadata信息");
-                }
-                
-                log.info("AI回复生成成功: content={}, promptTokens={}, completionTokens={}, totalTokens={}, model={}, responseTime={}ms", 
-                    aiResponse.getContent(), 
-                    aiMessage.getPromptTokens(), 
-                    aiMessage.getCompletionTokens(), 
-                    aiMessage.getTotalTokens(),
-                    aiMessage.getModelName(),
-                    aiMessage.getResponseTime());
+                applyAIResponse(aiMessage, aiResponse);
             } else {
                 // AI服务调用失败
                 aiMessage.setContent("抱歉，我暂时无法回复您的消息，请稍后再试。");
@@ -179,152 +144,94 @@ public class MessageServiceImpl implements MessageService {
             aiMessage.setStatus(Message.MessageStatus.FAILED);
         }
 
-        // 5. 保存AI消息到数据库
-        int result = messageMapper.insert(aiMessage);
-        if (result <= 0) {
-            log.error("AI消息保存失败: conversationId={}, userId={}", conversationId, userId);
-            throw new BusinessException("AI消息保存失败");
+        // 5. 短事务回写回复内容、token数和状态
+        try (RequestTracer.Span span = requestTracer.start("finalize")) {
+            finalizeReply(aiMessage);
+        } catch (RuntimeException e) {
+            log.error("AI回复回写失败: messageId={}", aiMessage.getId(), e);
+            markReplyFailed(aiMessage);
+            aiResponse = null;
         }
 
-        // 6. 更新对话统计信息
-        try {
-            updateConversationStatistics(conversationId);
-        } catch (Exception e) {
-            log.warn("更新对话统计信息失败，但不影响主流程: {}", e.getMessage());
+        // 6. 已提交，发布事件并关联消息ID（异步质量评分完成后回写）
+        eventPublisher.publishEvent(new MessageCreatedEvent(aiMessage));
+        if (aiResponse != null && aiResponse.isSuccess()) {
+            aiServiceManager.bindReplyMessage(aiResponse, aiMessage.getId());
         }
 
         log.info("AI回复处理完成: messageId={}, status={}", aiMessage.getId(), aiMessage.getStatus());
         return aiMessage;
     }
 
-    @Override
-    @Transactional
-    public Message generateAIReply(Long conversationId, Long userId, AIReplyRequest request) {
-        log.info("生成AI回复: conversationId={}, userId={}, message={}", conversationId, userId, request.getMessage());
-
-        // 验证用户是否有权限访问对话
-        validateUserAccessToConversationMessages(conversationId, userId);
-
-        log.info("开始生成AI回复，用户消息内容: {}", request.getMessage());
-
-        // 1. 创建AI回复消息（直接设置为成功状态，简化处理）
-        Message aiMessage = new Message();
-        aiMessage.setConversationId(conversationId);
-        aiMessage.setUserId(userId);
-        aiMessage.setRole(Message.MessageRole.ASSISTANT);
-        aiMessage.setContentType(Message.ContentType.TEXT);
+    /**
+     * 将成功的AI响应写入回复消息：内容、服务提供商、响应时间及metadata中的token统计和模型名称
+     */
+    private void applyAIResponse(Message aiMessage, AIResponse aiResponse) {
+        aiMessage.setContent(aiResponse.getContent());
         aiMessage.setStatus(Message.MessageStatus.SUCCESS);
-        aiMessage.setCreatedTime(LocalDateTime.now());
-        aiMessage.setUpdatedTime(LocalDateTime.now());
-        aiMessage.setDeleted(false);
-
-        try {
-            // 2. 构建AI请求
-            AIRequest aiRequest = new AIRequest();
-            aiRequest.setUserId(userId);
-            aiRequest.setConversationId(conversationId);
-            aiRequest.setUserMessage(request.getMessage());
 
-            // 3. 调用AI服务生成回复
-            AIResponse aiResponse = aiServiceManager.processRequest(aiRequest);
+        // 设置AI服务提供商
+        if (aiResponse.getProvider() != null) {
+            aiMessage.setModelName(aiResponse.getProvider());
+        }
 
-            if (aiResponse.isSuccess()) {
-                // 4. 设置回复内容和相关统计信息
-                aiMessage.setContent(aiResponse.getContent());
-                
-                // 设置AI服务提供商
-                if (aiResponse.getProvider() != null) {
-                    aiMessage.setModelName(aiResponse.getProvider());
-                }
-                
-                // 设置响应时间
-                if (aiResponse.getResponseTime() != null) {
-                    aiMessage.setResponseTime(aiResponse.getResponseTime());
-                }
-                
-                // 从metadata中提取token统计信息
-                if (aiResponse.getMetadata() != null) {
-                    Map<String, Object> metadata = aiResponse.getMetadata();
-                    
-                    // 设置prompt tokens
-                    if (metadata.containsKey("prompt_tokens")) {
-                        Object promptTokens = metadata.get("prompt_tokens");
-                        if (promptTokens instanceof Integer) {
-                            aiMessage.setPromptTokens((Integer) promptTokens);
-                        }
-                    }
-                    
-                    // 设置completion tokens
-                    if (metadata.containsKey("completion_tokens")) {
-                        Object completionTokens = metadata.get("completion_tokens");
-                        if (completionTokens instanceof Integer) {
-                            aiMessage.setCompletionTokens((Integer) completionTokens);
-                        }
-                    }
-                    
-                    // 设置total tokens
-                    if (metadata.containsKey("total_tokens")) {
-                        Object totalTokens = metadata.get("total_tokens");
-                        if (totalTokens instanceof Integer) {
-                            aiMessage.setTotalTokens((Integer) totalTokens);
-                            // 同时设置token_count字段（向后兼容）
-                            aiMessage.setTokenCount((Integer) totalTokens);
-                        }
-                    }
-                    
-                    // 设置模型名称（如果metadata中有更详细的模型信息）
-                    if (metadata.containsKey("model")) {
-                        Object model = metadata.get("model");
-                        if (model instanceof String) {
-                            aiMessage.setModelName((String) model);
-                        }
-                    }
-                }
-                
-                log.info("AI回复生成成功: content={}, promptTokens={}, completionTokens={}, totalTokens={}, model={}, responseTime={}ms", 
-                    aiResponse.getContent(), 
-                    aiMessage.getPromptTokens(), 
-                    aiMessage.getCompletionTokens(), 
-                    aiMessage.getTotalTokens(),
-                    aiMessage.getModelName(),
-                    aiMessage.getResponseTime());
+        // 设置响应时间（确保不超出INT范围）
+        if (aiResponse.getResponseTime() != null) {
+            Long responseTime = aiResponse.getResponseTime();
+            if (responseTime > Integer.MAX_VALUE) {
+                log.warn("响应时间超出INT范围: {}ms，设置为最大值: {}ms", responseTime, Integer.MAX_VALUE);
+                aiMessage.setResponseTime((long) Integer.MAX_VALUE);
             } else {
-                // AI服务调用失败
-                aiMessage.setContent("抱歉，我暂时无法回复您的消息，请稍后再试。");
-                aiMessage.setStatus(Message.MessageStatus.FAILED);
-                if (aiResponse.getErrorMessage() != null) {
-                    aiMessage.setErrorMessage(aiResponse.getErrorMessage());
-                }
-                log.error("AI回复生成失败: {}", aiResponse.getErrorMessage());
+                aiMessage.setResponseTime(responseTime);
             }
-
-        } catch (Exception e) {
-            // 异常处理
-            log.error("AI回复生成异常", e);
-            aiMessage.setContent("抱歉，系统出现异常，请稍后再试。");
-            aiMessage.setStatus(Message.MessageStatus.FAILED);
         }
 
-        // 5. 保存AI消息到数据库
-        int result = messageMapper.insert(aiMessage);
-        if (result <= 0) {
-            log.error("AI消息保存失败: conversationId={}, userId={}", conversationId, userId);
-            throw new BusinessException("AI消息保存失败");
+        // 从metadata中提取token统计信息
+        Map<String, Object> metadata = aiResponse.getMetadata();
+        if (metadata != null) {
+            log.debug("AIResponse metadata内容: {}", metadata);
+            Integer promptTokens = intValue(metadata.get("prompt_tokens"));
+            if (promptTokens != null) {
+                aiMessage.setPromptTokens(promptTokens);
+            }
+            Integer completionTokens = intValue(metadata.get("completion_tokens"));
+            if (completionTokens != null) {
+                aiMessage.setCompletionTokens(completionTokens);
+            }
+            Integer totalTokens = intValue(metadata.get("total_tokens"));
+            if (totalTokens != null) {
+                aiMessage.setTotalTokens(totalTokens);
+                // 同时设置token_count字段（向后兼容）
+                aiMessage.setTokenCount(totalTokens);
+            }
+            // 设置模型名称（如果metadata中有更详细的模型信息）
+            if (metadata.get("model") instanceof String) {
+                aiMessage.setModelName((String) metadata.get("model"));
+            }
+        } else {
+            log.warn("AIResponse中没有metadata信息");
         }
 
-        // 6. 更新对话统计信息
-        try {
-            updateConversationStatistics(conversationId);
-        } catch (Exception e) {
-            log.warn("更新对话统计信息失败，但不影响主流程: {}", e.getMessage());
-        }
+        log.info("AI回复生成成功: content={}, promptTokens={}, completionTokens={}, totalTokens={}, model={}, responseTime={}ms",
+                aiResponse.getContent(),
+                aiMessage.getPromptTokens(),
+                aiMessage.getCompletionTokens(),
+                aiMessage.getTotalTokens(),
+                aiMessage.getModelName(),
+                aiMessage.getResponseTime());
+    }
 
-        log.info("AI回复处理完成: messageId={}, status={}", aiMessage.getId(), aiMessage.getStatus());
-        return aiMessage;
+    private static Integer intValue(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : null;
     }
 
+    /**
+     * 发送消息
+     * 不在外层事务中执行：批量写入时由刷新线程在批次事务中提交，调用方等待提交期间不能占用连接；
+     * 逐条写入时插入和统计更新在短事务中完成
+     */
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Message sendMessage(Long conversationId, Long userId, String content,
             Message.MessageRole role, Message.ContentType contentType, String metadata) {
         log.info("发送消息: conversationId={}, userId={}, role={}, contentType={}",
@@ -346,14 +253,11 @@ public class MessageServiceImpl implements MessageService {
         message.setUpdatedTime(LocalDateTime.now());
         message.setDeleted(false);
 
-        // 保存消息到数据库
-        int result = messageMapper.insert(message);
-        if (result <= 0) {
-            throw new BusinessException("消息发送失败");
-        }
+        // 保存消息到数据库并更新对话统计信息
+        CompletableFuture<Message> saved = saveMessage(message, "消息发送失败");
 
-        // 更新对话统计信息
-        updateConversationStatistics(conversationId);
+        // 提交后同步上下文缓存及长期记忆
+        saved.thenAccept(created -> eventPublisher.publishEvent(new MessageCreatedEvent(created)));
 
         // 如果是用户消息，可能需要触发AI回复
         if (role == Message.MessageRole.USER) {
@@ -390,16 +294,18 @@ public class MessageServiceImpl implements MessageService {
         // 验证用户是否有权限访问对话消息
         validateUserAccessToConversationMessages(conversationId, userId);
 
-        // 构建查询条件
+        // 构建查询条件（不含仍在生成中的AI回复占位消息）
         QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
         queryWrapper.eq("conversation_id", conversationId)
-                .eq("deleted", false);
-
-        // 设置排序
-        if ("desc".equalsIgnoreCase(sortOrder)) {
-            queryWrapper.orderByDesc(sortBy != null ? sortBy : "created_time");
-        } else {
-            queryWrapper.orderByAsc(sortBy != null ? sortBy : "created_time");
+                .eq("deleted", false)
+                .ne("status", Message.MessageStatus.PROCESSING);
+
+        // 设置排序，按创建时间排序时以ID兜底，与复合索引 (conversation_id, deleted, created_time, id) 顺序一致
+        String sortColumn = sortBy != null ? sortBy : "created_time";
+        boolean desc = "desc".equalsIgnoreCase(sortOrder);
+        queryWrapper.orderBy(true, !desc, sortColumn);
+        if ("created_time".equals(sortColumn)) {
+            queryWrapper.orderBy(true, !desc, "id");
         }
 
         // 执行分页查询
@@ -410,15 +316,42 @@ public class MessageServiceImpl implements MessageService {
         return result;
     }
 
+    @Override
+    public CursorPageResponse<Message> getConversationMessagesByCursor(Long conversationId, Long userId,
+            String before, String after, Integer limit) {
+        log.info("游标获取对话消息列表: conversationId={}, userId={}, before={}, after={}, limit={}",
+                conversationId, userId, before, after, limit);
+
+        if (before != null && after != null) {
+            throw BusinessException.badRequest("before 和 after 不能同时指定");
+        }
+
+        // 验证用户是否有权限访问对话消息
+        validateUserAccessToConversationMessages(conversationId, userId);
+
+        int pageSize = PageCursor.normalizeLimit(limit);
+        PageCursor cursor = PageCursor.decode(before != null ? before : after);
+        LocalDateTime createdTime = cursor != null ? cursor.getCreatedTime() : null;
+        Long id = cursor != null ? cursor.getId() : null;
+
+        // 多查询一条判断是否还有下一页，不执行COUNT
+        List<Message> rows = before != null
+                ? messageMapper.findBeforeCursor(conversationId, createdTime, id, pageSize + 1)
+                : messageMapper.findAfterCursor(conversationId, createdTime, id, pageSize + 1);
+        return CursorPageResponse.of(rows, pageSize,
+                message -> PageCursor.of(message.getCreatedTime(), message.getId()));
+    }
+
     @Override
     public List<Message> getConversationMessages(Long conversationId, Integer limit) {
         log.info("获取对话消息列表（上下文管理）: conversationId={}, limit={}", conversationId, limit);
 
-        // 构建查询条件
+        // 构建查询条件（不含仍在生成中的AI回复占位消息）
         QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
         queryWrapper.eq("conversation_id", conversationId)
                 .eq("deleted", false)
-                .orderByDesc("created_time");
+                .ne("status", Message.MessageStatus.PROCESSING)
+                .orderByDesc("created_time", "id");
 
         // 设置限制数量
         if (limit != null && limit > 0) {
@@ -441,8 +374,8 @@ public class MessageServiceImpl implements MessageService {
             throw new BusinessException("消息不存在");
         }
 
-        // 验证用户是否有权限访问该消息
-        validateUserAccessToMessage(messageId, userId);
+        // 验证用户是否有权限访问该消息所属的对话（消息已读取，不再按ID重复查询）
+        validateUserAccessToConversationMessages(message.getConversationId(), userId);
 
         log.info("获取消息详情成功: messageId={}", messageId);
         return message;
@@ -453,8 +386,12 @@ public class MessageServiceImpl implements MessageService {
     public Boolean deleteMessage(Long messageId, Long userId) {
         log.info("删除消息: messageId={}, userId={}", messageId, userId);
 
-        // 验证用户是否有权限访问该消息
-        validateUserAccessToMessage(messageId, userId);
+        // 删除前读取所属对话（逻辑删除后按ID查询不到），并验证用户是否有权限访问该消息
+        Message message = messageMapper.selectById(messageId);
+        if (message == null || message.getDeleted()) {
+            throw new BusinessException("消息不存在");
+        }
+        validateUserAccessToConversationMessages(message.getConversationId(), userId);
 
         // 软删除消息
         UpdateWrapper<Message> updateWrapper = new UpdateWrapper<>();
@@ -468,10 +405,10 @@ public class MessageServiceImpl implements MessageService {
 
         if (success) {
             // 更新对话统计信息
-            Message message = messageMapper.selectById(messageId);
-            if (message != null) {
-                updateConversationStatistics(message.getConversationId());
-            }
+            adjustConversationStatistics(message.getConversationId(), -1, -tokensOf(message));
+            userMessageStatsUpdater.recordDeleted(List.of(message));
+            eventPublisher.publishEvent(new MessageDeletedEvent(userId, message.getConversationId(),
+                    List.of(messageId)));
             log.info("删除消息成功: messageId={}", messageId);
         } else {
             log.warn("删除消息失败: messageId={}", messageId);
@@ -494,6 +431,13 @@ public class MessageServiceImpl implements MessageService {
             validateUserAccessToMessage(messageId, userId);
         }
 
+        // 删除前按对话分组（逻辑删除后查询不到）
+        QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
+        queryWrapper.select("id", "conversation_id", "user_id", "role", "token_count").in("id", messageIds);
+        List<Message> deletedMessages = messageMapper.selectList(queryWrapper);
+        Map<Long, List<Message>> messagesByConversation = deletedMessages.stream()
+                .collect(Collectors.groupingBy(Message::getConversationId));
+
         // 批量软删除
         UpdateWrapper<Message> updateWrapper = new UpdateWrapper<>();
         updateWrapper.in("id", messageIds)
@@ -505,14 +449,13 @@ public class MessageServiceImpl implements MessageService {
 
         if (result > 0) {
             // 更新相关对话的统计信息
-            QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
-            queryWrapper.in("id", messageIds).eq("deleted", true);
-            List<Message> deletedMessages = messageMapper.selectList(queryWrapper);
-
-            deletedMessages.stream()
-                    .map(Message::getConversationId)
-                    .distinct()
-                    .forEach(this::updateConversationStatistics);
+            messagesByConversation.forEach((conversationId, messages) -> {
+                int tokens = messages.stream().mapToInt(MessageServiceImpl::tokensOf).sum();
+                adjustConversationStatistics(conversationId, -messages.size(), -tokens);
+                eventPublisher.publishEvent(new MessageDeletedEvent(userId, conversationId,
+                        messages.stream().map(Message::getId).collect(Collectors.toList())));
+            });
+            userMessageStatsUpdater.recordDeleted(deletedMessages);
 
             log.info("批量删除消息成功: count={}", result);
         } else {
@@ -524,44 +467,10 @@ public class MessageServiceImpl implements MessageService {
 
     @Transactional
     public boolean batchDeleteMessagesOld(List<Long> messageIds, Long userId) {
-        log.info("批量删除消息: messageIds={}, userId={}", messageIds, userId);
-
         if (messageIds == null || messageIds.isEmpty()) {
             return true;
         }
-
-        // 验证所有消息的权限
-        for (Long messageId : messageIds) {
-            validateUserAccessToMessage(messageId, userId);
-        }
-
-        // 批量软删除
-        UpdateWrapper<Message> updateWrapper = new UpdateWrapper<>();
-        updateWrapper.in("id", messageIds)
-                .eq("deleted", false)
-                .set("deleted", true)
-                .set("updated_time", LocalDateTime.now());
-
-        int result = messageMapper.update(null, updateWrapper);
-        boolean success = result > 0;
-
-        if (success) {
-            // 更新相关对话的统计信息
-            QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
-            queryWrapper.in("id", messageIds).eq("deleted", true);
-            List<Message> deletedMessages = messageMapper.selectList(queryWrapper);
-
-            deletedMessages.stream()
-                    .map(Message::getConversationId)
-                    .distinct()
-                    .forEach(this::updateConversationStatistics);
-
-            log.info("批量删除消息成功: count={}", result);
-        } else {
-            log.warn("批量删除消息失败: messageIds={}", messageIds);
-        }
-
-        return success;
+        return batchDeleteMessages(messageIds, userId) > 0;
     }
 
     @Override
@@ -574,7 +483,7 @@ public class MessageServiceImpl implements MessageService {
         QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
         queryWrapper.eq("conversation_id", conversationId)
                 .eq("deleted", false)
-                .orderByDesc("created_time")
+                .orderByDesc("created_time", "id")
                 .last("LIMIT 1");
 
         Message lastMessage = messageMapper.selectOne(queryWrapper);
@@ -610,7 +519,7 @@ public class MessageServiceImpl implements MessageService {
         QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
         queryWrapper.eq("conversation_id", conversationId)
                 .eq("deleted", false)
-                .orderByDesc("created_time")
+                .orderByDesc("created_time", "id")
                 .last("LIMIT 1");
 
         Message lastMessage = messageMapper.selectOne(queryWrapper);
@@ -627,6 +536,9 @@ public class MessageServiceImpl implements MessageService {
         // 验证用户是否有权限访问对话消息
         validateUserAccessToConversationMessages(conversationId, userId);
 
+        // 删除前按角色统计，用于扣减用户消息统计
+        UserMessageStats cleared = userMessageStatsUpdater.aggregate(userId, conversationId);
+
         // 软删除对话中的所有消息
         UpdateWrapper<Message> updateWrapper = new UpdateWrapper<>();
         updateWrapper.eq("conversation_id", conversationId)
@@ -636,8 +548,13 @@ public class MessageServiceImpl implements MessageService {
 
         int result = messageMapper.update(null, updateWrapper);
 
-        // 更新对话统计信息
-        updateConversationStatistics(conversationId);
+        // 更新对话统计信息（已全部删除，直接置零）
+        conversationService.updateConversationStatistics(conversationId, 0, 0);
+        if (result > 0) {
+            userMessageStatsUpdater.recordCleared(cleared);
+        }
+
+        eventPublisher.publishEvent(new ConversationClearedEvent(userId, conversationId));
 
         log.info("清空对话所有消息成功: conversationId={}, deletedCount={}", conversationId, result);
         return Boolean.valueOf(result >= 0); // 即使没有消息也算成功
@@ -665,15 +582,15 @@ public class MessageServiceImpl implements MessageService {
 
     public boolean validateUserAccessToConversationMessages(Long conversationId, Long userId) {
         try {
-            // 通过ConversationService验证用户是否有权限访问对话
-            Conversation conversation = conversationService.getConversationById(conversationId, userId);
-            if (conversation == null) {
+            // 通过访问缓存验证用户是否有权限访问对话，未命中时按主键查询所有者和状态
+            ConversationAccessCache.Access access = conversationAccessCache.get(conversationId);
+            if (access == null || !access.getOwnerId().equals(userId)) {
                 throw new BusinessException("对话不存在或无权限访问");
             }
 
             // 检查对话状态，只有ACTIVE状态的对话才能进行消息操作
-            if (conversation.getStatus() != Conversation.ConversationStatus.ACTIVE) {
-                String statusDesc = conversation.getStatus() == Conversation.ConversationStatus.ARCHIVED ? "已归档"
+            if (access.getStatus() != Conversation.ConversationStatus.ACTIVE) {
+                String statusDesc = access.getStatus() == Conversation.ConversationStatus.ARCHIVED ? "已归档"
                         : "已删除";
                 throw new BusinessException("对话" + statusDesc + "，无法进行消息操作");
             }
@@ -726,106 +643,128 @@ public class MessageServiceImpl implements MessageService {
     public MessageStatistics getUserMessageStatistics(Long userId, Long conversationId) {
         log.info("获取用户消息统计: userId={}, conversationId={}", userId, conversationId);
 
+        UserMessageStats stats;
         if (conversationId != null) {
             // 验证用户是否有权限访问对话
             validateUserAccessToConversationMessages(conversationId, userId);
+            // 单个对话按角色一次聚合
+            stats = userMessageStatsUpdater.aggregate(userId, conversationId);
+        } else {
+            // 全部对话直接读取按增量维护的用户统计
+            stats = userMessageStatsUpdater.getStatistics(userId);
         }
 
-        QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
-        queryWrapper.eq("user_id", userId)
-                .eq("deleted", false);
-
-        if (conversationId != null) {
-            queryWrapper.eq("conversation_id", conversationId);
-        }
-
-        // 统计总消息数
-        Long totalMessages = messageMapper.selectCount(queryWrapper);
-
-        // 统计各角色消息数
-        QueryWrapper<Message> userQueryWrapper = new QueryWrapper<Message>();
-        userQueryWrapper.eq("user_id", userId)
-                .eq("deleted", false)
-                .eq("role", Message.MessageRole.USER);
-        if (conversationId != null) {
-            userQueryWrapper.eq("conversation_id", conversationId);
-        }
-        Long userMessages = messageMapper.selectCount(userQueryWrapper);
+        MessageService.MessageStatistics statistics = new MessageService.MessageStatistics();
+        statistics.setTotalMessages(stats.getTotalMessages());
+        statistics.setUserMessages(stats.getUserMessages());
+        statistics.setAiMessages(stats.getAssistantMessages());
+        statistics.setSystemMessages(stats.getSystemMessages());
+        statistics.setTotalTokens(stats.getTotalTokens());
 
-        QueryWrapper<Message> assistantQueryWrapper = new QueryWrapper<Message>();
-        assistantQueryWrapper.eq("user_id", userId)
-                .eq("deleted", false)
-                .eq("role", Message.MessageRole.ASSISTANT);
-        if (conversationId != null) {
-            assistantQueryWrapper.eq("conversation_id", conversationId);
-        }
-        Long assistantMessages = messageMapper.selectCount(assistantQueryWrapper);
+        log.info("获取用户消息统计成功: userId={}, statistics={}", userId, statistics);
+        return statistics;
+    }
 
-        QueryWrapper<Message> systemQueryWrapper = new QueryWrapper<Message>();
-        systemQueryWrapper.eq("user_id", userId)
-                .eq("deleted", false)
-                .eq("role", Message.MessageRole.SYSTEM);
-        if (conversationId != null) {
-            systemQueryWrapper.eq("conversation_id", conversationId);
+    /**
+     * 保存消息并更新对话统计信息
+     * 启用批量写入时交给 MessageBatchWriter 合并提交：COMMIT 模式返回时已提交，QUEUED 模式入队即返回（尚无ID），
+     * 依赖消息ID的后续处理应挂在返回的Future上。调用方不能处于事务中，否则等待提交期间占用连接
+     */
+    private CompletableFuture<Message> saveMessage(Message message, String failureMessage) {
+        if (messageBatchWriter.isEnabled()) {
+            return messageBatchWriter.submit(message);
         }
-        Long systemMessages = messageMapper.selectCount(systemQueryWrapper);
+        transactionTemplate.executeWithoutResult(status -> insertMessage(message, failureMessage));
+        return CompletableFuture.completedFuture(message);
+    }
 
-        // 统计总token数
-        QueryWrapper<Message> tokenQueryWrapper = new QueryWrapper<Message>();
-        tokenQueryWrapper.eq("user_id", userId)
-                .eq("deleted", false);
-        if (conversationId != null) {
-            tokenQueryWrapper.eq("conversation_id", conversationId);
-        }
-        tokenQueryWrapper.select("COALESCE(SUM(token_count), 0) as total_tokens");
-        List<Message> tokenResult = messageMapper.selectList(tokenQueryWrapper);
-        Long totalTokens = 0L;
-        if (!tokenResult.isEmpty() && tokenResult.get(0).getTokenCount() != null) {
-            totalTokens = Long.valueOf(tokenResult.get(0).getTokenCount());
+    /**
+     * 插入消息并更新对话和用户统计
+     */
+    private void insertMessage(Message message, String failureMessage) {
+        if (messageMapper.insert(message) <= 0) {
+            log.error("消息保存失败: conversationId={}, userId={}", message.getConversationId(), message.getUserId());
+            throw new BusinessException(failureMessage);
         }
+        adjustConversationStatistics(message.getConversationId(), 1, tokensOf(message));
+        userMessageStatsUpdater.recordCreated(List.of(message));
+    }
 
-        MessageService.MessageStatistics statistics = new MessageService.MessageStatistics();
-        statistics.setTotalMessages(totalMessages);
-        statistics.setUserMessages(userMessages);
-        statistics.setAiMessages(assistantMessages);
-        statistics.setSystemMessages(systemMessages);
-        statistics.setTotalTokens(totalTokens);
+    /**
+     * 在短事务中插入处理中（PROCESSING）的AI回复消息
+     * 回写时需要消息ID，因此不经过批量写入；消息数在此计入统计，token数在回写时补记
+     */
+    private Message insertPendingReply(Long conversationId, Long userId) {
+        Message aiMessage = new Message();
+        aiMessage.setConversationId(conversationId);
+        aiMessage.setUserId(userId);
+        aiMessage.setRole(Message.MessageRole.ASSISTANT);
+        aiMessage.setContent("");
+        aiMessage.setContentType(Message.ContentType.TEXT);
+        aiMessage.setStatus(Message.MessageStatus.PROCESSING);
+        aiMessage.setCreatedTime(LocalDateTime.now());
+        aiMessage.setUpdatedTime(LocalDateTime.now());
+        aiMessage.setDeleted(false);
+        transactionTemplate.executeWithoutResult(status -> insertMessage(aiMessage, "AI消息保存失败"));
+        return aiMessage;
+    }
 
-        log.info("获取用户消息统计成功: userId={}, statistics={}", userId, statistics);
-        return statistics;
+    /**
+     * 在短事务中回写AI回复的内容、token数和状态，并补记token统计
+     */
+    private void finalizeReply(Message aiMessage) {
+        aiMessage.setUpdatedTime(LocalDateTime.now());
+        transactionTemplate.executeWithoutResult(status -> {
+            if (messageMapper.updateById(aiMessage) <= 0) {
+                // AI调用期间消息已被删除（如清空对话），统计已随删除扣减
+                log.warn("AI回复消息已不存在，跳过回写: messageId={}", aiMessage.getId());
+                return;
+            }
+            int tokens = tokensOf(aiMessage);
+            if (tokens > 0) {
+                adjustConversationStatistics(aiMessage.getConversationId(), 0, tokens);
+                userMessageStatsUpdater.recordTokens(aiMessage.getUserId(), tokens);
+            }
+        });
     }
 
     /**
-     * 更新对话统计信息
+     * 回写失败后将占位消息标记为失败（不计token），仍失败时消息保持处理中，列表和上下文查询均不返回处理中的消息
      */
-    private void updateConversationStatistics(Long conversationId) {
+    private void markReplyFailed(Message aiMessage) {
+        aiMessage.setContent("抱歉，系统出现异常，请稍后再试。");
+        aiMessage.setStatus(Message.MessageStatus.FAILED);
+        aiMessage.setPromptTokens(null);
+        aiMessage.setCompletionTokens(null);
+        aiMessage.setTotalTokens(null);
+        aiMessage.setTokenCount(null);
+
+        Message failed = new Message();
+        failed.setId(aiMessage.getId());
+        failed.setContent(aiMessage.getContent());
+        failed.setStatus(Message.MessageStatus.FAILED);
+        failed.setErrorMessage(aiMessage.getErrorMessage());
+        failed.setUpdatedTime(LocalDateTime.now());
         try {
-            // 统计对话中的消息数量
-            QueryWrapper<Message> queryWrapper = new QueryWrapper<Message>();
-            queryWrapper.eq("conversation_id", conversationId)
-                    .eq("deleted", false);
-            Long messageCount = messageMapper.selectCount(queryWrapper);
-
-            // 统计总token数
-            QueryWrapper<Message> tokenQueryWrapper = new QueryWrapper<Message>();
-            tokenQueryWrapper.eq("conversation_id", conversationId)
-                    .eq("deleted", false)
-                    .select("COALESCE(SUM(token_count), 0) as total_tokens");
-            List<Message> tokenResult = messageMapper.selectList(tokenQueryWrapper);
-            Integer totalTokens = 0;
-            if (!tokenResult.isEmpty() && tokenResult.get(0).getTokenCount() != null) {
-                totalTokens = tokenResult.get(0).getTokenCount();
-            }
+            messageMapper.updateById(failed);
+        } catch (RuntimeException e) {
+            log.error("AI回复标记失败状态失败: messageId={}", aiMessage.getId(), e);
+            throw new BusinessException("AI回复保存失败，请稍后再试");
+        }
+    }
 
-            // 更新对话统计信息
-            conversationService.updateConversationStatistics(conversationId,
-                    messageCount.intValue(), totalTokens);
+    /**
+     * 按增量更新对话统计信息
+     * 与消息写入/删除在同一事务中执行，不再每次重新统计整个对话；偏差由 ConversationStatisticsReconciler 定期修复
+     */
+    private void adjustConversationStatistics(Long conversationId, int messageDelta, int tokenDelta) {
+        conversationService.incrementConversationStatistics(conversationId, messageDelta, tokenDelta);
+        log.debug("更新对话统计信息成功: conversationId={}, messageDelta={}, tokenDelta={}",
+                conversationId, messageDelta, tokenDelta);
+    }
 
-            log.debug("更新对话统计信息成功: conversationId={}, messageCount={}, totalTokens={}",
-                    conversationId, messageCount, totalTokens);
-        } catch (Exception e) {
-            log.error("更新对话统计信息失败: conversationId={}, error={}", conversationId, e.getMessage(), e);
-        }
+    private static int tokensOf(Message message) {
+        return message.getTokenCount() != null ? message.getTokenCount() : 0;
     }
 
 }
\ No newline at end of file
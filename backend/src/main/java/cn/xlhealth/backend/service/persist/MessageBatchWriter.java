@@ -0,0 +1,345 @@
+package cn.xlhealth.backend.service.persist;
+
+import cn.xlhealth.backend.config.properties.MessageWriteProperties;
+import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.entity.UserMessageStats;
+import cn.xlhealth.backend.mapper.ConversationMapper;
+import cn.xlhealth.backend.mapper.MessageMapper;
+import cn.xlhealth.backend.mapper.UserMessageStatsMapper;
+import cn.xlhealth.backend.service.stats.UserMessageStatsUpdater;
+import cn.xlhealth.backend.ui.advice.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 消息批量写入（write-behind）
+ * 开启后消息先进入有界队列，由单个刷新线程按批（满 maxBatchSize 条或等待 flushIntervalMs）用JDBC批量插入，
+ * 并在同一事务中按对话合并更新统计。COMMIT 模式下调用方等待所在批次提交（组提交）；队列满时入队等待，超时拒绝。
+ * 批次失败时逐条重试，只有出错的消息失败。
+ */
+@Slf4j
+@Component
+public class MessageBatchWriter {
+
+    public static final String BATCH_SIZE = "message.write.batch.size";
+    public static final String FLUSH = "message.write.flush";
+    public static final String QUEUE_SIZE = "message.write.queue.size";
+    public static final String REJECTED = "message.write.rejected";
+
+    /**
+     * 刷新线程空闲时检查停止标志的间隔（毫秒）
+     */
+    private static final long IDLE_POLL_MS = 100;
+
+    private final MessageWriteProperties properties;
+    private final BatchStore store;
+    private final BlockingQueue<PendingWrite> queue;
+
+    private final DistributionSummary batchSizes;
+    private final Timer flushSuccess;
+    private final Timer flushFailure;
+    private final Counter rejected;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    @Autowired
+    public MessageBatchWriter(MessageWriteProperties properties, MeterRegistry registry,
+            SqlSessionFactory sqlSessionFactory, PlatformTransactionManager transactionManager,
+            MessageMapper messageMapper, ConversationMapper conversationMapper,
+            UserMessageStatsUpdater userMessageStatsUpdater) {
+        this(properties, registry, new MyBatisBatchStore(new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH),
+                new TransactionTemplate(transactionManager), messageMapper, conversationMapper,
+                userMessageStatsUpdater));
+    }
+
+    MessageBatchWriter(MessageWriteProperties properties, MeterRegistry registry, BatchStore store) {
+        this.properties = properties;
+        this.store = store;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        this.batchSizes = DistributionSummary.builder(BATCH_SIZE)
+                .description("Messages per write-behind batch")
+                .register(registry);
+        this.flushSuccess = flushTimer(registry, "success");
+        this.flushFailure = flushTimer(registry, "failure");
+        this.rejected = Counter.builder(REJECTED)
+                .description("Message writes rejected because the write-behind queue was full")
+                .register(registry);
+        Gauge.builder(QUEUE_SIZE, queue, BlockingQueue::size)
+                .description("Messages waiting in the write-behind queue")
+                .register(registry);
+    }
+
+    private static Timer flushTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder(FLUSH)
+                .description("Write-behind batch flush latency")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @PostConstruct
+    public synchronized void start() {
+        if (!properties.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::run, "message-batch-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("消息批量写入已启用: durability={}, maxBatchSize={}, flushIntervalMs={}, queueCapacity={}",
+                properties.getDurability(), properties.getMaxBatchSize(), properties.getFlushIntervalMs(),
+                properties.getQueueCapacity());
+    }
+
+    /**
+     * 停止接收新消息，写完队列中剩余的消息后退出
+     */
+    @PreDestroy
+    public void shutdown() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = flusher;
+            flusher = null;
+        }
+        if (current != null) {
+            try {
+                current.join(properties.getCommitTimeoutMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * 提交消息写入
+     * COMMIT 模式下返回时消息已提交（ID已回填），QUEUED 模式下入队即返回
+     * @return 消息提交后完成的Future，写入失败时异常完成
+     * @throws BusinessException 队列已满、等待提交超时或写入失败（COMMIT 模式）
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        PendingWrite write = new PendingWrite(message);
+        boolean queued = false;
+        try {
+            queued = running && queue.offer(write, properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queued) {
+            rejected.increment();
+            log.warn("消息写入队列已满，拒绝写入: conversationId={}, queueSize={}",
+                    message.getConversationId(), queue.size());
+            throw new BusinessException("消息写入繁忙，请稍后再试");
+        }
+
+        if (properties.getDurability() == MessageWriteProperties.Durability.COMMIT) {
+            try {
+                write.future.get(properties.getCommitTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 批次可能仍会提交，调用方重试前应先确认
+                log.error("等待消息提交超时: conversationId={}", message.getConversationId());
+                throw new BusinessException("消息保存超时，请稍后刷新");
+            } catch (ExecutionException e) {
+                throw new BusinessException("消息保存失败");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BusinessException("消息保存失败");
+            }
+        }
+        return write.future;
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // 不再等待，写完队列后退出
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 收集一批：等到第一条后，继续收集直到满批或距第一条超过刷新间隔
+     */
+    private void collect(List<PendingWrite> batch) throws InterruptedException {
+        PendingWrite first = running ? queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS) : queue.poll();
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+        while (batch.size() < properties.getMaxBatchSize()) {
+            long remaining = deadline - System.nanoTime();
+            PendingWrite next = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * 写入一批消息，失败时逐条重试
+     */
+    void flush(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingWrite write : batch) {
+            messages.add(write.message);
+        }
+        batchSizes.record(batch.size());
+
+        try {
+            store.insertBatch(messages);
+            flushSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            for (PendingWrite write : batch) {
+                write.future.complete(write.message);
+            }
+            return;
+        } catch (Exception e) {
+            flushFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.warn("批量写入消息失败，逐条重试: size={}, error={}", batch.size(), e.getMessage());
+        }
+
+        for (PendingWrite write : batch) {
+            // 回滚的批次可能已回填ID
+            write.message.setId(null);
+            try {
+                store.insert(write.message);
+                write.future.complete(write.message);
+            } catch (Exception e) {
+                log.error("写入消息失败: conversationId={}, error={}", write.message.getConversationId(), e.getMessage());
+                write.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * 按对话合并统计增量：[消息数, token数]
+     */
+    static Map<Long, int[]> statisticsDeltas(List<Message> messages) {
+        Map<Long, int[]> deltas = new LinkedHashMap<>();
+        for (Message message : messages) {
+            int[] delta = deltas.computeIfAbsent(message.getConversationId(), id -> new int[2]);
+            delta[0]++;
+            delta[1] += message.getTokenCount() != null ? message.getTokenCount() : 0;
+        }
+        return deltas;
+    }
+
+    /**
+     * 消息存储
+     */
+    interface BatchStore {
+
+        /**
+         * 在一个事务中批量插入消息并更新对话和用户统计
+         */
+        void insertBatch(List<Message> messages);
+
+        /**
+         * 在单独的事务中插入一条消息并更新对话和用户统计
+         */
+        void insert(Message message);
+    }
+
+    /**
+     * 基于MyBatis的消息存储，批量插入使用BATCH执行器
+     * 同一事务中只能使用一种执行器，因此批量事务中的统计更新也通过BATCH执行器
+     */
+    static final class MyBatisBatchStore implements BatchStore {
+
+        private final SqlSessionTemplate batchSqlSession;
+        private final TransactionTemplate transactionTemplate;
+        private final MessageMapper messageMapper;
+        private final ConversationMapper conversationMapper;
+        private final UserMessageStatsUpdater userMessageStatsUpdater;
+
+        MyBatisBatchStore(SqlSessionTemplate batchSqlSession, TransactionTemplate transactionTemplate,
+                MessageMapper messageMapper, ConversationMapper conversationMapper,
+                UserMessageStatsUpdater userMessageStatsUpdater) {
+            this.batchSqlSession = batchSqlSession;
+            this.transactionTemplate = transactionTemplate;
+            this.messageMapper = messageMapper;
+            this.conversationMapper = conversationMapper;
+            this.userMessageStatsUpdater = userMessageStatsUpdater;
+        }
+
+        @Override
+        public void insertBatch(List<Message> messages) {
+            // 用户统计记录在批次事务之前创建，批次内只执行增量更新（BATCH模式下拿不到更新行数）
+            Map<Long, UserMessageStats> userDeltas = UserMessageStatsUpdater.deltas(messages, 1);
+            userMessageStatsUpdater.ensureExists(userDeltas.keySet());
+            transactionTemplate.executeWithoutResult(status -> {
+                MessageMapper batchMessageMapper = batchSqlSession.getMapper(MessageMapper.class);
+                ConversationMapper batchConversationMapper = batchSqlSession.getMapper(ConversationMapper.class);
+                UserMessageStatsMapper batchStatsMapper = batchSqlSession.getMapper(UserMessageStatsMapper.class);
+                for (Message message : messages) {
+                    batchMessageMapper.insert(message);
+                }
+                statisticsDeltas(messages).forEach((conversationId, delta) ->
+                        batchConversationMapper.incrementStatistics(conversationId, delta[0], delta[1]));
+                userDeltas.values().forEach(batchStatsMapper::incrementStatistics);
+                batchSqlSession.flushStatements();
+            });
+        }
+
+        @Override
+        public void insert(Message message) {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (messageMapper.insert(message) <= 0) {
+                    throw new BusinessException("消息保存失败");
+                }
+                int tokens = message.getTokenCount() != null ? message.getTokenCount() : 0;
+                conversationMapper.incrementStatistics(message.getConversationId(), 1, tokens);
+                userMessageStatsUpdater.recordCreated(List.of(message));
+            });
+        }
+    }
+
+    static final class PendingWrite {
+
+        private final Message message;
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        PendingWrite(Message message) {
+            this.message = message;
+        }
+    }
+}
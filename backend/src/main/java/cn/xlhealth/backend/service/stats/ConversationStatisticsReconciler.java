@@ -0,0 +1,75 @@
+package cn.xlhealth.backend.service.stats;
+
+import cn.xlhealth.backend.mapper.ConversationMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话统计核对任务
+ * 对话的消息数和token数随消息写入/删除按增量维护，该任务按ID顺序分批与消息表核对，修复偏差
+ */
+@Slf4j
+@Component
+public class ConversationStatisticsReconciler {
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Value("${conversation.statistics.reconcile-batch-size:200}")
+    private int batchSize = 200;
+
+    /**
+     * 下一批的起始对话ID（不含）
+     */
+    private long cursor;
+
+    /**
+     * 核对一批对话，到达末尾后从头开始
+     * @return 修复的对话数
+     */
+    @Scheduled(fixedDelayString = "${conversation.statistics.reconcile-interval-minutes:10}",
+            initialDelayString = "${conversation.statistics.reconcile-interval-minutes:10}",
+            timeUnit = TimeUnit.MINUTES)
+    public synchronized int reconcile() {
+        List<Map<String, Object>> rows = conversationMapper.selectStatisticsBatch(cursor, batchSize);
+        int repaired = 0;
+        for (Map<String, Object> row : rows) {
+            long conversationId = getLong(row, "conversationId");
+            long messageCount = getLong(row, "messageCount");
+            long totalTokens = getLong(row, "totalTokens");
+            long actualCount = getLong(row, "actualCount");
+            long actualTokens = getLong(row, "actualTokens");
+            cursor = Math.max(cursor, conversationId);
+
+            if (messageCount == actualCount && totalTokens == actualTokens) {
+                continue;
+            }
+            if (conversationMapper.repairStatistics(conversationId, messageCount, totalTokens,
+                    actualCount, actualTokens) > 0) {
+                repaired++;
+                log.warn("修复对话统计偏差: conversationId={}, messageCount={}->{}, totalTokens={}->{}",
+                        conversationId, messageCount, actualCount, totalTokens, actualTokens);
+            }
+        }
+        if (rows.size() < batchSize) {
+            cursor = 0;
+        }
+        return repaired;
+    }
+
+    private static long getLong(Map<String, Object> row, String column) {
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(column) && entry.getValue() instanceof Number) {
+                return ((Number) entry.getValue()).longValue();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,191 @@
+package cn.xlhealth.backend.service.stats;
+
+import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.entity.UserMessageStats;
+import cn.xlhealth.backend.mapper.MessageMapper;
+import cn.xlhealth.backend.mapper.UserMessageStatsMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户消息统计维护
+ * 消息写入/删除时按用户和角色累加增量到 user_message_stats，查询用户统计只需按主键读取一行
+ */
+@Slf4j
+@Component
+public class UserMessageStatsUpdater {
+
+    @Autowired
+    private UserMessageStatsMapper userMessageStatsMapper;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    /**
+     * 累加新增的消息
+     */
+    public void recordCreated(Collection<Message> messages) {
+        apply(deltas(messages, 1).values());
+    }
+
+    /**
+     * 扣减删除的消息
+     */
+    public void recordDeleted(Collection<Message> messages) {
+        apply(deltas(messages, -1).values());
+    }
+
+    /**
+     * 补记已计入消息数的消息的token数（如回写完成的AI回复）
+     */
+    public void recordTokens(Long userId, long tokens) {
+        if (userId == null || tokens == 0) {
+            return;
+        }
+        UserMessageStats delta = emptyStats(userId);
+        delta.setTotalTokens(tokens);
+        apply(List.of(delta));
+    }
+
+    /**
+     * 扣减清空对话时删除的消息
+     * @param cleared 清空前由 {@link #aggregate(Long, Long)} 统计的该对话消息
+     */
+    public void recordCleared(UserMessageStats cleared) {
+        UserMessageStats delta = emptyStats(cleared.getUserId());
+        delta.setTotalMessages(-cleared.getTotalMessages());
+        delta.setUserMessages(-cleared.getUserMessages());
+        delta.setAssistantMessages(-cleared.getAssistantMessages());
+        delta.setSystemMessages(-cleared.getSystemMessages());
+        delta.setTotalTokens(-cleared.getTotalTokens());
+        apply(List.of(delta));
+    }
+
+    /**
+     * 按增量更新统计，记录不存在时插入；并发插入冲突时改为更新
+     */
+    public void apply(Collection<UserMessageStats> deltas) {
+        for (UserMessageStats delta : deltas) {
+            if (userMessageStatsMapper.incrementStatistics(delta) > 0) {
+                continue;
+            }
+            try {
+                userMessageStatsMapper.insert(initialStats(delta));
+            } catch (DuplicateKeyException e) {
+                userMessageStatsMapper.incrementStatistics(delta);
+            }
+        }
+    }
+
+    /**
+     * 确保用户的统计记录存在，批量写入在同一批次中只需执行增量更新
+     */
+    public void ensureExists(Collection<Long> userIds) {
+        for (Long userId : userIds) {
+            if (userMessageStatsMapper.selectById(userId) != null) {
+                continue;
+            }
+            try {
+                userMessageStatsMapper.insert(emptyStats(userId));
+            } catch (DuplicateKeyException e) {
+                log.debug("用户消息统计已存在: userId={}", userId);
+            }
+        }
+    }
+
+    /**
+     * 获取用户消息统计，没有统计记录时（该用户尚无消息写入）按消息表聚合
+     */
+    public UserMessageStats getStatistics(Long userId) {
+        UserMessageStats stats = userMessageStatsMapper.selectById(userId);
+        return stats != null ? stats : aggregate(userId, null);
+    }
+
+    /**
+     * 按角色一次聚合用户的消息数和token数
+     * @param conversationId 为空时统计该用户的全部对话
+     */
+    public UserMessageStats aggregate(Long userId, Long conversationId) {
+        UserMessageStats stats = emptyStats(userId);
+        for (Map<String, Object> row : messageMapper.countByRole(userId, conversationId)) {
+            long count = getLong(row, "messageCount");
+            Object role = getValue(row, "role");
+            add(stats, role != null ? Message.MessageRole.valueOf(role.toString().toUpperCase()) : null,
+                    count, getLong(row, "totalTokens"));
+        }
+        return stats;
+    }
+
+    /**
+     * 按用户合并消息的统计增量，sign 为1表示新增，-1表示删除；没有用户ID的消息不计入
+     */
+    public static Map<Long, UserMessageStats> deltas(Collection<Message> messages, int sign) {
+        Map<Long, UserMessageStats> deltas = new LinkedHashMap<>();
+        for (Message message : messages) {
+            if (message.getUserId() == null) {
+                continue;
+            }
+            UserMessageStats delta = deltas.computeIfAbsent(message.getUserId(), UserMessageStatsUpdater::emptyStats);
+            int tokens = message.getTokenCount() != null ? message.getTokenCount() : 0;
+            add(delta, message.getRole(), sign, (long) sign * tokens);
+        }
+        return deltas;
+    }
+
+    private static void add(UserMessageStats stats, Message.MessageRole role, long count, long tokens) {
+        stats.setTotalMessages(stats.getTotalMessages() + count);
+        stats.setTotalTokens(stats.getTotalTokens() + tokens);
+        if (role == Message.MessageRole.USER) {
+            stats.setUserMessages(stats.getUserMessages() + count);
+        } else if (role == Message.MessageRole.ASSISTANT) {
+            stats.setAssistantMessages(stats.getAssistantMessages() + count);
+        } else if (role == Message.MessageRole.SYSTEM) {
+            stats.setSystemMessages(stats.getSystemMessages() + count);
+        }
+    }
+
+    private static UserMessageStats emptyStats(Long userId) {
+        UserMessageStats stats = new UserMessageStats();
+        stats.setUserId(userId);
+        stats.setTotalMessages(0L);
+        stats.setUserMessages(0L);
+        stats.setAssistantMessages(0L);
+        stats.setSystemMessages(0L);
+        stats.setTotalTokens(0L);
+        return stats;
+    }
+
+    /**
+     * 首次写入的统计记录，删除先于记录创建时计数取0
+     */
+    private static UserMessageStats initialStats(UserMessageStats delta) {
+        UserMessageStats stats = emptyStats(delta.getUserId());
+        stats.setTotalMessages(Math.max(delta.getTotalMessages(), 0));
+        stats.setUserMessages(Math.max(delta.getUserMessages(), 0));
+        stats.setAssistantMessages(Math.max(delta.getAssistantMessages(), 0));
+        stats.setSystemMessages(Math.max(delta.getSystemMessages(), 0));
+        stats.setTotalTokens(Math.max(delta.getTotalTokens(), 0));
+        return stats;
+    }
+
+    private static Object getValue(Map<String, Object> row, String column) {
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(column)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static long getLong(Map<String, Object> row, String column) {
+        Object value = getValue(row, column);
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+}
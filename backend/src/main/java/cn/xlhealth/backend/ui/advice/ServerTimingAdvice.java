@@ -0,0 +1,38 @@
+package cn.xlhealth.backend.ui.advice;
+
+import cn.xlhealth.backend.service.ai.monitor.RequestTracer;
+import cn.xlhealth.backend.service.ai.monitor.StageTimings;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * 写入 Server-Timing 响应头
+ * 响应体写出后响应头即已提交，因此在写出响应体之前写入；请求未记录任何阶段时不写入
+ */
+@RestControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+            Class<? extends HttpMessageConverter<?>> selectedConverterType,
+            ServerHttpRequest request, ServerHttpResponse response) {
+
+        StageTimings timings = RequestTracer.current();
+        if (timings != null && !timings.isEmpty()) {
+            response.getHeaders().set(SERVER_TIMING, timings.toServerTiming());
+        }
+        return body;
+    }
+}
@@ -4,6 +4,7 @@ import cn.xlhealth.backend.ui.dto.ApiResponse;
 import cn.xlhealth.backend.service.ai.AIServiceManager;
 import cn.xlhealth.backend.service.ai.dto.AIRequest;
 import cn.xlhealth.backend.service.ai.dto.AIResponse;
+import cn.xlhealth.backend.service.ai.monitor.MetricsHistory;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -15,6 +16,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.UUID;
 
@@ -179,6 +182,126 @@ public class AIController {
         }
     }
 
+    /**
+     * 获取长期记忆索引统计
+     */
+    @GetMapping("/memory/stats")
+    @Operation(summary = "获取记忆索引统计", description = "获取长期记忆索引的构建/查询延迟和每用户内存占用")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getMemoryStats() {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiServiceManager.getMemoryStats()));
+
+        } catch (Exception e) {
+            logger.error("Error getting memory stats", e);
+            return ResponseEntity.internalServerError().body(ApiResponse.internalError("获取记忆索引统计失败"));
+        }
+    }
+
+    /**
+     * 获取异步质量评分统计
+     */
+    @GetMapping("/quality/stats")
+    @Operation(summary = "获取质量评分统计", description = "获取异步质量评分的采样、队列深度和处理延迟")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getQualityStats() {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiServiceManager.getQualityStats()));
+
+        } catch (Exception e) {
+            logger.error("Error getting quality stats", e);
+            return ResponseEntity.internalServerError().body(ApiResponse.internalError("获取质量评分统计失败"));
+        }
+    }
+
+    /**
+     * 获取质量评分规则统计
+     */
+    @GetMapping("/quality/rules")
+    @Operation(summary = "获取质量规则统计", description = "获取当前质量评分规则的版本、各规则命中次数和求值耗时")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getQualityRuleStats() {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiServiceManager.getQualityRuleStats()));
+
+        } catch (Exception e) {
+            logger.error("Error getting quality rule stats", e);
+            return ResponseEntity.internalServerError().body(ApiResponse.internalError("获取质量规则统计失败"));
+        }
+    }
+
+    /**
+     * 重新加载质量评分规则
+     */
+    @PostMapping("/quality/rules/reload")
+    @Operation(summary = "重新加载质量规则", description = "重新读取并编译质量评分规则文件，规则无效时保留当前规则")
+    public ResponseEntity<ApiResponse<String>> reloadQualityRules() {
+        try {
+            long version = aiServiceManager.reloadQualityRules();
+            return ResponseEntity.ok(ApiResponse.success("质量规则已重新加载，版本 " + version));
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.badRequest("质量规则无效: " + e.getMessage()));
+
+        } catch (Exception e) {
+            logger.error("Error reloading quality rules", e);
+            return ResponseEntity.internalServerError().body(ApiResponse.internalError("重新加载质量规则失败"));
+        }
+    }
+
+    /**
+     * 查询token用量和费用
+     */
+    @GetMapping("/usage")
+    @Operation(summary = "获取用量统计", description = "按用户、模型和日期查询token用量和费用（每日汇总，最多延迟一个刷新周期）")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getUsage(
+            @Parameter(description = "用户ID，为空则查询所有用户") @RequestParam(required = false) Long userId,
+            @Parameter(description = "模型名称，为空则查询所有模型") @RequestParam(required = false) String model,
+            @Parameter(description = "开始日期（yyyy-MM-dd），默认为结束日期前29天") @RequestParam(required = false) LocalDate from,
+            @Parameter(description = "结束日期（yyyy-MM-dd），默认为今天") @RequestParam(required = false) LocalDate to) {
+
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().body(ApiResponse.badRequest("开始日期不能晚于结束日期"));
+        }
+
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiServiceManager.getUsage(userId, model, start, end)));
+
+        } catch (Exception e) {
+            logger.error("Error getting usage", e);
+            return ResponseEntity.internalServerError().body(ApiResponse.internalError("获取用量统计失败"));
+        }
+    }
+
+    /**
+     * 查询指标历史
+     */
+    @GetMapping("/metrics/history")
+    @Operation(summary = "获取指标历史", description = "按分钟/小时/天粒度查询调用量、失败数、响应时间分位数、token用量和质量评分")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getMetricsHistory(
+            @Parameter(description = "提供商名称，为空则查询全部") @RequestParam(required = false) String provider,
+            @Parameter(description = "粒度（1m/1h/1d），为空则按时间范围自动选择") @RequestParam(required = false) String resolution,
+            @Parameter(description = "开始时间（yyyy-MM-ddTHH:mm:ss），默认为结束时间前1小时") @RequestParam(required = false) LocalDateTime from,
+            @Parameter(description = "结束时间（yyyy-MM-ddTHH:mm:ss），默认为当前时间") @RequestParam(required = false) LocalDateTime to) {
+
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusHours(1);
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().body(ApiResponse.badRequest("开始时间必须早于结束时间"));
+        }
+        if (resolution != null && !MetricsHistory.isValidResolution(resolution)) {
+            return ResponseEntity.badRequest().body(ApiResponse.badRequest("不支持的粒度: " + resolution));
+        }
+
+        try {
+            return ResponseEntity.ok(ApiResponse.success(
+                    aiServiceManager.getMetricsHistory(provider, resolution, start, end)));
+
+        } catch (Exception e) {
+            logger.error("Error getting metrics history", e);
+            return ResponseEntity.internalServerError().body(ApiResponse.internalError("获取指标历史失败"));
+        }
+    }
+
     /**
      * 重置服务统计
      */
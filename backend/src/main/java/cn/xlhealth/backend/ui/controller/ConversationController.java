@@ -6,6 +6,7 @@ import cn.xlhealth.backend.ui.dto.ApiResponse;
 import cn.xlhealth.backend.ui.dto.ConversationCreateRequest;
 import cn.xlhealth.backend.ui.dto.ConversationResponse;
 import cn.xlhealth.backend.ui.dto.ConversationUpdateRequest;
+import cn.xlhealth.backend.ui.dto.CursorPageResponse;
 import cn.xlhealth.backend.ui.dto.PageResponse;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
@@ -79,6 +80,26 @@ public class ConversationController {
         return ResponseEntity.ok(ApiResponse.success(pageResponse));
     }
 
+    /**
+     * 获取用户对话列表（游标分页）
+     */
+    @GetMapping("/cursor")
+    @Operation(summary = "游标获取对话列表",
+            description = "按游标分页获取当前用户的对话，不统计总数。默认按创建时间倒序，指定after时按时间正序返回更新的对话；"
+                    + "使用返回的nextCursor沿同一方向继续翻页")
+    public ResponseEntity<ApiResponse<CursorPageResponse<ConversationResponse>>> getUserConversationsByCursor(
+            @Parameter(description = "向更早翻页的游标") @RequestParam(required = false) String before,
+            @Parameter(description = "向更新翻页的游标") @RequestParam(required = false) String after,
+            @Parameter(description = "每页条数（最大100）", example = "10") @RequestParam(defaultValue = "10") Integer limit,
+            Authentication authentication) {
+
+        Long userId = Long.valueOf(authentication.getName());
+        CursorPageResponse<Conversation> conversationPage =
+                conversationService.getUserConversationsByCursor(userId, before, after, limit);
+
+        return ResponseEntity.ok(ApiResponse.success(conversationPage.convert(ConversationResponse::new)));
+    }
+
     /**
      * 获取对话详情
      */
@@ -38,7 +38,8 @@ public class MessageController {
      * 发送消息
      */
     @PostMapping
-    @Operation(summary = "发送消息", description = "发送新消息到指定对话")
+    @Operation(summary = "发送消息", description = "发送新消息到指定对话。消息已保存时返回200；"
+            + "启用批量写入的 QUEUED 模式时消息入队即返回202，此时响应中的消息ID为空，消息随后可在消息列表中查到")
     public ResponseEntity<ApiResponse<MessageResponse>> sendMessage(
             @Parameter(description = "对话ID") @PathVariable Long conversationId,
             @Valid @RequestBody MessageSendRequest request) {
@@ -54,6 +55,10 @@ public class MessageController {
                     request.getMetadata());
 
             MessageResponse response = convertToMessageResponse(message);
+            if (message.getId() == null) {
+                // 已入队尚未提交
+                return ResponseEntity.accepted().body(ApiResponse.success(response));
+            }
             return ResponseEntity.ok(ApiResponse.success(response));
         } catch (Exception e) {
             log.error("发送消息失败", e);
@@ -89,6 +94,31 @@ public class MessageController {
         }
     }
 
+    /**
+     * 获取对话消息列表（游标分页）
+     */
+    @GetMapping("/cursor")
+    @Operation(summary = "游标获取对话消息列表",
+            description = "按游标分页获取消息，不统计总数。指定before时按时间倒序返回更早的消息（before为空时从最新开始），"
+                    + "否则按时间正序返回after之后的消息；使用返回的nextCursor沿同一方向继续翻页")
+    public ResponseEntity<ApiResponse<CursorPageResponse<MessageResponse>>> getConversationMessagesByCursor(
+            @Parameter(description = "对话ID") @PathVariable Long conversationId,
+            @Parameter(description = "向前翻页的游标") @RequestParam(required = false) String before,
+            @Parameter(description = "向后翻页的游标") @RequestParam(required = false) String after,
+            @Parameter(description = "每页条数（最大100）") @RequestParam(defaultValue = "20") Integer limit) {
+        try {
+            Long userId = getCurrentUserId();
+
+            CursorPageResponse<Message> messagePage = messageService.getConversationMessagesByCursor(
+                    conversationId, userId, before, after, limit);
+
+            return ResponseEntity.ok(ApiResponse.success(messagePage.convert(this::convertToMessageResponse)));
+        } catch (Exception e) {
+            log.error("游标获取对话消息列表失败", e);
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
     /**
      * 获取消息详情
      */
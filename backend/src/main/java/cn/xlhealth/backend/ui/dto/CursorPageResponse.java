@@ -0,0 +1,67 @@
+package cn.xlhealth.backend.ui.dto;
+
+import cn.xlhealth.backend.util.PageCursor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页响应DTO
+ * 记录按翻页方向排列，nextCursor 用于沿同一方向继续翻页，不返回总数
+ * @param <T> 数据类型
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPageResponse<T> {
+
+    /**
+     * 数据列表
+     */
+    private List<T> records;
+
+    /**
+     * 下一页游标，没有更多数据时为null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    private Boolean hasMore;
+
+    /**
+     * 每页条数
+     */
+    private Integer limit;
+
+    /**
+     * 由多查询一条的结果构建分页
+     * @param rows 最多 limit+1 条记录
+     * @param limit 每页条数
+     * @param cursorOf 记录对应的游标
+     */
+    public static <T> CursorPageResponse<T> of(List<T> rows, int limit, Function<T, PageCursor> cursorOf) {
+        boolean hasMore = rows.size() > limit;
+        List<T> records = hasMore ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        String nextCursor = hasMore ? cursorOf.apply(records.get(records.size() - 1)).encode() : null;
+        return new CursorPageResponse<>(records, nextCursor, hasMore, limit);
+    }
+
+    /**
+     * 转换记录类型
+     */
+    public <R> CursorPageResponse<R> convert(Function<T, R> mapper) {
+        List<R> converted = new ArrayList<>(records.size());
+        for (T record : records) {
+            converted.add(mapper.apply(record));
+        }
+        return new CursorPageResponse<>(converted, nextCursor, hasMore, limit);
+    }
+}
@@ -0,0 +1,44 @@
+package cn.xlhealth.backend.ui.interceptor;
+
+import cn.xlhealth.backend.service.ai.monitor.RequestTracer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 请求阶段计时过滤器
+ * 为API请求开启阶段计时范围，各阶段耗时由 ServerTimingAdvice 在写出响应体前写入 Server-Timing 响应头
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    @Value("${ai.service.monitoring.server-timing-enabled:true}")
+    private boolean enabled;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException {
+
+        RequestTracer.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestTracer.end();
+        }
+    }
+
+    /**
+     * 只处理API请求
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) throws ServletException {
+        return !enabled || !request.getRequestURI().startsWith("/api/");
+    }
+}
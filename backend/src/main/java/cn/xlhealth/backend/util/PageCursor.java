@@ -0,0 +1,76 @@
+package cn.xlhealth.backend.util;
+
+import cn.xlhealth.backend.ui.advice.BusinessException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 分页游标
+ * 按 (created_time, id) 定位记录，编码为不透明字符串，客户端原样传回。
+ * 基于游标的分页只查询 limit+1 条，不执行COUNT，翻页深度不影响查询耗时。
+ */
+public final class PageCursor {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+
+    private static final char SEPARATOR = '|';
+
+    private final LocalDateTime createdTime;
+    private final Long id;
+
+    private PageCursor(LocalDateTime createdTime, Long id) {
+        this.createdTime = createdTime;
+        this.id = id;
+    }
+
+    public static PageCursor of(LocalDateTime createdTime, Long id) {
+        if (createdTime == null || id == null) {
+            throw new IllegalArgumentException("createdTime and id are required");
+        }
+        return new PageCursor(createdTime, id);
+    }
+
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String encode() {
+        String raw = createdTime.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标
+     * @return 游标为空时返回null（从头开始）
+     * @throws BusinessException 游标格式无效
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return of(LocalDateTime.parse(raw.substring(0, separator)), Long.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw BusinessException.badRequest("无效的分页游标");
+        }
+    }
+
+    /**
+     * 每页条数，未指定时为默认值，超出范围时截断
+     */
+    public static int normalizeLimit(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+}
@@ -0,0 +1,28 @@
+-- Flyway Migration Script V10
+-- Description: Create per-user message statistics table maintained by the message write path
+-- Author: System
+-- Date: 2024-01-01
+
+-- 1. 用户消息统计表 (user_message_stats)，消息写入/删除时按增量更新，查询用户统计按主键读取
+CREATE TABLE IF NOT EXISTS user_message_stats (
+    user_id BIGINT PRIMARY KEY COMMENT '用户ID',
+    total_messages BIGINT NOT NULL DEFAULT 0 COMMENT '消息总数',
+    user_messages BIGINT NOT NULL DEFAULT 0 COMMENT '用户消息数',
+    assistant_messages BIGINT NOT NULL DEFAULT 0 COMMENT 'AI助手消息数',
+    system_messages BIGINT NOT NULL DEFAULT 0 COMMENT '系统消息数',
+    total_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '总token数',
+    created_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间'
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='用户消息统计表';
+
+-- 2. 按现有未删除消息回填统计
+INSERT INTO user_message_stats (user_id, total_messages, user_messages, assistant_messages, system_messages, total_tokens)
+SELECT user_id,
+       COUNT(*),
+       SUM(CASE WHEN role = 'USER' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN role = 'ASSISTANT' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN role = 'SYSTEM' THEN 1 ELSE 0 END),
+       COALESCE(SUM(token_count), 0)
+FROM messages
+WHERE deleted = 0 AND user_id IS NOT NULL
+GROUP BY user_id;
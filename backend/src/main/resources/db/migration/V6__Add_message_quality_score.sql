@@ -0,0 +1,7 @@
+-- Flyway Migration Script V6
+-- Description: Add quality_score to messages for asynchronous quality assessment
+-- Author: System
+-- Date: 2024-01-01
+
+-- 1. 为 messages 表添加 quality_score 字段（异步评分回写，未采样时为空）
+ALTER TABLE messages ADD COLUMN quality_score INT NULL COMMENT '质量评分(0-100)' AFTER response_time;
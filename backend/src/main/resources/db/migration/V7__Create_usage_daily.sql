@@ -0,0 +1,22 @@
+-- Flyway Migration Script V7
+-- Description: Create daily token usage rollup table for the usage ledger
+-- Author: System
+-- Date: 2024-01-01
+
+-- 1. 每日用量汇总表 (usage_daily)，按 用户/模型/日期 累加，由用量账本定期刷新写入
+CREATE TABLE IF NOT EXISTS usage_daily (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+    usage_date DATE NOT NULL COMMENT '日期',
+    user_id BIGINT NOT NULL COMMENT '用户ID',
+    model_name VARCHAR(100) NOT NULL COMMENT '模型名称',
+    request_count INT NOT NULL DEFAULT 0 COMMENT '请求次数',
+    prompt_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输入token数',
+    completion_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输出token数',
+    total_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '总token数',
+    cost DECIMAL(18, 6) NOT NULL DEFAULT 0 COMMENT '费用（按写入时的价格表计算）',
+    created_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    updated_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    UNIQUE KEY uk_usage_date_user_model (usage_date, user_id, model_name),
+    INDEX idx_usage_user_date (user_id, usage_date),
+    INDEX idx_usage_model_date (model_name, usage_date)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='每日用量汇总表';
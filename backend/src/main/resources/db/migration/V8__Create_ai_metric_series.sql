@@ -0,0 +1,28 @@
+-- Flyway Migration Script V8
+-- Description: Create AI metrics history table (1m samples downsampled to 1h and 1d)
+-- Author: System
+-- Date: 2024-01-01
+
+-- 1. AI服务指标历史表 (ai_metric_series)，每个实例每分钟写入一行，按小时/天降采样
+CREATE TABLE IF NOT EXISTS ai_metric_series (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY COMMENT '主键ID',
+    resolution VARCHAR(4) NOT NULL COMMENT '粒度：1m/1h/1d',
+    bucket_start DATETIME NOT NULL COMMENT '时间桶开始时间',
+    provider VARCHAR(50) NOT NULL COMMENT '服务提供商，GLOBAL表示全部',
+    instance_id VARCHAR(64) NOT NULL COMMENT '写入的应用实例',
+    total_calls BIGINT NOT NULL DEFAULT 0 COMMENT '调用次数',
+    failed_calls BIGINT NOT NULL DEFAULT 0 COMMENT '失败次数',
+    total_response_time BIGINT NOT NULL DEFAULT 0 COMMENT '响应时间总和（毫秒）',
+    p50_response_time BIGINT NOT NULL DEFAULT 0 COMMENT 'P50响应时间（毫秒）',
+    p90_response_time BIGINT NOT NULL DEFAULT 0 COMMENT 'P90响应时间（毫秒）',
+    p99_response_time BIGINT NOT NULL DEFAULT 0 COMMENT 'P99响应时间（毫秒）',
+    max_response_time BIGINT NOT NULL DEFAULT 0 COMMENT '最大响应时间（毫秒）',
+    prompt_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输入token数',
+    completion_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输出token数',
+    quality_score_total BIGINT NOT NULL DEFAULT 0 COMMENT '质量评分总和',
+    quality_assessments BIGINT NOT NULL DEFAULT 0 COMMENT '质量评分次数',
+    latency_histogram VARBINARY(8192) COMMENT '响应时间HDR直方图（压缩编码），降采样和跨实例汇总时合并',
+    created_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    UNIQUE KEY uk_metric_series (resolution, provider, bucket_start, instance_id),
+    INDEX idx_metric_series_time (resolution, bucket_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='AI服务指标历史表';
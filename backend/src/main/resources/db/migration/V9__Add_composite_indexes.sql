@@ -0,0 +1,23 @@
+-- Flyway Migration Script V9
+-- Description: Add composite indexes for hot message and conversation queries
+-- Author: System
+-- Date: 2024-01-01
+
+-- 1. 对话消息列表、游标分页、最后一条消息、消息计数
+--    WHERE conversation_id = ? AND deleted = 0 ORDER BY created_time, id
+--    附带 token_count，统计核对的 COUNT/SUM 只需扫描索引；SELECT * 的实体查询仍需回表
+ALTER TABLE messages ADD INDEX idx_messages_conversation_created (conversation_id, deleted, created_time, id, token_count);
+
+-- 2. 按角色过滤或分组的用户消息查询（role 在 created_time 之前，不带 role 条件的按时间排序查询不能用此索引排序）
+--    最近用户消息：WHERE user_id = ? AND deleted = 0 AND role = ? ORDER BY created_time DESC
+--    用户消息统计：WHERE user_id = ? AND deleted = 0 GROUP BY role（COUNT/SUM(token_count) 只需扫描索引）
+ALTER TABLE messages ADD INDEX idx_messages_user_role_created (user_id, deleted, role, created_time, token_count);
+
+-- 3. 用户对话列表、游标分页
+--    WHERE user_id = ? AND deleted = 0 ORDER BY created_time DESC, id DESC
+ALTER TABLE conversations ADD INDEX idx_conversations_user_created (user_id, deleted, created_time, id);
+
+-- 4. 删除被上述复合索引最左前缀覆盖的单列索引，外键改由复合索引支撑，减少写入时的索引维护
+ALTER TABLE messages DROP INDEX idx_conversation_id;
+ALTER TABLE messages DROP INDEX idx_user_id;
+ALTER TABLE conversations DROP INDEX idx_user_id;
@@ -0,0 +1,140 @@
+package cn.xlhealth.backend.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话统计更新基准测试
+ * 对比每条消息后COUNT/SUM重新统计整个对话与按增量更新，对话消息数覆盖普通对话到10k条的长对话
+ * 使用H2内存库（表结构与索引同 schema.sql），绝对值与MySQL不同，用于比较随消息数的增长趋势
+ *
+ * 运行方式：mvn test-compile 后执行本类的main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversationStatisticsBenchmark {
+
+    private static final long CONVERSATION_ID = 1L;
+
+    @Param({"100", "1000", "10000"})
+    private int messages;
+
+    private Connection connection;
+    private PreparedStatement count;
+    private PreparedStatement sumTokens;
+    private PreparedStatement update;
+    private PreparedStatement increment;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:statistics" + messages + ";DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS messages");
+            statement.execute("DROP TABLE IF EXISTS conversations");
+            statement.execute("CREATE TABLE conversations (id BIGINT PRIMARY KEY, message_count INT DEFAULT 0, "
+                    + "total_tokens INT DEFAULT 0, updated_time TIMESTAMP, deleted TINYINT DEFAULT 0)");
+            statement.execute("CREATE TABLE messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "conversation_id BIGINT NOT NULL, content TEXT, token_count INT, deleted TINYINT DEFAULT 0)");
+            statement.execute("CREATE INDEX idx_messages_conversation_id ON messages (conversation_id)");
+            statement.execute("INSERT INTO conversations (id) VALUES (" + CONVERSATION_ID + ")");
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO messages (conversation_id, content, token_count) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < messages; i++) {
+                insert.setLong(1, CONVERSATION_ID);
+                insert.setString(2, "消息内容" + i);
+                insert.setInt(3, 20 + i % 50);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        // 原实现（MessageServiceImpl.updateConversationStatistics）的三条语句
+        count = connection.prepareStatement(
+                "SELECT COUNT(*) FROM messages WHERE conversation_id = ? AND deleted = 0");
+        sumTokens = connection.prepareStatement(
+                "SELECT COALESCE(SUM(token_count), 0) FROM messages WHERE conversation_id = ? AND deleted = 0");
+        update = connection.prepareStatement(
+                "UPDATE conversations SET message_count = ?, total_tokens = ?, updated_time = NOW() WHERE id = ?");
+        // ConversationMapper.incrementStatistics
+        increment = connection.prepareStatement(
+                "UPDATE conversations SET message_count = GREATEST(COALESCE(message_count, 0) + ?, 0), "
+                        + "total_tokens = GREATEST(COALESCE(total_tokens, 0) + ?, 0), updated_time = NOW() "
+                        + "WHERE id = ?");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    /**
+     * 原实现：重新统计整个对话
+     */
+    @Benchmark
+    public int recount() throws SQLException {
+        count.setLong(1, CONVERSATION_ID);
+        long messageCount;
+        try (ResultSet resultSet = count.executeQuery()) {
+            resultSet.next();
+            messageCount = resultSet.getLong(1);
+        }
+        sumTokens.setLong(1, CONVERSATION_ID);
+        long totalTokens;
+        try (ResultSet resultSet = sumTokens.executeQuery()) {
+            resultSet.next();
+            totalTokens = resultSet.getLong(1);
+        }
+        update.setLong(1, messageCount);
+        update.setLong(2, totalTokens);
+        update.setLong(3, CONVERSATION_ID);
+        return update.executeUpdate();
+    }
+
+    /**
+     * 按增量更新（一条消息写入后再删除，保持计数不变）
+     */
+    @Benchmark
+    public int increment() throws SQLException {
+        return applyDelta(1, 25) + applyDelta(-1, -25);
+    }
+
+    private int applyDelta(int messageDelta, int tokenDelta) throws SQLException {
+        increment.setInt(1, messageDelta);
+        increment.setInt(2, tokenDelta);
+        increment.setLong(3, CONVERSATION_ID);
+        return increment.executeUpdate();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ConversationStatisticsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,139 @@
+package cn.xlhealth.backend.benchmark;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.service.ai.dto.AIRequest;
+import cn.xlhealth.backend.service.ai.dto.AIResponse;
+import cn.xlhealth.backend.service.ai.quality.impl.QualityAssessorImpl;
+import cn.xlhealth.backend.service.ai.quality.rule.QualityRuleEngine;
+import cn.xlhealth.backend.service.ai.text.KeywordHits;
+import cn.xlhealth.backend.service.ai.text.KeywordMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 关键词匹配基准测试
+ * 对比逐个关键词contains扫描与Aho-Corasick单次扫描，文本长度覆盖用户短消息到长回复
+ *
+ * 运行方式：mvn test-compile 后执行本类的main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeywordMatcherBenchmark {
+
+    // 质量评估中使用的关键词分组（与QualityAssessorImpl一致）
+    private static final String[][] DICTIONARIES = {
+            {"你好", "您好", "欢迎", "很高兴"},
+            {"帮助", "服务"},
+            {"认知行为疗法", "心理治疗", "精神分析", "焦虑障碍", "抑郁症",
+                    "心理健康", "情绪调节", "应激反应", "创伤后应激障碍", "心理咨询"},
+            {"一定", "绝对", "肯定"},
+            {"理解", "感受", "明白", "共情"},
+            {"支持", "鼓励", "希望", "相信", "陪伴", "会好"},
+            {"自杀", "自残", "伤害", "杀人", "毒品", "违法", "犯罪",
+                    "酒精", "赌博", "吸毒", "暴力", "色情", "歧视"},
+            {"专业医疗", "咨询医生", "不构成医疗建议", "专业帮助"},
+            {"希望能帮到你", "祝你", "如有其他问题", "期待"},
+            {"理解", "感受", "支持", "帮助"}
+    };
+
+    private static final String SAMPLE = "我理解你现在的感受，工作上的压力和家庭的期待叠加在一起，确实会让人感到焦虑和疲惫。"
+            + "这种情况下出现失眠、注意力下降都是常见的应激反应，并不代表你做得不够好。"
+            + "可以先试着每天留出十分钟做深呼吸或者散步，把让你担心的事情写下来，区分哪些是可以控制的。"
+            + "如果情绪持续低落超过两周，建议寻求专业帮助，心理咨询师可以和你一起梳理这些想法。"
+            + "希望能帮到你，如有其他问题随时告诉我，我会一直陪伴你。";
+
+    @Param({"40", "300", "1200"})
+    private int length;
+
+    private String text;
+    private KeywordMatcher matcher;
+    private QualityAssessorImpl assessor;
+    private AIRequest request;
+    private AIResponse response;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(SAMPLE);
+        }
+        text = builder.substring(0, length);
+
+        KeywordMatcher.Builder matcherBuilder = KeywordMatcher.builder();
+        for (int i = 0; i < DICTIONARIES.length; i++) {
+            matcherBuilder.add("C" + i, DICTIONARIES[i]);
+        }
+        matcher = matcherBuilder.build();
+
+        QualityRuleEngine ruleEngine = new QualityRuleEngine();
+        ReflectionTestUtils.setField(ruleEngine, "aiServiceProperties", new AIServiceProperties());
+        ruleEngine.init();
+        assessor = new QualityAssessorImpl();
+        ReflectionTestUtils.setField(assessor, "qualityRuleEngine", ruleEngine);
+        request = new AIRequest();
+        request.setUserMessage("最近工作压力很大，晚上睡不着，总是很焦虑，我该怎么办？");
+        response = AIResponse.success(text, "EMOTIONAL_SUPPORT", "DeepSeek");
+    }
+
+    /**
+     * 原实现：每个分类先toLowerCase再逐个contains
+     */
+    @Benchmark
+    public void containsChain(Blackhole blackhole) {
+        for (String[] dictionary : DICTIONARIES) {
+            String lower = text.toLowerCase();
+            boolean hit = false;
+            for (String keyword : dictionary) {
+                if (lower.contains(keyword)) {
+                    hit = true;
+                }
+            }
+            blackhole.consume(hit);
+        }
+    }
+
+    /**
+     * 自动机单次扫描得到所有分类
+     */
+    @Benchmark
+    public void automaton(Blackhole blackhole) {
+        KeywordHits hits = matcher.match(text);
+        for (int i = 0; i < DICTIONARIES.length; i++) {
+            blackhole.consume(hits.contains("C" + i));
+        }
+    }
+
+    /**
+     * 完整质量评估
+     */
+    @Benchmark
+    public int assessQuality() {
+        return assessor.assessQuality(request, response);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KeywordMatcherBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
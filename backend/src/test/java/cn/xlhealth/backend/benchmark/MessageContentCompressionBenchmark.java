@@ -0,0 +1,212 @@
+package cn.xlhealth.backend.benchmark;
+
+import cn.xlhealth.backend.mapper.handler.CompressedTextTypeHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息内容压缩基准测试
+ * 语料为1-5KB的助手回复（句子不重复抽取，带列表和小标题），对比原文存储与压缩存储时读取一页20条消息的耗时，
+ * 启动时输出两种存储方式的内容总字节数。使用H2内存库，不含网络传输，MySQL上压缩还会减少传输量
+ *
+ * 运行方式：mvn test-compile 后执行本类的main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageContentCompressionBenchmark {
+
+    private static final int CONVERSATIONS = 50;
+    private static final int MESSAGES_PER_CONVERSATION = 20;
+
+    private static final String[] SENTENCES = {
+            "我能理解你现在的感受，这段时间工作和家庭的压力叠加在一起，确实不容易。",
+            "你愿意把这些说出来，本身就说明你在认真面对自己的情绪。",
+            "失眠、注意力下降和容易烦躁，都是长期紧张之后身体发出的信号。",
+            "这并不代表你做得不够好，而是提醒你需要给自己留一些恢复的空间。",
+            "可以先从最小的改变开始，比如每天固定一个时间上床，睡前半小时放下手机。",
+            "把让你担心的事情写在纸上，分成能控制的和暂时控制不了的两类。",
+            "对于能控制的部分，选一件最容易完成的事情，今天就迈出第一步。",
+            "对于控制不了的部分，试着告诉自己：我已经尽力了，剩下的交给时间。",
+            "深呼吸是一个随时可以使用的方法：吸气四秒，屏住四秒，再缓慢呼气六秒。",
+            "如果身体紧绷，可以从脚趾开始，依次收紧再放松每一组肌肉。",
+            "运动对缓解焦虑很有帮助，哪怕只是每天饭后散步二十分钟。",
+            "和信任的朋友或家人聊一聊，不一定要得到建议，被倾听本身就有力量。",
+            "你提到会反复回想白天的对话，这在焦虑的时候很常见。",
+            "当你发现自己陷入反复思考时，可以温和地把注意力拉回到当下的感官上。",
+            "比如说出你现在看到的五样东西、听到的四种声音、摸到的三种触感。",
+            "工作中的批评容易让人否定自己，但一次评价并不能定义你这个人。",
+            "试着回想过去一周里完成得不错的三件小事，把它们记录下来。",
+            "和上级沟通时，可以先说明你目前的任务量，再一起确定优先级。",
+            "设定边界并不是自私，而是为了让你能够持续地投入到重要的事情中。",
+            "周末尽量安排一段完全属于自己的时间，做一件让你感到放松的事。",
+            "饮食和作息的规律对情绪的影响比我们想象的要大。",
+            "下午之后减少咖啡和浓茶，晚餐不要吃得过饱，也有助于入睡。",
+            "如果躺下二十分钟仍然睡不着，可以起身到另一个房间做些安静的事情，有困意再回床上。",
+            "情绪就像天气，会有阴天也会有晴天，现在的低落并不会一直持续。",
+            "你不需要一下子解决所有问题，一次只关注一小步就好。",
+            "当自责的声音出现时，想象一下你会怎样安慰处在同样处境的好朋友。",
+            "把同样的理解和耐心留一些给自己，你也值得被温柔对待。",
+            "如果低落的情绪持续超过两周，或者已经影响到日常生活，建议寻求专业的心理咨询。",
+            "咨询师可以陪你一起梳理这些想法，找到更适合你的应对方式。",
+            "如果出现伤害自己的念头，请立即联系身边的人或拨打心理援助热线。",
+            "你之前提到和父母的沟通让你感到疲惫，这种感受很多人都有过。",
+            "表达需求时可以用“我感到……因为……我希望……”的句式，减少对方的防御。",
+            "家人的期待背后往往是关心，只是表达方式不一定让人舒服。",
+            "你可以选择在情绪平稳的时候，再和他们谈论这些话题。",
+            "建立支持系统很重要，朋友、同事、社区活动都可以成为你的支撑。",
+            "学习一项新的爱好，能让大脑从工作的压力中暂时抽离出来。",
+            "正念练习不需要很长时间，每天五分钟专注于呼吸就能带来变化。",
+            "刚开始练习时走神是正常的，发现走神后温和地回到呼吸上即可。",
+            "记录情绪日记可以帮助你发现情绪波动和具体事件之间的联系。",
+            "每天睡前写下三件值得感谢的小事，能慢慢改变看待生活的角度。",
+            "面对截止日期时，把大任务拆成半小时就能完成的小块会轻松很多。",
+            "完成一小块之后给自己一个小小的奖励，比如一杯喜欢的饮品。",
+            "拖延常常来自对结果的担心，而不是懒惰。",
+            "允许自己先完成一个不完美的版本，之后再慢慢修改。",
+            "你已经在寻求帮助的路上，这是非常重要的一步。",
+            "接下来的一周，可以先从其中一两个方法开始尝试，看看哪一个更适合你。",
+            "下次聊天时，也可以和我分享你尝试之后的感受，我们再一起调整。",
+            "无论进展快慢，每一点变化都值得被看见和肯定。",
+            "如果今天只能做一件事，那就好好休息，照顾好自己的身体。",
+            "你并不孤单，我会一直在这里陪伴你。",
+    };
+
+    private static final String[] HEADINGS = {
+            "**先照顾好身体**", "**整理思绪的小方法**", "**和压力相处**", "**关于人际沟通**",
+            "**给自己的一点练习**", "**什么时候需要更多帮助**",
+    };
+
+    @Param({"false", "true"})
+    private boolean compressed;
+
+    private Connection connection;
+    private PreparedStatement selectPage;
+    private int conversation;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        CompressedTextTypeHandler.configure(compressed, 1024);
+        connection = DriverManager.getConnection("jdbc:h2:mem:compression" + compressed + ";DB_CLOSE_DELAY=-1");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS messages");
+            statement.execute("CREATE TABLE messages (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "conversation_id BIGINT NOT NULL, content TEXT, created_time TIMESTAMP, deleted TINYINT DEFAULT 0)");
+            statement.execute("CREATE INDEX idx_messages_conversation_created ON messages "
+                    + "(conversation_id, deleted, created_time, id)");
+        }
+
+        Random random = new Random(42);
+        long rawBytes = 0;
+        long storedBytes = 0;
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO messages (conversation_id, content, created_time) VALUES (?, ?, NOW())")) {
+            for (int c = 0; c < CONVERSATIONS; c++) {
+                for (int m = 0; m < MESSAGES_PER_CONVERSATION; m++) {
+                    String reply = reply(random, 1024 + random.nextInt(5 * 1024));
+                    String stored = CompressedTextTypeHandler.encode(reply);
+                    rawBytes += reply.getBytes(StandardCharsets.UTF_8).length;
+                    storedBytes += stored.getBytes(StandardCharsets.UTF_8).length;
+                    insert.setLong(1, c);
+                    insert.setString(2, stored);
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        System.out.printf("%ncompressed=%s content bytes: raw=%d stored=%d (%.1f%%)%n",
+                compressed, rawBytes, storedBytes, 100.0 * storedBytes / rawBytes);
+
+        // MessageMapper.findByConversationId 的一页
+        selectPage = connection.prepareStatement("SELECT id, content FROM messages WHERE conversation_id = ? "
+                + "AND deleted = 0 ORDER BY created_time ASC, id ASC LIMIT 20");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        CompressedTextTypeHandler.configure(false, 1024);
+    }
+
+    /**
+     * 读取一页消息并解码内容
+     */
+    @Benchmark
+    public int readPage() throws SQLException {
+        selectPage.setLong(1, conversation++ % CONVERSATIONS);
+        int chars = 0;
+        try (ResultSet resultSet = selectPage.executeQuery()) {
+            while (resultSet.next()) {
+                chars += CompressedTextTypeHandler.decode(resultSet.getString(2)).length();
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * 生成一条约 targetBytes 字节的回复：句子在回复内不重复，按段落和列表组织
+     */
+    static String reply(Random random, int targetBytes) {
+        List<String> sentences = new ArrayList<>(List.of(SENTENCES));
+        Collections.shuffle(sentences, random);
+        StringBuilder builder = new StringBuilder();
+        int bytes = 0;
+        int next = 0;
+        while (bytes < targetBytes && next < sentences.size()) {
+            StringBuilder paragraph = new StringBuilder();
+            if (random.nextInt(3) == 0) {
+                paragraph.append(HEADINGS[random.nextInt(HEADINGS.length)]).append("\n\n");
+                int items = 2 + random.nextInt(3);
+                for (int i = 1; i <= items && next < sentences.size(); i++) {
+                    paragraph.append(i).append(". ").append(sentences.get(next++)).append('\n');
+                }
+            } else {
+                int count = 2 + random.nextInt(3);
+                for (int i = 0; i < count && next < sentences.size(); i++) {
+                    paragraph.append(sentences.get(next++));
+                }
+                paragraph.append('\n');
+            }
+            paragraph.append('\n');
+            bytes += paragraph.toString().getBytes(StandardCharsets.UTF_8).length;
+            builder.append(paragraph);
+        }
+        return builder.toString().trim();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MessageContentCompressionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package cn.xlhealth.backend.benchmark;
+
+import cn.xlhealth.backend.service.ai.text.TermVector;
+import cn.xlhealth.backend.service.ai.text.TextSegmenter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 相关性评分基准测试
+ * 对比按标点切分的关键词重叠与词典分词+余弦相似度，文本长度覆盖短回复到长回复
+ *
+ * 运行方式：mvn test-compile 后执行本类的main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextSegmenterBenchmark {
+
+    private static final String QUESTION = "最近工作压力很大，晚上睡不着，总是很焦虑，我该怎么办？";
+
+    private static final String SAMPLE = "我理解你现在的感受，工作上的压力和家庭的期待叠加在一起，确实会让人感到焦虑和疲惫。"
+            + "这种情况下出现失眠、注意力下降都是常见的应激反应，并不代表你做得不够好。"
+            + "可以先试着每天留出十分钟做深呼吸或者散步，把让你担心的事情写下来，区分哪些是可以控制的。"
+            + "如果情绪持续低落超过两周，建议寻求专业帮助，心理咨询师可以和你一起梳理这些想法。";
+
+    // 原实现的停用词
+    private static final String[] STOP_WORDS = {"的", "了", "在", "是", "我", "有", "和", "就", "不", "人", "都", "一",
+            "一个", "上", "也", "很", "到", "说", "要", "去", "你", "会", "着", "没有", "看", "好", "自己", "这"};
+
+    @Param({"40", "300", "1200"})
+    private int length;
+
+    private String text;
+    private TextSegmenter segmenter;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(length);
+        while (builder.length() < length) {
+            builder.append(SAMPLE);
+        }
+        text = builder.substring(0, length);
+        segmenter = TextSegmenter.getDefault();
+    }
+
+    /**
+     * 原实现：按标点切分后计算关键词重叠比例
+     */
+    @Benchmark
+    public double splitOverlap() {
+        Set<String> userKeywords = extractKeywords(QUESTION.toLowerCase());
+        Set<String> responseKeywords = extractKeywords(text.toLowerCase());
+        int matchCount = 0;
+        for (String keyword : userKeywords) {
+            if (responseKeywords.contains(keyword)) {
+                matchCount++;
+            }
+        }
+        return userKeywords.isEmpty() ? 0 : matchCount * 1.0 / userKeywords.size();
+    }
+
+    /**
+     * 词典分词后计算TF-IDF向量余弦相似度
+     */
+    @Benchmark
+    public float segmentedCosine() {
+        TermVector question = segmenter.vectorize(QUESTION);
+        return question.cosine(segmenter.vectorize(text));
+    }
+
+    private static Set<String> extractKeywords(String text) {
+        Set<String> keywords = new HashSet<>();
+        for (String word : text.split("[\\s,.!?;:，。！？；：、\\(\\)（）\\[\\]【】\\{\\}]+")) {
+            word = word.trim();
+            if (word.length() > 1 && !isStopWord(word)) {
+                keywords.add(word);
+            }
+        }
+        return keywords;
+    }
+
+    private static boolean isStopWord(String word) {
+        for (String stopWord : STOP_WORDS) {
+            if (word.equals(stopWord)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TextSegmenterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -1,15 +1,24 @@
 package cn.xlhealth.backend.mapper;
 
 import cn.xlhealth.backend.entity.*;
+import cn.xlhealth.backend.mapper.handler.CompressedTextTypeHandler;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -39,6 +48,12 @@ public class MapperTest {
     @Autowired
     private AuditLogMapper auditLogMapper;
 
+    @Autowired
+    private UserMessageStatsMapper userMessageStatsMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     public void testUserMapper() {
         // 测试查询所有用户
@@ -70,6 +85,169 @@ public class MapperTest {
         assertNotNull(conversationPage);
     }
 
+    @Test
+    public void testConversationStatisticsMapper() {
+        Conversation conversation = new Conversation();
+        conversation.setUserId(1L);
+        conversation.setTitle("Statistics");
+        conversation.setStatus(Conversation.ConversationStatus.ACTIVE);
+        conversation.setMessageCount(0);
+        conversation.setTotalTokens(0);
+        conversation.setDeleted(false);
+        conversationMapper.insert(conversation);
+        Long conversationId = conversation.getId();
+
+        for (int i = 0; i < 3; i++) {
+            Message message = new Message();
+            message.setConversationId(conversationId);
+            message.setUserId(1L);
+            message.setRole(Message.MessageRole.USER);
+            message.setContent("消息" + i);
+            message.setTokenCount(10);
+            message.setDeleted(false);
+            messageMapper.insert(message);
+        }
+
+        // 测试按增量更新统计，计数不会小于0
+        assertEquals(1, conversationMapper.incrementStatistics(conversationId, 2, 20));
+        conversationMapper.incrementStatistics(conversationId, -5, -50);
+        Conversation updated = conversationMapper.selectById(conversationId);
+        assertEquals(0, updated.getMessageCount());
+        assertEquals(0, updated.getTotalTokens());
+
+        // 测试核对查询得到实际的消息数和token数
+        List<Map<String, Object>> rows = conversationMapper.selectStatisticsBatch(conversationId - 1, 10);
+        assertFalse(rows.isEmpty());
+        Map<String, Object> row = rows.get(0);
+        assertEquals(3L, ((Number) getIgnoreCase(row, "actualCount")).longValue());
+        assertEquals(30L, ((Number) getIgnoreCase(row, "actualTokens")).longValue());
+
+        // 测试修复：计数已变化时不覆盖
+        assertEquals(0, conversationMapper.repairStatistics(conversationId, 1, 0, 3, 30));
+        assertEquals(1, conversationMapper.repairStatistics(conversationId, 0, 0, 3, 30));
+        updated = conversationMapper.selectById(conversationId);
+        assertEquals(3, updated.getMessageCount());
+        assertEquals(30, updated.getTotalTokens());
+    }
+
+    @Test
+    public void testMessageCursorQueries() {
+        Conversation conversation = new Conversation();
+        conversation.setUserId(1L);
+        conversation.setTitle("Cursor");
+        conversation.setStatus(Conversation.ConversationStatus.ACTIVE);
+        conversation.setDeleted(false);
+        conversationMapper.insert(conversation);
+        Long conversationId = conversation.getId();
+
+        // 前三条创建时间相同，按ID区分先后
+        LocalDateTime sameTime = LocalDateTime.of(2024, 1, 1, 10, 0);
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Message message = new Message();
+            message.setConversationId(conversationId);
+            message.setUserId(1L);
+            message.setRole(Message.MessageRole.USER);
+            message.setContent("消息" + i);
+            message.setCreatedTime(i < 3 ? sameTime : sameTime.plusMinutes(1));
+            message.setDeleted(false);
+            messageMapper.insert(message);
+            ids.add(message.getId());
+        }
+
+        List<Message> firstPage = messageMapper.findAfterCursor(conversationId, null, null, 2);
+        assertEquals(ids.subList(0, 2), firstPage.stream().map(Message::getId).collect(Collectors.toList()));
+
+        Message last = firstPage.get(1);
+        List<Message> secondPage = messageMapper.findAfterCursor(conversationId, last.getCreatedTime(), last.getId(), 2);
+        assertEquals(ids.subList(2, 4), secondPage.stream().map(Message::getId).collect(Collectors.toList()));
+
+        List<Message> newest = messageMapper.findBeforeCursor(conversationId, null, null, 3);
+        assertEquals(Arrays.asList(ids.get(3), ids.get(2), ids.get(1)),
+                newest.stream().map(Message::getId).collect(Collectors.toList()));
+        Message oldest = newest.get(2);
+        List<Message> older = messageMapper.findBeforeCursor(conversationId, oldest.getCreatedTime(), oldest.getId(), 3);
+        assertEquals(Collections.singletonList(ids.get(0)), older.stream().map(Message::getId).collect(Collectors.toList()));
+
+        // 对话列表
+        List<Conversation> conversations = conversationMapper.findByUserIdBeforeCursor(1L, null, null, 1);
+        assertEquals(1, conversations.size());
+    }
+
+    @Test
+    public void testUserMessageStatistics() {
+        Long userId = 9001L;
+        Message.MessageRole[] roles = {Message.MessageRole.USER, Message.MessageRole.USER, Message.MessageRole.ASSISTANT};
+        for (Message.MessageRole role : roles) {
+            Message message = new Message();
+            message.setConversationId(1L);
+            message.setUserId(userId);
+            message.setRole(role);
+            message.setContent("统计");
+            message.setTokenCount(5);
+            message.setDeleted(false);
+            messageMapper.insert(message);
+        }
+
+        // 测试按角色一次聚合
+        List<Map<String, Object>> rows = messageMapper.countByRole(userId, null);
+        assertEquals(2, rows.size());
+        for (Map<String, Object> row : rows) {
+            boolean user = "USER".equals(getIgnoreCase(row, "role"));
+            assertEquals(user ? 2L : 1L, ((Number) getIgnoreCase(row, "messageCount")).longValue());
+            assertEquals(user ? 10L : 5L, ((Number) getIgnoreCase(row, "totalTokens")).longValue());
+        }
+        assertTrue(messageMapper.countByRole(userId, 2L).isEmpty());
+
+        // 测试统计记录的增量更新，计数不会小于0
+        UserMessageStats delta = new UserMessageStats();
+        delta.setUserId(userId);
+        delta.setTotalMessages(3L);
+        delta.setUserMessages(2L);
+        delta.setAssistantMessages(1L);
+        delta.setSystemMessages(0L);
+        delta.setTotalTokens(15L);
+        assertEquals(0, userMessageStatsMapper.incrementStatistics(delta));
+        userMessageStatsMapper.insert(delta);
+        delta.setSystemMessages(-1L);
+        assertEquals(1, userMessageStatsMapper.incrementStatistics(delta));
+        UserMessageStats stats = userMessageStatsMapper.selectById(userId);
+        assertEquals(6L, stats.getTotalMessages());
+        assertEquals(4L, stats.getUserMessages());
+        assertEquals(0L, stats.getSystemMessages());
+        assertEquals(30L, stats.getTotalTokens());
+    }
+
+    @Test
+    public void testCompressedMessageContent() {
+        String content = "我理解你最近的压力和焦虑，我们可以一起慢慢梳理。".repeat(40);
+        Message message = new Message();
+        message.setConversationId(9002L);
+        message.setUserId(1L);
+        message.setRole(Message.MessageRole.ASSISTANT);
+        message.setContent(content);
+        message.setDeleted(false);
+        CompressedTextTypeHandler.configure(true, 256);
+        try {
+            messageMapper.insert(message);
+        } finally {
+            CompressedTextTypeHandler.configure(false, 1024);
+        }
+
+        // 库中存储压缩格式，关闭压缩后仍按标记解压
+        String stored = jdbcTemplate.queryForObject("SELECT content FROM messages WHERE id = ?", String.class,
+                message.getId());
+        assertTrue(stored.startsWith(CompressedTextTypeHandler.MARKER));
+        assertTrue(stored.length() < content.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(content, messageMapper.selectById(message.getId()).getContent());
+        assertEquals(content, messageMapper.findLastByConversationId(9002L).getContent());
+
+        // 未压缩的历史数据原样读取（新插入一行，避免命中同一事务内的一级缓存）
+        jdbcTemplate.update("INSERT INTO messages (conversation_id, user_id, role, content, deleted) "
+                + "VALUES (9003, 1, 'USER', '旧消息', 0)");
+        assertEquals("旧消息", messageMapper.findLastByConversationId(9003L).getContent());
+    }
+
     @Test
     public void testMessageMapper() {
         // 测试查询所有消息
@@ -176,4 +354,15 @@ public class MapperTest {
         assertNotNull(config);
         assertEquals(SystemConfig.ConfigType.STRING, config.getConfigType());
     }
+
+    /**
+     * 不同数据库返回的列名大小写不同
+     */
+    private static Object getIgnoreCase(Map<String, Object> row, String column) {
+        return row.entrySet().stream()
+                .filter(entry -> entry.getKey().equalsIgnoreCase(column))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package cn.xlhealth.backend.mapper;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热点查询索引回归测试
+ * 对与Mapper一致的查询执行 EXPLAIN，查询不再命中对应的复合索引时失败。
+ * H2 检查执行计划中的索引名；在 MySQL 上运行时还检查没有 Using filesort。
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class QueryIndexUsageTest {
+
+    private static final String CONVERSATION_INDEX = "idx_messages_conversation_created";
+    private static final String USER_CONVERSATION_INDEX = "idx_conversations_user_created";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testConversationMessagesUseConversationIndex() {
+        // MessageMapper.findByConversationId / getConversationMessages
+        assertUsesIndex("SELECT * FROM messages WHERE conversation_id = 1 AND deleted = 0 "
+                + "ORDER BY created_time ASC, id ASC LIMIT 20", CONVERSATION_INDEX, true);
+        // MessageMapper.findBeforeCursor
+        assertUsesIndex("SELECT * FROM messages WHERE conversation_id = 1 AND deleted = 0 "
+                + "AND status <> 'PROCESSING' AND (created_time < TIMESTAMP '2024-01-01 10:00:00' "
+                + "OR (created_time = TIMESTAMP '2024-01-01 10:00:00' AND id < 100)) "
+                + "ORDER BY created_time DESC, id DESC LIMIT 21", CONVERSATION_INDEX, true);
+        // MessageMapper.findLastByConversationId
+        assertUsesIndex("SELECT * FROM messages WHERE conversation_id = 1 AND deleted = 0 "
+                + "ORDER BY created_time DESC, id DESC LIMIT 1", CONVERSATION_INDEX, true);
+        // MessageMapper.countByConversationId
+        assertUsesIndex("SELECT COUNT(*) FROM messages WHERE conversation_id = 1 AND deleted = 0",
+                CONVERSATION_INDEX, false);
+    }
+
+    @Test
+    public void testUserConversationsUseUserIndex() {
+        // ConversationMapper.findByUserId
+        assertUsesIndex("SELECT * FROM conversations WHERE user_id = 1 AND deleted = 0 "
+                + "ORDER BY created_time DESC, id DESC", USER_CONVERSATION_INDEX, true);
+        // ConversationMapper.findByUserIdBeforeCursor
+        assertUsesIndex("SELECT * FROM conversations WHERE user_id = 1 AND deleted = 0 "
+                + "AND (created_time < TIMESTAMP '2024-01-01 10:00:00' "
+                + "OR (created_time = TIMESTAMP '2024-01-01 10:00:00' AND id < 100)) "
+                + "ORDER BY created_time DESC, id DESC LIMIT 21", USER_CONVERSATION_INDEX, true);
+    }
+
+    private void assertUsesIndex(String sql, String index, boolean sorted) {
+        String product = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql);
+        assertFalse(plan.isEmpty(), "EXPLAIN 没有返回执行计划: " + sql);
+
+        if ("MySQL".equalsIgnoreCase(product)) {
+            Map<String, Object> row = plan.get(0);
+            assertEquals(index, String.valueOf(row.get("key")), "查询未使用索引: " + sql);
+            if (sorted) {
+                String extra = String.valueOf(row.get("Extra"));
+                assertFalse(extra.contains("Using filesort"), "查询需要额外排序: " + sql + " -> " + extra);
+            }
+            return;
+        }
+
+        String text = plan.get(0).values().iterator().next().toString().toUpperCase(Locale.ROOT);
+        assertTrue(text.contains(index.toUpperCase(Locale.ROOT)), "查询未使用索引 " + index + ": " + text);
+    }
+}
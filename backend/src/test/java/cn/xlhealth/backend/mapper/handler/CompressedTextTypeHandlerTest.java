@@ -0,0 +1,86 @@
+package cn.xlhealth.backend.mapper.handler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 长文本压缩类型处理器测试类
+ */
+class CompressedTextTypeHandlerTest {
+
+    private static final String LONG_REPLY = "听起来你这段时间承受了很多压力，这种感受是可以理解的。".repeat(60);
+
+    @AfterEach
+    void tearDown() {
+        CompressedTextTypeHandler.configure(false, 1024);
+    }
+
+    @Test
+    void testLongTextRoundTrip() {
+        CompressedTextTypeHandler.configure(true, 1024);
+
+        String stored = CompressedTextTypeHandler.encode(LONG_REPLY);
+
+        assertTrue(stored.startsWith(CompressedTextTypeHandler.MARKER));
+        assertTrue(stored.length() < LONG_REPLY.getBytes(StandardCharsets.UTF_8).length);
+        assertEquals(LONG_REPLY, CompressedTextTypeHandler.decode(stored));
+    }
+
+    @Test
+    void testShortOrDisabledTextStoredAsIs() {
+        CompressedTextTypeHandler.configure(true, 1024);
+        assertEquals("你好", CompressedTextTypeHandler.encode("你好"));
+
+        CompressedTextTypeHandler.configure(false, 1024);
+        assertEquals(LONG_REPLY, CompressedTextTypeHandler.encode(LONG_REPLY));
+        assertNull(CompressedTextTypeHandler.encode(null));
+    }
+
+    @Test
+    void testIncompressibleTextStoredAsIs() {
+        CompressedTextTypeHandler.configure(true, 64);
+        StringBuilder random = new StringBuilder();
+        Random generator = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            random.append((char) ('!' + generator.nextInt(90)));
+        }
+
+        assertEquals(random.toString(), CompressedTextTypeHandler.encode(random.toString()));
+    }
+
+    @Test
+    void testLegacyAndMarkerLikeText() {
+        // 历史数据不带标记，原样读取
+        assertEquals("旧消息", CompressedTextTypeHandler.decode("旧消息"));
+        assertNull(CompressedTextTypeHandler.decode(null));
+
+        // 以标记开头的原文即使未开启压缩也编码，读回后保持不变
+        String markerLike = CompressedTextTypeHandler.MARKER + "abc";
+        String stored = CompressedTextTypeHandler.encode(markerLike);
+        assertNotEquals(markerLike, stored);
+        assertEquals(markerLike, CompressedTextTypeHandler.decode(stored));
+    }
+
+    @Test
+    void testStatementAndResultSet() throws Exception {
+        CompressedTextTypeHandler.configure(true, 1024);
+        CompressedTextTypeHandler handler = new CompressedTextTypeHandler();
+        PreparedStatement statement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        String stored = CompressedTextTypeHandler.encode(LONG_REPLY);
+
+        handler.setParameter(statement, 1, LONG_REPLY, null);
+        verify(statement).setString(1, stored);
+
+        when(resultSet.getString("content")).thenReturn(stored);
+        assertEquals(LONG_REPLY, handler.getResult(resultSet, "content"));
+    }
+}
@@ -24,6 +24,7 @@ import static org.junit.jupiter.api.Assertions.*;
         "ai.service.provider=MOCK",
         "ai.service.context.enabled=true",
         "ai.service.quality.enabled=true",
+        "ai.service.quality.async.sample-rate=1.0",
         "ai.service.monitoring.enabled=true"
 })
 public class AIServiceIntegrationTest {
@@ -45,7 +46,7 @@ public class AIServiceIntegrationTest {
         assertNotNull(response1);
         assertTrue(response1.isSuccess());
         assertNotNull(response1.getContent());
-        assertTrue(response1.getQualityScore() > 0);
+        assertTrue(awaitQualityScore(response1) > 0);
         assertEquals("MOCK", response1.getProvider());
 
         // 测试第二轮对话（验证上下文功能）
@@ -94,7 +95,9 @@ public class AIServiceIntegrationTest {
 
         assertNotNull(normalResponse);
         assertTrue(normalResponse.isSuccess());
-        assertTrue(normalResponse.getQualityScore() >= 60); // 默认最低质量阈值
+        // 完整评分异步进行，低分不再替换已返回的回复，只回写评分
+        int score = awaitQualityScore(normalResponse);
+        assertTrue(score > 0 && score <= 100);
 
         // 测试可能触发质量检查的消息
         AIRequest edgeCaseRequest = createTestRequest(userId, conversationId, "测试", "中性");
@@ -242,4 +245,26 @@ public class AIServiceIntegrationTest {
         request.setTimestamp(System.currentTimeMillis());
         return request;
     }
-}
\ No newline at end of file
+
+    /**
+     * 质量评分异步完成，等待评分回写到响应
+     */
+    private int awaitQualityScore(AIResponse response) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            synchronized (response) {
+                if (response.getQualityScore() != null) {
+                    return response.getQualityScore();
+                }
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        fail("Quality score was not assessed in time");
+        return 0;
+    }
+}
@@ -5,13 +5,18 @@ import cn.xlhealth.backend.service.ai.context.ContextManager;
 import cn.xlhealth.backend.service.ai.dto.AIRequest;
 import cn.xlhealth.backend.service.ai.dto.AIResponse;
 import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import cn.xlhealth.backend.service.ai.monitor.AIMetrics;
+import cn.xlhealth.backend.service.ai.monitor.RequestTracer;
 import cn.xlhealth.backend.service.ai.monitor.ServiceMonitor;
 import cn.xlhealth.backend.service.ai.quality.QualityAssessor;
+import cn.xlhealth.backend.service.ai.quality.QualityScoringPipeline;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.ArrayList;
@@ -37,9 +42,18 @@ class AIServiceManagerTest {
     @Mock
     private QualityAssessor qualityAssessor;
 
+    @Mock
+    private QualityScoringPipeline qualityScoringPipeline;
+
     @Mock
     private ServiceMonitor serviceMonitor;
 
+    @Mock
+    private AIMetrics aiMetrics;
+
+    @Spy
+    private RequestTracer requestTracer = new RequestTracer(ObservationRegistry.NOOP);
+
     @Mock
     private AIServiceProperties aiServiceProperties;
 
@@ -73,13 +87,14 @@ class AIServiceManagerTest {
         when(contextManager.getContext(anyLong(), anyInt())).thenReturn(mockContext);
         when(aiService.generateReply(any(AIRequest.class))).thenReturn(testResponse);
 
+        when(aiServiceProperties.getContext()).thenReturn(new AIServiceProperties.Context());
+
         // 配置质量评估
         AIServiceProperties.Quality qualityConfig = new AIServiceProperties.Quality();
         qualityConfig.setEnabled(true);
         qualityConfig.setMinScore(60);
         when(aiServiceProperties.getQuality()).thenReturn(qualityConfig);
-        when(qualityAssessor.assessQuality(any(AIRequest.class), any(AIResponse.class))).thenReturn(85);
-        when(qualityAssessor.isPassing(85, 60)).thenReturn(true);
+        when(qualityAssessor.checkSafety(any(AIResponse.class))).thenReturn(100);
 
         // 执行测试
         AIResponse result = aiServiceManager.processRequest(testRequest);
@@ -93,25 +108,27 @@ class AIServiceManagerTest {
         // 验证方法调用
         verify(contextManager).getContext(eq(456L), anyInt());
         verify(aiService).generateReply(any(AIRequest.class));
-        verify(qualityAssessor).assessQuality(any(AIRequest.class), any(AIResponse.class));
+        // 完整评分不在请求路径上同步执行
+        verify(qualityAssessor, never()).assessQuality(any(AIRequest.class), any(AIResponse.class));
+        verify(qualityScoringPipeline).submit(any(AIRequest.class), eq(testResponse));
         verify(contextManager, times(2)).addMessage(eq(456L), any(ContextMessage.class));
         verify(serviceMonitor).recordCall(any(AIRequest.class), any(AIResponse.class), anyLong());
     }
 
     @Test
-    void testProcessRequest_QualityBelowThreshold() {
+    void testProcessRequest_SafetyCheckFailed() {
         // 准备Mock行为
         List<ContextMessage> mockContext = new ArrayList<>();
         when(contextManager.getContext(anyLong(), anyInt())).thenReturn(mockContext);
         when(aiService.generateReply(any(AIRequest.class))).thenReturn(testResponse);
+        when(aiServiceProperties.getContext()).thenReturn(new AIServiceProperties.Context());
 
-        // 配置质量评估 - 质量不达标
+        // 配置质量评估 - 安全检查不通过
         AIServiceProperties.Quality qualityConfig = new AIServiceProperties.Quality();
         qualityConfig.setEnabled(true);
-        qualityConfig.setMinScore(90); // 设置更高的阈值
+        qualityConfig.setSafetyMinScore(50);
         when(aiServiceProperties.getQuality()).thenReturn(qualityConfig);
-        when(qualityAssessor.assessQuality(any(AIRequest.class), any(AIResponse.class))).thenReturn(85);
-        when(qualityAssessor.isPassing(85, 90)).thenReturn(false);
+        when(qualityAssessor.checkSafety(any(AIResponse.class))).thenReturn(40);
 
         // 配置降级
         AIServiceProperties.Fallback fallbackConfig = new AIServiceProperties.Fallback();
@@ -128,6 +145,10 @@ class AIServiceManagerTest {
         assertEquals("抱歉，我现在无法为您提供最佳回复。", result.getContent());
         assertEquals("FALLBACK", result.getProvider());
         assertEquals(60, result.getQualityScore());
+
+        // 安全检查未通过的用户后续全量评分
+        verify(qualityScoringPipeline).flagUser(123L);
+        verify(qualityScoringPipeline, never()).submit(any(AIRequest.class), any(AIResponse.class));
     }
 
     @Test
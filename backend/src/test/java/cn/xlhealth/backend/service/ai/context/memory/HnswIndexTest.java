@@ -0,0 +1,115 @@
+package cn.xlhealth.backend.service.ai.context.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * HNSW索引及哈希向量化测试类
+ */
+class HnswIndexTest {
+
+    private static final int DIMENSION = 64;
+
+    @Test
+    void testEmbeddingSimilarity() {
+        HashingEmbedder embedder = new HashingEmbedder(256);
+
+        float[] a = embedder.embed("最近工作压力很大，经常失眠");
+        float[] b = embedder.embed("工作压力大导致失眠");
+        float[] c = embedder.embed("周末和朋友去爬山了");
+
+        // 字符二元组重叠多的文本相似度更高
+        assertTrue(HashingEmbedder.cosine(a, b) > HashingEmbedder.cosine(a, c));
+        assertEquals(1.0f, HashingEmbedder.cosine(a, a), 1e-4f);
+        assertNull(embedder.embed("，。！"));
+        assertNull(embedder.embed(null));
+    }
+
+    @Test
+    void testSearchFindsExactMatch() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64, 42L);
+        List<float[]> vectors = randomVectors(500, new Random(7));
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        assertEquals(500, index.size());
+        for (int i = 0; i < 50; i++) {
+            List<HnswIndex.Candidate> results = index.search(vectors.get(i), 1, 32);
+            assertEquals(i, results.get(0).getNode());
+            assertEquals(1.0f, results.get(0).getSimilarity(), 1e-4f);
+        }
+    }
+
+    @Test
+    void testRecallAgainstBruteForce() {
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100, 42L);
+        Random random = new Random(11);
+        List<float[]> vectors = randomVectors(2000, random);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+
+        int k = 10;
+        int hits = 0;
+        List<float[]> queries = randomVectors(50, random);
+        for (float[] query : queries) {
+            Set<Integer> expected = bruteForce(vectors, query, k);
+            for (HnswIndex.Candidate candidate : index.search(query, k, 64)) {
+                if (expected.contains(candidate.getNode())) {
+                    hits++;
+                }
+            }
+        }
+
+        double recall = hits / (double) (queries.size() * k);
+        assertTrue(recall >= 0.9, "recall@10 too low: " + recall);
+    }
+
+    @Test
+    void testEmptyIndex() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64, 1L);
+        assertTrue(index.search(new float[DIMENSION], 5, 10).isEmpty());
+        assertEquals(0L, index.estimateMemoryBytes());
+    }
+
+    @Test
+    void testEstimateTokens() {
+        assertEquals(4, LongTermMemory.estimateTokens("我很焦虑"));
+        assertEquals(2, LongTermMemory.estimateTokens("hello"));
+    }
+
+    private static Set<Integer> bruteForce(List<float[]> vectors, float[] query, int k) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            ids.add(i);
+        }
+        ids.sort(Comparator.comparingDouble(i -> -HashingEmbedder.cosine(query, vectors.get(i))));
+        return new HashSet<>(ids.subList(0, k));
+    }
+
+    private static List<float[]> randomVectors(int count, Random random) {
+        List<float[]> vectors = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            float[] vector = new float[DIMENSION];
+            double norm = 0;
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = (float) random.nextGaussian();
+                norm += vector[i] * vector[i];
+            }
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] /= (float) Math.sqrt(norm);
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,325 @@
+package cn.xlhealth.backend.service.ai.context.remote.impl;
+
+import cn.xlhealth.backend.service.ai.context.remote.RemoteContextStore;
+import cn.xlhealth.backend.service.ai.context.remote.VersionedContext;
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Redis共享上下文存储测试类
+ * 使用进程内的简易RESP服务端代替真实Redis
+ */
+class RedisContextStoreTest {
+
+    private EmbeddedRespServer server;
+    private RedisContextStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new EmbeddedRespServer();
+        RespClient client = new RespClient("127.0.0.1", server.getPort(), null, 0, 500, 2);
+        store = new RedisContextStore(client, "test:ctx:", 60_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+        server.close();
+    }
+
+    @Test
+    void testPutAndGet() {
+        long v1 = store.put(1L, messages("我最近很焦虑"), 60_000L);
+        long v2 = store.put(1L, messages("我最近很焦虑", "工作压力很大"), 60_000L);
+
+        // 版本号单调递增
+        assertEquals(1L, v1);
+        assertEquals(2L, v2);
+        assertEquals(2L, store.getVersion(1L));
+
+        VersionedContext context = store.get(1L);
+        assertNotNull(context);
+        assertEquals(2L, context.getVersion());
+        assertEquals(2, context.getMessages().size());
+        assertEquals("工作压力很大", context.getMessages().get(1).getContent());
+    }
+
+    @Test
+    void testEvictBumpsVersion() {
+        store.put(2L, messages("你好"), 60_000L);
+
+        long evictedVersion = store.evict(2L);
+
+        // 失效后版本号增加，其他节点的近缓存据此判断为过期
+        assertEquals(2L, evictedVersion);
+        assertEquals(2L, store.getVersion(2L));
+        assertNull(store.get(2L));
+    }
+
+    @Test
+    void testMissingConversation() {
+        assertEquals(0L, store.getVersion(99L));
+        assertNull(store.get(99L));
+    }
+
+    @Test
+    void testFallbackWhenServerDown() {
+        assertTrue(store.isAvailable());
+
+        server.close();
+
+        // 远程不可用时降级为仅本地模式
+        assertEquals(RemoteContextStore.UNAVAILABLE, store.put(3L, messages("你好"), 60_000L));
+        assertFalse(store.isAvailable());
+        assertEquals(RemoteContextStore.UNAVAILABLE, store.getVersion(3L));
+        assertNull(store.get(3L));
+    }
+
+    @Test
+    void testConcurrentPutsKeepPayloadVersionInSync() throws Exception {
+        int threads = 8;
+        int putsPerThread = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String content = "节点" + t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < putsPerThread; i++) {
+                    assertNotEquals(RemoteContextStore.UNAVAILABLE, store.put(6L, messages(content), 60_000L));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // 数据键中的版本号与版本号键一致，不会出现旧数据挂在新版本号下
+        VersionedContext context = store.get(6L);
+        assertNotNull(context);
+        assertEquals(threads * putsPerThread, store.getVersion(6L));
+        assertEquals(store.getVersion(6L), context.getVersion());
+    }
+
+    @Test
+    void testServerErrorDoesNotFallBack() {
+        store.put(4L, messages("你好"), 60_000L);
+        server.rejectKey("test:ctx:d:4");
+
+        // 错误回复（如 WRONGTYPE）只影响本次操作，不降级
+        assertNull(store.get(4L));
+        assertTrue(store.isAvailable());
+
+        // 连接上的回复没有错位，后续操作正常
+        assertEquals(1L, store.getVersion(4L));
+        assertEquals(1L, store.put(5L, messages("你好"), 60_000L));
+    }
+
+    private List<ContextMessage> messages(String... contents) {
+        List<ContextMessage> messages = new ArrayList<>();
+        long id = 1;
+        for (String content : contents) {
+            messages.add(new ContextMessage(id++, content, "USER", System.currentTimeMillis()));
+        }
+        return messages;
+    }
+
+    /**
+     * 简易RESP服务端，支持GET/SET/INCR/PEXPIRE/DEL/PING，
+     * 以及按 RedisContextStore 的两个脚本语义执行的EVAL（命令串行执行，与Redis一样脚本整体原子）
+     */
+    static class EmbeddedRespServer {
+
+        private final ServerSocket serverSocket;
+        private final Map<String, String> data = new ConcurrentHashMap<>();
+        private final List<Socket> clients = new ArrayList<>();
+        private final Set<String> rejectedKeys = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed = false;
+
+        EmbeddedRespServer() throws IOException {
+            serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::acceptLoop, "embedded-resp-server");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        /**
+         * 对该键的读取返回 WRONGTYPE 错误
+         */
+        void rejectKey(String key) {
+            rejectedKeys.add(key);
+        }
+
+        /**
+         * 关闭监听端口和所有已接受的连接，客户端池中的连接随后读写失败
+         */
+        void close() {
+            closed = true;
+            closeQuietly(serverSocket);
+            synchronized (clients) {
+                for (Socket client : clients) {
+                    closeQuietly(client);
+                }
+                clients.clear();
+            }
+        }
+
+        private static void closeQuietly(Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // 测试清理
+            }
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    synchronized (clients) {
+                        // 与 close() 并发接受的连接直接关闭
+                        if (closed) {
+                            closeQuietly(socket);
+                            return;
+                        }
+                        clients.add(socket);
+                    }
+                    Thread handler = new Thread(() -> handle(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void handle(Socket socket) {
+            try (InputStream in = new BufferedInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream()) {
+                while (true) {
+                    List<String> command = readCommand(in);
+                    if (command == null) {
+                        return;
+                    }
+                    out.write(dispatch(command).getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+                // 连接关闭
+            }
+        }
+
+        private synchronized String dispatch(List<String> command) {
+            String name = command.get(0).toUpperCase();
+            switch (name) {
+                case "PING":
+                    return "+PONG\r\n";
+                case "GET": {
+                    if (rejectedKeys.contains(command.get(1))) {
+                        return "-WRONGTYPE Operation against a key holding the wrong kind of value\r\n";
+                    }
+                    String value = data.get(command.get(1));
+                    if (value == null) {
+                        return "$-1\r\n";
+                    }
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    return "$" + bytes.length + "\r\n" + value + "\r\n";
+                }
+                case "SET":
+                    data.put(command.get(1), command.get(2));
+                    return "+OK\r\n";
+                case "INCR": {
+                    long value = Long.parseLong(data.getOrDefault(command.get(1), "0")) + 1;
+                    data.put(command.get(1), String.valueOf(value));
+                    return ":" + value + "\r\n";
+                }
+                case "PEXPIRE":
+                    return ":1\r\n";
+                case "DEL":
+                    return ":" + (data.remove(command.get(1)) != null ? 1 : 0) + "\r\n";
+                case "EVAL":
+                    return eval(command);
+                default:
+                    return "-ERR unknown command\r\n";
+            }
+        }
+
+        private String eval(List<String> command) {
+            String script = command.get(1);
+            boolean put = RedisContextStore.PUT_SCRIPT.equals(script);
+            if (!put && !RedisContextStore.EVICT_SCRIPT.equals(script)) {
+                return "-ERR unknown script\r\n";
+            }
+            String versionKey = command.get(3);
+            String dataKey = command.get(4);
+            long version = Long.parseLong(data.getOrDefault(versionKey, "0")) + 1;
+            data.put(versionKey, String.valueOf(version));
+            if (put) {
+                data.put(dataKey, "{\"version\":" + version + ",\"messages\":" + command.get(5) + "}");
+            } else {
+                data.remove(dataKey);
+            }
+            return ":" + version + "\r\n";
+        }
+
+        private List<String> readCommand(InputStream in) throws IOException {
+            String header = readLine(in);
+            if (header == null) {
+                return null;
+            }
+            int count = Integer.parseInt(header.substring(1));
+            List<String> args = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = Integer.parseInt(readLine(in).substring(1));
+                byte[] bytes = in.readNBytes(length);
+                in.readNBytes(2);
+                args.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return args;
+        }
+
+        private String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\r') {
+                    in.read();
+                    return line.toString();
+                }
+                line.append((char) b);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package cn.xlhealth.backend.service.ai.context.snapshot;
+
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 上下文快照文件测试类
+ */
+class ContextSnapshotFileTest {
+
+    private Path dir;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("context-snapshot");
+        file = dir.resolve("snapshot.bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        ContextMessage user = new ContextMessage(101L, "最近总是失眠，心情很低落", "USER", 1700000000000L);
+        user.setWeight(1.5);
+        ContextMessage assistant = new ContextMessage(102L, "听起来你最近很辛苦", "ASSISTANT", 1700000001000L);
+
+        List<SnapshotEntry> entries = Arrays.asList(
+                new SnapshotEntry(1L, 102L, 1800000000000L, Arrays.asList(user, assistant)),
+                new SnapshotEntry(2L, 0L, 1800000000000L, new ArrayList<>()));
+
+        ContextSnapshotFile.write(file, entries);
+        List<SnapshotEntry> restored = ContextSnapshotFile.read(file);
+
+        assertEquals(2, restored.size());
+        SnapshotEntry first = restored.get(0);
+        assertEquals(1L, first.getConversationId());
+        assertEquals(102L, first.getLastMessageId());
+        assertEquals(1800000000000L, first.getExpireTime());
+        assertEquals(2, first.getMessages().size());
+        assertEquals(Long.valueOf(101L), first.getMessages().get(0).getMessageId());
+        assertEquals("最近总是失眠，心情很低落", first.getMessages().get(0).getContent());
+        assertEquals(1.5, first.getMessages().get(0).getWeight());
+        assertEquals("ASSISTANT", first.getMessages().get(1).getMessageType());
+        assertEquals(Long.valueOf(1700000001000L), first.getMessages().get(1).getTimestamp());
+        assertTrue(restored.get(1).getMessages().isEmpty());
+        assertFalse(Files.exists(dir.resolve("snapshot.bin.tmp")));
+    }
+
+    @Test
+    void testNullFields() throws IOException {
+        ContextMessage message = new ContextMessage();
+        message.setMessageType("USER");
+
+        ContextSnapshotFile.write(file, Arrays.asList(
+                new SnapshotEntry(3L, 7L, 1L, Arrays.asList(message))));
+        ContextMessage restored = ContextSnapshotFile.read(file).get(0).getMessages().get(0);
+
+        assertNull(restored.getMessageId());
+        assertNull(restored.getContent());
+        assertNull(restored.getTimestamp());
+        assertNull(restored.getWeight());
+        assertEquals("USER", restored.getMessageType());
+    }
+
+    @Test
+    void testMissingFile() throws IOException {
+        assertTrue(ContextSnapshotFile.read(file).isEmpty());
+    }
+
+    @Test
+    void testRejectsInvalidHeader() throws IOException {
+        writeRaw(0x12345678, ContextSnapshotFile.VERSION);
+        assertThrows(IOException.class, () -> ContextSnapshotFile.read(file));
+
+        writeRaw(ContextSnapshotFile.MAGIC, (short) (ContextSnapshotFile.VERSION + 1));
+        assertThrows(IOException.class, () -> ContextSnapshotFile.read(file));
+    }
+
+    @Test
+    void testRejectsTruncatedFile() throws IOException {
+        // 条目数声明为2，实际只写入头部
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(ContextSnapshotFile.MAGIC);
+            out.writeShort(ContextSnapshotFile.VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(2);
+        }
+        assertThrows(IOException.class, () -> ContextSnapshotFile.read(file));
+    }
+
+    private void writeRaw(int magic, short version) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(magic);
+            out.writeShort(version);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(0);
+        }
+    }
+}
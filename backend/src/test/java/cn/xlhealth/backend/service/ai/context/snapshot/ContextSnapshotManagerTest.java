@@ -0,0 +1,115 @@
+package cn.xlhealth.backend.service.ai.context.snapshot;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.mapper.MessageMapper;
+import cn.xlhealth.backend.service.ai.context.ContextManager;
+import cn.xlhealth.backend.service.ai.dto.ContextMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 上下文快照管理测试类
+ */
+class ContextSnapshotManagerTest {
+
+    private static final long EXPIRE_TIME = Long.MAX_VALUE;
+
+    private Path file;
+    private ContextManager contextManager;
+    private MessageMapper messageMapper;
+    private AIServiceProperties properties;
+    private ContextSnapshotManager manager;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("context-snapshot", ".bin");
+        contextManager = mock(ContextManager.class);
+        messageMapper = mock(MessageMapper.class);
+        properties = new AIServiceProperties();
+        properties.getContext().getSnapshot().setPath(file.toString());
+
+        manager = new ContextSnapshotManager();
+        ReflectionTestUtils.setField(manager, "contextManager", contextManager);
+        ReflectionTestUtils.setField(manager, "messageMapper", messageMapper);
+        ReflectionTestUtils.setField(manager, "aiServiceProperties", properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testSnapshotKeepsLastMessageIdOfCachedContext() throws IOException {
+        when(contextManager.exportHotContexts(anyInt())).thenReturn(List.of(
+                new SnapshotEntry(1L, 102L, EXPIRE_TIME, List.of(message(102L)))));
+
+        assertEquals(1, manager.snapshot());
+
+        // 不再以写快照时的数据库最后消息ID覆盖
+        verifyNoInteractions(messageMapper);
+        assertEquals(102L, ContextSnapshotFile.read(file).get(0).getLastMessageId());
+    }
+
+    @Test
+    void testRestoreDropsContextsBehindDatabase() throws IOException {
+        SnapshotEntry current = new SnapshotEntry(1L, 102L, EXPIRE_TIME, List.of(message(102L)));
+        // 快照时缓存已落后于数据库（数据库中已有205）
+        SnapshotEntry stale = new SnapshotEntry(2L, 200L, EXPIRE_TIME, List.of(message(200L)));
+        ContextSnapshotFile.write(file, Arrays.asList(current, stale));
+        when(messageMapper.findLastMessageIds(anyCollection()))
+                .thenReturn(Arrays.asList(row(1L, 102L), row(2L, 205L)));
+
+        manager.restore();
+
+        verify(contextManager).restoreContext(argThat(entry -> entry.getConversationId() == 1L));
+        verify(contextManager, never()).restoreContext(argThat(entry -> entry.getConversationId() == 2L));
+        assertTrue(manager.isRestoreDone());
+    }
+
+    @Test
+    void testReadinessHeldUntilRestoreDoneOrTimedOut() {
+        ContextSnapshotHealthIndicator indicator = new ContextSnapshotHealthIndicator();
+        ReflectionTestUtils.setField(indicator, "contextSnapshotManager", manager);
+        ReflectionTestUtils.setField(manager, "restoreStartTime", System.currentTimeMillis());
+
+        assertTrue(manager.isRestorePending());
+        assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+
+        // 超过最长等待时间后不再阻塞就绪
+        properties.getContext().getSnapshot().setRestoreTimeoutSeconds(0);
+        assertFalse(manager.isRestorePending());
+        assertEquals(Status.UP, indicator.health().getStatus());
+
+        properties.getContext().getSnapshot().setRestoreTimeoutSeconds(30);
+        manager.restore();
+        assertFalse(manager.isRestorePending());
+        assertEquals("done", indicator.health().getDetails().get("restore"));
+    }
+
+    private static ContextMessage message(Long messageId) {
+        return new ContextMessage(messageId, "内容" + messageId, "USER", 1700000000000L);
+    }
+
+    private static Map<String, Object> row(Long conversationId, Long lastMessageId) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("CONVERSATIONID", conversationId);
+        row.put("LASTMESSAGEID", lastMessageId);
+        return row;
+    }
+}
@@ -0,0 +1,101 @@
+package cn.xlhealth.backend.service.ai.health;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.service.ai.AIService;
+import cn.xlhealth.backend.service.ai.exception.AIServiceException;
+import cn.xlhealth.backend.service.ai.monitor.ServiceMonitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * AI服务健康检查指示器测试类
+ */
+class AIServiceHealthIndicatorTest {
+
+    private AIService aiService;
+    private AIServiceProperties properties;
+    private ProviderProbe probe;
+    private AIServiceHealthIndicator indicator;
+
+    @BeforeEach
+    void setUp() {
+        aiService = mock(AIService.class);
+        when(aiService.getProviderName()).thenReturn("DeepSeek");
+        ServiceMonitor serviceMonitor = mock(ServiceMonitor.class);
+        when(serviceMonitor.getSuccessRate(null, 60)).thenReturn(95.0);
+
+        properties = new AIServiceProperties();
+        probe = new ProviderProbe();
+        ReflectionTestUtils.setField(probe, "aiService", aiService);
+        ReflectionTestUtils.setField(probe, "aiServiceProperties", properties);
+
+        indicator = new AIServiceHealthIndicator();
+        ReflectionTestUtils.setField(indicator, "providerProbe", probe);
+        ReflectionTestUtils.setField(indicator, "aiService", aiService);
+        ReflectionTestUtils.setField(indicator, "serviceMonitor", serviceMonitor);
+        ReflectionTestUtils.setField(indicator, "aiServiceProperties", properties);
+    }
+
+    @Test
+    void testUnknownBeforeFirstProbe() {
+        Health health = indicator.health();
+
+        assertEquals(Status.UNKNOWN, health.getStatus());
+        assertEquals(true, health.getDetails().get("stale"));
+        verify(aiService, never()).probe(anyInt());
+    }
+
+    @Test
+    void testUpAfterSuccessfulProbe() {
+        probe.probe();
+
+        Health health = indicator.health();
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals("CLOSED", health.getDetails().get("circuit"));
+        assertNotNull(health.getDetails().get("last_success"));
+        assertEquals("95.00%", ((Map<?, ?>) health.getDetails().get("traffic")).get("success_rate"));
+    }
+
+    @Test
+    void testDownWhenCircuitOpen() {
+        doThrow(new AIServiceException("connect timed out")).when(aiService).probe(anyInt());
+        for (int i = 0; i < properties.getMonitoring().getProbe().getFailureThreshold(); i++) {
+            probe.probe();
+        }
+
+        Health health = indicator.health();
+        assertEquals(Status.DOWN, health.getStatus());
+        assertEquals("OPEN", health.getDetails().get("circuit"));
+        assertEquals("connect timed out", health.getDetails().get("last_error"));
+    }
+
+    @Test
+    void testStaleResultIsUnknown() throws InterruptedException {
+        probe.probe();
+        properties.getMonitoring().getProbe().setTtlSeconds(0);
+        Thread.sleep(5);
+
+        Health health = indicator.health();
+        assertEquals(Status.UNKNOWN, health.getStatus());
+        assertEquals("CLOSED", health.getDetails().get("circuit"));
+    }
+
+    @Test
+    void testConfigCheckWhenProbeDisabled() {
+        properties.getMonitoring().getProbe().setEnabled(false);
+        when(aiService.isHealthy()).thenReturn(false);
+
+        Health health = indicator.health();
+        assertEquals(Status.DOWN, health.getStatus());
+        assertEquals("disabled", health.getDetails().get("probe"));
+    }
+}
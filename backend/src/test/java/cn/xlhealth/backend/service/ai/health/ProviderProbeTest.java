@@ -0,0 +1,119 @@
+package cn.xlhealth.backend.service.ai.health;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.service.ai.AIService;
+import cn.xlhealth.backend.service.ai.exception.AIServiceException;
+import cn.xlhealth.backend.service.ai.monitor.AnomalyEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * AI提供商主动探测测试类
+ */
+class ProviderProbeTest {
+
+    private AIService aiService;
+    private AIServiceProperties properties;
+    private ProviderProbe probe;
+
+    @BeforeEach
+    void setUp() {
+        aiService = mock(AIService.class);
+        when(aiService.getProviderName()).thenReturn("DeepSeek");
+
+        properties = new AIServiceProperties();
+        properties.getMonitoring().getProbe().setFailureThreshold(3);
+        properties.getMonitoring().getProbe().setSuccessThreshold(2);
+
+        probe = new ProviderProbe();
+        ReflectionTestUtils.setField(probe, "aiService", aiService);
+        ReflectionTestUtils.setField(probe, "aiServiceProperties", properties);
+    }
+
+    @Test
+    void testInitialSnapshotIsStale() {
+        assertTrue(probe.isStale(System.currentTimeMillis()));
+        assertEquals(ProviderProbe.CircuitState.CLOSED, probe.getSnapshot().getCircuitState());
+        assertEquals(-1L, probe.getSnapshot().getLatencyMs());
+    }
+
+    @Test
+    void testSuccessfulProbe() {
+        ProviderProbe.Snapshot snapshot = probe.probe();
+
+        verify(aiService).probe(properties.getMonitoring().getProbe().getTimeoutMs());
+        assertEquals(ProviderProbe.CircuitState.CLOSED, snapshot.getCircuitState());
+        assertTrue(snapshot.getLastSuccessTime() > 0);
+        assertEquals(snapshot.getLastProbeTime(), snapshot.getLastSuccessTime());
+        assertTrue(snapshot.getLatencyMs() >= 0);
+        assertFalse(probe.isStale(System.currentTimeMillis()));
+    }
+
+    @Test
+    void testCircuitOpensAfterConsecutiveFailures() {
+        doThrow(new AIServiceException("API_ERROR", "401 Unauthorized", "DeepSeek")).when(aiService).probe(anyInt());
+
+        assertEquals(ProviderProbe.CircuitState.CLOSED, probe.probe().getCircuitState());
+        assertEquals(ProviderProbe.CircuitState.CLOSED, probe.probe().getCircuitState());
+        ProviderProbe.Snapshot snapshot = probe.probe();
+
+        assertEquals(ProviderProbe.CircuitState.OPEN, snapshot.getCircuitState());
+        assertEquals(3, snapshot.getConsecutiveFailures());
+        assertEquals("401 Unauthorized", snapshot.getLastError());
+        assertEquals(0L, snapshot.getLastSuccessTime());
+    }
+
+    @Test
+    void testCircuitRecoversThroughHalfOpen() {
+        doThrow(new AIServiceException("timeout")).when(aiService).probe(anyInt());
+        for (int i = 0; i < 3; i++) {
+            probe.probe();
+        }
+
+        doNothing().when(aiService).probe(anyInt());
+        assertEquals(ProviderProbe.CircuitState.HALF_OPEN, probe.probe().getCircuitState());
+        assertEquals(ProviderProbe.CircuitState.CLOSED, probe.probe().getCircuitState());
+    }
+
+    @Test
+    void testHalfOpenFailureReopensImmediately() {
+        doThrow(new AIServiceException("timeout")).when(aiService).probe(anyInt());
+        for (int i = 0; i < 3; i++) {
+            probe.probe();
+        }
+        doNothing().when(aiService).probe(anyInt());
+        probe.probe();
+
+        doThrow(new AIServiceException("timeout")).when(aiService).probe(anyInt());
+        ProviderProbe.Snapshot snapshot = probe.probe();
+        assertEquals(ProviderProbe.CircuitState.OPEN, snapshot.getCircuitState());
+        assertEquals(1, snapshot.getConsecutiveFailures());
+    }
+
+    @Test
+    void testDisabledProbeDoesNotCallProvider() {
+        properties.getMonitoring().getProbe().setEnabled(false);
+
+        probe.probe();
+
+        verify(aiService, never()).probe(anyInt());
+        assertEquals(0L, probe.getSnapshot().getLastProbeTime());
+    }
+
+    @Test
+    void testAnomalyTriggersImmediateProbe() {
+        probe.onAnomaly(new AnomalyEvent("DEEPSEEK", "deepseek-chat", AnomalyEvent.Metric.LATENCY, true,
+                400, 100, 15, 0, 5000));
+        probe.onAnomaly(new AnomalyEvent("MockAI", null, AnomalyEvent.Metric.ERROR_RATE, true, 0.5, 0, 20, 0, 5000));
+        probe.onAnomaly(new AnomalyEvent("DEEPSEEK", "deepseek-chat", AnomalyEvent.Metric.LATENCY, false,
+                100, 100, 0, 0, 5000));
+
+        verify(aiService, times(1)).probe(anyInt());
+        assertTrue(probe.getSnapshot().getLastProbeTime() > 0);
+    }
+}
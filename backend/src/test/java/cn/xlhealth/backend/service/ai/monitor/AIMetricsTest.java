@@ -0,0 +1,76 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AI指标测试类
+ */
+class AIMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AIMetrics metrics = new AIMetrics(registry);
+
+    @Test
+    void testCallsTaggedByProviderModelAndOutcome() {
+        metrics.recordCall("DEEPSEEK", "deepseek-chat", AIMetrics.OUTCOME_SUCCESS, 800);
+        metrics.recordCall("DEEPSEEK", "deepseek-chat", AIMetrics.OUTCOME_SUCCESS, 1200);
+        metrics.recordCall("DEEPSEEK", null, AIMetrics.OUTCOME_ERROR, 50);
+
+        Timer success = registry.get(AIMetrics.CALLS)
+                .tags("provider", "DEEPSEEK", "model", "deepseek-chat", "outcome", "success").timer();
+        assertEquals(2, success.count());
+        assertEquals(2000, success.totalTime(TimeUnit.MILLISECONDS), 1e-6);
+        assertEquals(1, registry.get(AIMetrics.CALLS).tags("model", "unknown", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void testTokensAndFallbacks() {
+        metrics.recordTokens("DEEPSEEK", "deepseek-chat", 120, 80);
+        metrics.recordTokens("DEEPSEEK", "deepseek-chat", 30, 0);
+        metrics.recordFallback("safety");
+
+        assertEquals(150.0, registry.get(AIMetrics.TOKENS).tags("type", "prompt").counter().count());
+        assertEquals(80.0, registry.get(AIMetrics.TOKENS).tags("type", "completion").counter().count());
+        assertEquals(1.0, registry.get(AIMetrics.FALLBACKS).tag("reason", "safety").counter().count());
+    }
+
+    @Test
+    void testQualityAndContextCache() {
+        metrics.recordQuality("MockAI", 60);
+        metrics.recordQuality("MockAI", 90);
+        metrics.recordContextLookup("local");
+
+        Map<Long, Object> cache = new ConcurrentHashMap<>();
+        metrics.registerContextCache(cache);
+        cache.put(1L, "context");
+
+        assertEquals(2, registry.get(AIMetrics.QUALITY_SCORE).tag("provider", "MockAI").summary().count());
+        assertEquals(75.0, registry.get(AIMetrics.QUALITY_SCORE).summary().mean(), 1e-6);
+        assertEquals(1.0, registry.get(AIMetrics.CONTEXT_LOOKUPS).tag("source", "local").counter().count());
+        assertEquals(1.0, registry.get(AIMetrics.CONTEXT_CACHE_SIZE).gauge().value());
+    }
+
+    @Test
+    void testQualityScoringQueue() {
+        AtomicInteger depth = new AtomicInteger();
+        metrics.registerQualityQueue(depth::get);
+        depth.set(7);
+        metrics.recordQualityDropped();
+        metrics.recordQualityLag(40);
+        metrics.recordQualityLag(250);
+
+        assertEquals(7.0, registry.get(AIMetrics.QUALITY_QUEUE_DEPTH).gauge().value());
+        assertEquals(1.0, registry.get(AIMetrics.QUALITY_DROPPED).counter().count());
+        assertEquals(2, registry.get(AIMetrics.QUALITY_LAG).timer().count());
+        assertEquals(250.0, metrics.getQualityLagMaxMillis(), 1e-6);
+    }
+}
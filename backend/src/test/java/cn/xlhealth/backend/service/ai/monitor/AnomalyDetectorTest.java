@@ -0,0 +1,151 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AI调用异常检测测试类
+ */
+class AnomalyDetectorTest {
+
+    private static final String PROVIDER = "DEEPSEEK";
+    private static final String MODEL = "deepseek-chat";
+    private static final long EVALUATION_MILLIS = 5000;
+
+    private AtomicLong clock;
+    private List<Object> published;
+    private AIServiceProperties properties;
+    private AnomalyDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong();
+        setTime(LocalDateTime.of(2024, 1, 1, 9, 0));
+        published = new ArrayList<>();
+        properties = new AIServiceProperties();
+        detector = new AnomalyDetector(published::add, properties, clock::get, ZoneOffset.UTC);
+    }
+
+    @Test
+    void testSteadyTrafficRaisesNothing() {
+        for (int i = 0; i < 40; i++) {
+            assertTrue(evaluate(20, 100, 0).isEmpty());
+        }
+        assertTrue(published.isEmpty());
+        assertFalse(detector.hasActiveAnomaly(PROVIDER));
+    }
+
+    @Test
+    void testLatencySpikeRaisedWithinOneEvaluationAndCleared() {
+        warmUp();
+
+        List<AnomalyEvent> events = evaluate(20, 400, 0);
+        assertEquals(1, events.size());
+        AnomalyEvent event = events.get(0);
+        assertTrue(event.isRaised());
+        assertEquals(AnomalyEvent.Metric.LATENCY, event.getMetric());
+        assertEquals(PROVIDER, event.getProvider());
+        assertEquals(MODEL, event.getModel());
+        assertTrue(event.getDeviation() >= properties.getMonitoring().getAnomaly().getDeviationThreshold());
+        assertEquals(EVALUATION_MILLIS, event.getDetectionLatencyMillis());
+        assertTrue(detector.hasActiveAnomaly(PROVIDER));
+        assertEquals(1, detector.getActiveAnomalies().size());
+        assertSame(event, published.get(0));
+
+        events = evaluate(20, 100, 0);
+        assertEquals(1, events.size());
+        assertFalse(events.get(0).isRaised());
+        assertFalse(detector.hasActiveAnomaly(null));
+    }
+
+    @Test
+    void testErrorRateSpike() {
+        warmUp();
+
+        // 20次中1次失败属于正常波动
+        assertTrue(evaluate(20, 100, 1).isEmpty());
+
+        List<AnomalyEvent> events = evaluate(20, 100, 4);
+        assertEquals(1, events.size());
+        assertEquals(AnomalyEvent.Metric.ERROR_RATE, events.get(0).getMetric());
+        assertEquals(0.2, events.get(0).getObserved(), 1e-9);
+    }
+
+    @Test
+    void testNoAlertsDuringWarmup() {
+        for (int i = 0; i < properties.getMonitoring().getAnomaly().getWarmupEvaluations() - 1; i++) {
+            evaluate(20, 100, 0);
+        }
+        assertTrue(evaluate(20, 5000, 20).isEmpty());
+    }
+
+    @Test
+    void testFewCallsAccumulateIntoNextEvaluation() {
+        warmUp();
+
+        // 调用数不足时不评估，累积到下一次
+        assertTrue(evaluate(5, 400, 0).isEmpty());
+        List<AnomalyEvent> events = evaluate(5, 400, 0);
+        assertEquals(1, events.size());
+        assertEquals(2 * EVALUATION_MILLIS, events.get(0).getDetectionLatencyMillis());
+    }
+
+    @Test
+    void testSeasonalBaselines() {
+        warmUp();
+
+        // 第一天10点延迟升高：开始时告警，随后10点时段学到新的水平
+        setTime(LocalDateTime.of(2024, 1, 1, 10, 0));
+        for (int i = 0; i < 300; i++) {
+            evaluate(20, 300, 0);
+        }
+        assertFalse(detector.hasActiveAnomaly(PROVIDER));
+
+        // 第二天10点同样的延迟属于正常，9点则是异常
+        setTime(LocalDateTime.of(2024, 1, 2, 10, 0));
+        assertTrue(evaluate(20, 300, 0).isEmpty());
+        setTime(LocalDateTime.of(2024, 1, 2, 9, 0));
+        List<AnomalyEvent> events = evaluate(20, 300, 0);
+        assertEquals(1, events.size());
+        assertEquals(AnomalyEvent.Metric.LATENCY, events.get(0).getMetric());
+    }
+
+    @Test
+    void testDisabled() {
+        properties.getMonitoring().getAnomaly().setEnabled(false);
+        warmUp();
+
+        assertTrue(evaluate(20, 5000, 20).isEmpty());
+        assertTrue(published.isEmpty());
+    }
+
+    private void warmUp() {
+        for (int i = 0; i < 40; i++) {
+            evaluate(20, 100, 0);
+        }
+    }
+
+    /**
+     * 记录一个评估周期的调用（响应时间在基准值上有小幅波动）后评估
+     */
+    private List<AnomalyEvent> evaluate(int calls, long responseTime, int failures) {
+        for (int i = 0; i < calls; i++) {
+            detector.record(PROVIDER, MODEL, i >= failures, responseTime + (i % 5) * 10);
+        }
+        clock.addAndGet(EVALUATION_MILLIS);
+        return detector.evaluate();
+    }
+
+    private void setTime(LocalDateTime time) {
+        clock.set(time.toInstant(ZoneOffset.UTC).toEpochMilli());
+    }
+}
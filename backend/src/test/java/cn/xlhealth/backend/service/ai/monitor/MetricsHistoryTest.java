@@ -0,0 +1,180 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.entity.MetricSeries;
+import cn.xlhealth.backend.mapper.MetricSeriesMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * AI服务指标历史测试类
+ */
+class MetricsHistoryTest {
+
+    private static final long MINUTE_START = TimeUnit.DAYS.toMillis(100);
+
+    private AtomicLong clock;
+    private ServiceStats globalStats;
+    private MetricSeriesMapper mapper;
+    private MetricsHistory history;
+
+    @BeforeEach
+    void setUp() {
+        clock = new AtomicLong(MINUTE_START);
+        globalStats = new ServiceStats("GLOBAL", 24, clock::get);
+        ServiceMonitor serviceMonitor = mock(ServiceMonitor.class);
+        when(serviceMonitor.getStats(null)).thenReturn(globalStats);
+        mapper = mock(MetricSeriesMapper.class);
+
+        AIServiceProperties properties = new AIServiceProperties();
+        properties.getMonitoring().getHistory().setInstanceId("node-1");
+
+        history = new MetricsHistory();
+        ReflectionTestUtils.setField(history, "serviceMonitor", serviceMonitor);
+        ReflectionTestUtils.setField(history, "metricSeriesMapper", mapper);
+        ReflectionTestUtils.setField(history, "aiServiceProperties", properties);
+    }
+
+    @Test
+    void testSnapshotWritesCompletedMinute() {
+        for (int i = 1; i <= 100; i++) {
+            globalStats.recordSuccess(i * 10L, 80);
+        }
+        globalStats.recordTokens(500, 1500);
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(1));
+
+        assertEquals(1, history.snapshotMinute(MINUTE_START));
+
+        ArgumentCaptor<MetricSeries> captor = ArgumentCaptor.forClass(MetricSeries.class);
+        verify(mapper).upsert(captor.capture());
+        MetricSeries row = captor.getValue();
+        assertEquals(MetricSeries.RESOLUTION_MINUTE, row.getResolution());
+        assertEquals(MetricSeries.PROVIDER_GLOBAL, row.getProvider());
+        assertEquals("node-1", row.getInstanceId());
+        assertEquals(0, row.getBucketStart().getSecond());
+        assertEquals(100L, row.getTotalCalls());
+        assertEquals(0L, row.getFailedCalls());
+        assertEquals(500L, row.getPromptTokens());
+        assertEquals(1500L, row.getCompletionTokens());
+        assertEquals(8000L, row.getQualityScoreTotal());
+        assertEquals(500, row.getP50ResponseTime(), 5);
+        assertEquals(990, row.getP99ResponseTime(), 10);
+        assertNotNull(row.getLatencyHistogram());
+    }
+
+    @Test
+    void testSnapshotSkipsIdleMinute() {
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(1));
+
+        assertEquals(0, history.snapshotMinute(MINUTE_START));
+        verify(mapper, never()).upsert(any());
+    }
+
+    @Test
+    void testMergeRecomputesPercentilesFromHistograms() {
+        // 一行全是快速调用，一行全是慢调用：合并后的P50应落在快速调用中，而不是两行P50的平均值
+        MetricSeries fast = minuteRow(LocalDateTime.of(2024, 1, 1, 10, 0), 90, 100L);
+        MetricSeries slow = minuteRow(LocalDateTime.of(2024, 1, 1, 10, 1), 10, 5000L);
+
+        MetricSeries merged = MetricsHistory.merge(Arrays.asList(fast, slow));
+
+        assertEquals(100L, merged.getTotalCalls());
+        assertEquals(90L * 100 + 10L * 5000, merged.getTotalResponseTime());
+        assertEquals(100, merged.getP50ResponseTime(), 1);
+        assertEquals(5000, merged.getP99ResponseTime(), 50);
+        assertEquals(5000, merged.getMaxResponseTime(), 50);
+    }
+
+    @Test
+    void testRollupGroupsMinutesIntoHours() {
+        LocalDateTime hour = LocalDateTime.of(2024, 1, 1, 10, 0);
+        List<MetricSeries> minutes = Arrays.asList(
+                minuteRow(hour, 10, 100L),
+                minuteRow(hour.plusMinutes(30), 20, 200L),
+                minuteRow(hour.plusHours(1), 5, 300L));
+        when(mapper.selectList(any())).thenReturn(minutes);
+
+        int written = history.rollup(MetricSeries.RESOLUTION_MINUTE, MetricSeries.RESOLUTION_HOUR,
+                hour, hour.plusHours(2), ChronoUnit.HOURS);
+
+        assertEquals(2, written);
+        ArgumentCaptor<MetricSeries> captor = ArgumentCaptor.forClass(MetricSeries.class);
+        verify(mapper, times(2)).upsert(captor.capture());
+        List<MetricSeries> rows = captor.getAllValues();
+        assertEquals(MetricSeries.RESOLUTION_HOUR, rows.get(0).getResolution());
+        assertEquals(hour, rows.get(0).getBucketStart());
+        assertEquals(30L, rows.get(0).getTotalCalls());
+        assertEquals("node-1", rows.get(0).getInstanceId());
+        assertEquals(hour.plusHours(1), rows.get(1).getBucketStart());
+        assertEquals(5L, rows.get(1).getTotalCalls());
+    }
+
+    @Test
+    void testQueryMergesInstancesPerBucket() {
+        LocalDateTime bucket = LocalDateTime.of(2024, 1, 1, 10, 0);
+        MetricSeries other = minuteRow(bucket, 20, 300L);
+        other.setInstanceId("node-2");
+        List<MetricSeries> minutes = Arrays.asList(
+                minuteRow(bucket, 10, 100L), other, minuteRow(bucket.plusMinutes(1), 1, 100L));
+        when(mapper.selectList(any())).thenReturn(minutes);
+
+        List<MetricSeries> points = history.query(null, MetricSeries.RESOLUTION_MINUTE, bucket, bucket.plusHours(1));
+
+        assertEquals(2, points.size());
+        assertEquals(30L, points.get(0).getTotalCalls());
+        assertNull(points.get(0).getInstanceId());
+        assertEquals(bucket.plusMinutes(1), points.get(1).getBucketStart());
+    }
+
+    @Test
+    void testResolutionFor() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        assertEquals(MetricSeries.RESOLUTION_MINUTE, MetricsHistory.resolutionFor(now.minusHours(1), now));
+        assertEquals(MetricSeries.RESOLUTION_HOUR, MetricsHistory.resolutionFor(now.minusDays(7), now));
+        assertEquals(MetricSeries.RESOLUTION_DAY, MetricsHistory.resolutionFor(now.minusDays(90), now));
+        assertFalse(MetricsHistory.isValidResolution("5m"));
+    }
+
+    /**
+     * 通过 ServiceStats 生成带直方图的分钟数据
+     * 内部会创建并 stub mock，须先生成到局部变量，不能在 when(...).thenReturn(...) 的参数中调用
+     */
+    private MetricSeries minuteRow(LocalDateTime bucketStart, int calls, long responseTime) {
+        AtomicLong rowClock = new AtomicLong(MINUTE_START);
+        ServiceStats stats = new ServiceStats("GLOBAL", 1, rowClock::get);
+        for (int i = 0; i < calls; i++) {
+            stats.recordSuccess(responseTime);
+        }
+        rowClock.addAndGet(TimeUnit.MINUTES.toMillis(1));
+
+        ServiceMonitor monitor = mock(ServiceMonitor.class);
+        when(monitor.getStats(null)).thenReturn(stats);
+        MetricSeriesMapper rowMapper = mock(MetricSeriesMapper.class);
+        MetricsHistory writer = new MetricsHistory();
+        ReflectionTestUtils.setField(writer, "serviceMonitor", monitor);
+        ReflectionTestUtils.setField(writer, "metricSeriesMapper", rowMapper);
+        ReflectionTestUtils.setField(writer, "aiServiceProperties", new AIServiceProperties());
+        ReflectionTestUtils.setField(writer, "instanceId", "node-1");
+        writer.snapshotMinute(MINUTE_START);
+
+        ArgumentCaptor<MetricSeries> captor = ArgumentCaptor.forClass(MetricSeries.class);
+        verify(rowMapper).upsert(captor.capture());
+        MetricSeries row = captor.getValue();
+        row.setBucketStart(bucketStart);
+        return row;
+    }
+}
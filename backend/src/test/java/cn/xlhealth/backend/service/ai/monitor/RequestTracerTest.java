@@ -0,0 +1,83 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 请求阶段追踪测试类
+ */
+class RequestTracerTest {
+
+    private MeterRegistry meterRegistry;
+    private RequestTracer tracer;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+        tracer = new RequestTracer(observationRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestTracer.end();
+    }
+
+    @Test
+    void testStagesRecordedAsTimers() {
+        try (RequestTracer.Span span = tracer.start("context")) {
+            // 无请求范围时只记录指标
+        }
+        try (RequestTracer.Span span = tracer.start("context")) {
+        }
+        try (RequestTracer.Span span = tracer.start("llm")) {
+        }
+
+        assertEquals(2L, meterRegistry.get(RequestTracer.STAGE).tag("stage", "context").timer().count());
+        assertEquals(1L, meterRegistry.get(RequestTracer.STAGE).tag("stage", "llm").timer().count());
+        assertNull(RequestTracer.current());
+    }
+
+    @Test
+    void testStageTimingsAccumulatedInRequestScope() throws InterruptedException {
+        StageTimings timings = RequestTracer.begin();
+        try (RequestTracer.Span span = tracer.start("llm")) {
+            Thread.sleep(5);
+        }
+        try (RequestTracer.Span span = tracer.start("insert")) {
+        }
+        try (RequestTracer.Span span = tracer.start("llm")) {
+            Thread.sleep(5);
+        }
+
+        Map<String, Double> stages = timings.getStages();
+        assertEquals(2, stages.size());
+        assertEquals("llm", stages.keySet().iterator().next());
+        assertTrue(stages.get("llm") >= 10.0);
+        assertTrue(timings.getElapsedMillis() >= stages.get("llm"));
+
+        String header = timings.toServerTiming();
+        assertTrue(header.matches("llm;dur=\\d+\\.\\d, insert;dur=\\d+\\.\\d, total;dur=\\d+\\.\\d"), header);
+
+        RequestTracer.end();
+        assertNull(RequestTracer.current());
+    }
+
+    @Test
+    void testEmptyTimings() {
+        StageTimings timings = RequestTracer.begin();
+
+        assertTrue(timings.isEmpty());
+        assertTrue(timings.toServerTiming().startsWith("total;dur="));
+    }
+}
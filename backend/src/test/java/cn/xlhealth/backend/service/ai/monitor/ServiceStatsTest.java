@@ -0,0 +1,168 @@
+package cn.xlhealth.backend.service.ai.monitor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 服务统计信息测试类
+ */
+class ServiceStatsTest {
+
+    @Test
+    void testConcurrentRecordingKeepsAllCounts() throws InterruptedException {
+        ServiceStats stats = new ServiceStats("MOCK");
+        int threads = 8;
+        int callsPerThread = 10000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < callsPerThread; i++) {
+                    if (i % 10 == 0) {
+                        stats.recordFailure(100);
+                    } else {
+                        stats.recordSuccess(100, i % 2 == 0 ? 80 : 90);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        long total = (long) threads * callsPerThread;
+        assertEquals(total, stats.getTotalCalls());
+        assertEquals(total / 10, stats.getFailedCalls());
+        assertEquals(total - total / 10, stats.getSuccessfulCalls());
+        assertEquals(total * 100, stats.getTotalResponseTime());
+        assertEquals(90.0, stats.getSuccessRate(), 1e-9);
+        // 成功调用中i为奇数的9成记90分，偶数的记80分
+        assertEquals((4.0 * 80 + 5.0 * 90) / 9, stats.getAverageQualityScore(), 1e-9);
+    }
+
+    @Test
+    void testResponseTimePercentiles() {
+        ServiceStats stats = new ServiceStats("MOCK");
+        for (int i = 1; i <= 1000; i++) {
+            stats.recordSuccess(i);
+        }
+
+        Map<String, Long> percentiles = stats.getResponseTimePercentiles();
+        // 直方图精度约1%
+        assertEquals(500, percentiles.get("p50"), 5);
+        assertEquals(900, percentiles.get("p90"), 9);
+        assertEquals(990, percentiles.get("p99"), 10);
+        assertEquals(1000, percentiles.get("p999"), 10);
+        assertEquals(1, stats.getMinResponseTime());
+        assertEquals(1000, stats.getMaxResponseTime());
+
+        // 读取后继续记录的数据也计入累计分位数
+        for (int i = 0; i < 1000; i++) {
+            stats.recordSuccess(5000);
+        }
+        assertEquals(5000, stats.getResponseTimePercentile(99.0), 50);
+    }
+
+    @Test
+    void testReset() {
+        ServiceStats stats = new ServiceStats("MOCK");
+        stats.recordSuccess(1200, 85);
+        stats.recordFailure(300);
+
+        stats.reset();
+
+        assertEquals(0, stats.getTotalCalls());
+        assertEquals(100.0, stats.getSuccessRate());
+        assertEquals(0.0, stats.getAverageQualityScore());
+        assertEquals(Long.MAX_VALUE, stats.getMinResponseTime());
+        assertEquals(Long.valueOf(0), stats.getResponseTimePercentiles().get("p99"));
+    }
+
+    @Test
+    void testSlidingWindows() {
+        AtomicLong clock = new AtomicLong(TimeUnit.DAYS.toMillis(100));
+        ServiceStats stats = new ServiceStats("MOCK", 3, clock::get);
+
+        // 两小时前全部成功，最近几分钟全部失败
+        for (int i = 0; i < 100; i++) {
+            stats.recordSuccess(200, 80);
+        }
+        clock.addAndGet(TimeUnit.HOURS.toMillis(2));
+        for (int i = 0; i < 10; i++) {
+            stats.recordFailure(3000);
+        }
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(3));
+        for (int i = 0; i < 10; i++) {
+            stats.recordFailure(1000);
+        }
+
+        WindowedStats lastMinute = stats.getWindow(1);
+        assertEquals(10, lastMinute.getTotalCalls());
+        assertEquals(100.0, lastMinute.getErrorRate());
+        assertEquals(1000.0, lastMinute.getAverageResponseTime());
+
+        WindowedStats lastFiveMinutes = stats.getWindow(5);
+        assertEquals(20, lastFiveMinutes.getTotalCalls());
+        assertEquals(0.0, lastFiveMinutes.getSuccessRate());
+        assertEquals(3000, lastFiveMinutes.getResponseTimePercentile(99.0), 30);
+
+        // 超过1小时按整小时汇总
+        WindowedStats lastThreeHours = stats.getWindow(180);
+        assertEquals(120, lastThreeHours.getTotalCalls());
+        assertEquals(80.0, lastThreeHours.getAverageQualityScore());
+
+        // 累计值不受窗口影响
+        assertEquals(120, stats.getTotalCalls());
+
+        // 超过保留时间的桶被复用，不再计入
+        clock.addAndGet(TimeUnit.HOURS.toMillis(3));
+        stats.recordSuccess(100);
+        assertEquals(1, stats.getWindow(24 * 60).getTotalCalls());
+        assertEquals(3, stats.getRetentionHours());
+    }
+
+    @Test
+    void testCompletedMinute() {
+        long minuteStart = TimeUnit.DAYS.toMillis(100);
+        AtomicLong clock = new AtomicLong(minuteStart + 1000);
+        ServiceStats stats = new ServiceStats("MOCK", 3, clock::get);
+
+        stats.recordSuccess(200, 80);
+        stats.recordFailure(400);
+        stats.recordTokens(30, 70);
+
+        // 分钟未结束时不返回
+        assertNull(stats.getMinute(minuteStart));
+
+        clock.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        stats.recordSuccess(100);
+        WindowedStats minute = stats.getMinute(minuteStart);
+        assertEquals(2, minute.getTotalCalls());
+        assertEquals(1, minute.getFailedCalls());
+        assertEquals(30, minute.getPromptTokens());
+        assertEquals(70, minute.getCompletionTokens());
+        assertEquals(80, minute.getQualityScoreTotal());
+        assertEquals(minuteStart, minute.getWindowStart());
+        assertEquals(minuteStart + TimeUnit.MINUTES.toMillis(1), minute.getWindowEnd());
+        assertEquals(100, stats.getCompletionTokens() + stats.getPromptTokens());
+
+        // 超过分钟窗口后不再返回
+        clock.addAndGet(TimeUnit.HOURS.toMillis(1));
+        assertNull(stats.getMinute(minuteStart));
+    }
+}
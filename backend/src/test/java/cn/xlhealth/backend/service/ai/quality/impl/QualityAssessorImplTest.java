@@ -0,0 +1,94 @@
+package cn.xlhealth.backend.service.ai.quality.impl;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.service.ai.dto.AIRequest;
+import cn.xlhealth.backend.service.ai.dto.AIResponse;
+import cn.xlhealth.backend.service.ai.quality.SafetyScanner;
+import cn.xlhealth.backend.service.ai.quality.rule.QualityRuleEngine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 质量评估器测试类
+ */
+class QualityAssessorImplTest {
+
+    private final QualityAssessorImpl qualityAssessor = new QualityAssessorImpl();
+
+    private final AIRequest request = new AIRequest();
+
+    @BeforeEach
+    void setUp() {
+        // 使用默认规则文件
+        QualityRuleEngine ruleEngine = new QualityRuleEngine();
+        ReflectionTestUtils.setField(ruleEngine, "aiServiceProperties", new AIServiceProperties());
+        ruleEngine.init();
+        ReflectionTestUtils.setField(qualityAssessor, "qualityRuleEngine", ruleEngine);
+        request.setUserMessage("最近压力很大");
+    }
+
+    @Test
+    void testStreamingScoreMatchesFullCheck() {
+        String content = "听起来你最近压力很大，有人会借酒精逃避，但这并不能解决问题。如有需要，请咨询医生。";
+        SafetyScanner scanner = qualityAssessor.openSafetyScanner(request, 50);
+
+        for (int i = 0; i < content.length(); i += 3) {
+            assertTrue(scanner.feed(content.substring(i, Math.min(content.length(), i + 3))));
+        }
+
+        assertFalse(scanner.isAborted());
+        assertEquals(content.length(), scanner.getScannedLength());
+        assertEquals(qualityAssessor.checkSafety(AIResponse.success(content, "TEST", "TEST")), scanner.getScore());
+    }
+
+    @Test
+    void testAbortWhenFailureIsCertain() {
+        SafetyScanner scanner = qualityAssessor.openSafetyScanner(request, 50);
+
+        // 单个不当建议加上可能的免责声明仍能达到阈值，继续生成
+        assertTrue(scanner.feed("你可以试试吸"));
+        assertTrue(scanner.feed("毒"));
+        assertEquals(50, scanner.getScore());
+
+        // 第二个不当建议被拆分在两个分段中，确定无法通过
+        assertTrue(scanner.feed("，或者应该赌"));
+        assertFalse(scanner.feed("博"));
+        assertTrue(scanner.isAborted());
+        assertEquals(0, scanner.getScore());
+        assertFalse(scanner.feed("后续内容"));
+    }
+
+    @Test
+    void testDisclaimerCounted() {
+        String content = "本回复不构成医疗建议。你可以吸毒";
+        SafetyScanner scanner = qualityAssessor.openSafetyScanner(request, 60);
+
+        assertTrue(scanner.feed("本回复不构成医疗建议。"));
+        assertTrue(scanner.feed("你可以吸毒"));
+        assertEquals(60, scanner.getScore());
+        assertEquals(qualityAssessor.checkSafety(AIResponse.success(content, "TEST", "TEST")), scanner.getScore());
+    }
+
+    @Test
+    void testRuleBasedDimensions() {
+        request.setUserMessage("我最近很焦虑，怎么办？");
+        AIResponse response = AIResponse.success(
+                "我理解你的感受，焦虑是常见的情绪反应。认知行为疗法和情绪调节可以帮助你，希望能帮到你。", "TEST", "TEST");
+
+        // 基础分70 + 专业术语2个×5 - 长度不足50时20
+        assertEquals(60, qualityAssessor.checkProfessionalism(response));
+        // 基础分70 + 共情15 + 用户负面情绪时回复包含安慰15
+        assertEquals(100, qualityAssessor.checkEmotionalAppropriateness(request, response));
+        // 基础分40 + 长度20/10 + 结束语5
+        assertEquals(75, qualityAssessor.checkCompleteness(response));
+
+        request.setEmotionalState("消极");
+        request.setUserMessage("工作压力大");
+        AIResponse flat = AIResponse.success("知道了。", "TEST", "TEST");
+        // 情绪状态为负面但回复没有安慰
+        assertEquals(50, qualityAssessor.checkEmotionalAppropriateness(request, flat));
+    }
+}
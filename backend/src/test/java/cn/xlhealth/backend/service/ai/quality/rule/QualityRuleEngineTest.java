@@ -0,0 +1,166 @@
+package cn.xlhealth.backend.service.ai.quality.rule;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.service.ai.quality.SafetyScanner;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 质量评分规则引擎测试类
+ */
+class QualityRuleEngineTest {
+
+    private Path file;
+    private QualityRuleEngine engine;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("quality-rules", ".yml");
+
+        AIServiceProperties properties = new AIServiceProperties();
+        properties.getQuality().getRules().setLocation("file:" + file.toAbsolutePath());
+        engine = new QualityRuleEngine();
+        ReflectionTestUtils.setField(engine, "aiServiceProperties", properties);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testEvaluateRules() throws IOException {
+        write("base-scores:\n"
+                + "  safety: 100\n"
+                + "weights:\n"
+                + "  safety: 1.0\n"
+                + "keyword-sets:\n"
+                + "  risky: [赌博, 酒精]\n"
+                + "rules:\n"
+                + "  - name: mention\n"
+                + "    dimension: safety\n"
+                + "    keyword-set: risky\n"
+                + "    delta: -10\n"
+                + "    per-term: true\n"
+                + "    max-delta: 15\n"
+                + "  - name: advice\n"
+                + "    dimension: safety\n"
+                + "    keyword-set: risky\n"
+                + "    templates: [\"可以{}\"]\n"
+                + "    delta: -30\n"
+                + "  - name: hotline\n"
+                + "    dimension: safety\n"
+                + "    pattern: \"热线\\\\d{3,}\"\n"
+                + "    requires: [mention]\n"
+                + "    delta: 5\n");
+        engine.init();
+
+        RuleEvaluation evaluation = engine.evaluate(null, null, "你可以赌博，也有人喝酒精。求助热线12320");
+
+        // 100 - min(2×10, 15) - 30 + 5
+        assertEquals(60, evaluation.score(QualityDimension.SAFETY));
+        assertEquals(60, evaluation.weightedTotal(0, 0, 0, 60, 0));
+        // 未定义基础分的维度按指定基础分计算
+        assertEquals(70, evaluation.score(QualityDimension.RELEVANCE, 70));
+
+        Map<String, Object> stats = engine.getStats();
+        assertEquals(1L, stats.get("evaluations"));
+        assertEquals(Map.of("mention", 1L, "advice", 1L, "hotline", 1L), stats.get("ruleHits"));
+    }
+
+    @Test
+    void testReloadSwapsRulesAndKeepsCounters() throws IOException {
+        write("rules:\n"
+                + "  - name: empathy\n"
+                + "    dimension: emotional\n"
+                + "    keywords: [理解]\n"
+                + "    delta: 15\n");
+        engine.init();
+        CompiledRuleSet before = engine.current();
+        engine.evaluate(null, null, "我理解你");
+
+        write("rules:\n"
+                + "  - name: empathy\n"
+                + "    dimension: emotional\n"
+                + "    keywords: [理解, 明白]\n"
+                + "    delta: 20\n");
+        CompiledRuleSet after = engine.reload();
+
+        assertNotSame(before, after);
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals(20, engine.evaluate(null, null, "我明白").score(QualityDimension.EMOTIONAL));
+        assertEquals(Map.of("empathy", 2L), engine.getStats().get("ruleHits"));
+    }
+
+    @Test
+    void testInvalidRulesKeepCurrent() throws IOException {
+        write("rules:\n"
+                + "  - name: empathy\n"
+                + "    dimension: emotional\n"
+                + "    keywords: [理解]\n"
+                + "    delta: 15\n");
+        engine.init();
+        CompiledRuleSet current = engine.current();
+
+        // 条件引用后面定义的规则
+        write("rules:\n"
+                + "  - name: comfort\n"
+                + "    dimension: emotional\n"
+                + "    requires: [negative]\n"
+                + "    delta: 10\n"
+                + "  - name: negative\n"
+                + "    dimension: emotional\n"
+                + "    source: user\n"
+                + "    keywords: [难过]\n");
+        assertThrows(IllegalArgumentException.class, () -> engine.reload());
+
+        // 未知字段
+        write("rules:\n"
+                + "  - name: empathy\n"
+                + "    dimension: emotional\n"
+                + "    keyword: [理解]\n");
+        assertThrows(IllegalArgumentException.class, () -> engine.reload());
+
+        assertSame(current, engine.current());
+        assertEquals(2L, engine.getStats().get("reloadFailures"));
+    }
+
+    @Test
+    void testStreamingScannerBound() throws IOException {
+        write("base-scores:\n"
+                + "  safety: 100\n"
+                + "rules:\n"
+                + "  - name: mention\n"
+                + "    dimension: safety\n"
+                + "    keywords: [酒精]\n"
+                + "    delta: -40\n"
+                + "  - name: short\n"
+                + "    dimension: safety\n"
+                + "    max-length: 5\n"
+                + "    delta: -30\n");
+        engine.init();
+
+        SafetyScanner scanner = engine.current().openSafetyScanner(null, null, 50);
+        // 长度规则可能随回复增长而撤销，不能据此中止
+        assertTrue(scanner.feed("酒"));
+        assertTrue(scanner.feed("精"));
+        assertEquals(30, scanner.getScore());
+        assertTrue(scanner.feed("并不能解决问题"));
+        assertEquals(60, scanner.getScore());
+        assertFalse(scanner.isAborted());
+    }
+
+    private void write(String content) throws IOException {
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,96 @@
+package cn.xlhealth.backend.service.ai.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 多关键词匹配器测试类
+ */
+class KeywordMatcherTest {
+
+    private final KeywordMatcher matcher = KeywordMatcher.builder()
+            .add("EMOTION", "焦虑", "抑郁", "难过")
+            .add("TERM", "应激反应", "创伤后应激障碍", "应激")
+            .add("GREETING", "hello", "你好")
+            .addTerm("ADVICE", "可以吸毒", "吸毒")
+            .addTerm("ADVICE", "试试吸毒", "吸毒")
+            .add("DRUG", "吸毒")
+            .build();
+
+    @Test
+    void testMatchAllCategoriesInOnePass() {
+        KeywordHits hits = matcher.match("最近工作让我很焦虑，有点抑郁，出现了应激反应");
+
+        assertTrue(hits.contains("EMOTION"));
+        assertTrue(hits.contains("TERM"));
+        assertFalse(hits.contains("GREETING"));
+        assertEquals(Set.of("焦虑", "抑郁"), hits.terms("EMOTION"));
+    }
+
+    @Test
+    void testOverlappingPatterns() {
+        KeywordHits hits = matcher.match("创伤后应激障碍");
+
+        // 后缀重叠的关键词都应命中，与逐个contains的结果一致
+        assertEquals(Set.of("创伤后应激障碍", "应激"), hits.terms("TERM"));
+        assertEquals(2, hits.count("TERM"));
+    }
+
+    @Test
+    void testTermNormalization() {
+        KeywordHits hits = matcher.match("你可以吸毒，也可以试试吸毒");
+
+        // 不同模式归一化为同一词条
+        assertEquals(Set.of("吸毒"), hits.terms("ADVICE"));
+        assertTrue(hits.contains("DRUG"));
+    }
+
+    @Test
+    void testIgnoreCase() {
+        assertTrue(matcher.match("HeLLo there").contains("GREETING"));
+        assertTrue(matcher.containsAny("HELLO", "GREETING"));
+    }
+
+    @Test
+    void testNoMatch() {
+        KeywordHits hits = matcher.match("今天天气不错");
+
+        assertTrue(hits.isEmpty());
+        assertEquals(0, hits.count("EMOTION"));
+        assertFalse(matcher.containsAny("今天天气不错", "EMOTION"));
+        assertFalse(matcher.containsAny(null, "EMOTION"));
+        assertFalse(matcher.match(null).contains("EMOTION"));
+        assertFalse(hits.contains("UNKNOWN"));
+    }
+
+    @Test
+    void testCursorMatchesAcrossChunks() {
+        KeywordMatcher.Cursor cursor = matcher.cursor();
+
+        // 关键词被拆分在相邻分段中
+        assertFalse(cursor.feed("你可"));
+        assertFalse(cursor.feed("以吸"));
+        assertTrue(cursor.feed("毒，最近很焦"));
+        assertTrue(cursor.feed("虑"));
+
+        KeywordHits hits = cursor.hits();
+        assertEquals(Set.of("吸毒"), hits.terms("ADVICE"));
+        assertTrue(hits.contains("DRUG"));
+        assertEquals(Set.of("焦虑"), hits.terms("EMOTION"));
+    }
+
+    @Test
+    void testCursorReportsOnlyNewEntries() {
+        KeywordMatcher.Cursor cursor = matcher.cursor();
+
+        assertTrue(cursor.feed("焦虑"));
+        assertFalse(cursor.feed("还是焦虑"));
+        assertFalse(cursor.feed(null));
+        assertFalse(cursor.feed("HEL"));
+        assertTrue(cursor.feed("lo"));
+        assertTrue(cursor.hits().contains("GREETING"));
+    }
+}
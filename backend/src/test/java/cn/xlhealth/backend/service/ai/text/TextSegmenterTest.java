@@ -0,0 +1,72 @@
+package cn.xlhealth.backend.service.ai.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 中文分词器测试类
+ */
+class TextSegmenterTest {
+
+    private final TextSegmenter segmenter = TextSegmenter.of(
+            Map.of("焦虑", 4.0f, "焦虑症", 6.0f, "失眠", 6.0f, "压力", 4.0f, "工作", 2.5f, "cbt", 8.0f, "我们", 2.5f),
+            Set.of("我", "我们", "很", "的"));
+
+    @Test
+    void testForwardMaximumMatching() {
+        // 优先匹配最长的词，词典外的单字跳过
+        assertEquals(List.of("焦虑症", "失眠"), segmenter.segment("焦虑症导致失眠"));
+        assertEquals(List.of("工作", "压力", "焦虑"), segmenter.segment("工作压力让人焦虑"));
+    }
+
+    @Test
+    void testStopWordsExcluded() {
+        // 停用词优先于词典中的同名词
+        assertEquals(List.of("工作", "压力"), segmenter.segment("我们的工作压力很大"));
+        assertEquals(6, segmenter.size());
+    }
+
+    @Test
+    void testAlphanumericTokens() {
+        // 连续字母数字整体作为一个词，忽略大小写；未登录的单个字母忽略
+        assertEquals(List.of("cbt", "120", "sleep"), segmenter.segment("CBT疗法120天 a Sleep"));
+
+        TermVector first = segmenter.vectorize("Sleep tracker");
+        TermVector second = segmenter.vectorize("sleep");
+        assertEquals(2, first.size());
+        assertTrue(first.cosine(second) > 0f);
+    }
+
+    @Test
+    void testCosineSimilarity() {
+        TermVector question = segmenter.vectorize("工作压力大，总是失眠");
+
+        assertEquals(1f, question.cosine(segmenter.vectorize("失眠，工作压力")), 1e-5f);
+        assertEquals(0f, question.cosine(segmenter.vectorize("焦虑症")), 1e-5f);
+
+        // 高IDF的词对相似度的贡献更大
+        float rare = question.cosine(segmenter.vectorize("失眠"));
+        float common = question.cosine(segmenter.vectorize("工作"));
+        assertTrue(rare > common);
+    }
+
+    @Test
+    void testEmptyVector() {
+        assertTrue(segmenter.vectorize(null).isEmpty());
+        assertTrue(segmenter.vectorize("我很好的").isEmpty());
+        assertEquals(0f, segmenter.vectorize("").cosine(segmenter.vectorize("失眠")));
+    }
+
+    @Test
+    void testDefaultDictionary() {
+        TextSegmenter defaultSegmenter = TextSegmenter.getDefault();
+
+        assertTrue(defaultSegmenter.size() > 0);
+        assertEquals(List.of("男朋友", "分手", "难过"), defaultSegmenter.segment("我和男朋友分手了，很难过"));
+    }
+}
@@ -0,0 +1,161 @@
+package cn.xlhealth.backend.service.ai.usage;
+
+import cn.xlhealth.backend.config.properties.AIServiceProperties;
+import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.entity.UsageDaily;
+import cn.xlhealth.backend.mapper.UsageDailyMapper;
+import cn.xlhealth.backend.service.event.MessageCreatedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用量账本测试类
+ */
+class UsageLedgerTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 5, 1);
+
+    private UsageDailyMapper usageDailyMapper;
+    private AIServiceProperties properties;
+    private UsageLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        usageDailyMapper = mock(UsageDailyMapper.class);
+
+        properties = new AIServiceProperties();
+        AIServiceProperties.Usage.Price price = new AIServiceProperties.Usage.Price();
+        price.setPromptPer1k(new BigDecimal("0.002"));
+        price.setCompletionPer1k(new BigDecimal("0.008"));
+        properties.getUsage().getPrices().put("deepseek-chat", price);
+
+        ledger = new UsageLedger();
+        ReflectionTestUtils.setField(ledger, "usageDailyMapper", usageDailyMapper);
+        ReflectionTestUtils.setField(ledger, "aiServiceProperties", properties);
+    }
+
+    @Test
+    void testFlushAggregatesByDayUserAndModel() {
+        ledger.record(DAY, 1L, "deepseek-chat", 100, 50);
+        ledger.record(DAY, 1L, "deepseek-chat", 200, 100);
+        ledger.record(DAY, 2L, "deepseek-chat", 10, 10);
+        ledger.record(DAY.plusDays(1), 1L, "deepseek-chat", 10, 10);
+
+        assertEquals(3, ledger.flush());
+
+        UsageDaily row = flushedRow(1L, DAY);
+        assertEquals(2, row.getRequestCount());
+        assertEquals(300L, row.getPromptTokens());
+        assertEquals(150L, row.getCompletionTokens());
+        assertEquals(450L, row.getTotalTokens());
+        // (300 * 0.002 + 150 * 0.008) / 1000
+        assertEquals(0, new BigDecimal("0.0018").compareTo(row.getCost()));
+
+        // 已写入的用量不再重复写入
+        clearInvocations(usageDailyMapper);
+        assertEquals(0, ledger.flush());
+        verify(usageDailyMapper, never()).accumulate(any());
+    }
+
+    @Test
+    void testUnpricedModelCostsNothing() {
+        ledger.record(DAY, 1L, null, 1000, 1000);
+        ledger.flush();
+
+        UsageDaily row = flushedRow(1L, DAY);
+        assertEquals("unknown", row.getModelName());
+        assertEquals(0, BigDecimal.ZERO.compareTo(row.getCost()));
+    }
+
+    @Test
+    void testFailedFlushIsMergedAndRetried() {
+        when(usageDailyMapper.accumulate(any())).thenThrow(new RuntimeException("db down")).thenReturn(1);
+
+        ledger.record(DAY, 1L, "deepseek-chat", 100, 50);
+        assertEquals(0, ledger.flush());
+
+        ledger.record(DAY, 1L, "deepseek-chat", 100, 50);
+        assertEquals(1, ledger.flush());
+
+        ArgumentCaptor<UsageDaily> captor = ArgumentCaptor.forClass(UsageDaily.class);
+        verify(usageDailyMapper, times(2)).accumulate(captor.capture());
+        UsageDaily retried = captor.getAllValues().get(1);
+        assertEquals(2, retried.getRequestCount());
+        assertEquals(200L, retried.getPromptTokens());
+        assertEquals(100L, retried.getCompletionTokens());
+        assertEquals(1L, ledger.getStats().get("flushFailures"));
+    }
+
+    @Test
+    void testOnlyAssistantRepliesWithTokensAreRecorded() {
+        ledger.onMessageCreated(new MessageCreatedEvent(message(Message.MessageRole.USER, 100, 0)));
+        ledger.onMessageCreated(new MessageCreatedEvent(message(Message.MessageRole.ASSISTANT, 0, 0)));
+        ledger.onMessageCreated(new MessageCreatedEvent(message(Message.MessageRole.ASSISTANT, 120, 80)));
+
+        assertEquals(1, ledger.flush());
+        UsageDaily row = flushedRow(7L, DAY);
+        assertEquals("deepseek-chat", row.getModelName());
+        assertEquals(120L, row.getPromptTokens());
+        assertEquals(80L, row.getCompletionTokens());
+    }
+
+    @Test
+    void testDisabledLedgerRecordsNothing() {
+        properties.getUsage().setEnabled(false);
+        ledger.record(DAY, 1L, "deepseek-chat", 100, 50);
+
+        assertEquals(0, ledger.flush());
+        verify(usageDailyMapper, never()).accumulate(any());
+    }
+
+    @Test
+    void testSummarize() {
+        UsageDaily first = new UsageDaily();
+        first.setRequestCount(2);
+        first.setPromptTokens(300L);
+        first.setCompletionTokens(150L);
+        first.setCost(new BigDecimal("0.0018"));
+        UsageDaily second = new UsageDaily();
+        second.setRequestCount(1);
+        second.setPromptTokens(10L);
+        second.setCompletionTokens(10L);
+        second.setCost(new BigDecimal("0.0001"));
+
+        Map<String, Object> summary = ledger.summarize(List.of(first, second));
+        assertEquals(3L, summary.get("requests"));
+        assertEquals(470L, summary.get("totalTokens"));
+        assertEquals(0, new BigDecimal("0.0019").compareTo((BigDecimal) summary.get("cost")));
+        assertEquals("CNY", summary.get("currency"));
+    }
+
+    private UsageDaily flushedRow(Long userId, LocalDate date) {
+        ArgumentCaptor<UsageDaily> captor = ArgumentCaptor.forClass(UsageDaily.class);
+        verify(usageDailyMapper, atLeastOnce()).accumulate(captor.capture());
+        return captor.getAllValues().stream()
+                .filter(row -> row.getUserId().equals(userId) && row.getUsageDate().equals(date))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Message message(Message.MessageRole role, int promptTokens, int completionTokens) {
+        Message message = new Message();
+        message.setUserId(7L);
+        message.setRole(role);
+        message.setModelName("deepseek-chat");
+        message.setPromptTokens(promptTokens);
+        message.setCompletionTokens(completionTokens);
+        message.setCreatedTime(DAY.atTime(10, 0));
+        return message;
+    }
+}
@@ -0,0 +1,101 @@
+package cn.xlhealth.backend.service.cache;
+
+import cn.xlhealth.backend.entity.Conversation;
+import cn.xlhealth.backend.mapper.ConversationMapper;
+import cn.xlhealth.backend.service.event.ConversationAccessChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 对话访问信息缓存测试类
+ */
+class ConversationAccessCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ConversationMapper conversationMapper;
+    private ConversationAccessCache cache;
+
+    @BeforeEach
+    void setUp() {
+        conversationMapper = mock(ConversationMapper.class);
+        cache = new ConversationAccessCache(conversationMapper, registry, 30, 100);
+    }
+
+    @Test
+    void testLoadsOnceAndServesHits() {
+        when(conversationMapper.selectAccessInfo(1L)).thenReturn(conversation(1L, 7L, Conversation.ConversationStatus.ACTIVE));
+
+        ConversationAccessCache.Access first = cache.get(1L);
+        ConversationAccessCache.Access second = cache.get(1L);
+        cache.get(1L);
+
+        assertEquals(7L, first.getOwnerId());
+        assertEquals(Conversation.ConversationStatus.ACTIVE, first.getStatus());
+        assertSame(first, second);
+        verify(conversationMapper, times(1)).selectAccessInfo(1L);
+        assertEquals(2.0, registry.get(ConversationAccessCache.REQUESTS).tag("result", "hit").counter().count());
+        assertEquals(1.0, registry.get(ConversationAccessCache.REQUESTS).tag("result", "miss").counter().count());
+        assertEquals(2.0 / 3, registry.get(ConversationAccessCache.HIT_RATIO).gauge().value(), 1e-6);
+        assertEquals(1.0, registry.get(ConversationAccessCache.SIZE).gauge().value());
+    }
+
+    @Test
+    void testInvalidationReloadsNewStatus() {
+        when(conversationMapper.selectAccessInfo(1L))
+                .thenReturn(conversation(1L, 7L, Conversation.ConversationStatus.ACTIVE))
+                .thenReturn(conversation(1L, 7L, Conversation.ConversationStatus.ARCHIVED));
+
+        assertEquals(Conversation.ConversationStatus.ACTIVE, cache.get(1L).getStatus());
+        cache.onAccessChanged(new ConversationAccessChangedEvent(1L));
+
+        assertEquals(Conversation.ConversationStatus.ARCHIVED, cache.get(1L).getStatus());
+        verify(conversationMapper, times(2)).selectAccessInfo(1L);
+    }
+
+    @Test
+    void testLoadRacingInvalidationIsNotCached() {
+        // 加载期间对话被归档：本次返回读到的结果，但不写入缓存
+        when(conversationMapper.selectAccessInfo(1L)).thenAnswer(invocation -> {
+            cache.invalidate(1L);
+            return conversation(1L, 7L, Conversation.ConversationStatus.ACTIVE);
+        });
+
+        cache.get(1L);
+        cache.get(1L);
+
+        verify(conversationMapper, times(2)).selectAccessInfo(1L);
+        assertEquals(0.0, registry.get(ConversationAccessCache.SIZE).gauge().value());
+    }
+
+    @Test
+    void testMissingConversationIsNotCached() {
+        assertNull(cache.get(2L));
+        assertNull(cache.get(2L));
+
+        verify(conversationMapper, times(2)).selectAccessInfo(2L);
+    }
+
+    @Test
+    void testExpiredEntryIsReloaded() {
+        ConversationAccessCache expiring = new ConversationAccessCache(conversationMapper,
+                new SimpleMeterRegistry(), 0, 100);
+        when(conversationMapper.selectAccessInfo(1L)).thenReturn(conversation(1L, 7L, Conversation.ConversationStatus.ACTIVE));
+
+        expiring.get(1L);
+        expiring.get(1L);
+
+        verify(conversationMapper, times(2)).selectAccessInfo(1L);
+    }
+
+    private static Conversation conversation(Long id, Long userId, Conversation.ConversationStatus status) {
+        Conversation conversation = new Conversation();
+        conversation.setId(id);
+        conversation.setUserId(userId);
+        conversation.setStatus(status);
+        return conversation;
+    }
+}
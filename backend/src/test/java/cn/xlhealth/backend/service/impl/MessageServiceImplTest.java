@@ -1,19 +1,41 @@
 package cn.xlhealth.backend.service.impl;
 
+import cn.xlhealth.backend.entity.Conversation;
 import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.entity.UserMessageStats;
 import cn.xlhealth.backend.mapper.MessageMapper;
 import cn.xlhealth.backend.service.ConversationService;
+import cn.xlhealth.backend.service.ai.AIServiceManager;
+import cn.xlhealth.backend.service.ai.dto.AIResponse;
+import cn.xlhealth.backend.service.ai.monitor.RequestTracer;
+import cn.xlhealth.backend.service.cache.ConversationAccessCache;
+import cn.xlhealth.backend.service.event.MessageCreatedEvent;
+import cn.xlhealth.backend.service.event.MessageDeletedEvent;
+import cn.xlhealth.backend.service.persist.MessageBatchWriter;
+import cn.xlhealth.backend.service.stats.UserMessageStatsUpdater;
+import cn.xlhealth.backend.ui.advice.BusinessException;
+import cn.xlhealth.backend.ui.dto.CursorPageResponse;
+import cn.xlhealth.backend.util.PageCursor;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -31,6 +53,27 @@ class MessageServiceImplTest {
         @Mock
         private ConversationService conversationService;
 
+        @Mock
+        private ConversationAccessCache conversationAccessCache;
+
+        @Mock
+        private ApplicationEventPublisher eventPublisher;
+
+        @Mock
+        private MessageBatchWriter messageBatchWriter;
+
+        @Mock
+        private UserMessageStatsUpdater userMessageStatsUpdater;
+
+        @Mock
+        private AIServiceManager aiServiceManager;
+
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
+        @Spy
+        private RequestTracer requestTracer = new RequestTracer(ObservationRegistry.NOOP);
+
         @InjectMocks
         private MessageServiceImpl messageService;
 
@@ -56,9 +99,10 @@ class MessageServiceImplTest {
 
         @Test
         void testSendMessage() {
-                // Mock ConversationService 验证权限
-                when(conversationService.getConversationById(testConversationId, testUserId))
-                                .thenReturn(null); // 简化测试，实际应返回Conversation对象
+                // Mock ConversationAccessCache 验证权限
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
+                ReflectionTestUtils.setField(messageService, "transactionTemplate",
+                                new TransactionTemplate(transactionManager));
 
                 // Mock MessageMapper insert
                 when(messageMapper.insert(any(Message.class))).thenReturn(1);
@@ -84,6 +128,31 @@ class MessageServiceImplTest {
 
                 // 验证方法调用
                 verify(messageMapper, times(1)).insert(any(Message.class));
+                verify(conversationService).incrementConversationStatistics(testConversationId, 1, 0);
+                verify(eventPublisher).publishEvent(any(MessageCreatedEvent.class));
+                // 插入和统计更新在短事务中完成
+                verify(transactionManager).getTransaction(any());
+                verify(transactionManager).commit(any());
+        }
+
+        @Test
+        void testSendMessageWithWriteBehindSubmitsOutsideTransaction() {
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
+                when(messageBatchWriter.isEnabled()).thenReturn(true);
+                when(messageBatchWriter.submit(any(Message.class))).thenAnswer(invocation -> {
+                        Message queued = invocation.getArgument(0);
+                        queued.setId(100L);
+                        return CompletableFuture.completedFuture(queued);
+                });
+
+                Message result = messageService.sendMessage(testConversationId, testUserId, "测试消息",
+                                Message.MessageRole.USER, Message.ContentType.TEXT, null);
+
+                assertEquals(100L, result.getId());
+                // 等待批次提交期间不开启事务、不占用连接，插入和统计由批次事务完成
+                verifyNoInteractions(transactionManager);
+                verify(messageMapper, never()).insert(any(Message.class));
+                verify(eventPublisher).publishEvent(any(MessageCreatedEvent.class));
         }
 
         @Test
@@ -91,9 +160,8 @@ class MessageServiceImplTest {
                 // Mock MessageMapper selectById
                 when(messageMapper.selectById(testMessageId)).thenReturn(testMessage);
 
-                // Mock ConversationService 验证权限
-                when(conversationService.getConversationById(testConversationId, testUserId))
-                                .thenReturn(null); // 简化测试
+                // Mock ConversationAccessCache 验证权限
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
 
                 // 执行测试
                 Message result = messageService.getMessageById(testMessageId, testUserId);
@@ -110,12 +178,13 @@ class MessageServiceImplTest {
 
         @Test
         void testDeleteMessage() {
+                testMessage.setTokenCount(12);
+
                 // Mock MessageMapper selectById
                 when(messageMapper.selectById(testMessageId)).thenReturn(testMessage);
 
-                // Mock ConversationService 验证权限
-                when(conversationService.getConversationById(testConversationId, testUserId))
-                                .thenReturn(null); // 简化测试
+                // Mock ConversationAccessCache 验证权限
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
 
                 // Mock MessageMapper update
                 when(messageMapper.update(eq(null), any())).thenReturn(1);
@@ -128,6 +197,8 @@ class MessageServiceImplTest {
 
                 // 验证方法调用
                 verify(messageMapper, times(1)).update(eq(null), any());
+                verify(conversationService).incrementConversationStatistics(testConversationId, -1, -12);
+                verify(eventPublisher).publishEvent(any(MessageDeletedEvent.class));
         }
 
         @Test
@@ -137,9 +208,8 @@ class MessageServiceImplTest {
                 // Mock MessageMapper selectById for each message
                 when(messageMapper.selectById(anyLong())).thenReturn(testMessage);
 
-                // Mock ConversationService 验证权限
-                when(conversationService.getConversationById(testConversationId, testUserId))
-                                .thenReturn(null); // 简化测试
+                // Mock ConversationAccessCache 验证权限
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
 
                 // Mock MessageMapper update
                 when(messageMapper.update(eq(null), any())).thenReturn(3);
@@ -156,13 +226,60 @@ class MessageServiceImplTest {
 
                 // 验证方法调用
                 verify(messageMapper, times(1)).update(eq(null), any());
+                verify(conversationService).incrementConversationStatistics(testConversationId, -3, 0);
+                verify(eventPublisher).publishEvent(any(MessageDeletedEvent.class));
+                verify(userMessageStatsUpdater).recordDeleted(Arrays.asList(testMessage, testMessage, testMessage));
+        }
+
+        @Test
+        void testGetConversationMessagesByCursor() {
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
+
+                Message second = new Message();
+                second.setId(2L);
+                second.setCreatedTime(testMessage.getCreatedTime());
+                Message third = new Message();
+                third.setId(3L);
+                third.setCreatedTime(testMessage.getCreatedTime().plusSeconds(1));
+
+                // 多查询一条用于判断是否还有下一页
+                when(messageMapper.findAfterCursor(testConversationId, null, null, 3))
+                                .thenReturn(Arrays.asList(testMessage, second, third));
+
+                CursorPageResponse<Message> result = messageService.getConversationMessagesByCursor(
+                                testConversationId, testUserId, null, null, 2);
+
+                assertEquals(Arrays.asList(testMessage, second), result.getRecords());
+                assertTrue(result.getHasMore());
+                PageCursor next = PageCursor.decode(result.getNextCursor());
+                assertEquals(2L, next.getId());
+                assertEquals(second.getCreatedTime(), next.getCreatedTime());
+
+                // 沿同一方向翻到最后一页
+                when(messageMapper.findAfterCursor(testConversationId, next.getCreatedTime(), 2L, 3))
+                                .thenReturn(Arrays.asList(third));
+                result = messageService.getConversationMessagesByCursor(
+                                testConversationId, testUserId, null, result.getNextCursor(), 2);
+                assertEquals(Arrays.asList(third), result.getRecords());
+                assertFalse(result.getHasMore());
+                assertNull(result.getNextCursor());
+
+                // 游标分页不执行COUNT
+                verify(messageMapper, never()).selectCount(any());
+        }
+
+        @Test
+        void testGetConversationMessagesByCursorRejectsBothDirections() {
+                String cursor = PageCursor.of(LocalDateTime.now(), 1L).encode();
+
+                assertThrows(BusinessException.class, () -> messageService.getConversationMessagesByCursor(
+                                testConversationId, testUserId, cursor, cursor, 20));
         }
 
         @Test
         void testCountConversationMessages() {
-                // Mock ConversationService 验证权限
-                when(conversationService.getConversationById(testConversationId, testUserId))
-                                .thenReturn(null); // 简化测试
+                // Mock ConversationAccessCache 验证权限
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
 
                 // Mock MessageMapper selectCount
                 when(messageMapper.selectCount(any(QueryWrapper.class))).thenReturn(5L);
@@ -179,12 +296,19 @@ class MessageServiceImplTest {
 
         @Test
         void testGenerateAIReply() {
-                // Mock ConversationService 验证权限
-                when(conversationService.getConversationById(testConversationId, testUserId))
-                                .thenReturn(null); // 简化测试
+                // Mock ConversationAccessCache 验证权限
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
+                ReflectionTestUtils.setField(messageService, "transactionTemplate",
+                                new TransactionTemplate(transactionManager));
 
-                // Mock MessageMapper insert
+                // Mock MessageMapper insert / updateById
                 when(messageMapper.insert(any(Message.class))).thenReturn(1);
+                when(messageMapper.updateById(any(Message.class))).thenReturn(1);
+
+                // Mock AI服务回复
+                AIResponse response = AIResponse.success("关于用户消息的回复", "GENERAL", "MOCK");
+                response.setMetadata(Map.<String, Object>of("model", "gpt-3.5-turbo"));
+                when(aiServiceManager.processRequest(any())).thenReturn(response);
 
                 // 执行测试
                 Message result = messageService.generateAIReply(
@@ -195,7 +319,7 @@ class MessageServiceImplTest {
                 // 验证结果
                 assertNotNull(result);
                 assertEquals(testConversationId, result.getConversationId());
-                assertNull(result.getUserId()); // AI消息没有用户ID
+                assertEquals(testUserId, result.getUserId());
                 assertEquals(Message.MessageRole.ASSISTANT, result.getRole());
                 assertTrue(result.getContent().contains("用户消息"));
                 assertEquals(Message.ContentType.TEXT, result.getContentType());
@@ -207,19 +331,83 @@ class MessageServiceImplTest {
                 verify(messageMapper, times(1)).insert(any(Message.class));
         }
 
+        @Test
+        void testGenerateAIReplyCallsAIOutsideTransaction() {
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
+                ReflectionTestUtils.setField(messageService, "transactionTemplate",
+                                new TransactionTemplate(transactionManager));
+
+                // 占位消息以处理中状态插入
+                when(messageMapper.insert(any(Message.class))).thenAnswer(invocation -> {
+                        Message pending = invocation.getArgument(0);
+                        assertEquals(Message.MessageStatus.PROCESSING, pending.getStatus());
+                        pending.setId(99L);
+                        return 1;
+                });
+                AIResponse response = AIResponse.success("AI回复", "GENERAL", "MOCK");
+                response.setMetadata(Map.<String, Object>of("total_tokens", 12));
+                when(aiServiceManager.processRequest(any())).thenReturn(response);
+                when(messageMapper.updateById(any(Message.class))).thenReturn(1);
+
+                Message result = messageService.generateAIReply(testConversationId, testUserId, "用户消息");
+
+                assertEquals(99L, result.getId());
+                assertEquals("AI回复", result.getContent());
+                assertEquals(Message.MessageStatus.SUCCESS, result.getStatus());
+
+                // 插入事务提交后才调用AI，回写在第二个事务中
+                InOrder inOrder = inOrder(transactionManager, messageMapper, aiServiceManager);
+                inOrder.verify(transactionManager).getTransaction(any());
+                inOrder.verify(messageMapper).insert(any(Message.class));
+                inOrder.verify(transactionManager).commit(any());
+                inOrder.verify(aiServiceManager).processRequest(any());
+                inOrder.verify(transactionManager).getTransaction(any());
+                inOrder.verify(messageMapper).updateById(any(Message.class));
+                inOrder.verify(transactionManager).commit(any());
+
+                // 消息数在插入时计入，token数在回写时补记
+                verify(conversationService).incrementConversationStatistics(testConversationId, 1, 0);
+                verify(conversationService).incrementConversationStatistics(testConversationId, 0, 12);
+                verify(userMessageStatsUpdater).recordTokens(testUserId, 12);
+                verify(aiServiceManager).bindReplyMessage(response, 99L);
+        }
+
+        @Test
+        void testGenerateAIReplyMarksFailedWhenFinalizeFails() {
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
+                ReflectionTestUtils.setField(messageService, "transactionTemplate",
+                                new TransactionTemplate(transactionManager));
+                when(messageMapper.insert(any(Message.class))).thenAnswer(invocation -> {
+                        ((Message) invocation.getArgument(0)).setId(99L);
+                        return 1;
+                });
+                AIResponse response = AIResponse.success("AI回复", "GENERAL", "MOCK");
+                response.setMetadata(Map.<String, Object>of("total_tokens", 12));
+                when(aiServiceManager.processRequest(any())).thenReturn(response);
+                // 回写失败，随后标记失败成功
+                when(messageMapper.updateById(any(Message.class)))
+                                .thenThrow(new RuntimeException("连接已断开"))
+                                .thenReturn(1);
+
+                Message result = messageService.generateAIReply(testConversationId, testUserId, "用户消息");
+
+                // 占位消息不再停留在处理中
+                assertEquals(Message.MessageStatus.FAILED, result.getStatus());
+                verify(messageMapper, times(2)).updateById(argThat((Message message) -> message.getId() == 99L));
+                verify(userMessageStatsUpdater, never()).recordTokens(anyLong(), anyLong());
+                verify(aiServiceManager, never()).bindReplyMessage(any(), anyLong());
+        }
+
         @Test
         void testGetUserMessageStatistics() {
-                // Mock MessageMapper selectCount for different queries
-                when(messageMapper.selectCount(any(QueryWrapper.class)))
-                                .thenReturn(10L) // total messages
-                                .thenReturn(6L) // user messages
-                                .thenReturn(4L); // assistant messages
-
-                // Mock MessageMapper selectList for token count
-                Message tokenMessage = new Message();
-                tokenMessage.setTokenCount(1000);
-                when(messageMapper.selectList(any(QueryWrapper.class)))
-                                .thenReturn(Arrays.asList(tokenMessage));
+                UserMessageStats stats = new UserMessageStats();
+                stats.setUserId(testUserId);
+                stats.setTotalMessages(10L);
+                stats.setUserMessages(6L);
+                stats.setAssistantMessages(4L);
+                stats.setSystemMessages(0L);
+                stats.setTotalTokens(1000L);
+                when(userMessageStatsUpdater.getStatistics(testUserId)).thenReturn(stats);
 
                 // 执行测试
                 MessageServiceImpl.MessageStatistics result = (MessageServiceImpl.MessageStatistics) messageService
@@ -230,10 +418,34 @@ class MessageServiceImplTest {
                 assertEquals(10L, result.getTotalMessages());
                 assertEquals(6L, result.getUserMessages());
                 assertEquals(4L, result.getAiMessages());
-                assertEquals(1000, result.getTotalTokens());
+                assertEquals(1000L, result.getTotalTokens());
+
+                // 全部对话的统计按主键读取，不再扫描消息表
+                verify(messageMapper, never()).selectCount(any(QueryWrapper.class));
+                verify(messageMapper, never()).countByRole(any(), any());
+        }
+
+        @Test
+        void testGetConversationMessageStatisticsAggregatesOnce() {
+                when(conversationAccessCache.get(testConversationId)).thenReturn(activeAccess());
+                UserMessageStats stats = new UserMessageStats();
+                stats.setTotalMessages(3L);
+                stats.setUserMessages(2L);
+                stats.setAssistantMessages(1L);
+                stats.setSystemMessages(0L);
+                stats.setTotalTokens(30L);
+                when(userMessageStatsUpdater.aggregate(testUserId, testConversationId)).thenReturn(stats);
+
+                MessageServiceImpl.MessageStatistics result = messageService
+                                .getUserMessageStatistics(testUserId, testConversationId);
+
+                assertEquals(3L, result.getTotalMessages());
+                assertEquals(30L, result.getTotalTokens());
+                verify(userMessageStatsUpdater, never()).getStatistics(any());
+        }
 
-                // 验证方法调用次数
-                verify(messageMapper, times(3)).selectCount(any(QueryWrapper.class));
-                verify(messageMapper, times(1)).selectList(any(QueryWrapper.class));
+        private ConversationAccessCache.Access activeAccess() {
+                return new ConversationAccessCache.Access(testUserId, Conversation.ConversationStatus.ACTIVE, 0L,
+                                Long.MAX_VALUE);
         }
-}
\ No newline at end of file
+}
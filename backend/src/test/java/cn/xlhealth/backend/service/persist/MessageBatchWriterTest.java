@@ -0,0 +1,205 @@
+package cn.xlhealth.backend.service.persist;
+
+import cn.xlhealth.backend.config.properties.MessageWriteProperties;
+import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.ui.advice.BusinessException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 消息批量写入测试类
+ */
+class MessageBatchWriterTest {
+
+    private MessageWriteProperties properties;
+    private SimpleMeterRegistry registry;
+    private FakeStore store;
+    private MessageBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MessageWriteProperties();
+        properties.setEnabled(true);
+        properties.setFlushIntervalMs(50);
+        registry = new SimpleMeterRegistry();
+        store = new FakeStore();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (writer != null) {
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    void testConcurrentWritesShareBatches() throws Exception {
+        start();
+        ExecutorService executor = Executors.newFixedThreadPool(20);
+        try {
+            List<Future<CompletableFuture<Message>>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Message message = message(1L, 10);
+                results.add(executor.submit(() -> writer.submit(message)));
+            }
+            for (Future<CompletableFuture<Message>> result : results) {
+                // COMMIT 模式返回时已提交并回填ID
+                CompletableFuture<Message> saved = result.get(5, TimeUnit.SECONDS);
+                assertTrue(saved.isDone());
+                assertNotNull(saved.get().getId());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(20, store.inserted.size());
+        assertTrue(store.batches < 20);
+        assertEquals(store.batches, registry.get(MessageBatchWriter.BATCH_SIZE).summary().count());
+        assertEquals(20, (long) registry.get(MessageBatchWriter.BATCH_SIZE).summary().totalAmount());
+        assertEquals(store.batches, registry.get(MessageBatchWriter.FLUSH).tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void testFailedBatchRetriesEachMessage() {
+        properties.setDurability(MessageWriteProperties.Durability.QUEUED);
+        Message good = message(1L, 10);
+        Message bad = message(2L, 10);
+        store.poison = bad;
+
+        writer = new MessageBatchWriter(properties, registry, store);
+        writer.flush(Arrays.asList(new MessageBatchWriter.PendingWrite(good), new MessageBatchWriter.PendingWrite(bad)));
+
+        assertEquals(Collections.singletonList(good), store.inserted);
+        assertNotNull(good.getId());
+        assertNull(bad.getId());
+        assertEquals(1, registry.get(MessageBatchWriter.FLUSH).tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void testRejectsWhenQueueFull() throws Exception {
+        properties.setDurability(MessageWriteProperties.Durability.QUEUED);
+        properties.setQueueCapacity(1);
+        properties.setMaxBatchSize(1);
+        properties.setOfferTimeoutMs(10);
+        store.blocked = new CountDownLatch(1);
+        start();
+
+        // 第一条被刷新线程取走后阻塞，第二条占满队列
+        CompletableFuture<Message> first = writer.submit(message(1L, 10));
+        assertTrue(store.entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Message> second = writer.submit(message(1L, 10));
+
+        assertThrows(BusinessException.class, () -> writer.submit(message(1L, 10)));
+        assertEquals(1.0, registry.get(MessageBatchWriter.REJECTED).counter().count());
+        assertEquals(1.0, registry.get(MessageBatchWriter.QUEUE_SIZE).gauge().value());
+
+        store.blocked.countDown();
+        assertNotNull(first.get(5, TimeUnit.SECONDS).getId());
+        assertNotNull(second.get(5, TimeUnit.SECONDS).getId());
+    }
+
+    @Test
+    void testShutdownDrainsQueue() throws Exception {
+        properties.setDurability(MessageWriteProperties.Durability.QUEUED);
+        properties.setFlushIntervalMs(1000);
+        start();
+
+        List<CompletableFuture<Message>> saved = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            saved.add(writer.submit(message(1L, 10)));
+        }
+        writer.shutdown();
+
+        for (CompletableFuture<Message> future : saved) {
+            assertTrue(future.isDone());
+            assertNotNull(future.get().getId());
+        }
+        assertThrows(BusinessException.class, () -> writer.submit(message(1L, 10)));
+    }
+
+    @Test
+    void testStatisticsDeltasMergedPerConversation() {
+        Message withoutTokens = message(2L, 0);
+        withoutTokens.setTokenCount(null);
+
+        Map<Long, int[]> deltas = MessageBatchWriter.statisticsDeltas(
+                Arrays.asList(message(1L, 10), message(1L, 5), withoutTokens));
+
+        assertArrayEquals(new int[] {2, 15}, deltas.get(1L));
+        assertArrayEquals(new int[] {1, 0}, deltas.get(2L));
+    }
+
+    private void start() {
+        writer = new MessageBatchWriter(properties, registry, store);
+        writer.start();
+        assertTrue(writer.isEnabled());
+    }
+
+    private static Message message(Long conversationId, int tokens) {
+        Message message = new Message();
+        message.setConversationId(conversationId);
+        message.setUserId(1L);
+        message.setRole(Message.MessageRole.USER);
+        message.setContent("测试消息");
+        message.setTokenCount(tokens);
+        return message;
+    }
+
+    /**
+     * 内存存储，按插入顺序分配ID
+     */
+    private static final class FakeStore implements MessageBatchWriter.BatchStore {
+
+        private final AtomicLong ids = new AtomicLong();
+        private final List<Message> inserted = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private volatile CountDownLatch blocked;
+        private volatile Message poison;
+        private volatile int batches;
+
+        @Override
+        public void insertBatch(List<Message> messages) {
+            entered.countDown();
+            if (blocked != null) {
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (messages.contains(poison)) {
+                // 模拟回滚前已回填ID
+                messages.forEach(message -> message.setId(-1L));
+                throw new IllegalStateException("batch failed");
+            }
+            batches++;
+            messages.forEach(this::insert);
+        }
+
+        @Override
+        public void insert(Message message) {
+            if (message == poison) {
+                throw new IllegalStateException("insert failed");
+            }
+            message.setId(ids.incrementAndGet());
+            inserted.add(message);
+        }
+    }
+}
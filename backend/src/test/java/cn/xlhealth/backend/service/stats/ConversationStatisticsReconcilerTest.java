@@ -0,0 +1,86 @@
+package cn.xlhealth.backend.service.stats;
+
+import cn.xlhealth.backend.mapper.ConversationMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 对话统计核对任务测试类
+ */
+class ConversationStatisticsReconcilerTest {
+
+    private ConversationMapper conversationMapper;
+    private ConversationStatisticsReconciler reconciler;
+
+    @BeforeEach
+    void setUp() {
+        conversationMapper = mock(ConversationMapper.class);
+        reconciler = new ConversationStatisticsReconciler();
+        ReflectionTestUtils.setField(reconciler, "conversationMapper", conversationMapper);
+        ReflectionTestUtils.setField(reconciler, "batchSize", 2);
+    }
+
+    @Test
+    void testRepairsOnlyDriftedConversations() {
+        when(conversationMapper.selectStatisticsBatch(0L, 2)).thenReturn(Arrays.asList(
+                row(1, 3, 30, 3, 30),
+                row(2, 5, 50, 4, 40)));
+        when(conversationMapper.repairStatistics(2L, 5L, 50L, 4L, 40L)).thenReturn(1);
+
+        assertEquals(1, reconciler.reconcile());
+
+        verify(conversationMapper, never()).repairStatistics(eq(1L), anyLong(), anyLong(), anyLong(), anyLong());
+        verify(conversationMapper).repairStatistics(2L, 5L, 50L, 4L, 40L);
+    }
+
+    @Test
+    void testCursorAdvancesAndWrapsAround() {
+        when(conversationMapper.selectStatisticsBatch(0L, 2)).thenReturn(Arrays.asList(
+                row(1, 0, 0, 0, 0), row(2, 0, 0, 0, 0)));
+        when(conversationMapper.selectStatisticsBatch(2L, 2)).thenReturn(Collections.singletonList(
+                row(3, 0, 0, 0, 0)));
+
+        reconciler.reconcile();
+        reconciler.reconcile();
+        reconciler.reconcile();
+
+        // 第二批不足一批，第三次从头开始
+        verify(conversationMapper, times(2)).selectStatisticsBatch(0L, 2);
+        verify(conversationMapper).selectStatisticsBatch(2L, 2);
+    }
+
+    @Test
+    void testConcurrentChangeNotCounted() {
+        when(conversationMapper.selectStatisticsBatch(0L, 2)).thenReturn(Collections.singletonList(
+                row(1, 2, 0, 3, 0)));
+        // 核对期间计数已被增量更新，修复不生效
+        when(conversationMapper.repairStatistics(anyLong(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(0);
+
+        assertEquals(0, reconciler.reconcile());
+    }
+
+    /**
+     * 列名大小写与数据库返回一致（H2为大写）
+     */
+    private static Map<String, Object> row(long conversationId, int messageCount, int totalTokens,
+            long actualCount, long actualTokens) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("CONVERSATIONID", conversationId);
+        row.put("MESSAGECOUNT", messageCount);
+        row.put("TOTALTOKENS", totalTokens);
+        row.put("ACTUALCOUNT", actualCount);
+        row.put("ACTUALTOKENS", actualTokens);
+        return row;
+    }
+}
@@ -0,0 +1,160 @@
+package cn.xlhealth.backend.service.stats;
+
+import cn.xlhealth.backend.entity.Message;
+import cn.xlhealth.backend.entity.UserMessageStats;
+import cn.xlhealth.backend.mapper.MessageMapper;
+import cn.xlhealth.backend.mapper.UserMessageStatsMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 用户消息统计维护测试类
+ */
+class UserMessageStatsUpdaterTest {
+
+    private UserMessageStatsMapper userMessageStatsMapper;
+    private MessageMapper messageMapper;
+    private UserMessageStatsUpdater updater;
+
+    @BeforeEach
+    void setUp() {
+        userMessageStatsMapper = mock(UserMessageStatsMapper.class);
+        messageMapper = mock(MessageMapper.class);
+        updater = new UserMessageStatsUpdater();
+        ReflectionTestUtils.setField(updater, "userMessageStatsMapper", userMessageStatsMapper);
+        ReflectionTestUtils.setField(updater, "messageMapper", messageMapper);
+    }
+
+    @Test
+    void testDeltasMergedPerUserAndRole() {
+        Message withoutUser = message(null, Message.MessageRole.USER, 10);
+        Map<Long, UserMessageStats> deltas = UserMessageStatsUpdater.deltas(Arrays.asList(
+                message(1L, Message.MessageRole.USER, 10),
+                message(1L, Message.MessageRole.ASSISTANT, 20),
+                message(2L, Message.MessageRole.SYSTEM, null),
+                withoutUser), -1);
+
+        assertEquals(2, deltas.size());
+        UserMessageStats first = deltas.get(1L);
+        assertEquals(-2L, first.getTotalMessages());
+        assertEquals(-1L, first.getUserMessages());
+        assertEquals(-1L, first.getAssistantMessages());
+        assertEquals(0L, first.getSystemMessages());
+        assertEquals(-30L, first.getTotalTokens());
+        assertEquals(-1L, deltas.get(2L).getSystemMessages());
+        assertEquals(0L, deltas.get(2L).getTotalTokens());
+    }
+
+    @Test
+    void testInsertsWhenStatisticsMissing() {
+        when(userMessageStatsMapper.incrementStatistics(any())).thenReturn(0);
+
+        updater.recordCreated(List.of(message(1L, Message.MessageRole.USER, 10)));
+
+        ArgumentCaptor<UserMessageStats> captor = ArgumentCaptor.forClass(UserMessageStats.class);
+        verify(userMessageStatsMapper).insert(captor.capture());
+        assertEquals(1L, captor.getValue().getUserId());
+        assertEquals(1L, captor.getValue().getTotalMessages());
+        assertEquals(1L, captor.getValue().getUserMessages());
+        assertEquals(10L, captor.getValue().getTotalTokens());
+    }
+
+    @Test
+    void testConcurrentInsertFallsBackToIncrement() {
+        when(userMessageStatsMapper.incrementStatistics(any())).thenReturn(0).thenReturn(1);
+        when(userMessageStatsMapper.insert(any(UserMessageStats.class))).thenThrow(new DuplicateKeyException("exists"));
+
+        updater.recordCreated(List.of(message(1L, Message.MessageRole.ASSISTANT, 5)));
+
+        verify(userMessageStatsMapper, times(2)).incrementStatistics(any());
+    }
+
+    @Test
+    void testDeleteBeforeRowExistsNeverGoesNegative() {
+        when(userMessageStatsMapper.incrementStatistics(any())).thenReturn(0);
+
+        updater.recordDeleted(List.of(message(1L, Message.MessageRole.USER, 10)));
+
+        ArgumentCaptor<UserMessageStats> captor = ArgumentCaptor.forClass(UserMessageStats.class);
+        verify(userMessageStatsMapper).insert(captor.capture());
+        assertEquals(0L, captor.getValue().getTotalMessages());
+        assertEquals(0L, captor.getValue().getTotalTokens());
+    }
+
+    @Test
+    void testAggregateFoldsRoleRows() {
+        when(messageMapper.countByRole(1L, 3L)).thenReturn(Arrays.asList(
+                row("USER", 6, 600), row("ASSISTANT", 4, 400)));
+
+        UserMessageStats stats = updater.aggregate(1L, 3L);
+
+        assertEquals(10L, stats.getTotalMessages());
+        assertEquals(6L, stats.getUserMessages());
+        assertEquals(4L, stats.getAssistantMessages());
+        assertEquals(0L, stats.getSystemMessages());
+        assertEquals(1000L, stats.getTotalTokens());
+
+        // 清空对话时按聚合结果扣减
+        when(userMessageStatsMapper.incrementStatistics(any())).thenReturn(1);
+        updater.recordCleared(stats);
+        ArgumentCaptor<UserMessageStats> captor = ArgumentCaptor.forClass(UserMessageStats.class);
+        verify(userMessageStatsMapper).incrementStatistics(captor.capture());
+        assertEquals(-10L, captor.getValue().getTotalMessages());
+        assertEquals(-1000L, captor.getValue().getTotalTokens());
+    }
+
+    @Test
+    void testGetStatisticsReadsRowByPrimaryKey() {
+        UserMessageStats stored = new UserMessageStats();
+        stored.setUserId(1L);
+        stored.setTotalMessages(42L);
+        when(userMessageStatsMapper.selectById(1L)).thenReturn(stored);
+
+        assertSame(stored, updater.getStatistics(1L));
+        verifyNoInteractions(messageMapper);
+
+        // 没有统计记录时按消息表聚合
+        when(messageMapper.countByRole(2L, null)).thenReturn(List.of());
+        assertEquals(0L, updater.getStatistics(2L).getTotalMessages());
+    }
+
+    @Test
+    void testEnsureExistsInsertsMissingRows() {
+        when(userMessageStatsMapper.selectById(1L)).thenReturn(new UserMessageStats());
+        when(userMessageStatsMapper.insert(any(UserMessageStats.class))).thenThrow(new DuplicateKeyException("exists"));
+
+        updater.ensureExists(Arrays.asList(1L, 2L));
+
+        verify(userMessageStatsMapper, times(1)).insert(any(UserMessageStats.class));
+    }
+
+    private static Message message(Long userId, Message.MessageRole role, Integer tokens) {
+        Message message = new Message();
+        message.setConversationId(1L);
+        message.setUserId(userId);
+        message.setRole(role);
+        message.setTokenCount(tokens);
+        return message;
+    }
+
+    private static Map<String, Object> row(String role, long count, long tokens) {
+        // H2 返回大写列名
+        Map<String, Object> row = new HashMap<>();
+        row.put("ROLE", role);
+        row.put("MESSAGECOUNT", count);
+        row.put("TOTALTOKENS", tokens);
+        return row;
+    }
+}
@@ -0,0 +1,50 @@
+package cn.xlhealth.backend.util;
+
+import cn.xlhealth.backend.ui.advice.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分页游标测试类
+ */
+class PageCursorTest {
+
+    @Test
+    void testEncodeDecodeRoundTrip() {
+        LocalDateTime createdTime = LocalDateTime.of(2024, 3, 1, 10, 0, 0, 123000000);
+        String encoded = PageCursor.of(createdTime, 42L).encode();
+
+        // 游标不透明，不直接暴露时间和ID
+        assertFalse(encoded.contains("42"));
+        PageCursor decoded = PageCursor.decode(encoded);
+        assertEquals(createdTime, decoded.getCreatedTime());
+        assertEquals(42L, decoded.getId());
+
+        // 整分钟的时间也能还原
+        LocalDateTime minute = LocalDateTime.of(2024, 3, 1, 10, 0);
+        assertEquals(minute, PageCursor.decode(PageCursor.of(minute, 1L).encode()).getCreatedTime());
+    }
+
+    @Test
+    void testBlankCursorMeansStart() {
+        assertNull(PageCursor.decode(null));
+        assertNull(PageCursor.decode(""));
+    }
+
+    @Test
+    void testInvalidCursorRejected() {
+        assertThrows(BusinessException.class, () -> PageCursor.decode("not-a-cursor"));
+        assertThrows(BusinessException.class, () -> PageCursor.decode("!!!"));
+    }
+
+    @Test
+    void testNormalizeLimit() {
+        assertEquals(PageCursor.DEFAULT_LIMIT, PageCursor.normalizeLimit(null));
+        assertEquals(PageCursor.DEFAULT_LIMIT, PageCursor.normalizeLimit(0));
+        assertEquals(5, PageCursor.normalizeLimit(5));
+        assertEquals(PageCursor.MAX_LIMIT, PageCursor.normalizeLimit(10000));
+    }
+}
@@ -1,6 +1,9 @@
 -- 测试环境数据库初始化脚本
 
 -- 清理已存在的表
+DROP TABLE IF EXISTS user_message_stats;
+DROP TABLE IF EXISTS ai_metric_series;
+DROP TABLE IF EXISTS usage_daily;
 DROP TABLE IF EXISTS audit_logs;
 DROP TABLE IF EXISTS messages;
 DROP TABLE IF EXISTS conversations;
@@ -174,22 +177,75 @@ CREATE TABLE messages (
     completion_tokens INT,
     total_tokens INT,
     response_time BIGINT,
+    quality_score INT,
     status VARCHAR(20) DEFAULT 'SUCCESS',
     error_message TEXT,
+    metadata TEXT,
     created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     deleted TINYINT DEFAULT 0
 );
 
+-- 创建 usage_daily 表
+CREATE TABLE usage_daily (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    usage_date DATE NOT NULL,
+    user_id BIGINT NOT NULL,
+    model_name VARCHAR(100) NOT NULL,
+    request_count INT DEFAULT 0,
+    prompt_tokens BIGINT DEFAULT 0,
+    completion_tokens BIGINT DEFAULT 0,
+    total_tokens BIGINT DEFAULT 0,
+    cost DECIMAL(18, 6) DEFAULT 0,
+    created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    CONSTRAINT uk_usage_date_user_model UNIQUE (usage_date, user_id, model_name)
+);
+
+-- 创建 user_message_stats 表
+CREATE TABLE user_message_stats (
+    user_id BIGINT PRIMARY KEY,
+    total_messages BIGINT DEFAULT 0,
+    user_messages BIGINT DEFAULT 0,
+    assistant_messages BIGINT DEFAULT 0,
+    system_messages BIGINT DEFAULT 0,
+    total_tokens BIGINT DEFAULT 0,
+    created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- 创建 ai_metric_series 表
+CREATE TABLE ai_metric_series (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    resolution VARCHAR(4) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    provider VARCHAR(50) NOT NULL,
+    instance_id VARCHAR(64) NOT NULL,
+    total_calls BIGINT DEFAULT 0,
+    failed_calls BIGINT DEFAULT 0,
+    total_response_time BIGINT DEFAULT 0,
+    p50_response_time BIGINT DEFAULT 0,
+    p90_response_time BIGINT DEFAULT 0,
+    p99_response_time BIGINT DEFAULT 0,
+    max_response_time BIGINT DEFAULT 0,
+    prompt_tokens BIGINT DEFAULT 0,
+    completion_tokens BIGINT DEFAULT 0,
+    quality_score_total BIGINT DEFAULT 0,
+    quality_assessments BIGINT DEFAULT 0,
+    latency_histogram VARBINARY(8192),
+    created_time TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_metric_series UNIQUE (resolution, provider, bucket_start, instance_id)
+);
+
 -- 创建 system_configs 表的索引
 CREATE INDEX idx_config_key ON system_configs (config_key);
 CREATE INDEX idx_category ON system_configs (category);
 
--- 创建 conversations 表的索引
-CREATE INDEX idx_conversations_user_id ON conversations (user_id);
+-- 创建 conversations 表的索引（与 V9 迁移一致）
+CREATE INDEX idx_conversations_user_created ON conversations (user_id, deleted, created_time, id);
 CREATE INDEX idx_conversations_status ON conversations (status);
 
--- 创建 messages 表的索引
-CREATE INDEX idx_messages_conversation_id ON messages (conversation_id);
-CREATE INDEX idx_messages_user_id ON messages (user_id);
+-- 创建 messages 表的索引（与 V9 迁移一致）
+CREATE INDEX idx_messages_conversation_created ON messages (conversation_id, deleted, created_time, id, token_count);
+CREATE INDEX idx_messages_user_role_created ON messages (user_id, deleted, role, created_time, token_count);
 CREATE INDEX idx_messages_role ON messages (role);
\ No newline at end of file